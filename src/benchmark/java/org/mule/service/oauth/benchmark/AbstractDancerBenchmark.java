@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.benchmark;
+
+import org.mule.runtime.api.el.MuleExpressionLanguage;
+import org.mule.runtime.api.exception.MuleException;
+import org.mule.runtime.api.lifecycle.Startable;
+import org.mule.runtime.api.lifecycle.Stoppable;
+import org.mule.runtime.oauth.api.AuthorizationCodeOAuthDancer;
+import org.mule.runtime.oauth.api.ClientCredentialsOAuthDancer;
+import org.mule.runtime.oauth.api.builder.OAuthAuthorizationCodeDancerBuilder;
+import org.mule.runtime.oauth.api.builder.OAuthClientCredentialsDancerBuilder;
+import org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContext;
+import org.mule.service.oauth.internal.DefaultOAuthService;
+import org.mule.tck.SimpleUnitTestSupportSchedulerService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Base class for benchmarks that exercise dancers built through {@link DefaultOAuthService}, with a {@link StubHttpClient}
+ * standing for the token url, an {@link InMemoryLockFactory} and a {@link PayloadExpressionLanguage}.
+ */
+public abstract class AbstractDancerBenchmark {
+
+  protected static final String TOKEN_URL = "http://localhost/token";
+
+  protected final SimpleUnitTestSupportSchedulerService schedulerService = new SimpleUnitTestSupportSchedulerService();
+  protected final InMemoryLockFactory lockFactory = new InMemoryLockFactory();
+  protected final MuleExpressionLanguage expressionLanguage = PayloadExpressionLanguage.create();
+  protected final StubHttpClient httpClient = new StubHttpClient();
+  protected final Map<String, ResourceOwnerOAuthContext> tokensStore = new ConcurrentHashMap<>();
+
+  // The http clients for the token url are passed explicitly to the builders, so no HttpService is needed.
+  protected final DefaultOAuthService service = new DefaultOAuthService(null, schedulerService);
+
+  private final List<Object> startedDancers = new ArrayList<>();
+
+  protected OAuthClientCredentialsDancerBuilder clientCredentialsDancerBuilder() {
+    final OAuthClientCredentialsDancerBuilder builder =
+        service.clientCredentialsGrantTypeDancerBuilder(lockFactory, tokensStore, expressionLanguage);
+    builder.clientCredentials("clientId", "clientSecret");
+    builder.tokenUrl(httpClient, TOKEN_URL);
+    return builder;
+  }
+
+  protected OAuthAuthorizationCodeDancerBuilder authorizationCodeDancerBuilder() {
+    final OAuthAuthorizationCodeDancerBuilder builder =
+        service.authorizationCodeGrantTypeDancerBuilder(lockFactory, tokensStore, expressionLanguage);
+    builder.clientCredentials("clientId", "clientSecret");
+    builder.tokenUrl(httpClient, TOKEN_URL);
+    builder.authorizationUrl("http://localhost/authorize");
+    builder.externalCallbackUrl("http://localhost:8081/callback");
+    return builder;
+  }
+
+  protected ClientCredentialsOAuthDancer startClientCredentialsDancer(OAuthClientCredentialsDancerBuilder builder)
+      throws MuleException {
+    return start(builder.build());
+  }
+
+  protected AuthorizationCodeOAuthDancer startAuthorizationCodeDancer(OAuthAuthorizationCodeDancerBuilder builder)
+      throws MuleException {
+    return start(builder.build());
+  }
+
+  private <D> D start(D dancer) throws MuleException {
+    ((Startable) dancer).start();
+    startedDancers.add(dancer);
+    return dancer;
+  }
+
+  @TearDown
+  public void stopDancers() throws MuleException {
+    for (Object dancer : startedDancers) {
+      ((Stoppable) dancer).stop();
+    }
+    startedDancers.clear();
+    schedulerService.stop();
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.benchmark;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static org.mule.runtime.oauth.api.state.DancerState.HAS_TOKEN;
+import static org.openjdk.jmh.annotations.Mode.Throughput;
+import static org.openjdk.jmh.annotations.Scope.Benchmark;
+
+import org.mule.runtime.oauth.api.AuthorizationCodeOAuthDancer;
+import org.mule.runtime.oauth.api.ClientCredentialsOAuthDancer;
+import org.mule.runtime.oauth.api.builder.OAuthAuthorizationCodeDancerBuilder;
+import org.mule.runtime.oauth.api.builder.OAuthClientCredentialsDancerBuilder;
+import org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContextWithRefreshState;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@code accessToken()} for both grant types when the token is already available.
+ */
+@State(Benchmark)
+@BenchmarkMode(Throughput)
+@OutputTimeUnit(MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AccessTokenBenchmark extends AbstractDancerBenchmark {
+
+  private static final String RESOURCE_OWNER = "resourceOwner";
+
+  private ClientCredentialsOAuthDancer clientCredentialsDancer;
+  private AuthorizationCodeOAuthDancer authorizationCodeDancer;
+
+  @Setup
+  public void setup() throws Exception {
+    final OAuthClientCredentialsDancerBuilder clientCredentialsBuilder = clientCredentialsDancerBuilder();
+    clientCredentialsBuilder.name("clientCredentials");
+    clientCredentialsDancer = startClientCredentialsDancer(clientCredentialsBuilder);
+    // The first call after start clears the refresh done on start, so that the measured calls all read the stored token.
+    clientCredentialsDancer.accessToken().get();
+
+    final OAuthAuthorizationCodeDancerBuilder authorizationCodeBuilder = authorizationCodeDancerBuilder();
+    authorizationCodeBuilder.name("authorizationCode");
+    authorizationCodeDancer = startAuthorizationCodeDancer(authorizationCodeBuilder);
+    final ResourceOwnerOAuthContextWithRefreshState context =
+        (ResourceOwnerOAuthContextWithRefreshState) authorizationCodeDancer.getContextForResourceOwner(RESOURCE_OWNER);
+    context.setAccessToken("2YotnFZFEjr1zCsicMWpAA");
+    context.setRefreshToken("tGzv3JOkF0XG5Qx2TlKWIA");
+    context.setDancerState(HAS_TOKEN);
+    tokensStore.put(RESOURCE_OWNER, context);
+  }
+
+  @Benchmark
+  public String clientCredentials() throws Exception {
+    return clientCredentialsDancer.accessToken().get();
+  }
+
+  @Benchmark
+  public String authorizationCode() throws Exception {
+    return authorizationCodeDancer.accessToken(RESOURCE_OWNER).get();
+  }
+}
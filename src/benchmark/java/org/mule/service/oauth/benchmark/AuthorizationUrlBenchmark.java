@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.benchmark;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singletonMap;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static org.openjdk.jmh.annotations.Mode.Throughput;
+import static org.openjdk.jmh.annotations.Scope.Benchmark;
+
+import org.mule.service.oauth.internal.authorizationcode.AuthorizationRequestUrlBuilder;
+import org.mule.service.oauth.internal.authorizationcode.AuthorizationRequestUrlTemplate;
+
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures building the url the local authorization url redirects the user to, from scratch and from a template as the dancer
+ * does.
+ */
+@State(Benchmark)
+@BenchmarkMode(Throughput)
+@OutputTimeUnit(MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AuthorizationUrlBenchmark {
+
+  private static final String STATE = "af0ifjsldkj:resourceOwnerId=john.doe@example.com";
+  private static final Map<String, String> CUSTOM_PARAMETERS = singletonMap("access_type", "offline");
+
+  private final AuthorizationRequestUrlTemplate template = urlBuilder().buildTemplate();
+
+  private static AuthorizationRequestUrlBuilder urlBuilder() {
+    return new AuthorizationRequestUrlBuilder()
+        .setAuthorizationUrl("https://idp.example.com/oauth2/authorize")
+        .setClientId("s6BhdRkqt3")
+        .setClientSecret("7Fjfp0ZBr1KtDRbnfVdmIw")
+        .setCustomParameters(CUSTOM_PARAMETERS)
+        .setRedirectUrl("https://app.example.com/oauth/callback")
+        .setScope("openid profile email offline_access")
+        .setEncoding(UTF_8);
+  }
+
+  @Benchmark
+  public String buildUrl() {
+    return urlBuilder().setState(STATE).buildUrl();
+  }
+
+  @Benchmark
+  public String buildUrlFromTemplate() {
+    return template.buildUrl(STATE);
+  }
+}
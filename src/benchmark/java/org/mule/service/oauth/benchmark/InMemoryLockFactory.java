@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.benchmark;
+
+import org.mule.runtime.api.lock.LockFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link LockFactory} that hands out one {@link ReentrantLock} per lock id, like the runtime does for a single node.
+ */
+public class InMemoryLockFactory implements LockFactory {
+
+  private final Map<String, Lock> locks = new ConcurrentHashMap<>();
+
+  @Override
+  public Lock createLock(String lockId) {
+    return locks.computeIfAbsent(lockId, id -> new ReentrantLock());
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.benchmark;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static org.openjdk.jmh.annotations.Level.Iteration;
+import static org.openjdk.jmh.annotations.Mode.Throughput;
+import static org.openjdk.jmh.annotations.Scope.Benchmark;
+
+import org.mule.runtime.api.exception.MuleException;
+import org.mule.runtime.oauth.api.AuthorizationCodeOAuthDancer;
+import org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@code getContextForResourceOwner} for resource owners already in the tokens store and for new ones.
+ */
+@State(Benchmark)
+@BenchmarkMode(Throughput)
+@OutputTimeUnit(MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class OAuthContextBenchmark extends AbstractDancerBenchmark {
+
+  private static final String KNOWN_RESOURCE_OWNER = "knownOwner";
+
+  private AuthorizationCodeOAuthDancer dancer;
+  private long missCounter;
+
+  @Setup
+  public void setup() throws MuleException {
+    dancer = startAuthorizationCodeDancer(authorizationCodeDancerBuilder());
+  }
+
+  @Setup(Iteration)
+  public void resetTokensStore() {
+    tokensStore.clear();
+    dancer.getContextForResourceOwner(KNOWN_RESOURCE_OWNER);
+  }
+
+  @Benchmark
+  public ResourceOwnerOAuthContext contextHit() {
+    return dancer.getContextForResourceOwner(KNOWN_RESOURCE_OWNER);
+  }
+
+  @Benchmark
+  public ResourceOwnerOAuthContext contextMiss() {
+    return dancer.getContextForResourceOwner("owner-" + missCounter++);
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.benchmark;
+
+import static java.lang.System.identityHashCode;
+import static java.lang.reflect.Proxy.newProxyInstance;
+import static org.mule.runtime.api.metadata.DataType.STRING;
+
+import org.mule.runtime.api.el.BindingContext;
+import org.mule.runtime.api.el.MuleExpressionLanguage;
+import org.mule.runtime.api.metadata.TypedValue;
+
+import java.lang.reflect.Method;
+
+/**
+ * Creates a {@link MuleExpressionLanguage} that only understands {@code #[payload.<field>]} over a flat JSON payload.
+ * <p>
+ * It replaces DataWeave in the benchmarks so that the measured time is the one spent by the service preparing bindings and
+ * processing the results, not the one spent by the expression engine.
+ */
+public final class PayloadExpressionLanguage {
+
+  private static final String PAYLOAD_FIELD_PREFIX = "#[payload.";
+
+  private PayloadExpressionLanguage() {
+    // Nothing to do
+  }
+
+  public static MuleExpressionLanguage create() {
+    return (MuleExpressionLanguage) newProxyInstance(PayloadExpressionLanguage.class.getClassLoader(),
+                                                     new Class[] {MuleExpressionLanguage.class},
+                                                     PayloadExpressionLanguage::invoke);
+  }
+
+  private static Object invoke(Object proxy, Method method, Object[] args) {
+    switch (method.getName()) {
+      case "isExpression":
+        return ((String) args[0]).startsWith("#[");
+      case "evaluate":
+        return new TypedValue<>(evaluate((String) args[0], (BindingContext) args[args.length - 1]), STRING);
+      case "hashCode":
+        return identityHashCode(proxy);
+      case "equals":
+        return proxy == args[0];
+      case "toString":
+        return PayloadExpressionLanguage.class.getSimpleName();
+      default:
+        throw new UnsupportedOperationException(method.getName());
+    }
+  }
+
+  private static String evaluate(String expression, BindingContext context) {
+    if (!expression.startsWith(PAYLOAD_FIELD_PREFIX)) {
+      throw new UnsupportedOperationException(expression);
+    }
+
+    final String field = expression.substring(PAYLOAD_FIELD_PREFIX.length(), expression.length() - 1);
+    final String payload = context.lookup("payload").map(value -> (String) value.getValue()).orElse(null);
+    return payload == null ? null : jsonField(payload, field);
+  }
+
+  private static String jsonField(String json, String field) {
+    final String key = "\"" + field + "\":";
+    int start = json.indexOf(key);
+    if (start == -1) {
+      return null;
+    }
+    start += key.length();
+
+    if (json.charAt(start) == '"') {
+      return json.substring(start + 1, json.indexOf('"', start + 1));
+    }
+    int end = start;
+    while (end < json.length() && json.charAt(end) != ',' && json.charAt(end) != '}') {
+      ++end;
+    }
+    return json.substring(start, end);
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.benchmark;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static org.openjdk.jmh.annotations.Mode.Throughput;
+import static org.openjdk.jmh.annotations.Scope.Benchmark;
+
+import org.mule.service.oauth.internal.state.StateDecoder;
+import org.mule.service.oauth.internal.state.StateEncoder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures encoding a state like the local authorization url does, and decoding it like the redirect url handler does.
+ */
+@State(Benchmark)
+@BenchmarkMode(Throughput)
+@OutputTimeUnit(MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class StateBenchmark {
+
+  private static final String ORIGINAL_STATE = "af0ifjsldkj";
+  private static final String RESOURCE_OWNER_ID = "john.doe@example.com";
+  private static final String ON_COMPLETE_REDIRECT_TO = "http://localhost:8081/done?flow=login";
+
+  private final String encodedState = encode();
+
+  @Benchmark
+  public String encode() {
+    final StateEncoder stateEncoder = new StateEncoder(ORIGINAL_STATE);
+    stateEncoder.encodeResourceOwnerIdInState(RESOURCE_OWNER_ID);
+    stateEncoder.encodeOnCompleteRedirectToInState(ON_COMPLETE_REDIRECT_TO);
+    return stateEncoder.getEncodedState();
+  }
+
+  @Benchmark
+  public void decode(Blackhole blackhole) {
+    // Same calls, in the same order, as the redirect url handler of the authorization code dancer
+    final StateDecoder stateDecoder = new StateDecoder(encodedState);
+    blackhole.consume(stateDecoder.decodeResourceOwnerId());
+    blackhole.consume(stateDecoder.decodeOriginalState());
+    blackhole.consume(stateDecoder.decodeOriginalState());
+    blackhole.consume(stateDecoder.decodeOnCompleteRedirectTo());
+  }
+}
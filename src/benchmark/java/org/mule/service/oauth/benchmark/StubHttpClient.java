@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.benchmark;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.mule.runtime.http.api.HttpHeaders.Names.CONTENT_TYPE;
+
+import org.mule.runtime.http.api.client.HttpClient;
+import org.mule.runtime.http.api.client.HttpRequestOptions;
+import org.mule.runtime.http.api.domain.entity.ByteArrayHttpEntity;
+import org.mule.runtime.http.api.domain.message.request.HttpRequest;
+import org.mule.runtime.http.api.domain.message.response.HttpResponse;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link HttpClient} that answers every request immediately with the same JSON token response, so that benchmarks measure
+ * only the work done by the dancers.
+ */
+public class StubHttpClient implements HttpClient {
+
+  private final byte[] responseBody;
+  private final AtomicLong requestCount = new AtomicLong();
+
+  public StubHttpClient() {
+    this("{\"access_token\":\"2YotnFZFEjr1zCsicMWpAA\",\"token_type\":\"Bearer\",\"expires_in\":3600,"
+        + "\"refresh_token\":\"tGzv3JOkF0XG5Qx2TlKWIA\",\"scope\":\"read write\"}");
+  }
+
+  public StubHttpClient(String responseBody) {
+    this.responseBody = responseBody.getBytes(UTF_8);
+  }
+
+  @Override
+  public void start() {
+    // Nothing to do
+  }
+
+  @Override
+  public void stop() {
+    // Nothing to do
+  }
+
+  @Override
+  public HttpResponse send(HttpRequest request, HttpRequestOptions options) {
+    requestCount.incrementAndGet();
+    return HttpResponse.builder()
+        .statusCode(200)
+        .addHeader(CONTENT_TYPE, "application/json")
+        .entity(new ByteArrayHttpEntity(responseBody))
+        .build();
+  }
+
+  @Override
+  public CompletableFuture<HttpResponse> sendAsync(HttpRequest request, HttpRequestOptions options) {
+    return completedFuture(send(request, options));
+  }
+
+  public long getRequestCount() {
+    return requestCount.get();
+  }
+}
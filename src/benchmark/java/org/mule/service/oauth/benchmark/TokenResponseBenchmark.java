@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.benchmark;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static org.openjdk.jmh.annotations.Mode.Throughput;
+import static org.openjdk.jmh.annotations.Scope.Benchmark;
+
+import org.mule.runtime.oauth.api.ClientCredentialsOAuthDancer;
+import org.mule.runtime.oauth.api.builder.OAuthClientCredentialsDancerBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a full token refresh against an immediate token url, which is dominated by the processing of the token url
+ * response in {@code invokeTokenUrl}.
+ */
+@State(Benchmark)
+@BenchmarkMode(Throughput)
+@OutputTimeUnit(MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TokenResponseBenchmark extends AbstractDancerBenchmark {
+
+  @Param({"default", "custom"})
+  public String expressions;
+
+  private ClientCredentialsOAuthDancer dancer;
+
+  @Setup
+  public void setup() throws Exception {
+    final OAuthClientCredentialsDancerBuilder builder = clientCredentialsDancerBuilder();
+    if ("custom".equals(expressions)) {
+      final Map<String, String> customParametersExtractors = new HashMap<>();
+      customParametersExtractors.put("scope", "#[payload.scope]");
+      customParametersExtractors.put("tokenType", "#[payload.token_type]");
+      customParametersExtractors.put("issuer", "benchmark");
+
+      builder.responseAccessTokenExpr("#[payload.access_token]")
+          .responseExpiresInExpr("#[payload.expires_in]")
+          .customParametersExtractorsExprs(customParametersExtractors);
+    }
+    dancer = startClientCredentialsDancer(builder);
+  }
+
+  @Benchmark
+  public String refreshToken() throws Exception {
+    dancer.refreshToken().get();
+    return dancer.getContext().getAccessToken();
+  }
+}
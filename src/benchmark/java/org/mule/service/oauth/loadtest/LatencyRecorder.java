@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.loadtest;
+
+import static java.util.Arrays.copyOf;
+import static java.util.Arrays.sort;
+
+import java.util.List;
+
+/**
+ * Keeps every latency sample of one load generator thread. Not thread safe, each thread has its own and they are merged at the
+ * end of the run.
+ */
+final class LatencyRecorder {
+
+  private long[] samples = new long[1 << 16];
+  private int count;
+
+  void record(long latencyNanos) {
+    if (count == samples.length) {
+      samples = copyOf(samples, samples.length * 2);
+    }
+    samples[count++] = latencyNanos;
+  }
+
+  int getCount() {
+    return count;
+  }
+
+  /**
+   * @return all the samples of {@code recorders}, sorted.
+   */
+  static long[] merge(List<LatencyRecorder> recorders) {
+    int total = 0;
+    for (LatencyRecorder recorder : recorders) {
+      total += recorder.count;
+    }
+
+    final long[] merged = new long[total];
+    int position = 0;
+    for (LatencyRecorder recorder : recorders) {
+      System.arraycopy(recorder.samples, 0, merged, position, recorder.count);
+      position += recorder.count;
+    }
+    sort(merged);
+    return merged;
+  }
+
+  static long percentile(long[] sortedSamples, double percentile) {
+    if (sortedSamples.length == 0) {
+      return 0;
+    }
+    final int index = (int) Math.ceil(percentile / 100 * sortedSamples.length) - 1;
+    return sortedSamples[Math.max(0, Math.min(index, sortedSamples.length - 1))];
+  }
+}
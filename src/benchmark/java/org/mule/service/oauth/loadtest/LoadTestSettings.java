@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.loadtest;
+
+import static java.lang.Double.parseDouble;
+import static java.lang.Integer.getInteger;
+import static java.lang.Long.getLong;
+import static java.lang.System.getProperty;
+
+/**
+ * Settings of a load test run, read from {@code loadtest.*} system properties.
+ */
+public final class LoadTestSettings {
+
+  private static final String PREFIX = "loadtest.";
+
+  /** Either {@code clientCredentials} or {@code authorizationCode}. */
+  final String grantType = getProperty(PREFIX + "grantType", "clientCredentials");
+  final int threads = getInteger(PREFIX + "threads", 16);
+  final long durationSeconds = getLong(PREFIX + "durationSeconds", 60);
+  final long warmupSeconds = getLong(PREFIX + "warmupSeconds", 10);
+  final int dancers = getInteger(PREFIX + "dancers", 1);
+
+  /** Number of distinct resource owners, only used by the authorization code grant type. */
+  final int resourceOwners = getInteger(PREFIX + "resourceOwners", 1000);
+  /** Either {@code uniform} or {@code zipf}. */
+  final String resourceOwnerDistribution = getProperty(PREFIX + "resourceOwnerDistribution", "uniform");
+  final double zipfExponent = parseDouble(getProperty(PREFIX + "zipfExponent", "1.0"));
+
+  final int serverPort = getInteger(PREFIX + "serverPort", 8099);
+  final long serverLatencyMillis = getLong(PREFIX + "serverLatencyMillis", 50);
+  final long serverLatencyJitterMillis = getLong(PREFIX + "serverLatencyJitterMillis", 20);
+  final double serverErrorRate = parseDouble(getProperty(PREFIX + "serverErrorRate", "0.0"));
+  final double serverThrottleRate = parseDouble(getProperty(PREFIX + "serverThrottleRate", "0.0"));
+  final int serverRetryAfterSeconds = getInteger(PREFIX + "serverRetryAfterSeconds", 1);
+  final long tokenLifetimeSeconds = getLong(PREFIX + "tokenLifetimeSeconds", 30);
+
+  @Override
+  public String toString() {
+    return "grantType=" + grantType + ", threads=" + threads + ", durationSeconds=" + durationSeconds
+        + ", warmupSeconds=" + warmupSeconds + ", dancers=" + dancers + ", resourceOwners=" + resourceOwners
+        + ", resourceOwnerDistribution=" + resourceOwnerDistribution + ", zipfExponent=" + zipfExponent
+        + ", serverLatencyMillis=" + serverLatencyMillis + "±" + serverLatencyJitterMillis
+        + ", serverErrorRate=" + serverErrorRate + ", serverThrottleRate=" + serverThrottleRate
+        + ", tokenLifetimeSeconds=" + tokenLifetimeSeconds;
+  }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.loadtest;
+
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.mule.runtime.oauth.api.state.DancerState.HAS_TOKEN;
+import static org.mule.service.oauth.loadtest.LatencyRecorder.percentile;
+import static org.mule.service.oauth.loadtest.ResourceOwnerDistribution.resourceOwnerId;
+import static org.mule.service.oauth.loadtest.ScriptedTokenServer.isValid;
+
+import org.mule.runtime.api.lifecycle.Startable;
+import org.mule.runtime.api.lifecycle.Stoppable;
+import org.mule.runtime.oauth.api.AuthorizationCodeOAuthDancer;
+import org.mule.runtime.oauth.api.ClientCredentialsOAuthDancer;
+import org.mule.runtime.oauth.api.builder.OAuthAuthorizationCodeDancerBuilder;
+import org.mule.runtime.oauth.api.builder.OAuthClientCredentialsDancerBuilder;
+import org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContext;
+import org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContextWithRefreshState;
+import org.mule.service.http.impl.service.HttpServiceImplementation;
+import org.mule.service.oauth.benchmark.InMemoryLockFactory;
+import org.mule.service.oauth.benchmark.PayloadExpressionLanguage;
+import org.mule.service.oauth.internal.DefaultOAuthService;
+import org.mule.tck.SimpleUnitTestSupportSchedulerService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives dancers built through {@link DefaultOAuthService} against a {@link ScriptedTokenServer} and reports the achieved
+ * {@code accessToken} throughput, its latency percentiles and how many token requests reached the server.
+ * <p>
+ * Each load generator thread calls {@code accessToken} and, when the returned token is no longer valid, calls
+ * {@code refreshToken} and {@code accessToken} again, as a connector would do after a {@code 401} from the resource server.
+ * The latency of such a call includes the refresh.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.mule.service.oauth.loadtest.OAuthLoadTest -Dloadtest.threads=64 ...}, see {@link LoadTestSettings} for
+ * the available settings.
+ */
+public final class OAuthLoadTest {
+
+  private final LoadTestSettings settings;
+  private final DefaultOAuthService oauthService;
+  private final ScriptedTokenServer tokenServer;
+  private final List<Object> dancers = new ArrayList<>();
+  private final List<DancerUnderTest> targets = new ArrayList<>();
+
+  private final AtomicLong refreshes = new AtomicLong();
+  private final AtomicLong errors = new AtomicLong();
+
+  private OAuthLoadTest(LoadTestSettings settings, DefaultOAuthService oauthService, ScriptedTokenServer tokenServer) {
+    this.settings = settings;
+    this.oauthService = oauthService;
+    this.tokenServer = tokenServer;
+  }
+
+  public static void main(String[] args) throws Exception {
+    final LoadTestSettings settings = new LoadTestSettings();
+    System.out.println("Load test settings: " + settings);
+
+    final SimpleUnitTestSupportSchedulerService schedulerService = new SimpleUnitTestSupportSchedulerService();
+    final HttpServiceImplementation httpService = new HttpServiceImplementation(schedulerService);
+    httpService.start();
+    try {
+      final ScriptedTokenServer tokenServer = new ScriptedTokenServer(httpService, settings);
+      tokenServer.start();
+      try {
+        new OAuthLoadTest(settings, new DefaultOAuthService(httpService, schedulerService), tokenServer).run();
+      } finally {
+        tokenServer.stop();
+      }
+    } finally {
+      httpService.stop();
+      schedulerService.stop();
+    }
+  }
+
+  private void run() throws Exception {
+    for (int i = 0; i < settings.dancers; ++i) {
+      targets.add(createDancer("loadTest-" + i));
+    }
+
+    try {
+      final ResourceOwnerDistribution distribution = ResourceOwnerDistribution.fromSettings(settings);
+      final long warmupEnd = nanoTime() + SECONDS.toNanos(settings.warmupSeconds);
+      final long runEnd = warmupEnd + SECONDS.toNanos(settings.durationSeconds);
+
+      final List<LatencyRecorder> recorders = new ArrayList<>();
+      final List<Thread> threads = new ArrayList<>();
+      for (int i = 0; i < settings.threads; ++i) {
+        final LatencyRecorder recorder = new LatencyRecorder();
+        recorders.add(recorder);
+        threads.add(new Thread(() -> generateLoad(distribution, warmupEnd, runEnd, recorder), "loadGenerator-" + i));
+      }
+
+      threads.forEach(Thread::start);
+      NANOSECONDS.sleep(warmupEnd - nanoTime());
+      final long requestsAtMeasurementStart = tokenServer.getRequests();
+      for (Thread thread : threads) {
+        thread.join();
+      }
+
+      report(LatencyRecorder.merge(recorders), tokenServer.getRequests() - requestsAtMeasurementStart);
+    } finally {
+      for (Object dancer : dancers) {
+        ((Stoppable) dancer).stop();
+      }
+    }
+  }
+
+  private void generateLoad(ResourceOwnerDistribution distribution, long warmupEnd, long runEnd, LatencyRecorder recorder) {
+    long start;
+    while ((start = nanoTime()) < runEnd) {
+      final DancerUnderTest target = targets.get(ThreadLocalRandom.current().nextInt(targets.size()));
+      final String resourceOwnerId = resourceOwnerId(distribution.next());
+      try {
+        if (!isValid(target.accessToken(resourceOwnerId))) {
+          refreshes.incrementAndGet();
+          target.refreshToken(resourceOwnerId);
+          target.accessToken(resourceOwnerId);
+        }
+      } catch (Exception e) {
+        errors.incrementAndGet();
+      }
+      if (start >= warmupEnd) {
+        recorder.record(nanoTime() - start);
+      }
+    }
+  }
+
+  private DancerUnderTest createDancer(String name) throws Exception {
+    final Map<String, ResourceOwnerOAuthContext> tokensStore = new ConcurrentHashMap<>();
+
+    switch (settings.grantType) {
+      case "clientCredentials":
+        final OAuthClientCredentialsDancerBuilder clientCredentialsBuilder =
+            oauthService.clientCredentialsGrantTypeDancerBuilder(new InMemoryLockFactory(), tokensStore,
+                                                                 PayloadExpressionLanguage.create());
+        clientCredentialsBuilder.name(name);
+        clientCredentialsBuilder.clientCredentials(name, "clientSecret");
+        clientCredentialsBuilder.tokenUrl(tokenServer.getTokenUrl());
+        final ClientCredentialsOAuthDancer clientCredentialsDancer = start(clientCredentialsBuilder.build());
+        return new DancerUnderTest() {
+
+          @Override
+          public String accessToken(String resourceOwnerId) throws Exception {
+            return clientCredentialsDancer.accessToken().get();
+          }
+
+          @Override
+          public void refreshToken(String resourceOwnerId) throws Exception {
+            clientCredentialsDancer.refreshToken().get();
+          }
+        };
+      case "authorizationCode":
+        final OAuthAuthorizationCodeDancerBuilder authorizationCodeBuilder =
+            oauthService.authorizationCodeGrantTypeDancerBuilder(new InMemoryLockFactory(), tokensStore,
+                                                                 PayloadExpressionLanguage.create());
+        authorizationCodeBuilder.name(name);
+        authorizationCodeBuilder.clientCredentials(name, "clientSecret");
+        authorizationCodeBuilder.tokenUrl(tokenServer.getTokenUrl());
+        authorizationCodeBuilder.authorizationUrl("http://localhost/authorize");
+        authorizationCodeBuilder.externalCallbackUrl("http://localhost:8081/callback");
+        final AuthorizationCodeOAuthDancer authorizationCodeDancer = start(authorizationCodeBuilder.build());
+
+        // Every resource owner starts with an expired access token, as if it had completed the dance a while ago.
+        for (int i = 0; i < settings.resourceOwners; ++i) {
+          final String resourceOwnerId = resourceOwnerId(i);
+          final ResourceOwnerOAuthContextWithRefreshState context =
+              (ResourceOwnerOAuthContextWithRefreshState) authorizationCodeDancer.getContextForResourceOwner(resourceOwnerId);
+          context.setAccessToken("at-0-0");
+          context.setRefreshToken("rt-0");
+          context.setDancerState(HAS_TOKEN);
+          tokensStore.put(resourceOwnerId, context);
+        }
+        return new DancerUnderTest() {
+
+          @Override
+          public String accessToken(String resourceOwnerId) throws Exception {
+            return authorizationCodeDancer.accessToken(resourceOwnerId).get();
+          }
+
+          @Override
+          public void refreshToken(String resourceOwnerId) throws Exception {
+            authorizationCodeDancer.refreshToken(resourceOwnerId).get();
+          }
+        };
+      default:
+        throw new IllegalArgumentException("Unknown grant type: " + settings.grantType);
+    }
+  }
+
+  private <D> D start(D dancer) throws Exception {
+    ((Startable) dancer).start();
+    dancers.add(dancer);
+    return dancer;
+  }
+
+  private void report(long[] latencies, long tokenRequests) {
+    final double seconds = settings.durationSeconds;
+    System.out.println();
+    System.out.println("accessToken calls:      " + latencies.length);
+    System.out.printf("throughput:             %.1f ops/s%n", latencies.length / seconds);
+    System.out.printf("latency p50:            %.3f ms%n", toMillis(percentile(latencies, 50)));
+    System.out.printf("latency p99:            %.3f ms%n", toMillis(percentile(latencies, 99)));
+    System.out.printf("latency p999:           %.3f ms%n", toMillis(percentile(latencies, 99.9)));
+    System.out.printf("latency max:            %.3f ms%n",
+                      toMillis(latencies.length == 0 ? 0 : latencies[latencies.length - 1]));
+    System.out.println("refreshes triggered:    " + refreshes.get());
+    System.out.println("errors:                 " + errors.get());
+    System.out.println("token requests (meas.): " + tokenRequests);
+    System.out.println("token requests (total): " + tokenServer.getRequests() + " (issued " + tokenServer.getIssued()
+        + ", throttled " + tokenServer.getThrottled() + ", failed " + tokenServer.getFailed() + ")");
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / 1_000_000.0;
+  }
+
+  /**
+   * Uniform view over the grant types for the load generator threads.
+   */
+  private interface DancerUnderTest {
+
+    String accessToken(String resourceOwnerId) throws Exception;
+
+    void refreshToken(String resourceOwnerId) throws Exception;
+  }
+}
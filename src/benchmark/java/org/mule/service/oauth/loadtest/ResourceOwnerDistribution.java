@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.loadtest;
+
+import static java.lang.Math.pow;
+import static java.util.Arrays.binarySearch;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks the resource owner for each simulated request, either uniformly or following a Zipf distribution where a few owners
+ * get most of the traffic.
+ */
+abstract class ResourceOwnerDistribution {
+
+  static ResourceOwnerDistribution fromSettings(LoadTestSettings settings) {
+    switch (settings.resourceOwnerDistribution) {
+      case "uniform":
+        return new Uniform(settings.resourceOwners);
+      case "zipf":
+        return new Zipf(settings.resourceOwners, settings.zipfExponent);
+      default:
+        throw new IllegalArgumentException("Unknown resource owner distribution: " + settings.resourceOwnerDistribution);
+    }
+  }
+
+  static String resourceOwnerId(int index) {
+    return "owner-" + index;
+  }
+
+  abstract int next();
+
+  private static final class Uniform extends ResourceOwnerDistribution {
+
+    private final int resourceOwners;
+
+    Uniform(int resourceOwners) {
+      this.resourceOwners = resourceOwners;
+    }
+
+    @Override
+    int next() {
+      return ThreadLocalRandom.current().nextInt(resourceOwners);
+    }
+  }
+
+  private static final class Zipf extends ResourceOwnerDistribution {
+
+    private final double[] cumulativeProbabilities;
+
+    Zipf(int resourceOwners, double exponent) {
+      cumulativeProbabilities = new double[resourceOwners];
+      double total = 0;
+      for (int i = 0; i < resourceOwners; ++i) {
+        total += 1 / pow(i + 1, exponent);
+        cumulativeProbabilities[i] = total;
+      }
+      for (int i = 0; i < resourceOwners; ++i) {
+        cumulativeProbabilities[i] /= total;
+      }
+    }
+
+    @Override
+    int next() {
+      final int index = binarySearch(cumulativeProbabilities, ThreadLocalRandom.current().nextDouble());
+      return index >= 0 ? index : Math.min(-index - 1, cumulativeProbabilities.length - 1);
+    }
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.loadtest;
+
+import static java.lang.String.valueOf;
+import static java.lang.System.currentTimeMillis;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singleton;
+import static java.util.concurrent.Executors.newScheduledThreadPool;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.mule.runtime.http.api.HttpHeaders.Names.CONTENT_LENGTH;
+import static org.mule.runtime.http.api.HttpHeaders.Names.CONTENT_TYPE;
+import static org.mule.runtime.http.api.HttpHeaders.Names.RETRY_AFTER;
+
+import org.mule.runtime.core.api.util.IOUtils;
+import org.mule.runtime.http.api.HttpService;
+import org.mule.runtime.http.api.domain.entity.ByteArrayHttpEntity;
+import org.mule.runtime.http.api.domain.message.response.HttpResponse;
+import org.mule.runtime.http.api.domain.message.response.HttpResponseBuilder;
+import org.mule.runtime.http.api.domain.request.HttpRequestContext;
+import org.mule.runtime.http.api.server.HttpServer;
+import org.mule.runtime.http.api.server.HttpServerConfiguration;
+import org.mule.runtime.http.api.server.async.HttpResponseReadyCallback;
+import org.mule.runtime.http.api.server.async.ResponseStatusCallback;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token endpoint on a Mule {@link HttpServer} whose behavior is scripted through {@link LoadTestSettings}: response latency,
+ * rate of server errors, rate of {@code 429 Too Many Requests} responses and lifetime of the issued tokens.
+ * <p>
+ * Issued access tokens have the form {@code at-<serial>-<expiresAtMillis>}, so the load driver can tell when the resource server
+ * would reject them without calling it.
+ */
+final class ScriptedTokenServer {
+
+  static final String TOKEN_PATH = "/token";
+
+  private final LoadTestSettings settings;
+  private final HttpServer server;
+  private final ScheduledExecutorService responder = newScheduledThreadPool(4, r -> {
+    final Thread thread = new Thread(r, "scriptedTokenServer-responder");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final AtomicLong serial = new AtomicLong();
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong issued = new AtomicLong();
+  private final AtomicLong throttled = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+
+  ScriptedTokenServer(HttpService httpService, LoadTestSettings settings) throws Exception {
+    this.settings = settings;
+    this.server = httpService.getServerFactory().create(new HttpServerConfiguration.Builder()
+        .setHost("localhost")
+        .setPort(settings.serverPort)
+        .setName("scriptedTokenServer")
+        .build());
+    server.addRequestHandler(singleton("POST"), TOKEN_PATH, this::handle);
+  }
+
+  void start() throws IOException {
+    server.start();
+  }
+
+  void stop() {
+    server.stop();
+    server.dispose();
+    responder.shutdownNow();
+  }
+
+  String getTokenUrl() {
+    return "http://localhost:" + settings.serverPort + TOKEN_PATH;
+  }
+
+  private void handle(HttpRequestContext requestContext, HttpResponseReadyCallback responseCallback) {
+    requests.incrementAndGet();
+    // The body has to be consumed before the request handler returns.
+    final String form = readBody(requestContext);
+
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+    final long latency = settings.serverLatencyMillis
+        + (settings.serverLatencyJitterMillis > 0 ? random.nextLong(settings.serverLatencyJitterMillis + 1) : 0);
+    final double roll = random.nextDouble();
+
+    responder.schedule(() -> {
+      if (roll < settings.serverThrottleRate) {
+        throttled.incrementAndGet();
+        respond(responseCallback, HttpResponse.builder()
+            .statusCode(429)
+            .reasonPhrase("Too Many Requests")
+            .addHeader(RETRY_AFTER, valueOf(settings.serverRetryAfterSeconds)), "{\"error\":\"slow_down\"}");
+      } else if (roll < settings.serverThrottleRate + settings.serverErrorRate) {
+        failed.incrementAndGet();
+        respond(responseCallback, HttpResponse.builder().statusCode(503).reasonPhrase("Service Unavailable"),
+                "{\"error\":\"temporarily_unavailable\"}");
+      } else if (form == null || !form.contains("grant_type=")) {
+        failed.incrementAndGet();
+        respond(responseCallback, HttpResponse.builder().statusCode(400).reasonPhrase("Bad Request"),
+                "{\"error\":\"invalid_request\"}");
+      } else {
+        issued.incrementAndGet();
+        respond(responseCallback, HttpResponse.builder().statusCode(200).reasonPhrase("OK"), issueToken());
+      }
+    }, latency, MILLISECONDS);
+  }
+
+  private static String readBody(HttpRequestContext requestContext) {
+    try (InputStream content = requestContext.getRequest().getEntity().getContent()) {
+      return IOUtils.toString(content);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private String issueToken() {
+    final long id = serial.incrementAndGet();
+    final long expiresAt = currentTimeMillis() + SECONDS.toMillis(settings.tokenLifetimeSeconds);
+    return "{\"access_token\":\"at-" + id + "-" + expiresAt + "\","
+        + "\"token_type\":\"bearer\","
+        + "\"expires_in\":" + settings.tokenLifetimeSeconds + ","
+        + "\"refresh_token\":\"rt-" + id + "\"}";
+  }
+
+  /**
+   * @return whether the resource server would still accept {@code accessToken}.
+   */
+  static boolean isValid(String accessToken) {
+    if (accessToken == null) {
+      return false;
+    }
+    final int expiresAtIndex = accessToken.lastIndexOf('-');
+    return expiresAtIndex > 0 && Long.parseLong(accessToken.substring(expiresAtIndex + 1)) > currentTimeMillis();
+  }
+
+  private static void respond(HttpResponseReadyCallback responseCallback, HttpResponseBuilder responseBuilder, String body) {
+    final byte[] bytes = body.getBytes(UTF_8);
+    responseCallback.responseReady(responseBuilder
+        .addHeader(CONTENT_TYPE, "application/json")
+        .addHeader(CONTENT_LENGTH, valueOf(bytes.length))
+        .entity(new ByteArrayHttpEntity(bytes))
+        .build(), new ResponseStatusCallback() {
+
+          @Override
+          public void responseSendFailure(Throwable exception) {
+            // The client gave up on this request, nothing to do.
+          }
+
+          @Override
+          public void responseSendSuccessfully() {}
+        });
+  }
+
+  long getRequests() {
+    return requests.get();
+  }
+
+  long getIssued() {
+    return issued.get();
+  }
+
+  long getThrottled() {
+    return throttled.get();
+  }
+
+  long getFailed() {
+    return failed.get();
+  }
+}
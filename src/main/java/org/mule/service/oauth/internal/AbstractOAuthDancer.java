@@ -6,10 +6,17 @@
  */
 package org.mule.service.oauth.internal;
 
+import static com.github.benmanes.caffeine.cache.Caffeine.newBuilder;
+import static java.lang.Boolean.getBoolean;
+import static java.lang.Integer.getInteger;
+import static java.lang.Long.getLong;
+import static java.lang.Long.parseLong;
 import static java.lang.String.format;
+import static java.lang.String.valueOf;
+import static java.lang.System.currentTimeMillis;
+import static java.lang.System.getProperty;
 import static java.lang.System.nanoTime;
 import static java.lang.Thread.currentThread;
-import static java.lang.Thread.sleep;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonMap;
 import static java.util.concurrent.CompletableFuture.completedFuture;
@@ -22,6 +29,7 @@ import static org.mule.runtime.api.metadata.MediaType.ANY;
 import static org.mule.runtime.api.metadata.MediaType.parse;
 import static org.mule.runtime.api.scheduler.SchedulerConfig.config;
 import static org.mule.runtime.api.util.Preconditions.checkArgument;
+import static org.mule.runtime.core.api.config.MuleProperties.SYSTEM_PROPERTY_PREFIX;
 import static org.mule.runtime.core.api.util.ClassUtils.withContextClassLoader;
 import static org.mule.runtime.http.api.HttpConstants.HttpStatus.BAD_REQUEST;
 import static org.mule.runtime.http.api.HttpConstants.Method.POST;
@@ -34,20 +42,19 @@ import static org.mule.runtime.oauth.api.state.DancerState.HAS_TOKEN;
 import static org.mule.runtime.oauth.api.state.DancerState.NO_TOKEN;
 import static org.mule.runtime.oauth.api.state.DancerState.REFRESHING_TOKEN;
 import static org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContext.DEFAULT_RESOURCE_OWNER_ID;
-import static org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContextWithRefreshState.createRefreshOAuthContextLock;
+import static org.mule.service.oauth.internal.LockTimeoutFallback.FAIL;
 import static org.mule.service.oauth.internal.OAuthConstants.CLIENT_ID_PARAMETER;
 import static org.mule.service.oauth.internal.OAuthConstants.CLIENT_SECRET_PARAMETER;
+import static org.mule.service.oauth.internal.OAuthConstants.GRANT_TYPE_PARAMETER;
+import static org.mule.service.oauth.internal.VirtualThreads.newVirtualThreadPerTaskExecutor;
 
-import org.mule.runtime.api.el.BindingContext;
 import org.mule.runtime.api.el.MuleExpressionLanguage;
 import org.mule.runtime.api.exception.MuleException;
 import org.mule.runtime.api.exception.MuleRuntimeException;
 import org.mule.runtime.api.lifecycle.Startable;
 import org.mule.runtime.api.lifecycle.Stoppable;
 import org.mule.runtime.api.lock.LockFactory;
-import org.mule.runtime.api.metadata.DataType;
 import org.mule.runtime.api.metadata.MediaType;
-import org.mule.runtime.api.metadata.TypedValue;
 import org.mule.runtime.api.scheduler.Scheduler;
 import org.mule.runtime.api.scheduler.SchedulerService;
 import org.mule.runtime.api.util.MultiMap;
@@ -58,30 +65,51 @@ import org.mule.runtime.http.api.client.HttpRequestOptions;
 import org.mule.runtime.http.api.domain.entity.ByteArrayHttpEntity;
 import org.mule.runtime.http.api.domain.message.request.HttpRequest;
 import org.mule.runtime.http.api.domain.message.request.HttpRequestBuilder;
+import org.mule.runtime.http.api.domain.message.response.HttpResponse;
 import org.mule.runtime.oauth.api.builder.ClientCredentialsLocation;
 import org.mule.runtime.oauth.api.exception.TokenNotFoundException;
 import org.mule.runtime.oauth.api.exception.TokenUrlResponseException;
 import org.mule.runtime.oauth.api.listener.OAuthStateListener;
+import org.mule.runtime.oauth.api.state.DancerState;
 import org.mule.runtime.oauth.api.state.DefaultResourceOwnerOAuthContext;
 import org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContext;
 import org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContextWithRefreshState;
+import org.mule.service.oauth.internal.cluster.RefreshOwnership;
+import org.mule.service.oauth.internal.jfr.OAuthEvents;
+import org.mule.service.oauth.internal.state.ResourceOwnerKey;
+import org.mule.service.oauth.internal.state.TokenExpiry;
 import org.mule.service.oauth.internal.state.TokenResponse;
+import org.mule.service.oauth.internal.state.TokenSnapshot;
+import org.mule.service.oauth.internal.state.TokenUpdate;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
+import com.github.benmanes.caffeine.cache.Cache;
+
+import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -95,6 +123,103 @@ public abstract class AbstractOAuthDancer implements Startable, Stoppable {
   private static final Logger LOGGER = LoggerFactory.getLogger(AbstractOAuthDancer.class);
 
   private static final int TOKEN_REQUEST_TIMEOUT_MILLIS = 60000;
+  // How long before a token expires the node that owns its resource owner refreshes it
+  private static final long OWNER_REFRESH_AHEAD_MILLIS = 30000;
+  // How long a node waits for the owner of a resource owner to refresh its token, before doing it itself
+  private static final long OWNER_REFRESH_TIMEOUT_MILLIS = 2000;
+  private static final long POLL_INTERVAL_MILLIS = 100;
+
+  // What is done to the tokens store holding the lock of a context, for the events and the lock timeout messages
+  private static final String CREATE_CONTEXT = "create the context";
+  private static final String UPDATE_CONTEXT = "update the context";
+  private static final String INVALIDATE_CONTEXT = "invalidate the context";
+  private static final String RESTORE_CONTEXT = "restore the context";
+
+  /**
+   * System property that enables reading the expiry of JWT access tokens from their claims when the token url does not return an
+   * {@code expires_in}.
+   */
+  public static final String DECODE_JWT_EXPIRY_PROPERTY = SYSTEM_PROPERTY_PREFIX + "oauth.decodeJwtExpiry";
+
+  /**
+   * System property that enables refreshing the token of a client credentials dancer when it is asked for it after its expiry,
+   * instead of only when it is rejected.
+   */
+  public static final String REFRESH_EXPIRED_TOKEN_PROPERTY = SYSTEM_PROPERTY_PREFIX + "oauth.refreshExpiredToken";
+
+  /**
+   * The token response parameter with when the access token of a context expires, in millis since the epoch. It is stored with
+   * the context, so that every node sharing the tokens store knows it and not only the one that retrieved the token.
+   */
+  public static final String TOKEN_EXPIRES_AT_PARAMETER = "mule.oauth.expiresAt";
+
+  private static final int TOKEN_EXPIRIES_CACHE_SIZE = 10000;
+
+  /**
+   * System property with the maximum time in millis to wait for the lock that guards the context of a resource owner. If not
+   * set, the wait is unbounded.
+   */
+  public static final String LOCK_TIMEOUT_PROPERTY = SYSTEM_PROPERTY_PREFIX + "oauth.lockTimeoutMillis";
+
+  /**
+   * System property with the {@link LockTimeoutFallback} to apply when the wait for a lock times out. Defaults to
+   * {@link LockTimeoutFallback#FAIL}.
+   */
+  public static final String LOCK_TIMEOUT_FALLBACK_PROPERTY = SYSTEM_PROPERTY_PREFIX + "oauth.lockTimeoutFallback";
+
+  /**
+   * System property with the number of in-memory locks to use for writing the contexts of the resource owners of a dancer to its
+   * tokens store, instead of the ones from the {@link LockFactory}. The refreshes of each resource owner are then coordinated with
+   * an in-memory lock of its own. Only for applications not deployed in a cluster. If not set, the {@link LockFactory} is used.
+   */
+  public static final String LOCAL_LOCK_STRIPES_PROPERTY = SYSTEM_PROPERTY_PREFIX + "oauth.localLockStripes";
+
+  private static final int LOCK_HANDLES_CACHE_SIZE = 10000;
+
+  /**
+   * System property with the directory where the dancers keep an encrypted snapshot of their still valid tokens, to use them
+   * right away after a restart. If not set, no snapshots are kept.
+   */
+  public static final String TOKEN_SNAPSHOT_DIR_PROPERTY = SYSTEM_PROPERTY_PREFIX + "oauth.tokenSnapshotDir";
+
+  /**
+   * System property with how often, in millis, the token snapshot is written. It is also written when the dancer is stopped.
+   */
+  public static final String TOKEN_SNAPSHOT_INTERVAL_PROPERTY = SYSTEM_PROPERTY_PREFIX + "oauth.tokenSnapshotIntervalMillis";
+
+  /**
+   * System property with the minimum lifetime in millis a token from the snapshot must have left to be used after a restart.
+   */
+  public static final String TOKEN_SNAPSHOT_MIN_REMAINING_PROPERTY =
+      SYSTEM_PROPERTY_PREFIX + "oauth.tokenSnapshotMinRemainingMillis";
+
+  /**
+   * System property with the minimum lifetime in millis a token already in the tokens store must have left for a starting dancer
+   * to use it instead of getting a new one.
+   */
+  public static final String STORED_TOKEN_MIN_REMAINING_PROPERTY =
+      SYSTEM_PROPERTY_PREFIX + "oauth.storedTokenMinRemainingMillis";
+
+  /**
+   * System property with how long in millis, since a refresh is first seen in progress, callers reading the access token get the
+   * previous one right away if it is not expired, instead of waiting for the new one. Callers explicitly asking for a refresh
+   * always wait for the one in progress. If not set, every caller waits.
+   */
+  public static final String STALE_TOKEN_GRACE_PROPERTY = SYSTEM_PROPERTY_PREFIX + "oauth.staleTokenGraceMillis";
+
+  /**
+   * System property with the minimum time in millis between refreshes of the token of a resource owner. Refreshes asked for
+   * before that get the result of the previous one instead of requesting a new token. If not set, every refresh is done.
+   */
+  public static final String MIN_REFRESH_INTERVAL_PROPERTY = SYSTEM_PROPERTY_PREFIX + "oauth.minRefreshIntervalMillis";
+
+  /**
+   * System property that enables waiting for the locks of the contexts and invoking the listeners on virtual threads, in runtimes
+   * that support them.
+   */
+  public static final String VIRTUAL_THREADS_PROPERTY = SYSTEM_PROPERTY_PREFIX + "oauth.virtualThreads";
+
+  private static final int RECENT_REFRESHES_CACHE_SIZE = 1000;
 
   protected final String name;
 
@@ -117,7 +242,51 @@ public abstract class AbstractOAuthDancer implements Startable, Stoppable {
   private final Map<String, ResourceOwnerOAuthContext> tokensStore;
   private final HttpClient httpClient;
   private final MuleExpressionLanguage expressionEvaluator;
+  private final Map<String, Integer> expressionBindings = new ConcurrentHashMap<>();
+  // Keyed by the identity of the contexts, with the key each one was read with. The transformation of a resource owner id may
+  // depend on the caller, such as its tenant, so it is not reused across reads of the store.
+  private final Cache<ResourceOwnerOAuthContext, ResourceOwnerKey> contextKeys = newBuilder().weakKeys().build();
+  private final TokenUpdates tokenUpdates = new TokenUpdates();
+  private final boolean decodeJwtExpiry = getBoolean(DECODE_JWT_EXPIRY_PROPERTY);
+  // Keyed by access token, for the expiry of a token between its response and its context being stored, and of the tokens that
+  // are not stored
+  private final Cache<String, TokenExpiry> tokenExpiries = newBuilder().maximumSize(TOKEN_EXPIRIES_CACHE_SIZE).build();
+  private final SharedDancerScheduler sharedScheduler;
+  private final RefreshOwnership refreshOwnership;
+  private AsyncLockAcquirer lockAcquirer = new AsyncLockAcquirer(this::schedulePollTask);
+  private final long lockTimeoutMillis = getLong(LOCK_TIMEOUT_PROPERTY, -1L);
+  private final LockTimeoutFallback lockTimeoutFallback = lockTimeoutFallback();
+  private final ContextLockStats contextLockStats = new ContextLockStats();
+  // Keyed by lock name. Weak values, so that a handle is only kept while some thread still uses it or the cache has room for it
+  private final Cache<String, Lock> lockHandles = newBuilder().maximumSize(LOCK_HANDLES_CACHE_SIZE).weakValues().build();
+  private final StripedLocks stripedLocks = localLockStripes();
+  private final String tokenSnapshotDir = getProperty(TOKEN_SNAPSHOT_DIR_PROPERTY);
+  private final long tokenSnapshotIntervalMillis = getLong(TOKEN_SNAPSHOT_INTERVAL_PROPERTY, 60000L);
+  private final long tokenSnapshotMinRemainingMillis = getLong(TOKEN_SNAPSHOT_MIN_REMAINING_PROPERTY, 60000L);
+  private final long storedTokenMinRemainingMillis = getLong(STORED_TOKEN_MIN_REMAINING_PROPERTY, 60000L);
+  private final long staleTokenGraceMillis = getLong(STALE_TOKEN_GRACE_PROPERTY, 0L);
+  // Keyed by the token being replaced, so that each refresh cycle has its own grace window
+  private final Cache<String, Long> refreshesSeenAt = newBuilder().maximumSize(TOKEN_EXPIRIES_CACHE_SIZE).build();
+  private final long minRefreshIntervalNanos = MILLISECONDS.toNanos(getLong(MIN_REFRESH_INTERVAL_PROPERTY, 0L));
+  // Keyed by the key of the resource owner in the tokens store
+  private final Cache<String, RecentRefresh> recentRefreshes = newBuilder().maximumSize(RECENT_REFRESHES_CACHE_SIZE).build();
+  // The token requests in progress on this node, keyed by the key of the resource owner in the tokens store
+  private final Map<String, SharedFuture<Void>> inFlightRefreshes = new ConcurrentHashMap<>();
+  // The refreshes ahead of expiry of the tokens owned by this node, keyed by the key of the resource owner in the tokens store
+  private final Map<String, ScheduledFuture<?>> ownerRefreshes = new ConcurrentHashMap<>();
+  // The writes to the tokens store that timed out waiting for their lock and are being retried, keyed by the key of the
+  // resource owner in the tokens store
+  private final Map<String, ResourceOwnerOAuthContext> pendingStoreWrites = new ConcurrentHashMap<>();
+  // The keys of the tokens store this dancer wrote, the only ones kept in its token snapshot. Other dancers may share the store
+  private final Set<String> writtenStoreKeys = ConcurrentHashMap.newKeySet();
+  private TokenSnapshot tokenSnapshot;
+  private volatile boolean snapshotting = false;
   private Scheduler pollScheduler;
+  private SharedDancerScheduler.Lane pollLane;
+  private ExecutorService virtualThreadExecutor;
+  // One for each listener when they are invoked on virtual threads, so that each listener gets its callbacks in order and a slow
+  // listener doesn't delay the others
+  private final Map<OAuthStateListener, SerialExecutor> listenerExecutors = new ConcurrentHashMap<>();
 
   /**
    * @deprecated since 4.2.2 - 4.3.0. Use {@link #AbstractOAuthDancer(String, String, String, String, Charset, String, ClientCredentialsLocation, String, String, String, Map, Function, SchedulerService, LockFactory, Map, HttpClient, MuleExpressionLanguage, List)}
@@ -143,6 +312,27 @@ public abstract class AbstractOAuthDancer implements Startable, Stoppable {
                                 LockFactory lockProvider, Map<String, ResourceOwnerOAuthContext> tokensStore,
                                 HttpClient httpClient, MuleExpressionLanguage expressionEvaluator,
                                 List<? extends OAuthStateListener> listeners) {
+    this(name, clientId, clientSecret, tokenUrl, encoding, scopes, clientCredentialsLocation, responseAccessTokenExpr,
+         responseRefreshTokenExpr, responseExpiresInExpr, customParametersExtractorsExprs, resourceOwnerIdTransformer,
+         schedulerService, null, null, lockProvider, tokensStore, httpClient, expressionEvaluator, listeners);
+  }
+
+  /**
+   * @param sharedScheduler the scheduler shared with the other dancers of the service, for the background work of this dancer. If
+   *        {@code null}, the dancer creates its own scheduler from {@code schedulerService}.
+   * @param refreshOwnership which node of the cluster refreshes the token of each resource owner. If {@code null}, any node
+   *        refreshes the tokens it finds expired.
+   */
+  protected AbstractOAuthDancer(String name, String clientId, String clientSecret, String tokenUrl, Charset encoding,
+                                String scopes, ClientCredentialsLocation clientCredentialsLocation,
+                                String responseAccessTokenExpr, String responseRefreshTokenExpr, String responseExpiresInExpr,
+                                Map<String, String> customParametersExtractorsExprs,
+                                Function<String, String> resourceOwnerIdTransformer, SchedulerService schedulerService,
+                                SharedDancerScheduler sharedScheduler, RefreshOwnership refreshOwnership,
+                                LockFactory lockProvider,
+                                Map<String, ResourceOwnerOAuthContext> tokensStore,
+                                HttpClient httpClient, MuleExpressionLanguage expressionEvaluator,
+                                List<? extends OAuthStateListener> listeners) {
     this.name = name;
 
     this.clientId = clientId;
@@ -158,11 +348,21 @@ public abstract class AbstractOAuthDancer implements Startable, Stoppable {
     this.resourceOwnerIdTransformer = resourceOwnerIdTransformer;
 
     this.schedulerService = schedulerService;
+    this.sharedScheduler = sharedScheduler;
+    this.refreshOwnership = refreshOwnership;
     this.lockProvider = lockProvider;
     this.tokensStore = tokensStore;
     this.httpClient = httpClient;
     this.expressionEvaluator = expressionEvaluator;
 
+    // Which bindings each response expression needs is found out once, instead of building all of them for every evaluation
+    usedBindings(responseAccessTokenExpr);
+    usedBindings(responseRefreshTokenExpr);
+    usedBindings(responseExpiresInExpr);
+    if (customParametersExtractorsExprs != null) {
+      customParametersExtractorsExprs.values().forEach(this::usedBindings);
+    }
+
     if (listeners != null) {
       this.listeners = new CopyOnWriteArrayList<>(listeners);
     } else {
@@ -173,23 +373,190 @@ public abstract class AbstractOAuthDancer implements Startable, Stoppable {
   @Override
   public void start() throws MuleException {
     httpClient.start();
-    pollScheduler = schedulerService.ioScheduler(config()
-        .withName(name + "-oauthDancer-tokenRefreshPoll")
-        .withShutdownTimeout(0, MILLISECONDS));
+    if (sharedScheduler != null) {
+      pollLane = sharedScheduler.openLane(name);
+    } else {
+      pollScheduler = schedulerService.ioScheduler(config()
+          .withName(name + "-oauthDancer-tokenRefreshPoll")
+          .withShutdownTimeout(0, MILLISECONDS));
+    }
+    virtualThreadExecutor = newVirtualThreadPerTaskExecutor(name + "-oauthDancer-blocking").orElse(null);
+    // Waiting on a virtual thread gets the lock as soon as it is released, instead of on the next retry
+    lockAcquirer = new AsyncLockAcquirer(this::schedulePollTask, virtualThreadExecutor);
+    if (tokenSnapshotDir != null) {
+      tokenSnapshot = TokenSnapshot.forDancer(Paths.get(tokenSnapshotDir), name, tokenUrl, clientId, clientSecret);
+      restoreTokenSnapshot();
+      snapshotting = true;
+      scheduleTokenSnapshot();
+    }
   }
 
   @Override
   public void stop() throws MuleException {
+    if (tokenSnapshot != null) {
+      snapshotting = false;
+      writeTokenSnapshot();
+      tokenSnapshot = null;
+    }
+    ownerRefreshes.values().forEach(ownerRefresh -> ownerRefresh.cancel(false));
+    ownerRefreshes.clear();
+    pendingStoreWrites.values().forEach(pending -> {
+      if (!tryStoreWrite(resourceOwnerKey(pending), pending)) {
+        LOGGER.warn("Could not store the context of '{}' in dancer '{}' before stopping. The tokens store keeps the previous "
+            + "one.", pending.getResourceOwnerId(), name);
+      }
+    });
+    pendingStoreWrites.clear();
     try {
+      if (pollLane != null) {
+        pollLane.close();
+        pollLane = null;
+      }
       if (pollScheduler != null) {
         pollScheduler.stop();
       }
     } catch (Throwable t) {
       LOGGER.warn("Found error trying to stop pollScheduler for dancer '" + name + "'. Execution will continue...", t);
     }
+    if (virtualThreadExecutor != null) {
+      virtualThreadExecutor.shutdownNow();
+      virtualThreadExecutor = null;
+      listenerExecutors.clear();
+    }
+    tokenUpdates.complete();
     httpClient.stop();
   }
 
+  /**
+   * Puts the tokens from the snapshot that have at least {@link #TOKEN_SNAPSHOT_MIN_REMAINING_PROPERTY} left in the tokens
+   * store, unless it already has a token for their resource owners. Each one is put holding the lock of its context, as another
+   * node may be storing a token for the same resource owner.
+   */
+  private void restoreTokenSnapshot() {
+    final List<TokenSnapshot.Entry> entries;
+    try {
+      entries = tokenSnapshot.read();
+    } catch (IOException e) {
+      LOGGER.warn("Could not read token snapshot for dancer '" + name + "'. Tokens will be retrieved from the token url.", e);
+      return;
+    }
+
+    final long minExpiresAtMillis = currentTimeMillis() + tokenSnapshotMinRemainingMillis;
+    int restored = 0;
+    for (TokenSnapshot.Entry entry : entries) {
+      if (entry.getExpiresAtMillis() < minExpiresAtMillis) {
+        continue;
+      }
+
+      final ResourceOwnerOAuthContextWithRefreshState context =
+          new ResourceOwnerOAuthContextWithRefreshState(entry.getResourceOwnerId());
+      context.setAccessToken(entry.getAccessToken());
+      context.setRefreshToken(entry.getRefreshToken());
+      context.setExpiresIn(entry.getExpiresIn());
+      context.getTokenResponseParameters().putAll(entry.getTokenResponseParameters());
+      context.getTokenResponseParameters().put(TOKEN_EXPIRES_AT_PARAMETER, valueOf(entry.getExpiresAtMillis()));
+      context.setDancerState(HAS_TOKEN);
+      // The transformation of the resource owner id may depend on the caller, so the key it was stored with is kept
+      final ResourceOwnerKey key = new ResourceOwnerKey(entry.getResourceOwnerId(), entry.getStoreKey(),
+                                                        refreshOAuthContextLockName(name, entry.getResourceOwnerId()));
+      final boolean[] put = new boolean[1];
+      if (!runWithContextLock(storeLock(key), entry.getResourceOwnerId(), RESTORE_CONTEXT, Deadline.NONE, () -> {
+        final ResourceOwnerOAuthContext stored = tokensStore.get(entry.getStoreKey());
+        if (stored == null || stored.getDancerState() != HAS_TOKEN) {
+          storeContext(entry.getStoreKey(), context);
+          put[0] = true;
+        }
+      })) {
+        LOGGER.debug("Timeout acquiring the lock to restore the token of '{}' in dancer '{}'. It will be retrieved when needed.",
+                     entry.getResourceOwnerId(), name);
+      }
+      if (put[0]) {
+        ++restored;
+      }
+    }
+    LOGGER.info("Restored {} of {} tokens from snapshot {} for dancer '{}'", restored, entries.size(), tokenSnapshot.getFile(),
+                name);
+  }
+
+  private void scheduleTokenSnapshot() {
+    try {
+      schedulePollTask(() -> {
+        if (snapshotting) {
+          writeTokenSnapshot();
+          scheduleTokenSnapshot();
+        }
+      }, tokenSnapshotIntervalMillis);
+    } catch (RuntimeException e) {
+      // The dancer is being stopped, which writes the last snapshot
+      LOGGER.debug("Token snapshot for dancer '{}' not rescheduled", name, e);
+    }
+  }
+
+  /**
+   * Writes the tokens this dancer put in the store that are not expired, if their expiry is known, to the snapshot.
+   */
+  private void writeTokenSnapshot() {
+    final TokenSnapshot snapshot = tokenSnapshot;
+    if (snapshot == null) {
+      return;
+    }
+
+    final long now = currentTimeMillis();
+    final List<TokenSnapshot.Entry> entries = new ArrayList<>();
+    for (String storeKey : writtenStoreKeys) {
+      final ResourceOwnerOAuthContext context = tokensStore.get(storeKey);
+      if (context == null || context.getDancerState() != HAS_TOKEN || context.getAccessToken() == null) {
+        continue;
+      }
+      final TokenExpiry expiry = getTokenExpiry(context);
+      final Map<String, String> tokenResponseParameters = stringParameters(context);
+      if (!expiry.isKnown() || expiry.isExpired(now) || tokenResponseParameters == null) {
+        continue;
+      }
+      entries.add(new TokenSnapshot.Entry(storeKey, context.getResourceOwnerId(), context.getAccessToken(),
+                                          context.getRefreshToken(), context.getExpiresIn(),
+                                          expiry.getExpiresAt().get().toEpochMilli(), tokenResponseParameters));
+    }
+
+    try {
+      snapshot.write(entries);
+    } catch (IOException e) {
+      LOGGER.warn("Could not write token snapshot for dancer '" + name + "'", e);
+    }
+  }
+
+  /**
+   * @return the custom parameters of the token response of {@code context}, or {@code null} if any of them is not a string and
+   *         so cannot be kept in a snapshot.
+   */
+  private static Map<String, String> stringParameters(ResourceOwnerOAuthContext context) {
+    final Map<String, String> parameters = new HashMap<>();
+    for (Entry<String, Object> parameter : context.getTokenResponseParameters().entrySet()) {
+      if (parameter.getValue() != null && !(parameter.getValue() instanceof String)) {
+        return null;
+      }
+      parameters.put(parameter.getKey(), (String) parameter.getValue());
+    }
+    return parameters;
+  }
+
+  /**
+   * Checks whether a starting dancer can use the token already in the tokens store, put there by another node of the cluster,
+   * another dancer sharing the store or the snapshot, instead of getting a new one.
+   * <p>
+   * A token whose expiry is not known is not used, since there is no telling whether it is still valid.
+   *
+   * @param context the context of the resource owner in the tokens store.
+   * @return whether the context has a token known to have at least {@link #STORED_TOKEN_MIN_REMAINING_PROPERTY} left.
+   */
+  protected boolean isStoredTokenUsable(ResourceOwnerOAuthContext context) {
+    if (context.getDancerState() != HAS_TOKEN || context.getAccessToken() == null) {
+      return false;
+    }
+    final TokenExpiry tokenExpiry = getTokenExpiry(context);
+    return tokenExpiry.isKnown() && !tokenExpiry.isExpired(currentTimeMillis() + storedTokenMinRemainingMillis);
+  }
+
   /**
    * Based on the value of {@code clientCredentialsLocation}, add the clientId and clientSecret values to the form or encode and
    * return them.
@@ -212,107 +579,573 @@ public abstract class AbstractOAuthDancer implements Startable, Stoppable {
    */
   protected CompletableFuture<Void> doRefreshToken(Supplier<ResourceOwnerOAuthContext> oauthContextSupplier,
                                                    Function<ResourceOwnerOAuthContext, CompletableFuture<Void>> tokenRefreshRequester) {
-    ResourceOwnerOAuthContext oauthContext = oauthContextSupplier.get();
+    return doRefreshToken(oauthContextSupplier, tokenRefreshRequester, Deadline.NONE);
+  }
+
+  /**
+   * Same as {@link #doRefreshToken(Supplier, Function)}, but failing with a {@link TokenDeadlineExceededException} if the token is
+   * not refreshed by {@code deadline}. The waits for the lock of the context and for a refresh being done elsewhere are bounded by
+   * {@code deadline}, and so should be the request done by {@code tokenRefreshRequester}.
+   */
+  protected CompletableFuture<Void> doRefreshToken(Supplier<ResourceOwnerOAuthContext> oauthContextSupplier,
+                                                   Function<ResourceOwnerOAuthContext, CompletableFuture<Void>> tokenRefreshRequester,
+                                                   Deadline deadline) {
+    final ResourceOwnerOAuthContext oauthContext;
+    try {
+      oauthContext = oauthContextSupplier.get();
+    } catch (RuntimeException e) {
+      // Such as a timeout acquiring the lock to create the context, which the caller gets in the returned future as any other
+      return failed(e);
+    }
+    return doRefreshToken(oauthContext, tokenRefreshRequester, deadline, false);
+  }
 
-    final Lock lock = oauthContext.getRefreshOAuthContextLock(name, getLockProvider());
+  /**
+   * Same as {@link #doRefreshToken(Supplier, Function, Deadline)}, but starting from a context got with
+   * {@link #getContextForResourceOwnerAsync(String, Deadline)}, so that the caller is not blocked if it has to be created.
+   */
+  protected CompletableFuture<Void> doRefreshToken(CompletableFuture<ResourceOwnerOAuthContext> oauthContext,
+                                                   Function<ResourceOwnerOAuthContext, CompletableFuture<Void>> tokenRefreshRequester,
+                                                   Deadline deadline) {
+    return doRefreshToken(oauthContext, tokenRefreshRequester, deadline, false);
+  }
 
-    // If the context was just created, initialize it.
-    if (oauthContext.getDancerState() == NO_TOKEN) {
-      if (lock.tryLock()) {
-        try {
-          oauthContext = oauthContextSupplier.get();
-          if (oauthContext.getDancerState() == HAS_TOKEN) {
-            // Some other thread/node completed the refresh before lock was acquired here. Very quickly and quite improbable, but
-            // possible.
-            return completedFuture(null);
-          } else if (oauthContext.getDancerState() == REFRESHING_TOKEN) {
-            return pollForRefreshComplete(oauthContextSupplier, oauthContext);
-          } else if (oauthContext.getDancerState() == NO_TOKEN) {
-            return doRefreshTokenRequest(tokenRefreshRequester, oauthContext);
-          }
-        } finally {
-          lock.unlock();
-        }
+  /**
+   * Same as {@link #doRefreshToken(CompletableFuture, Function, Deadline)}, but for a caller that only needs a usable access
+   * token, which may get the previous one while a refresh is in progress as per {@link #STALE_TOKEN_GRACE_PROPERTY}.
+   */
+  protected CompletableFuture<Void> doRefreshTokenForRead(CompletableFuture<ResourceOwnerOAuthContext> oauthContext,
+                                                          Function<ResourceOwnerOAuthContext, CompletableFuture<Void>> tokenRefreshRequester,
+                                                          Deadline deadline) {
+    return doRefreshToken(oauthContext, tokenRefreshRequester, deadline, true);
+  }
+
+  private CompletableFuture<Void> doRefreshToken(CompletableFuture<ResourceOwnerOAuthContext> oauthContext,
+                                                 Function<ResourceOwnerOAuthContext, CompletableFuture<Void>> tokenRefreshRequester,
+                                                 Deadline deadline, boolean tokenRead) {
+    return thenCompose(oauthContext, ctx -> doRefreshToken(ctx, tokenRefreshRequester, deadline, tokenRead));
+  }
+
+  private CompletableFuture<Void> doRefreshToken(ResourceOwnerOAuthContext oauthContext,
+                                                 Function<ResourceOwnerOAuthContext, CompletableFuture<Void>> tokenRefreshRequester,
+                                                 Deadline deadline, boolean tokenRead) {
+    final String resourceOwnerId = oauthContext.getResourceOwnerId();
+    if (deadline.isExpired()) {
+      return failed(deadlineExceeded(resourceOwnerId));
+    }
+    // The context is read again with the key of the first read, so that the id is transformed once for the whole refresh
+    final ResourceOwnerKey key = resourceOwnerKey(oauthContext);
+    final Supplier<ResourceOwnerOAuthContext> keyedContextSupplier = () -> getContextForResourceOwner(key, deadline);
+    if (minRefreshIntervalNanos <= 0) {
+      return withinDeadline(coordinateRefresh(keyedContextSupplier, tokenRefreshRequester, oauthContext, deadline, tokenRead),
+                            deadline, resourceOwnerId);
+    }
+
+    final String storeKey = key.getTransformedId();
+    final RecentRefresh recent = recentRefreshes.getIfPresent(storeKey);
+    // Without a token, the resource owner has nothing to use until a refresh is done
+    if (recent != null && oauthContext.getAccessToken() != null && recent.isJoinable(minRefreshIntervalNanos)) {
+      LOGGER.debug("Token for '{}' in dancer '{}' was refreshed recently. Using the result of that refresh...",
+                   oauthContext.getResourceOwnerId(), name);
+      return withinDeadline(recent.result.join(), deadline, resourceOwnerId);
+    }
+
+    if (tokenRead) {
+      // It may be done as soon as the previous token is found usable, so it is not a result for explicit refreshes to join
+      return withinDeadline(coordinateRefresh(keyedContextSupplier, tokenRefreshRequester, oauthContext, deadline, true),
+                            deadline, resourceOwnerId);
+    }
+
+    // The refresh is cancelled only if the caller that started it and those that joined it all cancel
+    final SharedFuture<Void> result =
+        new SharedFuture<>(coordinateRefresh(keyedContextSupplier, tokenRefreshRequester, oauthContext, deadline, false));
+    recentRefreshes.put(storeKey, new RecentRefresh(result));
+    return withinDeadline(result.join(), deadline, resourceOwnerId);
+  }
+
+  /**
+   * @return {@code future} if {@code deadline} is {@link Deadline#NONE none}, or else a future with its result that fails with a
+   *         {@link TokenDeadlineExceededException} if it is not done by {@code deadline}. {@code future} is cancelled if the
+   *         returned one is, but not when the deadline is exceeded.
+   */
+  protected <T> CompletableFuture<T> withinDeadline(CompletableFuture<T> future, Deadline deadline, String resourceOwnerId) {
+    if (!deadline.isBounded() || future.isDone()) {
+      return future;
+    }
+
+    final CompletableFuture<T> bounded = new CompletableFuture<>();
+    future.whenComplete((value, t) -> {
+      if (t != null) {
+        bounded.completeExceptionally(t);
       } else {
-        return pollForRefreshComplete(oauthContextSupplier, oauthContext);
+        bounded.complete(value);
+      }
+    });
+    propagateCancellation(bounded, future);
+    try {
+      final ScheduledFuture<?> timeout =
+          schedulePollTask(() -> bounded.completeExceptionally(deadlineExceeded(resourceOwnerId)), deadline.remainingMillis());
+      // Not to keep the task, and what it references, until the deadline when the result is there before it
+      bounded.whenComplete((value, t) -> timeout.cancel(false));
+    } catch (RuntimeException e) {
+      // The dancer is being stopped, so the waits of this caller are only bounded by their own timeouts
+      LOGGER.debug("Could not schedule the deadline of a token request for '{}' in dancer '{}'", resourceOwnerId, name, e);
+    }
+    return bounded;
+  }
+
+  private TokenDeadlineExceededException deadlineExceeded(String resourceOwnerId) {
+    return new TokenDeadlineExceededException(createStaticMessage(format("Deadline exceeded getting the token of '%s' in dancer '%s'",
+                                                                         resourceOwnerId, name)));
+  }
+
+  protected static <T> CompletableFuture<T> failed(Throwable t) {
+    final CompletableFuture<T> failed = new CompletableFuture<>();
+    failed.completeExceptionally(t);
+    return failed;
+  }
+
+  /**
+   * Makes cancelling {@code dependent}, which completes with the result of {@code source}, cancel {@code source} too. Otherwise,
+   * the work behind {@code source} would go on for nobody.
+   * <p>
+   * Cancelling a future only stops the stages chained to it. When {@code source} is the future of a request sent with the
+   * {@link HttpClient}, the request itself is not aborted, since the client offers no way to do so: its connection stays busy
+   * until the response arrives or the response timeout elapses, and the response is then discarded.
+   *
+   * @return {@code dependent}.
+   */
+  protected static <T> CompletableFuture<T> propagateCancellation(CompletableFuture<T> dependent, CompletableFuture<?> source) {
+    dependent.whenComplete((value, t) -> {
+      if (dependent.isCancelled()) {
+        source.cancel(false);
+      }
+    });
+    return dependent;
+  }
+
+  /**
+   * Like {@link CompletableFuture#thenCompose(Function)}, but the returned future fails with whatever {@code source} or the future
+   * of {@code next} failed with as is, instead of wrapped in a {@link java.util.concurrent.CompletionException}, and cancelling it
+   * cancels them too. If {@code source} is already done, {@code next} is applied right away and its future returned.
+   */
+  protected static <T, U> CompletableFuture<U> thenCompose(CompletableFuture<T> source,
+                                                           Function<T, CompletableFuture<U>> next) {
+    if (source.isDone() && !source.isCompletedExceptionally()) {
+      return next.apply(source.join());
+    }
+
+    final CompletableFuture<U> result = new CompletableFuture<>();
+    propagateCancellation(result, source);
+    source.whenComplete((value, t) -> {
+      if (t != null) {
+        result.completeExceptionally(t);
+        return;
+      }
+      final CompletableFuture<U> nextFuture;
+      try {
+        nextFuture = next.apply(value);
+      } catch (Throwable e) {
+        result.completeExceptionally(e);
+        return;
       }
+      propagateCancellation(result, nextFuture);
+      nextFuture.whenComplete((nextValue, nextT) -> {
+        if (nextT != null) {
+          result.completeExceptionally(nextT);
+        } else {
+          result.complete(nextValue);
+        }
+      });
+    });
+    return result;
+  }
+
+  /**
+   * A refresh done for a resource owner, for the refreshes asked for shortly after it to get its result.
+   */
+  private static final class RecentRefresh {
+
+    private final long startNanos = nanoTime();
+    private final SharedFuture<Void> result;
+
+    private RecentRefresh(SharedFuture<Void> result) {
+      this.result = result;
+    }
+
+    private boolean isJoinable(long minRefreshIntervalNanos) {
+      // A failed or cancelled refresh may be retried right away
+      return nanoTime() - startNanos < minRefreshIntervalNanos && !result.isCompletedExceptionally();
+    }
+  }
+
+  private CompletableFuture<Void> coordinateRefresh(Supplier<ResourceOwnerOAuthContext> oauthContextSupplier,
+                                                    Function<ResourceOwnerOAuthContext, CompletableFuture<Void>> tokenRefreshRequester,
+                                                    ResourceOwnerOAuthContext oauthContext, Deadline deadline,
+                                                    boolean tokenRead) {
+    final Lock lock = refreshLock(resourceOwnerKey(oauthContext));
+
+    // If the context was just created, initialize it.
+    if (oauthContext.getDancerState() == NO_TOKEN) {
+      return requestFirstToken(oauthContextSupplier, tokenRefreshRequester, oauthContext, lock, deadline, tokenRead);
     }
 
     // If there is a previous token, refresh it
     if (oauthContext.getDancerState() == HAS_TOKEN) {
-      final String accessToken = oauthContext.getAccessToken();
-      lock.lock();
+      if (refreshOwnership != null && !refreshOwnership.isOwnedLocally(name, oauthContext.getResourceOwnerId())) {
+        // Whether the token is due, its expiry is unknown or it was rejected, the owner is the one to refresh it
+        return awaitRefreshByOwner(oauthContextSupplier, tokenRefreshRequester, oauthContext, lock,
+                                   currentTimeMillis() + OWNER_REFRESH_TIMEOUT_MILLIS, deadline, tokenRead);
+      }
+      return refreshExistingToken(oauthContextSupplier, tokenRefreshRequester, oauthContext, lock, deadline, tokenRead);
+    }
+
+    // In any other case, a refresh is being done elsewhere, so we poll for it
+    return pollForRefreshComplete(oauthContextSupplier, oauthContext, deadline, tokenRead);
+  }
+
+  private CompletableFuture<Void> requestFirstToken(Supplier<ResourceOwnerOAuthContext> oauthContextSupplier,
+                                                    Function<ResourceOwnerOAuthContext, CompletableFuture<Void>> tokenRefreshRequester,
+                                                    ResourceOwnerOAuthContext oauthContext, Lock lock, Deadline deadline,
+                                                    boolean tokenRead) {
+    final String resourceOwnerId = oauthContext.getResourceOwnerId();
+    final long lockStartNanos = nanoTime();
+    return lockAcquirer.withLock(lock, deadline.bound(lockTimeoutMillis), () -> {
+      OAuthEvents.refreshLockAcquired(name, resourceOwnerId, lockStartNanos);
+      final long acquiredNanos = nanoTime();
+      try {
+        final ResourceOwnerOAuthContext ctx = oauthContextSupplier.get();
+        if (ctx.getDancerState() == HAS_TOKEN) {
+          // Some other thread/node completed the refresh before lock was acquired here. Very quickly and quite improbable, but
+          // possible.
+          return completedFuture(null);
+        } else if (ctx.getDancerState() == REFRESHING_TOKEN) {
+          return pollForRefreshComplete(oauthContextSupplier, ctx, deadline, tokenRead);
+        }
+        return doRefreshTokenRequest(tokenRefreshRequester, ctx, deadline);
+      } finally {
+        recordContextLockHold(resourceOwnerId, acquiredNanos);
+      }
+    }, () -> {
+      OAuthEvents.refreshLockTimedOut(name, resourceOwnerId, lockStartNanos);
+      contextLockStats.timedOut();
+      if (deadline.isExpired()) {
+        return failed(deadlineExceeded(resourceOwnerId));
+      }
+      // There is no token to fall back to, so wait for whoever holds the lock to get it
+      return pollForRefreshComplete(oauthContextSupplier, oauthContext, deadline, tokenRead);
+    });
+  }
+
+  private CompletableFuture<Void> refreshExistingToken(Supplier<ResourceOwnerOAuthContext> oauthContextSupplier,
+                                                       Function<ResourceOwnerOAuthContext, CompletableFuture<Void>> tokenRefreshRequester,
+                                                       ResourceOwnerOAuthContext oauthContext, Lock lock,
+                                                       Deadline deadline, boolean tokenRead) {
+    final String accessToken = oauthContext.getAccessToken();
+    final String resourceOwnerId = oauthContext.getResourceOwnerId();
+    final long lockStartNanos = nanoTime();
+    // A distributed lock may take a network round trip or longer, so the caller is not blocked waiting for it
+    return lockAcquirer.withLock(lock, deadline.bound(lockTimeoutMillis), () -> {
+      OAuthEvents.refreshLockAcquired(name, resourceOwnerId, lockStartNanos);
+      final long acquiredNanos = nanoTime();
       try {
-        oauthContext = oauthContextSupplier.get();
-        if (oauthContext.getDancerState() == HAS_TOKEN) {
-          if (accessToken.equals(oauthContext.getAccessToken())) {
-            return doRefreshTokenRequest(tokenRefreshRequester, oauthContext);
+        final ResourceOwnerOAuthContext ctx = oauthContextSupplier.get();
+        if (ctx.getDancerState() == HAS_TOKEN) {
+          if (accessToken.equals(ctx.getAccessToken())) {
+            return doRefreshTokenRequest(tokenRefreshRequester, ctx, deadline);
           } else {
-            // Some other thread/node completed the refresh before lock was acquired here. Very quickly and quite improbable, but
-            // possible.
+            // Some other thread/node completed the refresh before lock was acquired here. Very quickly and quite improbable,
+            // but possible.
             return completedFuture(null);
           }
-        } else if (oauthContext.getDancerState() == REFRESHING_TOKEN) {
-          return pollForRefreshComplete(oauthContextSupplier, oauthContext);
-        } else if (oauthContext.getDancerState() == NO_TOKEN) {
-          return doRefreshTokenRequest(tokenRefreshRequester, oauthContext);
+        } else if (ctx.getDancerState() == NO_TOKEN) {
+          return doRefreshTokenRequest(tokenRefreshRequester, ctx, deadline);
         }
+        return pollForRefreshComplete(oauthContextSupplier, ctx, deadline, tokenRead);
       } finally {
-        lock.unlock();
+        recordContextLockHold(resourceOwnerId, acquiredNanos);
+      }
+    }, () -> {
+      try {
+        OAuthEvents.refreshLockTimedOut(name, resourceOwnerId, lockStartNanos);
+        onContextLockTimeout("refresh the token", resourceOwnerId, deadline);
+        return completedFuture(null);
+      } catch (MuleRuntimeException e) {
+        return failed(e);
+      }
+    });
+  }
+
+  /**
+   * Waits for the node that owns the resource owner of {@code oauthContext} to store a new token, without competing for the
+   * cluster-wide lock. The owner refreshes it ahead of its expiry or when it finds it rejected too. If the owner doesn't start
+   * the refresh by {@code waitUntilMillis} (for instance, because it left the cluster or is not using the token), the token is
+   * refreshed here.
+   */
+  private CompletableFuture<Void> awaitRefreshByOwner(Supplier<ResourceOwnerOAuthContext> oauthContextSupplier,
+                                                      Function<ResourceOwnerOAuthContext, CompletableFuture<Void>> tokenRefreshRequester,
+                                                      ResourceOwnerOAuthContext oauthContext, Lock lock, long waitUntilMillis,
+                                                      Deadline deadline, boolean tokenRead) {
+    final String accessToken = oauthContext.getAccessToken();
+    final CompletableFuture<Void> pendingResponse = new CompletableFuture<>();
+
+    pollUntilDone(pendingResponse, () -> {
+      final ResourceOwnerOAuthContext ctx = oauthContextSupplier.get();
+      if (ctx.getDancerState() == HAS_TOKEN && !accessToken.equals(ctx.getAccessToken())) {
+        pendingResponse.complete(null);
+      } else if (ctx.getDancerState() == REFRESHING_TOKEN) {
+        relay(pollForRefreshComplete(oauthContextSupplier, ctx, deadline, tokenRead), pendingResponse);
+        return true;
+      } else if (deadline.isExpired()) {
+        pendingResponse.completeExceptionally(deadlineExceeded(oauthContext.getResourceOwnerId()));
+      } else if (currentTimeMillis() >= waitUntilMillis) {
+        LOGGER.debug("Token for '{}' not refreshed by its owner node in dancer '{}'. Refreshing it locally...",
+                     oauthContext.getResourceOwnerId(), name);
+        relay(refreshExistingToken(oauthContextSupplier, tokenRefreshRequester, oauthContext, lock, deadline, tokenRead),
+              pendingResponse);
+        return true;
+      }
+      return pendingResponse.isDone();
+    }, 0);
+
+    return pendingResponse;
+  }
+
+  /**
+   * Completes {@code dependent} with the outcome of {@code source}, which is cancelled if {@code dependent} is.
+   */
+  private static void relay(CompletableFuture<Void> source, CompletableFuture<Void> dependent) {
+    propagateCancellation(dependent, source);
+    source.whenComplete((v, t) -> {
+      if (t != null) {
+        dependent.completeExceptionally(t);
+      } else {
+        dependent.complete(v);
       }
+    });
+  }
+
+  /**
+   * @return when the node that owns the resource owner of {@code oauthContext} is due to refresh its token ahead of its expiry,
+   *         or {@code -1} if the expiry of the token is not known, in which case it isn't refreshed ahead.
+   */
+  private long ownerRefreshDueAt(ResourceOwnerOAuthContext oauthContext) {
+    return getTokenExpiry(oauthContext).getExpiresAt()
+        .map(expiresAt -> expiresAt.toEpochMilli() - OWNER_REFRESH_AHEAD_MILLIS)
+        .orElse(-1L);
+  }
+
+  /**
+   * If this node owns the resource owner of {@code resourceOwnerOAuthContext}, schedules the refresh of its token ahead of its
+   * expiry, so that the other nodes find the new one in the store instead of waiting for it or refreshing it themselves.
+   */
+  private void scheduleOwnerRefresh(ResourceOwnerOAuthContext resourceOwnerOAuthContext) {
+    final String resourceOwnerId = resourceOwnerOAuthContext.getResourceOwnerId();
+    if (refreshOwnership == null || !refreshOwnership.isOwnedLocally(name, resourceOwnerId)) {
+      return;
+    }
+    final String accessToken = resourceOwnerOAuthContext.getAccessToken();
+    final long dueAtMillis = ownerRefreshDueAt(resourceOwnerOAuthContext);
+    final long delayMillis = dueAtMillis - currentTimeMillis();
+    if (dueAtMillis < 0 || delayMillis <= 0) {
+      // Unknown expiry, or too short-lived to be refreshed ahead of it without refreshing it all the time
+      return;
     }
 
-    // In any other case, a refresh is being done elsewhere, so we poll for it
-    return pollForRefreshComplete(oauthContextSupplier, oauthContext);
+    final String storeKey = resourceOwnerKey(resourceOwnerOAuthContext).getTransformedId();
+    try {
+      ownerRefreshes.compute(storeKey, (key, previous) -> {
+        if (previous != null) {
+          previous.cancel(false);
+        }
+        return schedulePollTask(() -> refreshAheadOfExpiry(storeKey, resourceOwnerId, accessToken), delayMillis);
+      });
+    } catch (RuntimeException e) {
+      // The dancer is being stopped
+      LOGGER.debug("Could not schedule the refresh of the token of '{}' in dancer '{}'", resourceOwnerId, name, e);
+    }
+  }
+
+  private void refreshAheadOfExpiry(String storeKey, String resourceOwnerId, String accessToken) {
+    // May remove the refresh of a token stored in the meantime, which is then not cancelled on stop but doesn't run either
+    ownerRefreshes.remove(storeKey);
+    if (!accessToken.equals(getContextForResourceOwner(resourceOwnerId).getAccessToken())) {
+      // Already refreshed, or invalidated
+      return;
+    }
+    LOGGER.debug("Refreshing token for '{}' in dancer '{}' ahead of its expiry...", resourceOwnerId, name);
+    try {
+      refreshOwnedToken(resourceOwnerId).whenComplete((v, t) -> {
+        if (t != null) {
+          LOGGER.warn("Could not refresh token for '{}' in dancer '{}' ahead of its expiry: {}", resourceOwnerId, name,
+                      t.toString());
+        }
+      });
+    } catch (RuntimeException e) {
+      LOGGER.warn("Could not refresh token for '{}' in dancer '{}' ahead of its expiry: {}", resourceOwnerId, name,
+                  e.toString());
+    }
   }
 
+  /**
+   * Refreshes the token of {@code resourceOwnerId} ahead of its expiry, when this node owns it.
+   *
+   * @param resourceOwnerId the resource owner whose token to refresh.
+   * @return a future completed when the token is refreshed.
+   */
+  protected abstract CompletableFuture<Void> refreshOwnedToken(String resourceOwnerId);
+
+  /**
+   * Requests a new token for {@code oauthContext}.
+   * <p>
+   * The request is shared with the callers that poll for it on this node. If all of them cancel their futures, the request is
+   * cancelled and {@code oauthContext} goes back to the state it had before.
+   */
   protected CompletableFuture<Void> doRefreshTokenRequest(Function<ResourceOwnerOAuthContext, CompletableFuture<Void>> tokenRefreshRequester,
                                                           ResourceOwnerOAuthContext oauthContext) {
+    return doRefreshTokenRequest(tokenRefreshRequester, oauthContext, Deadline.NONE);
+  }
+
+  /**
+   * Same as {@link #doRefreshTokenRequest(Function, ResourceOwnerOAuthContext)}, but not waiting beyond {@code deadline} for the
+   * lock to store that the token is being refreshed.
+   */
+  protected CompletableFuture<Void> doRefreshTokenRequest(Function<ResourceOwnerOAuthContext, CompletableFuture<Void>> tokenRefreshRequester,
+                                                          ResourceOwnerOAuthContext oauthContext, Deadline deadline) {
+    final DancerState previousState = oauthContext.getDancerState();
     oauthContext.setDancerState(REFRESHING_TOKEN);
-    updateResourceOwnerOAuthContext(oauthContext);
+    try {
+      updateResourceOwnerOAuthContext(oauthContext, deadline);
+    } catch (RuntimeException e) {
+      // Nothing was stored, so the refresh is not started
+      oauthContext.setDancerState(previousState);
+      throw e;
+    }
 
+    final CompletableFuture<Void> request;
     try {
-      return tokenRefreshRequester.apply(oauthContext);
+      request = tokenRefreshRequester.apply(oauthContext);
     } catch (Exception e) {
       // Exception is properly handled/logged by a caller. This is just for keeping the internal state of the contexts consistent.
       oauthContext.setDancerState(NO_TOKEN);
       updateResourceOwnerOAuthContext(oauthContext);
       throw e;
     }
+
+    final String storeKey = resourceOwnerKey(oauthContext).getTransformedId();
+    final SharedFuture<Void> inFlight = new SharedFuture<>(request);
+    inFlightRefreshes.put(storeKey, inFlight);
+    request.whenComplete((v, t) -> {
+      inFlightRefreshes.remove(storeKey, inFlight);
+      if (request.isCancelled() && oauthContext.getDancerState() == REFRESHING_TOKEN) {
+        LOGGER.debug("Token refresh for '{}' in dancer '{}' cancelled", oauthContext.getResourceOwnerId(), name);
+        oauthContext.setDancerState(previousState == HAS_TOKEN && oauthContext.getAccessToken() != null ? HAS_TOKEN : NO_TOKEN);
+        updateResourceOwnerOAuthContext(oauthContext);
+      }
+    });
+    return inFlight.join();
   }
 
   private CompletableFuture<Void> pollForRefreshComplete(Supplier<ResourceOwnerOAuthContext> oauthContextSupplier,
-                                                         ResourceOwnerOAuthContext oauthContext) {
-    final CompletableFuture<Void> pendingResponse = new CompletableFuture<>();
+                                                         ResourceOwnerOAuthContext oauthContext, Deadline deadline,
+                                                         boolean tokenRead) {
+    if (tokenRead && oauthContext.getDancerState() == REFRESHING_TOKEN && canServeStaleToken(oauthContext)) {
+      // The caller gets the previous token from the context, while the refresh goes on
+      return completedFuture(null);
+    }
 
-    pollScheduler.execute(() -> {
-      final long startNanos = nanoTime();
+    final SharedFuture<Void> inFlight = inFlightRefreshes.get(resourceOwnerKey(oauthContext).getTransformedId());
+    if (inFlight != null) {
+      // The refresh is being done on this node, so wait for it instead of polling the store. As when polling, its outcome is
+      // found in the context
+      final CompletableFuture<Void> joined = inFlight.join();
+      return propagateCancellation(joined.handle((v, t) -> (Void) null), joined);
+    }
 
-      ResourceOwnerOAuthContext ctx = oauthContextSupplier.get();
+    final CompletableFuture<Void> pendingResponse = new CompletableFuture<>();
 
-      while (ctx.getDancerState() == REFRESHING_TOKEN) {
-        if (NANOSECONDS.toMillis(nanoTime() - startNanos) > TOKEN_REQUEST_TIMEOUT_MILLIS) {
-          // Exception is properly handled/logged by a caller. This is just for keeping the internal state of the contexts
-          // consistent.
-          oauthContext.setDancerState(NO_TOKEN);
-          updateResourceOwnerOAuthContext(oauthContext);
+    final long startNanos = nanoTime();
+    pollUntilDone(pendingResponse, () -> {
+      final ResourceOwnerOAuthContext ctx = oauthContextSupplier.get();
+      if (ctx.getDancerState() != REFRESHING_TOKEN) {
+        OAuthEvents.refreshPoll(name, oauthContext.getResourceOwnerId(), false, startNanos);
+        pendingResponse.complete(null);
+      } else if (deadline.isExpired()) {
+        // Only this caller gives up, the refresh being polled for may still complete in time for others
+        OAuthEvents.refreshPoll(name, oauthContext.getResourceOwnerId(), true, startNanos);
+        pendingResponse.completeExceptionally(deadlineExceeded(oauthContext.getResourceOwnerId()));
+      } else if (NANOSECONDS.toMillis(nanoTime() - startNanos) > TOKEN_REQUEST_TIMEOUT_MILLIS) {
+        // Exception is properly handled/logged by a caller. This is just for keeping the internal state of the contexts
+        // consistent.
+        oauthContext.setDancerState(NO_TOKEN);
+        updateResourceOwnerOAuthContext(oauthContext);
 
-          pendingResponse
-              .completeExceptionally(new MuleRuntimeException(createStaticMessage("Timeout polling for token refresh to complete.")));
-        }
+        OAuthEvents.refreshPoll(name, oauthContext.getResourceOwnerId(), true, startNanos);
+        pendingResponse
+            .completeExceptionally(new MuleRuntimeException(createStaticMessage("Timeout polling for token refresh to complete.")));
+      }
+      return pendingResponse.isDone();
+    }, 0);
 
+    return pendingResponse;
+  }
+
+  /**
+   * @return whether the token of {@code oauthContext}, which is being refreshed, is not expired and the refresh has not been in
+   *         progress for longer than {@link #STALE_TOKEN_GRACE_PROPERTY}.
+   */
+  private boolean canServeStaleToken(ResourceOwnerOAuthContext oauthContext) {
+    final String accessToken = oauthContext.getAccessToken();
+    if (staleTokenGraceMillis <= 0 || accessToken == null || isAccessTokenExpired(oauthContext)) {
+      return false;
+    }
+    final long now = currentTimeMillis();
+    return now - refreshesSeenAt.get(accessToken, token -> now) < staleTokenGraceMillis;
+  }
+
+  private ScheduledFuture<?> schedulePollTask(Runnable task, long delayMillis) {
+    if (pollLane != null) {
+      return pollLane.schedule(task, delayMillis, MILLISECONDS);
+    } else {
+      return pollScheduler.schedule(task, delayMillis, MILLISECONDS);
+    }
+  }
+
+  /**
+   * Runs {@code check} after {@code delayMillis} and then every {@link #POLL_INTERVAL_MILLIS} until it returns {@code true} or
+   * {@code pending} is done, either by {@code check} or by its caller cancelling it. No thread is held between checks, so the
+   * waits of this dancer don't hold up each other.
+   */
+  private void pollUntilDone(CompletableFuture<?> pending, BooleanSupplier check, long delayMillis) {
+    try {
+      schedulePollTask(() -> {
+        if (pending.isDone()) {
+          // Cancelled by the caller
+          return;
+        }
+        boolean over;
         try {
-          sleep(100);
-        } catch (InterruptedException e) {
-          currentThread().interrupt();
-          pendingResponse.completeExceptionally(e);
+          over = check.getAsBoolean();
+        } catch (Exception e) {
+          pending.completeExceptionally(e);
+          over = true;
         }
-        ctx = oauthContextSupplier.get();
-      }
-      pendingResponse.complete(null);
-    });
+        if (!over && !pending.isDone()) {
+          pollUntilDone(pending, check, POLL_INTERVAL_MILLIS);
+        }
+      }, delayMillis);
+    } catch (RuntimeException e) {
+      // The dancer has been stopped
+      pending.completeExceptionally(e);
+    }
+  }
 
-    return pendingResponse;
+  /**
+   * @return the accounting of the tasks of this dancer on the scheduler shared with the other dancers, or {@code null} if it
+   *         doesn't use it or is not started.
+   */
+  public SharedDancerScheduler.Lane getSharedSchedulerLane() {
+    return pollLane;
   }
 
   protected CompletableFuture<TokenResponse> invokeTokenUrl(String tokenUrl,
@@ -322,6 +1155,33 @@ public abstract class AbstractOAuthDancer implements Startable, Stoppable {
                                                             String authorization,
                                                             boolean retrieveRefreshToken,
                                                             Charset encoding) {
+    return invokeTokenUrl(tokenUrl, tokenRequestFormToSend, queryParams, headers, authorization, retrieveRefreshToken, encoding,
+                          Deadline.NONE);
+  }
+
+  /**
+   * Same as {@link #invokeTokenUrl(String, Map, MultiMap, MultiMap, String, boolean, Charset)}, but not waiting for the response
+   * beyond {@code deadline}. If it is not received in time, the returned future fails with a
+   * {@link TokenDeadlineExceededException}.
+   * <p>
+   * Cancelling the returned future does not abort the request already sent to the token url, only the processing of its
+   * response. The request is still bounded by the response timeout derived from {@code deadline}.
+   */
+  protected CompletableFuture<TokenResponse> invokeTokenUrl(String tokenUrl,
+                                                            Map<String, String> tokenRequestFormToSend,
+                                                            MultiMap<String, String> queryParams,
+                                                            MultiMap<String, String> headers,
+                                                            String authorization,
+                                                            boolean retrieveRefreshToken,
+                                                            Charset encoding,
+                                                            Deadline deadline) {
+    final long responseTimeout = deadline.bound(TOKEN_REQUEST_TIMEOUT_MILLIS);
+    // A response timeout of 0 would mean no timeout at all
+    if (deadline.isBounded() && responseTimeout <= 0) {
+      return failed(new TokenDeadlineExceededException(createStaticMessage(format("Deadline exceeded before calling token url '%s' in dancer '%s'",
+                                                                                  tokenUrl, name))));
+    }
+
     final HttpRequestBuilder requestBuilder = HttpRequest.builder()
         .uri(tokenUrl).method(POST.name())
         .entity(new ByteArrayHttpEntity(encodeString(tokenRequestFormToSend, encoding).getBytes()))
@@ -336,12 +1196,23 @@ public abstract class AbstractOAuthDancer implements Startable, Stoppable {
       requestBuilder.addQueryParam(CLIENT_SECRET_PARAMETER, clientSecret);
     }
 
-    return httpClient.sendAsync(requestBuilder.build(), HttpRequestOptions.builder()
-        .responseTimeout(TOKEN_REQUEST_TIMEOUT_MILLIS)
-        .build())
+    final String grantType = tokenRequestFormToSend.containsKey(GRANT_TYPE_PARAMETER)
+        ? tokenRequestFormToSend.get(GRANT_TYPE_PARAMETER)
+        : queryParams.get(GRANT_TYPE_PARAMETER);
+    final long requestStartNanos = nanoTime();
+
+    final CompletableFuture<HttpResponse> sent = httpClient.sendAsync(requestBuilder.build(), HttpRequestOptions.builder()
+        .responseTimeout((int) responseTimeout)
+        .build());
+    return propagateCancellation(sent
         .exceptionally(t -> {
+          OAuthEvents.tokenRequest(name, grantType, tokenUrl, -1, requestStartNanos);
           return withContextClassLoader(AbstractOAuthDancer.class.getClassLoader(), () -> {
-            if (t instanceof IOException) {
+            if (deadline.isExpired()) {
+              throw new CompletionException(new TokenDeadlineExceededException(createStaticMessage(format("Deadline exceeded waiting for the response of token url '%s' in dancer '%s'",
+                                                                                                          tokenUrl, name)),
+                                                                               t));
+            } else if (t instanceof IOException) {
               throw new CompletionException(new TokenUrlResponseException(tokenUrl, (IOException) t));
             } else {
               throw new CompletionException(t);
@@ -349,54 +1220,160 @@ public abstract class AbstractOAuthDancer implements Startable, Stoppable {
           });
         })
         .thenApply(response -> {
-          return withContextClassLoader(AbstractOAuthDancer.class.getClassLoader(), () -> {
-            String contentType = response.getHeaderValue(CONTENT_TYPE);
-            MediaType responseContentType = contentType != null ? parse(contentType) : ANY;
-
-            String body;
-            try (InputStream content = response.getEntity().getContent()) {
-              body = IOUtils.toString(content);
-
-              if (response.getStatusCode() >= BAD_REQUEST.getStatusCode()) {
-                try {
-                  throw new CompletionException(new TokenUrlResponseException(tokenUrl, response, body));
-                } catch (IOException e) {
-                  throw new CompletionException(new TokenUrlResponseException(tokenUrl, e));
-                }
-              }
-            }
+          try {
+            return processTokenUrlResponse(tokenUrl, retrieveRefreshToken, response);
+          } finally {
+            OAuthEvents.tokenRequest(name, grantType, tokenUrl, response.getStatusCode(), requestStartNanos);
+          }
+        }), sent);
+  }
 
-            MultiMap<String, String> responseHeaders = response.getHeaders();
+  private TokenResponse processTokenUrlResponse(String tokenUrl, boolean retrieveRefreshToken, HttpResponse response) {
+    return withContextClassLoader(AbstractOAuthDancer.class.getClassLoader(), () -> {
+      String contentType = response.getHeaderValue(CONTENT_TYPE);
+      MediaType responseContentType = contentType != null ? parse(contentType) : ANY;
 
-            TokenResponse tokenResponse = new TokenResponse();
-            tokenResponse
-                .setAccessToken(resolveExpression(responseAccessTokenExpr, body, responseHeaders, responseContentType));
-            if (tokenResponse.getAccessToken() == null) {
-              throw new CompletionException(new TokenNotFoundException(tokenUrl, response, body));
-            }
-            if (retrieveRefreshToken) {
-              tokenResponse
-                  .setRefreshToken(resolveExpression(responseRefreshTokenExpr, body, responseHeaders, responseContentType));
-            }
-            tokenResponse.setExpiresIn(resolveExpression(responseExpiresInExpr, body, responseHeaders, responseContentType));
-
-            if (customParametersExtractorsExprs != null && !customParametersExtractorsExprs.isEmpty()) {
-              Map<String, Object> customParams = new HashMap<>();
-              for (Entry<String, String> customParamExpr : customParametersExtractorsExprs.entrySet()) {
-                customParams.put(customParamExpr.getKey(),
-                                 resolveExpression(customParamExpr.getValue(), body, responseHeaders, responseContentType));
-              }
-              tokenResponse.setCustomResponseParameters(customParams);
-            }
+      String body;
+      try (InputStream content = response.getEntity().getContent()) {
+        body = IOUtils.toString(content);
 
-            return tokenResponse;
-          });
-        });
+        if (response.getStatusCode() >= BAD_REQUEST.getStatusCode()) {
+          try {
+            throw new CompletionException(new TokenUrlResponseException(tokenUrl, response, body));
+          } catch (IOException e) {
+            throw new CompletionException(new TokenUrlResponseException(tokenUrl, e));
+          }
+        }
+      }
+
+      MultiMap<String, String> responseHeaders = response.getHeaders();
+      // All the expressions share the bindings, which are only created if some expression uses them
+      ExpressionBindings bindings =
+          new ExpressionBindings(body, responseContentType, () -> singletonMap("headers", responseHeaders.toImmutableMultiMap()));
+
+      TokenResponse tokenResponse = new TokenResponse();
+      tokenResponse.setAccessToken(resolveExpression(responseAccessTokenExpr, bindings));
+      if (tokenResponse.getAccessToken() == null) {
+        throw new CompletionException(new TokenNotFoundException(tokenUrl, response, body));
+      }
+      if (retrieveRefreshToken) {
+        tokenResponse.setRefreshToken(resolveExpression(responseRefreshTokenExpr, bindings));
+      }
+      tokenResponse.setExpiresIn(resolveExpression(responseExpiresInExpr, bindings));
+
+      final long receivedAtMillis = currentTimeMillis();
+      TokenExpiry tokenExpiry = TokenExpiry.fromExpiresIn(tokenResponse.getExpiresIn(), receivedAtMillis);
+      if (!tokenExpiry.isKnown() && decodeJwtExpiry) {
+        tokenExpiry = TokenExpiry.fromJwt(tokenResponse.getAccessToken(), receivedAtMillis);
+        if (tokenExpiry.isKnown() && tokenResponse.getExpiresIn() == null) {
+          tokenResponse.setExpiresIn(valueOf(tokenExpiry.getLifetimeSeconds()));
+        }
+      }
+      if (tokenExpiry.isExpired(receivedAtMillis)) {
+        LOGGER.warn("Token received by dancer '{}' is already expired", name);
+      }
+      tokenExpiries.put(tokenResponse.getAccessToken(), tokenExpiry);
+
+      if (customParametersExtractorsExprs != null && !customParametersExtractorsExprs.isEmpty()) {
+        Map<String, Object> customParams = new HashMap<>();
+        for (Entry<String, String> customParamExpr : customParametersExtractorsExprs.entrySet()) {
+          customParams.put(customParamExpr.getKey(), resolveExpression(customParamExpr.getValue(), bindings));
+        }
+        tokenResponse.setCustomResponseParameters(customParams);
+      }
+
+      return tokenResponse;
+    });
   }
 
   protected void updateOAuthContextAfterTokenResponse(ResourceOwnerOAuthContext defaultUserState) {
+    setTokenExpiry(defaultUserState);
     defaultUserState.setDancerState(HAS_TOKEN);
     updateResourceOwnerOAuthContext(defaultUserState);
+    publishTokenUpdate(defaultUserState);
+    scheduleOwnerRefresh(defaultUserState);
+  }
+
+  /**
+   * Puts the expiry of the token just retrieved for {@code resourceOwnerOAuthContext} in its
+   * {@link #TOKEN_EXPIRES_AT_PARAMETER token response parameters}, for it to be stored with the token.
+   */
+  protected void setTokenExpiry(ResourceOwnerOAuthContext resourceOwnerOAuthContext) {
+    final TokenExpiry tokenExpiry = getTokenExpiry(resourceOwnerOAuthContext.getAccessToken());
+    if (tokenExpiry.isKnown()) {
+      resourceOwnerOAuthContext.getTokenResponseParameters()
+          .put(TOKEN_EXPIRES_AT_PARAMETER, valueOf(tokenExpiry.getExpiresAt().get().toEpochMilli()));
+    } else {
+      // Not to keep the expiry of the previous token
+      resourceOwnerOAuthContext.getTokenResponseParameters().remove(TOKEN_EXPIRES_AT_PARAMETER);
+    }
+  }
+
+  /**
+   * Subscribes to the tokens this dancer stores for a resource owner, so that long-lived clients can swap their credentials as
+   * soon as a new token is available instead of calling {@code accessToken} or waiting for a {@code 401}.
+   *
+   * @param resourceOwnerId the resource owner whose tokens to emit.
+   * @return a publisher of each token stored for {@code resourceOwnerId} after the subscription. It completes when the dancer is
+   *         stopped.
+   */
+  public Publisher<TokenUpdate> tokenUpdates(String resourceOwnerId) {
+    return tokenUpdates.publisher(resourceOwnerId);
+  }
+
+  /**
+   * Emits the token just stored in {@code resourceOwnerOAuthContext} to the subscribers of its resource owner.
+   */
+  protected void publishTokenUpdate(ResourceOwnerOAuthContext resourceOwnerOAuthContext) {
+    tokenUpdates.emit(new TokenUpdate(resourceOwnerOAuthContext.getResourceOwnerId(), resourceOwnerOAuthContext.getAccessToken(),
+                                      resourceOwnerOAuthContext.getExpiresIn(),
+                                      getTokenExpiry(resourceOwnerOAuthContext).getExpiresAt().orElse(null)));
+  }
+
+  /**
+   * @param context a context read from the tokens store.
+   * @return when the access token of {@code context} expires, as stored with it by the node that retrieved it or, if it was
+   *         stored without it, as found out from its JWT claims.
+   */
+  protected TokenExpiry getTokenExpiry(ResourceOwnerOAuthContext context) {
+    final Object expiresAt = context.getTokenResponseParameters().get(TOKEN_EXPIRES_AT_PARAMETER);
+    if (expiresAt instanceof String) {
+      try {
+        return TokenExpiry.at(parseLong((String) expiresAt));
+      } catch (NumberFormatException e) {
+        LOGGER.debug("Invalid expiry '{}' stored for '{}' in dancer '{}'", expiresAt, context.getResourceOwnerId(), name);
+      }
+    }
+    return getTokenExpiry(context.getAccessToken());
+  }
+
+  /**
+   * @param accessToken a token retrieved by this dancer, may be {@code null}.
+   * @return when {@code accessToken} expires, as found out when it was retrieved or, if it was retrieved by another node, from its
+   *         JWT claims.
+   */
+  protected TokenExpiry getTokenExpiry(String accessToken) {
+    if (accessToken == null) {
+      return TokenExpiry.UNKNOWN;
+    }
+    return tokenExpiries.get(accessToken, token -> decodeJwtExpiry ? TokenExpiry.fromJwt(token) : TokenExpiry.UNKNOWN);
+  }
+
+  /**
+   * Records when {@code accessToken} expires, for tokens whose response was processed elsewhere.
+   */
+  protected void rememberTokenExpiry(String accessToken, TokenExpiry tokenExpiry) {
+    if (accessToken != null && tokenExpiry.isKnown()) {
+      tokenExpiries.put(accessToken, tokenExpiry);
+    }
+  }
+
+  /**
+   * @param context a context read from the tokens store.
+   * @return whether the access token of {@code context} is known to be expired.
+   */
+  protected boolean isAccessTokenExpired(ResourceOwnerOAuthContext context) {
+    return getTokenExpiry(context).isExpired(currentTimeMillis());
   }
 
   protected Function<Throwable, ? extends Void> tokenUrlExceptionHandler(ResourceOwnerOAuthContext defaultUserState) {
@@ -411,64 +1388,69 @@ public abstract class AbstractOAuthDancer implements Startable, Stoppable {
     };
   }
 
-  protected <T> T resolveExpression(String expr, Object body, MultiMap<String, String> headers,
-                                    MediaType responseContentType) {
+  /**
+   * @param expr the expression to analyse, may be {@code null} or a literal.
+   * @return the bitwise or of the {@link ExpressionBindings} {@code *_BINDING} constants for the bindings {@code expr} may use.
+   */
+  protected int usedBindings(String expr) {
     if (expr == null) {
-      return null;
-    } else if (!expressionEvaluator.isExpression(expr)) {
-      return (T) expr;
-    } else {
-      BindingContext resultContext = BindingContext.builder()
-          .addBinding("payload",
-                      new TypedValue(body, DataType.builder().fromObject(body)
-                          .mediaType(responseContentType).build()))
-
-          .addBinding("attributes", new TypedValue(singletonMap("headers", headers.toImmutableMultiMap()),
-                                                   DataType.fromType(Map.class)))
-          .addBinding("dataType",
-                      new TypedValue(DataType.builder().fromObject(body).mediaType(responseContentType)
-                          .build(), DataType.fromType(DataType.class)))
-          .build();
-
-      return (T) expressionEvaluator.evaluate(expr, STRING, resultContext).getValue();
+      return 0;
     }
+    return expressionBindings.computeIfAbsent(expr, e -> ExpressionBindings.usedBindings(expressionEvaluator, e));
+  }
+
+  protected <T> T resolveExpression(String expr, Object body, MultiMap<String, String> headers,
+                                    MediaType responseContentType) {
+    return resolveExpression(expr, new ExpressionBindings(body, responseContentType,
+                                                          () -> singletonMap("headers", headers.toImmutableMultiMap())));
   }
 
   protected <T> T resolveExpression(String expr, Object body, MultiMap<String, String> headers,
                                     MultiMap<String, String> queryParams, MediaType responseContentType) {
+    return resolveExpression(expr, new ExpressionBindings(body, responseContentType, () -> {
+      Map<Object, Object> attributes = new HashMap<>(2);
+      attributes.put("headers", headers.toImmutableMultiMap());
+      attributes.put("queryParams", queryParams.toImmutableMultiMap());
+      return attributes;
+    }));
+  }
+
+  private <T> T resolveExpression(String expr, ExpressionBindings bindings) {
     if (expr == null) {
       return null;
     } else if (!expressionEvaluator.isExpression(expr)) {
       return (T) expr;
     } else {
-      Map<Object, Object> attributes = new HashMap<>(2);
-      attributes.put("headers", headers.toImmutableMultiMap());
-      attributes.put("queryParams", queryParams.toImmutableMultiMap());
-
-      BindingContext resultContext = BindingContext.builder()
-          .addBinding("payload",
-                      new TypedValue(body, DataType.builder().fromObject(body)
-                          .mediaType(responseContentType).build()))
-
-          .addBinding("attributes", new TypedValue(attributes, DataType.fromType(Map.class)))
-          .addBinding("dataType",
-                      new TypedValue(DataType.builder().fromObject(body).mediaType(responseContentType)
-                          .build(), DataType.fromType(DataType.class)))
-          .build();
-
-      return (T) expressionEvaluator.evaluate(expr, DataType.STRING, resultContext).getValue();
+      return (T) expressionEvaluator.evaluate(expr, STRING, bindings.forBindings(usedBindings(expr))).getValue();
     }
   }
 
   public void invalidateContext(String resourceOwner) {
-    final Lock refreshUserOAuthContextLock =
-        getContextForResourceOwner(resourceOwner).getRefreshOAuthContextLock(name, getLockProvider());
-    refreshUserOAuthContextLock.lock();
-    try {
-      tokensStore.remove(resourceOwnerIdTransformer.apply(resourceOwner));
-      onEachListener(OAuthStateListener::onTokenInvalidated);
-    } finally {
-      refreshUserOAuthContextLock.unlock();
+    invalidateContext(resourceOwner, Deadline.NONE);
+  }
+
+  /**
+   * Same as {@link #invalidateContext(String)}, but not waiting for the lock of the context beyond {@code deadline}.
+   *
+   * @param resourceOwner the resource owner whose context to invalidate.
+   * @param deadline how long the caller is willing to wait for the lock of the context.
+   * @throws TokenDeadlineExceededException if the lock could not be acquired in time.
+   */
+  public void invalidateContext(String resourceOwner, Duration deadline) {
+    invalidateContext(resourceOwner, Deadline.after(deadline));
+  }
+
+  private void invalidateContext(String resourceOwner, Deadline deadline) {
+    final ResourceOwnerKey key = newResourceOwnerKey(resourceOwner != null ? resourceOwner : DEFAULT_RESOURCE_OWNER_ID);
+    final Lock lock = storeLock(key);
+    final boolean invalidated = runWithContextLock(lock, key.getResourceOwnerId(), INVALIDATE_CONTEXT, deadline, () -> {
+      tokensStore.remove(key.getTransformedId());
+      writtenStoreKeys.remove(key.getTransformedId());
+      recentRefreshes.invalidate(key.getTransformedId());
+      onEachListener("onTokenInvalidated", OAuthStateListener::onTokenInvalidated);
+    });
+    if (!invalidated) {
+      onContextLockTimeout(INVALIDATE_CONTEXT, key.getResourceOwnerId(), deadline);
     }
   }
 
@@ -480,32 +1462,132 @@ public abstract class AbstractOAuthDancer implements Startable, Stoppable {
    * @return oauth state
    */
   public ResourceOwnerOAuthContext getContextForResourceOwner(String resourceOwnerId) {
+    return getContextForResourceOwner(resourceOwnerId, Deadline.NONE);
+  }
+
+  /**
+   * Same as {@link #getContextForResourceOwner(String)}, but not waiting beyond {@code deadline} for the lock to create the
+   * context if there's none.
+   *
+   * @throws TokenDeadlineExceededException if the lock could not be acquired in time.
+   */
+  protected ResourceOwnerOAuthContext getContextForResourceOwner(String resourceOwnerId, Deadline deadline) {
     if (resourceOwnerId == null) {
       resourceOwnerId = DEFAULT_RESOURCE_OWNER_ID;
     }
+    return getContextForResourceOwner(newResourceOwnerKey(resourceOwnerId), deadline);
+  }
+
+  private ResourceOwnerOAuthContext getContextForResourceOwner(ResourceOwnerKey key, Deadline deadline) {
+    if (tokensStore.containsKey(key.getTransformedId())) {
+      return readContext(key);
+    }
 
-    final String transformedResourceOwnerId = resourceOwnerIdTransformer.apply(resourceOwnerId);
+    final ResourceOwnerOAuthContext[] context = new ResourceOwnerOAuthContext[1];
+    if (!runWithContextLock(storeLock(key), key.getResourceOwnerId(), CREATE_CONTEXT, deadline,
+                            () -> context[0] = createContext(key))) {
+      onContextLockTimeout(CREATE_CONTEXT, key.getResourceOwnerId(), deadline);
+      // There is no stale context to serve, so a new one is used without storing it until the lock can be acquired
+      context[0] = newContext(key);
+    }
+    return context[0];
+  }
 
-    ResourceOwnerOAuthContext resourceOwnerOAuthContext = null;
-    if (!tokensStore.containsKey(transformedResourceOwnerId)) {
-      final Lock lock = createRefreshOAuthContextLock(name, lockProvider, resourceOwnerId);
-      lock.lock();
+  /**
+   * Same as {@link #getContextForResourceOwner(String, Deadline)}, but not blocking the caller for the lock to create the
+   * context if there's none.
+   *
+   * @return the context, or a future that fails with a {@link TokenDeadlineExceededException} if the lock could not be acquired
+   *         in time.
+   */
+  protected CompletableFuture<ResourceOwnerOAuthContext> getContextForResourceOwnerAsync(String resourceOwnerId,
+                                                                                         Deadline deadline) {
+    final ResourceOwnerKey key = newResourceOwnerKey(resourceOwnerId != null ? resourceOwnerId : DEFAULT_RESOURCE_OWNER_ID);
+    if (tokensStore.containsKey(key.getTransformedId())) {
+      return completedFuture(readContext(key));
+    }
+
+    final long startNanos = nanoTime();
+    return lockAcquirer.withLock(storeLock(key), deadline.bound(lockTimeoutMillis), () -> {
+      OAuthEvents.storeLockAcquired(name, key.getResourceOwnerId(), CREATE_CONTEXT, startNanos);
+      final long acquiredNanos = nanoTime();
       try {
-        if (!tokensStore.containsKey(transformedResourceOwnerId)) {
-          resourceOwnerOAuthContext = new ResourceOwnerOAuthContextWithRefreshState(resourceOwnerId);
-          tokensStore.put(transformedResourceOwnerId, resourceOwnerOAuthContext);
-        }
+        return completedFuture(createContext(key));
       } finally {
-        lock.unlock();
+        recordContextLockHold(key.getResourceOwnerId(), acquiredNanos);
       }
-    }
-    if (resourceOwnerOAuthContext == null) {
-      resourceOwnerOAuthContext = tokensStore.get(transformedResourceOwnerId);
-      if (resourceOwnerOAuthContext instanceof DefaultResourceOwnerOAuthContext) {
-        resourceOwnerOAuthContext = new ResourceOwnerOAuthContextWithRefreshState(resourceOwnerOAuthContext);
+    }, () -> {
+      OAuthEvents.storeLockTimedOut(name, key.getResourceOwnerId(), CREATE_CONTEXT, startNanos);
+      try {
+        onContextLockTimeout(CREATE_CONTEXT, key.getResourceOwnerId(), deadline);
+        // There is no stale context to serve, so a new one is used without storing it until the lock can be acquired
+        return completedFuture(newContext(key));
+      } catch (MuleRuntimeException e) {
+        return failed(e);
       }
+    });
+  }
+
+  /**
+   * Stores a new context for {@code key} unless another thread or node did it first. Must be called holding its lock.
+   *
+   * @return the context in the store for {@code key}.
+   */
+  private ResourceOwnerOAuthContext createContext(ResourceOwnerKey key) {
+    if (tokensStore.containsKey(key.getTransformedId())) {
+      return readContext(key);
     }
-    return resourceOwnerOAuthContext;
+    final ResourceOwnerOAuthContext created = newContext(key);
+    storeContext(key.getTransformedId(), created);
+    return created;
+  }
+
+  /**
+   * Puts {@code context} in the tokens store. Must be called holding its lock.
+   */
+  private void storeContext(String storeKey, ResourceOwnerOAuthContext context) {
+    tokensStore.put(storeKey, context);
+    if (tokenSnapshotDir != null) {
+      writtenStoreKeys.add(storeKey);
+    }
+  }
+
+  private ResourceOwnerOAuthContext newContext(ResourceOwnerKey key) {
+    final ResourceOwnerOAuthContext context = new ResourceOwnerOAuthContextWithRefreshState(key.getResourceOwnerId());
+    contextKeys.put(context, key);
+    return context;
+  }
+
+  private ResourceOwnerOAuthContext readContext(ResourceOwnerKey key) {
+    ResourceOwnerOAuthContext context = tokensStore.get(key.getTransformedId());
+    if (context instanceof DefaultResourceOwnerOAuthContext) {
+      context = new ResourceOwnerOAuthContextWithRefreshState(context);
+    }
+    if (context != null) {
+      contextKeys.put(context, key);
+    }
+    return context;
+  }
+
+  /**
+   * @return the key {@code resourceOwnerOAuthContext} was read with, or a new one for its resource owner if it was not read from
+   *         this dancer.
+   */
+  protected ResourceOwnerKey resourceOwnerKey(ResourceOwnerOAuthContext resourceOwnerOAuthContext) {
+    return contextKeys.get(resourceOwnerOAuthContext, ctx -> newResourceOwnerKey(ctx.getResourceOwnerId()));
+  }
+
+  private ResourceOwnerKey newResourceOwnerKey(String resourceOwnerId) {
+    return new ResourceOwnerKey(resourceOwnerId, resourceOwnerIdTransformer.apply(resourceOwnerId),
+                                refreshOAuthContextLockName(name, resourceOwnerId));
+  }
+
+  /**
+   * @return the name of the lock of the context of {@code resourceOwnerId} in dancer {@code name}, the same as the one
+   *         {@link ResourceOwnerOAuthContextWithRefreshState#createRefreshOAuthContextLock(String, LockFactory, String)} creates.
+   */
+  static String refreshOAuthContextLockName(String name, String resourceOwnerId) {
+    return name + "-config-oauth-context-" + resourceOwnerId;
   }
 
   /**
@@ -514,14 +1596,181 @@ public abstract class AbstractOAuthDancer implements Startable, Stoppable {
    * @param resourceOwnerOAuthContext
    */
   protected void updateResourceOwnerOAuthContext(ResourceOwnerOAuthContext resourceOwnerOAuthContext) {
-    final Lock resourceOwnerContextLock = resourceOwnerOAuthContext.getRefreshOAuthContextLock(name, getLockProvider());
-    resourceOwnerContextLock.lock();
+    updateResourceOwnerOAuthContext(resourceOwnerOAuthContext, Deadline.NONE);
+  }
+
+  /**
+   * Same as {@link #updateResourceOwnerOAuthContext(ResourceOwnerOAuthContext)}, but not waiting for the lock of the context
+   * beyond {@code deadline}. If the caller gives up, nothing is stored.
+   *
+   * @throws TokenDeadlineExceededException if the lock could not be acquired in time.
+   */
+  protected void updateResourceOwnerOAuthContext(ResourceOwnerOAuthContext resourceOwnerOAuthContext, Deadline deadline) {
+    final long startNanos = nanoTime();
+    final ResourceOwnerKey key = resourceOwnerKey(resourceOwnerOAuthContext);
+    final Lock lock = storeLock(key);
+    if (!runWithContextLock(lock, resourceOwnerOAuthContext.getResourceOwnerId(), UPDATE_CONTEXT, deadline, () -> {
+      // Supersedes a write of the same resource owner still being retried
+      pendingStoreWrites.remove(key.getTransformedId());
+      storeContext(key.getTransformedId(), resourceOwnerOAuthContext);
+    })) {
+      onContextLockTimeout(UPDATE_CONTEXT, resourceOwnerOAuthContext.getResourceOwnerId(), deadline);
+      // The new state may already have been handed out, so the write is retried rather than dropped
+      if (pendingStoreWrites.put(key.getTransformedId(), resourceOwnerOAuthContext) == null) {
+        scheduleStoreWriteRetry(key);
+      }
+      return;
+    }
+    OAuthEvents.tokensStoreWrite(name, resourceOwnerOAuthContext.getResourceOwnerId(),
+                                 valueOf(resourceOwnerOAuthContext.getDancerState()), startNanos);
+  }
+
+  private void scheduleStoreWriteRetry(ResourceOwnerKey key) {
+    try {
+      schedulePollTask(() -> {
+        final ResourceOwnerOAuthContext pending = pendingStoreWrites.get(key.getTransformedId());
+        if (pending != null && !tryStoreWrite(key, pending)) {
+          scheduleStoreWriteRetry(key);
+        }
+      }, POLL_INTERVAL_MILLIS);
+    } catch (RuntimeException e) {
+      // The dancer is being stopped, which makes a last attempt to do the pending writes
+      LOGGER.debug("Could not schedule the retry of the write of '{}' in dancer '{}'", key.getResourceOwnerId(), name, e);
+    }
+  }
+
+  /**
+   * Writes {@code pending} to the tokens store if it is still the {@link #pendingStoreWrites pending write} of its resource
+   * owner, without waiting for its lock so as not to hold a thread of the scheduler.
+   *
+   * @return whether the lock was acquired, so that there is nothing left to retry.
+   */
+  private boolean tryStoreWrite(ResourceOwnerKey key, ResourceOwnerOAuthContext pending) {
+    final Lock lock = storeLock(key);
+    if (!lock.tryLock()) {
+      return false;
+    }
     try {
-      tokensStore.put(resourceOwnerIdTransformer.apply(resourceOwnerOAuthContext.getResourceOwnerId()),
-                      resourceOwnerOAuthContext);
+      if (pendingStoreWrites.remove(key.getTransformedId(), pending)) {
+        storeContext(key.getTransformedId(), pending);
+        LOGGER.debug("Stored the context of '{}' in dancer '{}' after its lock timed out", key.getResourceOwnerId(), name);
+      }
     } finally {
-      resourceOwnerContextLock.unlock();
+      lock.unlock();
+    }
+    return true;
+  }
+
+  private static LockTimeoutFallback lockTimeoutFallback() {
+    final String fallback = getProperty(LOCK_TIMEOUT_FALLBACK_PROPERTY, FAIL.name()).trim().toUpperCase();
+    try {
+      return LockTimeoutFallback.valueOf(fallback);
+    } catch (IllegalArgumentException e) {
+      LOGGER.warn("Invalid value '{}' for system property '{}'. Using {} instead.", fallback, LOCK_TIMEOUT_FALLBACK_PROPERTY,
+                  FAIL);
+      return FAIL;
+    }
+  }
+
+  private static StripedLocks localLockStripes() {
+    final int stripes = getInteger(LOCAL_LOCK_STRIPES_PROPERTY, 0);
+    return stripes > 0 ? new StripedLocks(stripes) : null;
+  }
+
+  /**
+   * @return the lock that coordinates the refreshes of the token of the resource owner with {@code key}, either a handle from the
+   *         {@link LockFactory} or an in-memory one, reused for as long as it is cached.
+   */
+  private Lock refreshLock(ResourceOwnerKey key) {
+    if (stripedLocks != null) {
+      // Not striped: a caller that doesn't get the lock waits for the refresh of its holder, which may be for another owner
+      return lockHandles.get(key.getLockName(), lockName -> new ReentrantLock());
     }
+    return lockHandles.get(key.getLockName(), lockProvider::createLock);
+  }
+
+  /**
+   * @return the lock that guards the writes of the context of the resource owner with {@code key} to the tokens store, either a
+   *         striped in-memory one or the same as its {@link #refreshLock(ResourceOwnerKey) refresh lock}.
+   */
+  private Lock storeLock(ResourceOwnerKey key) {
+    if (stripedLocks != null) {
+      return stripedLocks.forHash(key.hashCode());
+    }
+    return refreshLock(key);
+  }
+
+  /**
+   * Runs {@code action} holding {@code lock}, waiting for it at most {@link #LOCK_TIMEOUT_PROPERTY} or until {@code deadline},
+   * whichever comes first, and recording the time spent waiting for it and holding it.
+   *
+   * @param operation what {@code action} does to the store, for the recorded events and the lock timeout fallback.
+   * @return whether {@code lock} was acquired and {@code action} run.
+   */
+  private boolean runWithContextLock(Lock lock, String resourceOwnerId, String operation, Deadline deadline,
+                                     Runnable action) {
+    final long startNanos = nanoTime();
+    final long timeoutMillis = deadline.bound(lockTimeoutMillis);
+    if (timeoutMillis < 0) {
+      lock.lock();
+    } else {
+      try {
+        if (!lock.tryLock(timeoutMillis, MILLISECONDS)) {
+          OAuthEvents.storeLockTimedOut(name, resourceOwnerId, operation, startNanos);
+          return false;
+        }
+      } catch (InterruptedException e) {
+        currentThread().interrupt();
+        OAuthEvents.storeLockTimedOut(name, resourceOwnerId, operation, startNanos);
+        return false;
+      }
+    }
+    OAuthEvents.storeLockAcquired(name, resourceOwnerId, operation, startNanos);
+
+    final long acquiredNanos = nanoTime();
+    try {
+      action.run();
+    } finally {
+      releaseContextLock(lock, resourceOwnerId, acquiredNanos);
+    }
+    return true;
+  }
+
+  private void releaseContextLock(Lock lock, String resourceOwnerId, long acquiredNanos) {
+    lock.unlock();
+    recordContextLockHold(resourceOwnerId, acquiredNanos);
+  }
+
+  private void recordContextLockHold(String resourceOwnerId, long acquiredNanos) {
+    contextLockStats.released(nanoTime() - acquiredNanos);
+    OAuthEvents.refreshLockHeld(name, resourceOwnerId, acquiredNanos);
+  }
+
+  /**
+   * Applies the {@link LockTimeoutFallback} when the lock for the context of {@code resourceOwnerId} is not acquired in time.
+   *
+   * @throws TokenDeadlineExceededException if it was {@code deadline} that was reached, since the fallback is for the lock timeout
+   *         of the dancer and not for a caller that gave up before it.
+   * @throws MuleRuntimeException if the fallback is {@link LockTimeoutFallback#FAIL}.
+   */
+  private void onContextLockTimeout(String operation, String resourceOwnerId, Deadline deadline) {
+    contextLockStats.timedOut();
+    if (deadline.isExpired()) {
+      throw deadlineExceeded(resourceOwnerId);
+    }
+    if (lockTimeoutFallback == FAIL) {
+      throw new MuleRuntimeException(createStaticMessage(format("Timeout acquiring the lock to %s of '%s' in dancer '%s'",
+                                                                operation, resourceOwnerId, name)));
+    }
+    LOGGER.warn("Timeout acquiring the lock to {} of '{}' in dancer '{}'. The token in the store will be used as is.",
+                operation, resourceOwnerId, name);
+  }
+
+  /**
+   * @return how the locks that guard the contexts of the resource owners of this dancer are doing.
+   */
+  public ContextLockStats getContextLockStats() {
+    return contextLockStats;
   }
 
   protected LockFactory getLockProvider() {
@@ -536,19 +1785,48 @@ public abstract class AbstractOAuthDancer implements Startable, Stoppable {
   protected void doRemoveListener(OAuthStateListener listener) {
     checkArgument(listener != null, "Cannot remove a null listener");
     listeners.remove(listener);
+    listenerExecutors.remove(listener);
   }
 
   protected void onEachListener(Consumer<OAuthStateListener> action) {
+    onEachListener(null, action);
+  }
+
+  /**
+   * Invokes {@code action} on each registered listener, recording each invocation as a {@code callback} event.
+   *
+   * @param callback the name of the listener method being invoked
+   * @param action the invocation of the listener
+   */
+  protected void onEachListener(String callback, Consumer<OAuthStateListener> action) {
+    final ExecutorService executor = virtualThreadExecutor;
     listeners.forEach(listener -> {
+      if (executor == null) {
+        invokeListener(callback, action, listener);
+        return;
+      }
+      // Listeners may block, so they are not invoked on the thread that completed the refresh
       try {
-        action.accept(listener);
-      } catch (Exception e) {
-        if (LOGGER.isErrorEnabled()) {
-          LOGGER.error(format("Exception found while invoking %s [%s] on OAuth dancer [%s]",
-                              OAuthState.class.getSimpleName(), this, listener),
-                       e);
-        }
+        listenerExecutors.computeIfAbsent(listener, l -> new SerialExecutor(executor))
+            .execute(() -> invokeListener(callback, action, listener));
+      } catch (RejectedExecutionException e) {
+        // The dancer is being stopped
+        invokeListener(callback, action, listener);
       }
     });
   }
+
+  private void invokeListener(String callback, Consumer<OAuthStateListener> action, OAuthStateListener listener) {
+    final long startNanos = nanoTime();
+    try {
+      action.accept(listener);
+      OAuthEvents.listenerCallback(name, callback, listener, startNanos);
+    } catch (Exception e) {
+      if (LOGGER.isErrorEnabled()) {
+        LOGGER.error(format("Exception found while invoking %s [%s] on OAuth dancer [%s]",
+                            OAuthState.class.getSimpleName(), this, listener),
+                     e);
+      }
+    }
+  }
 }
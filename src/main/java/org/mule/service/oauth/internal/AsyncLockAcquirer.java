@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.internal;
+
+import static java.lang.Long.MAX_VALUE;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.System.nanoTime;
+import static java.lang.Thread.currentThread;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
+
+/**
+ * Runs critical sections guarded by a {@link Lock} without blocking the caller while the lock is held elsewhere.
+ * <p>
+ * The lock is never tried on the calling thread, since even trying a distributed lock may take a network round trip. It is
+ * tried on a {@link RetryScheduler} right away and, if it is not available, tried again later, backing off up to
+ * {@link #MAX_RETRY_DELAY_MILLIS} between attempts. If it has a blocking executor, such as one that runs each task on a virtual
+ * thread, the lock is instead waited for on a thread of that executor, which gets it as soon as it is released. The locks from a
+ * {@code LockFactory} are owned by the thread that acquired them, so the critical section is run and the lock released on
+ * whichever thread managed to acquire it.
+ *
+ * @since 2.0
+ */
+public final class AsyncLockAcquirer {
+
+  static final long INITIAL_RETRY_DELAY_MILLIS = 5;
+  static final long MAX_RETRY_DELAY_MILLIS = 100;
+
+  /**
+   * Schedules the next attempt to acquire a lock.
+   */
+  @FunctionalInterface
+  public interface RetryScheduler {
+
+    /**
+     * @param task the attempt to run.
+     * @param delayMillis how long to wait before running {@code task}.
+     */
+    void schedule(Runnable task, long delayMillis);
+  }
+
+  private final RetryScheduler retryScheduler;
+  private final Executor blockingExecutor;
+
+  public AsyncLockAcquirer(RetryScheduler retryScheduler) {
+    this(retryScheduler, null);
+  }
+
+  /**
+   * @param retryScheduler schedules the attempts to acquire the locks.
+   * @param blockingExecutor where to wait for the locks that are not available right away instead of retrying them, or
+   *        {@code null} to retry them. Its threads are blocked for as long as the waits last, so it is meant for virtual threads.
+   */
+  public AsyncLockAcquirer(RetryScheduler retryScheduler, Executor blockingExecutor) {
+    this.retryScheduler = retryScheduler;
+    this.blockingExecutor = blockingExecutor;
+  }
+
+  /**
+   * Runs {@code criticalSection} once {@code lock} is acquired, releasing it as soon as {@code criticalSection} returns, not when
+   * the future it returns completes.
+   * <p>
+   * This returns immediately and anything thrown by {@code criticalSection} completes the returned future. Cancelling the returned
+   * future stops trying to acquire the lock, or cancels the future of {@code criticalSection} if it was already run.
+   *
+   * @param lock the lock guarding {@code criticalSection}.
+   * @param criticalSection the work to do while holding {@code lock}.
+   * @return the future returned by {@code criticalSection}.
+   */
+  public <T> CompletableFuture<T> withLock(Lock lock, Supplier<CompletableFuture<T>> criticalSection) {
+    return withLock(lock, -1, criticalSection, null);
+  }
+
+  /**
+   * Same as {@link #withLock(Lock, Supplier)}, but giving up on the lock after {@code timeoutMillis}.
+   *
+   * @param lock the lock guarding {@code criticalSection}.
+   * @param timeoutMillis how long to try to acquire {@code lock}, or a negative number to try until it is acquired.
+   * @param criticalSection the work to do while holding {@code lock}.
+   * @param onTimeout what to do instead of {@code criticalSection} if {@code lock} is not acquired in time.
+   * @return the future returned by either {@code criticalSection} or {@code onTimeout}.
+   */
+  public <T> CompletableFuture<T> withLock(Lock lock, long timeoutMillis, Supplier<CompletableFuture<T>> criticalSection,
+                                           Supplier<CompletableFuture<T>> onTimeout) {
+    if (blockingExecutor != null) {
+      return waitFor(lock, timeoutMillis, criticalSection, onTimeout);
+    }
+
+    final long deadlineNanos = timeoutMillis < 0 ? MAX_VALUE : nanoTime() + MILLISECONDS.toNanos(timeoutMillis);
+    final CompletableFuture<T> result = new CompletableFuture<>();
+    retry(lock, deadlineNanos, criticalSection, onTimeout, result, 0);
+    return result;
+  }
+
+  private <T> void retry(Lock lock, long deadlineNanos, Supplier<CompletableFuture<T>> criticalSection,
+                         Supplier<CompletableFuture<T>> onTimeout, CompletableFuture<T> result, long delayMillis) {
+    try {
+      retryScheduler.schedule(() -> {
+        if (result.isDone()) {
+          // Cancelled by the caller, so the lock is no longer needed
+          return;
+        }
+        try {
+          if (lock.tryLock()) {
+            complete(runLocked(lock, criticalSection), result);
+          } else if (deadlineNanos != MAX_VALUE && nanoTime() - deadlineNanos >= 0) {
+            complete(onTimeout.get(), result);
+          } else {
+            retry(lock, deadlineNanos, criticalSection, onTimeout, result,
+                  max(INITIAL_RETRY_DELAY_MILLIS, min(delayMillis * 2, MAX_RETRY_DELAY_MILLIS)));
+          }
+        } catch (Throwable t) {
+          result.completeExceptionally(t);
+        }
+      }, delayMillis);
+    } catch (RuntimeException e) {
+      // The scheduler is no longer accepting tasks, for instance because the dancer was stopped
+      result.completeExceptionally(e);
+    }
+  }
+
+  private <T> CompletableFuture<T> waitFor(Lock lock, long timeoutMillis, Supplier<CompletableFuture<T>> criticalSection,
+                                           Supplier<CompletableFuture<T>> onTimeout) {
+    final CompletableFuture<T> result = new CompletableFuture<>();
+    try {
+      blockingExecutor.execute(() -> {
+        if (result.isDone()) {
+          // Cancelled by the caller, so the lock is no longer needed
+          return;
+        }
+        try {
+          if (timeoutMillis < 0) {
+            lock.lockInterruptibly();
+          } else if (!lock.tryLock(timeoutMillis, MILLISECONDS)) {
+            complete(onTimeout.get(), result);
+            return;
+          }
+          if (result.isDone()) {
+            // Cancelled while waiting
+            lock.unlock();
+          } else {
+            complete(runLocked(lock, criticalSection), result);
+          }
+        } catch (InterruptedException e) {
+          // The executor is being shut down
+          currentThread().interrupt();
+          result.completeExceptionally(e);
+        } catch (Throwable t) {
+          result.completeExceptionally(t);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      // The executor is no longer accepting tasks, for instance because the dancer was stopped
+      result.completeExceptionally(e);
+    }
+    return result;
+  }
+
+  private static <T> void complete(CompletableFuture<T> future, CompletableFuture<T> result) {
+    result.whenComplete((value, t) -> {
+      if (result.isCancelled()) {
+        future.cancel(false);
+      }
+    });
+    future.whenComplete((value, t) -> {
+      if (t != null) {
+        result.completeExceptionally(t);
+      } else {
+        result.complete(value);
+      }
+    });
+  }
+
+  private static <T> CompletableFuture<T> runLocked(Lock lock, Supplier<CompletableFuture<T>> criticalSection) {
+    try {
+      return criticalSection.get();
+    } finally {
+      lock.unlock();
+    }
+  }
+}
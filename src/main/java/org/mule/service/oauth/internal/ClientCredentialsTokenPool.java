@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.internal;
+
+import static java.lang.System.currentTimeMillis;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.apache.commons.codec.binary.Base64.encodeBase64String;
+import static org.mule.runtime.api.i18n.I18nMessageFactory.createStaticMessage;
+
+import org.mule.runtime.api.exception.MuleRuntimeException;
+import org.mule.runtime.oauth.api.builder.ClientCredentialsLocation;
+import org.mule.service.oauth.internal.state.TokenExpiry;
+import org.mule.service.oauth.internal.state.TokenResponse;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Tokens shared among the client-credentials dancers of a {@link DefaultOAuthService} that have the same configuration, so that
+ * the token url is hit once for all of them instead of once per dancer.
+ * <p>
+ * The dancers still keep the token in their own store and notify their own listeners, but the requests to the token url are
+ * done through a {@link SharedToken}, which hands out the token that another dancer already got when it is newer than the one the
+ * requesting dancer has. Like the http clients of the service, shared tokens are reference counted: the first dancer to start
+ * creates it and the last one to stop discards it.
+ *
+ * @since 2.0
+ */
+public final class ClientCredentialsTokenPool {
+
+  private final Map<List<Object>, SharedToken> tokens = new HashMap<>();
+  private final Map<List<Object>, Integer> references = new HashMap<>();
+
+  /**
+   * Builds the key for the token of a dancer, which only matches the keys of dancers that would get an equivalent token.
+   *
+   * @return the key to {@link #acquire(List) acquire} the shared token with.
+   */
+  public static List<Object> key(String tokenUrl, String clientId, String clientSecret, String scopes,
+                                 ClientCredentialsLocation clientCredentialsLocation, Object customParameters,
+                                 Object customHeaders, String responseAccessTokenExpr, String responseExpiresInExpr,
+                                 Object customParametersExtractorsExprs) {
+    return asList(tokenUrl, clientId, hash(clientSecret), scopes, clientCredentialsLocation, customParameters, customHeaders,
+                  responseAccessTokenExpr, responseExpiresInExpr, customParametersExtractorsExprs);
+  }
+
+  private static String hash(String secret) {
+    try {
+      // Not to keep the secret itself in a structure shared by the deployed apps
+      return encodeBase64String(MessageDigest.getInstance("SHA-256").digest(secret.getBytes(UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new MuleRuntimeException(createStaticMessage("SHA-256 not available"), e);
+    }
+  }
+
+  /**
+   * @return the token shared by the dancers with {@code key}, created if this is the first one.
+   */
+  public synchronized SharedToken acquire(List<Object> key) {
+    references.merge(key, 1, Integer::sum);
+    return tokens.computeIfAbsent(key, k -> new SharedToken());
+  }
+
+  /**
+   * Releases a token {@link #acquire(List) acquired} by a dancer, discarding it if no other dancer uses it.
+   */
+  public synchronized void release(List<Object> key) {
+    if (references.merge(key, -1, Integer::sum) <= 0) {
+      references.remove(key);
+      tokens.remove(key);
+    }
+  }
+
+  /**
+   * A token obtained by a single refresh cycle for all its users, either the dancers with the same configuration or the callers
+   * of a dancer asking for the same scopes.
+   */
+  public static final class SharedToken {
+
+    private TokenResponse current;
+    private TokenExpiry currentExpiry = TokenExpiry.UNKNOWN;
+    private SharedFuture<TokenResponse> inFlight;
+
+    SharedToken() {}
+
+    /**
+     * Gets a token to replace {@code staleAccessToken}.
+     *
+     * @param staleAccessToken the token the calling dancer has, {@code null} if it has none.
+     * @param tokenRequester does the actual request to the token url.
+     * @param expiryResolver gives the expiry of a token got by {@code tokenRequester}, resolved by the calling dancer the same way
+     *        as for the tokens it doesn't share.
+     * @return the token another dancer already got if it is not the stale one and has not expired, the token being requested
+     *         for another dancer, or else the token from a new request. A request is cancelled only when the futures of all the
+     *         callers waiting for it are.
+     */
+    public synchronized CompletableFuture<TokenResponse> refresh(String staleAccessToken,
+                                                                 Supplier<CompletableFuture<TokenResponse>> tokenRequester,
+                                                                 Function<String, TokenExpiry> expiryResolver) {
+      if (inFlight != null) {
+        return inFlight.join();
+      }
+      if (current != null && !current.getAccessToken().equals(staleAccessToken)
+          && !currentExpiry.isExpired(currentTimeMillis())) {
+        return completedFuture(current);
+      }
+
+      final CompletableFuture<TokenResponse> request = tokenRequester.get();
+      final SharedFuture<TokenResponse> shared = new SharedFuture<>(request);
+      inFlight = shared;
+      request.whenComplete((tokenResponse, t) -> {
+        synchronized (this) {
+          if (t == null) {
+            current = tokenResponse;
+            currentExpiry = expiryResolver.apply(tokenResponse.getAccessToken());
+          }
+          if (inFlight == shared) {
+            inFlight = null;
+          }
+        }
+      });
+      return shared.join();
+    }
+
+    /**
+     * @return the expiry of {@code accessToken} if it is the current shared token, {@link TokenExpiry#UNKNOWN} otherwise.
+     */
+    public synchronized TokenExpiry getExpiry(String accessToken) {
+      return current != null && current.getAccessToken().equals(accessToken) ? currentExpiry : TokenExpiry.UNKNOWN;
+    }
+  }
+}
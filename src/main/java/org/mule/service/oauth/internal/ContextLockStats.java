@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.internal;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * How the locks that guard the contexts of the resource owners of a dancer are doing: how many times they were acquired, how
+ * many times the wait for them timed out and how long they were held.
+ *
+ * @since 2.0
+ */
+public final class ContextLockStats {
+
+  private final LongAdder acquisitions = new LongAdder();
+  private final LongAdder timeouts = new LongAdder();
+  private final LongAdder totalHoldNanos = new LongAdder();
+  private final AtomicLong maxHoldNanos = new AtomicLong();
+
+  void released(long holdNanos) {
+    acquisitions.increment();
+    totalHoldNanos.add(holdNanos);
+    maxHoldNanos.accumulateAndGet(holdNanos, Math::max);
+  }
+
+  void timedOut() {
+    timeouts.increment();
+  }
+
+  public long getAcquisitions() {
+    return acquisitions.sum();
+  }
+
+  public long getTimeouts() {
+    return timeouts.sum();
+  }
+
+  /**
+   * @return the time the locks were held, added up for all the acquisitions.
+   */
+  public long getTotalHoldNanos() {
+    return totalHoldNanos.sum();
+  }
+
+  /**
+   * @return the longest time a lock was held.
+   */
+  public long getMaxHoldNanos() {
+    return maxHoldNanos.get();
+  }
+
+  @Override
+  public String toString() {
+    return "ContextLockStats[acquisitions: " + getAcquisitions() + ", timeouts: " + getTimeouts() + ", totalHold: "
+        + NANOSECONDS.toMillis(getTotalHoldNanos()) + "ms, maxHold: " + NANOSECONDS.toMillis(getMaxHoldNanos()) + "ms]";
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.internal;
+
+import static java.lang.Long.MAX_VALUE;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.mule.runtime.api.util.Preconditions.checkArgument;
+
+import java.time.Duration;
+
+/**
+ * The instant by which the caller of a dancer needs its token, so that the waits done to get it (for the lock of the context,
+ * for a refresh being done elsewhere or for the response of the token url) are not longer than what the caller is willing to
+ * wait.
+ * <p>
+ * It is measured with {@link System#nanoTime()}, so it is not affected by changes to the clock of the system.
+ *
+ * @since 2.0
+ */
+public final class Deadline {
+
+  /**
+   * The deadline of the callers that don't have one. The waits are only bounded by the timeouts of the dancer.
+   */
+  public static final Deadline NONE = new Deadline(MAX_VALUE);
+
+  // Beyond this, a deadline cannot be told apart from no deadline at all
+  private static final Duration MAX_TIMEOUT = Duration.ofNanos(MAX_VALUE / 2);
+
+  private final long deadlineNanos;
+
+  private Deadline(long deadlineNanos) {
+    this.deadlineNanos = deadlineNanos;
+  }
+
+  /**
+   * @param timeout how long the caller is willing to wait from now.
+   * @return the deadline {@code timeout} from now.
+   */
+  public static Deadline after(Duration timeout) {
+    checkArgument(timeout != null, "timeout cannot be null");
+    if (timeout.compareTo(MAX_TIMEOUT) > 0) {
+      return NONE;
+    }
+    return new Deadline(nanoTime() + max(0, timeout.toNanos()));
+  }
+
+  /**
+   * @return whether this is an actual deadline, as opposed to {@link #NONE}.
+   */
+  public boolean isBounded() {
+    return this != NONE;
+  }
+
+  /**
+   * @return the whole millis left until this deadline, {@code 0} if it has passed or {@link Long#MAX_VALUE} if it is
+   *         {@link #NONE}.
+   */
+  public long remainingMillis() {
+    if (!isBounded()) {
+      return MAX_VALUE;
+    }
+    return max(0, NANOSECONDS.toMillis(deadlineNanos - nanoTime()));
+  }
+
+  /**
+   * @return whether there is not even a milli left until this deadline.
+   */
+  public boolean isExpired() {
+    return isBounded() && remainingMillis() == 0;
+  }
+
+  /**
+   * @param timeoutMillis a timeout of the dancer, or a negative number if it is unbounded.
+   * @return the shortest of {@code timeoutMillis} and the time left until this deadline, or a negative number if both are
+   *         unbounded.
+   */
+  public long bound(long timeoutMillis) {
+    if (!isBounded()) {
+      return timeoutMillis;
+    }
+    return timeoutMillis < 0 ? remainingMillis() : min(timeoutMillis, remainingMillis());
+  }
+
+  @Override
+  public String toString() {
+    return isBounded() ? "Deadline[remaining: " + remainingMillis() + "ms]" : "Deadline[none]";
+  }
+}
@@ -8,6 +8,7 @@ package org.mule.service.oauth.internal;
 
 import static java.lang.String.format;
 import static java.lang.String.valueOf;
+import static java.lang.System.nanoTime;
 import static java.lang.Thread.currentThread;
 import static java.util.Collections.emptyMap;
 import static java.util.Collections.singleton;
@@ -33,6 +34,8 @@ import static org.mule.runtime.oauth.api.OAuthAuthorizationStatusCode.NO_AUTHORI
 import static org.mule.runtime.oauth.api.OAuthAuthorizationStatusCode.TOKEN_NOT_FOUND_STATUS;
 import static org.mule.runtime.oauth.api.OAuthAuthorizationStatusCode.TOKEN_URL_CALL_FAILED_STATUS;
 import static org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContext.DEFAULT_RESOURCE_OWNER_ID;
+import static org.mule.service.oauth.internal.ExpressionBindings.DATA_TYPE_BINDING;
+import static org.mule.service.oauth.internal.ExpressionBindings.PAYLOAD_BINDING;
 import static org.mule.service.oauth.internal.OAuthConstants.CODE_PARAMETER;
 import static org.mule.service.oauth.internal.OAuthConstants.GRANT_TYPE_AUTHENTICATION_CODE;
 import static org.mule.service.oauth.internal.OAuthConstants.GRANT_TYPE_PARAMETER;
@@ -80,13 +83,17 @@ import org.mule.runtime.oauth.api.exception.TokenUrlResponseException;
 import org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContext;
 import org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContextWithRefreshState;
 import org.mule.service.oauth.internal.authorizationcode.AuthorizationRequestUrlBuilder;
+import org.mule.service.oauth.internal.authorizationcode.AuthorizationRequestUrlTemplate;
 import org.mule.service.oauth.internal.authorizationcode.DefaultAuthorizationCodeRequest;
+import org.mule.service.oauth.internal.cluster.RefreshOwnership;
+import org.mule.service.oauth.internal.jfr.OAuthEvents;
 import org.mule.service.oauth.internal.state.StateDecoder;
 import org.mule.service.oauth.internal.state.StateEncoder;
 import org.mule.service.oauth.internal.state.TokenResponse;
 
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -120,7 +127,10 @@ public class DefaultAuthorizationCodeOAuthDancer extends AbstractOAuthDancer imp
   private final String state;
   private final String authorizationUrl;
   private final Supplier<Map<String, String>> customParameters;
+  private final boolean staticCustomParameters;
   private final Supplier<Map<String, String>> customHeaders;
+  private final AuthorizationRequestUrlTemplate authorizationRequestUrlTemplate;
+  private final boolean localAuthorizationRequestUsesBody;
 
   private final Function<AuthorizationCodeRequest, AuthorizationCodeDanceCallbackContext> beforeDanceCallback;
   private final BiConsumer<AuthorizationCodeDanceCallbackContext, ResourceOwnerOAuthContext> afterDanceCallback;
@@ -145,10 +155,36 @@ public class DefaultAuthorizationCodeOAuthDancer extends AbstractOAuthDancer imp
                                              Function<AuthorizationCodeRequest, AuthorizationCodeDanceCallbackContext> beforeDanceCallback,
                                              BiConsumer<AuthorizationCodeDanceCallbackContext, ResourceOwnerOAuthContext> afterDanceCallback,
                                              List<AuthorizationCodeListener> listeners) {
+    this(httpServer, name, clientId, clientSecret, tokenUrl, scopes, clientCredentialsLocation, externalCallbackUrl, encoding,
+         localCallbackUrlPath, localAuthorizationUrlPath, localAuthorizationUrlResourceOwnerId, state, authorizationUrl,
+         responseAccessTokenExpr, responseRefreshTokenExpr, responseExpiresInExpr, customParameters, false, customHeaders,
+         customParametersExtractorsExprs, resourceOwnerIdTransformer, schedulerService, null, null, lockProvider, tokensStore,
+         httpClient, expressionEvaluator, beforeDanceCallback, afterDanceCallback, listeners);
+  }
+
+  public DefaultAuthorizationCodeOAuthDancer(Optional<HttpServer> httpServer, String name, String clientId, String clientSecret,
+                                             String tokenUrl, String scopes, ClientCredentialsLocation clientCredentialsLocation,
+                                             String externalCallbackUrl, Charset encoding,
+                                             String localCallbackUrlPath, String localAuthorizationUrlPath,
+                                             String localAuthorizationUrlResourceOwnerId, String state, String authorizationUrl,
+                                             String responseAccessTokenExpr, String responseRefreshTokenExpr,
+                                             String responseExpiresInExpr,
+                                             Supplier<Map<String, String>> customParameters,
+                                             boolean staticCustomParameters,
+                                             Supplier<Map<String, String>> customHeaders,
+                                             Map<String, String> customParametersExtractorsExprs,
+                                             Function<String, String> resourceOwnerIdTransformer,
+                                             SchedulerService schedulerService, SharedDancerScheduler sharedScheduler,
+                                             RefreshOwnership refreshOwnership, LockFactory lockProvider,
+                                             Map<String, ResourceOwnerOAuthContext> tokensStore,
+                                             HttpClient httpClient, MuleExpressionLanguage expressionEvaluator,
+                                             Function<AuthorizationCodeRequest, AuthorizationCodeDanceCallbackContext> beforeDanceCallback,
+                                             BiConsumer<AuthorizationCodeDanceCallbackContext, ResourceOwnerOAuthContext> afterDanceCallback,
+                                             List<AuthorizationCodeListener> listeners) {
     super(name, clientId, clientSecret, tokenUrl, encoding, scopes, clientCredentialsLocation, responseAccessTokenExpr,
           responseRefreshTokenExpr,
-          responseExpiresInExpr, customParametersExtractorsExprs, resourceOwnerIdTransformer, schedulerService, lockProvider,
-          tokensStore,
+          responseExpiresInExpr, customParametersExtractorsExprs, resourceOwnerIdTransformer, schedulerService,
+          sharedScheduler, refreshOwnership, lockProvider, tokensStore,
           httpClient, expressionEvaluator, listeners);
 
     this.httpServer = httpServer;
@@ -159,7 +195,21 @@ public class DefaultAuthorizationCodeOAuthDancer extends AbstractOAuthDancer imp
     this.state = state;
     this.authorizationUrl = authorizationUrl;
     this.customParameters = customParameters;
+    this.staticCustomParameters = staticCustomParameters;
     this.customHeaders = customHeaders;
+    // Everything but the state and the dynamic custom parameters is encoded once for all the requests
+    this.authorizationRequestUrlTemplate = new AuthorizationRequestUrlBuilder()
+        .setAuthorizationUrl(authorizationUrl)
+        .setClientId(clientId)
+        .setClientSecret(clientSecret)
+        .setCustomParameters(staticCustomParameters ? customParameters.get() : emptyMap())
+        .setRedirectUrl(externalCallbackUrl)
+        .setScope(scopes)
+        .setEncoding(encoding)
+        .buildTemplate();
+    // The local authorization url is usually hit by a browser GET, so its body is only read if an expression needs it
+    this.localAuthorizationRequestUsesBody =
+        ((usedBindings(state) | usedBindings(localAuthorizationUrlResourceOwnerId)) & (PAYLOAD_BINDING | DATA_TYPE_BINDING)) != 0;
 
     this.beforeDanceCallback = beforeDanceCallback;
     this.afterDanceCallback = afterDanceCallback;
@@ -261,10 +311,12 @@ public class DefaultAuthorizationCodeOAuthDancer extends AbstractOAuthDancer imp
           return;
         }
 
+        final long beforeCallbackStartNanos = nanoTime();
         AuthorizationCodeDanceCallbackContext beforeCallbackContext = beforeDanceCallback
             .apply(new DefaultAuthorizationCodeRequest(resourceOwnerId, authorizationUrl, tokenUrl, clientId, clientSecret,
                                                        scopes,
                                                        stateDecoder.decodeOriginalState()));
+        OAuthEvents.listenerCallback(name, "beforeDanceCallback", beforeDanceCallback, beforeCallbackStartNanos);
 
         if (LOGGER.isDebugEnabled()) {
           LOGGER.debug("Redirect url request state: " + state);
@@ -318,10 +370,14 @@ public class DefaultAuthorizationCodeOAuthDancer extends AbstractOAuthDancer imp
                 }
 
                 updateResourceOwnerState(resourceOwnerOAuthContext, stateDecoder.decodeOriginalState(), tokenResponse);
+                setTokenExpiry(resourceOwnerOAuthContext);
                 updateResourceOwnerOAuthContext(resourceOwnerOAuthContext);
+                publishTokenUpdate(resourceOwnerOAuthContext);
 
-                forEachListener(l -> l.onAuthorizationCompleted(resourceOwnerOAuthContext));
+                forEachListener("onAuthorizationCompleted", l -> l.onAuthorizationCompleted(resourceOwnerOAuthContext));
+                final long afterCallbackStartNanos = nanoTime();
                 afterDanceCallback.accept(beforeCallbackContext, resourceOwnerOAuthContext);
+                OAuthEvents.listenerCallback(name, "afterDanceCallback", afterDanceCallback, afterCallbackStartNanos);
 
                 sendResponse(stateDecoder, responseCallback, OK, "Successfully retrieved access token",
                              AUTHORIZATION_CODE_RECEIVED_STATUS);
@@ -416,37 +472,37 @@ public class DefaultAuthorizationCodeOAuthDancer extends AbstractOAuthDancer imp
 
   @Override
   public void handleLocalAuthorizationRequest(HttpRequest request, HttpResponseReadyCallback responseCallback) {
-    final String body = readBody(request);
+    final String body = localAuthorizationRequestUsesBody ? readBody(request) : null;
     final MultiMap<String, String> headers = readHeaders(request);
     final MediaType mediaType = getMediaType(request);
     final MultiMap<String, String> queryParams = request.getQueryParams();
 
     final String originalState = resolveExpression(state, body, headers, queryParams, mediaType);
-    final StateEncoder stateEncoder = new StateEncoder(originalState);
-
     final String resourceOwnerId =
         resolveExpression(localAuthorizationUrlResourceOwnerId, body, headers, queryParams, mediaType);
-    if (resourceOwnerId != null) {
-      stateEncoder.encodeResourceOwnerIdInState(resourceOwnerId);
-    }
-
     final String onCompleteRedirectToValue = queryParams.get("onCompleteRedirectTo");
-    if (onCompleteRedirectToValue != null) {
-      stateEncoder.encodeOnCompleteRedirectToInState(onCompleteRedirectToValue);
+
+    final StateEncoder stateEncoder;
+    try {
+      stateEncoder = new StateEncoder(originalState);
+      if (resourceOwnerId != null) {
+        stateEncoder.encodeResourceOwnerIdInState(resourceOwnerId);
+      }
+      if (onCompleteRedirectToValue != null) {
+        stateEncoder.encodeOnCompleteRedirectToInState(onCompleteRedirectToValue);
+      }
+    } catch (IllegalArgumentException e) {
+      // The state or the resource owner id contain the markers used to encode the state, so it could not be decoded back
+      LOGGER.warn("Could not encode the state of the local authorization request: {}", e.getMessage());
+      sendResponse(responseCallback, BAD_REQUEST, "Invalid state or resource owner id: " + e.getMessage());
+      return;
     }
 
-    final String authorizationUrlWithParams = new AuthorizationRequestUrlBuilder()
-        .setAuthorizationUrl(authorizationUrl)
-        .setClientId(clientId)
-        .setClientSecret(clientSecret)
-        .setCustomParameters(customParameters.get())
-        .setRedirectUrl(externalCallbackUrl)
-        .setState(stateEncoder.getEncodedState())
-        .setScope(scopes)
-        .setEncoding(encoding)
-        .buildUrl();
+    final String authorizationUrlWithParams = staticCustomParameters
+        ? authorizationRequestUrlTemplate.buildUrl(stateEncoder.getEncodedState())
+        : authorizationRequestUrlTemplate.buildUrl(stateEncoder.getEncodedState(), customParameters.get());
 
-    sendResponse(responseCallback, MOVED_TEMPORARILY, body, authorizationUrlWithParams);
+    sendResponse(responseCallback, MOVED_TEMPORARILY, "", authorizationUrlWithParams);
   }
 
   private String readBody(final HttpRequest request) {
@@ -497,7 +553,39 @@ public class DefaultAuthorizationCodeOAuthDancer extends AbstractOAuthDancer imp
 
   @Override
   public CompletableFuture<String> accessToken(String resourceOwner) throws RequestAuthenticationException {
-    final String accessToken = getContextForResourceOwner(resourceOwner).getAccessToken();
+    return accessToken(resourceOwner, Deadline.NONE);
+  }
+
+  /**
+   * Same as {@link #accessToken(String)}, but not waiting beyond {@code deadline} for the lock to create the context of
+   * {@code resourceOwner} if there's none. The stored token is returned as is, without waiting for a refresh.
+   *
+   * @param resourceOwner the resource owner whose token to get.
+   * @param deadline how long the caller is willing to wait for the token.
+   * @return the token, or a future that fails with a {@link TokenDeadlineExceededException} if it could not be got in time.
+   */
+  public CompletableFuture<String> accessToken(String resourceOwner, Duration deadline)
+      throws RequestAuthenticationException {
+    return accessToken(resourceOwner, Deadline.after(deadline));
+  }
+
+  private CompletableFuture<String> accessToken(String resourceOwner, Deadline deadline) throws RequestAuthenticationException {
+    final CompletableFuture<ResourceOwnerOAuthContext> context = getContextForResourceOwnerAsync(resourceOwner, deadline);
+    if (context.isDone() && !context.isCompletedExceptionally()) {
+      return accessToken(context.join());
+    }
+    // The context is being created, or the lock to create it timed out or the deadline was reached waiting for it
+    return thenCompose(context, ctx -> {
+      try {
+        return accessToken(ctx);
+      } catch (RequestAuthenticationException e) {
+        return failed(e);
+      }
+    });
+  }
+
+  private CompletableFuture<String> accessToken(ResourceOwnerOAuthContext context) throws RequestAuthenticationException {
+    final String accessToken = context.getAccessToken();
     if (accessToken == null) {
       throw new RequestAuthenticationException(createStaticMessage(format("No access token found. "
           + "Verify that you have authenticated before trying to execute an operation to the API.")));
@@ -518,12 +606,55 @@ public class DefaultAuthorizationCodeOAuthDancer extends AbstractOAuthDancer imp
       LOGGER.debug("Executing refresh token for user " + resourceOwner);
     }
 
-    return doRefreshToken(() -> getContextForResourceOwner(resourceOwner),
-                          ctx -> doRefreshTokenRequest(useQueryParameters, (ResourceOwnerOAuthContextWithRefreshState) ctx));
+    return doRefreshToken(getContextForResourceOwnerAsync(resourceOwner, Deadline.NONE),
+                          ctx -> doRefreshTokenRequest(useQueryParameters, (ResourceOwnerOAuthContextWithRefreshState) ctx),
+                          Deadline.NONE);
+  }
+
+  /**
+   * Same as {@link #refreshToken(String)}, but not waiting for the new token beyond {@code deadline}.
+   *
+   * @param resourceOwner the resource owner whose token to refresh.
+   * @param deadline how long the caller is willing to wait for the refresh.
+   * @return a future that fails with a {@link TokenDeadlineExceededException} if the token could not be refreshed in time.
+   */
+  public CompletableFuture<Void> refreshToken(String resourceOwner, Duration deadline) {
+    return refreshToken(resourceOwner, false, deadline);
+  }
+
+  /**
+   * Same as {@link #refreshToken(String, boolean)}, but not waiting for the new token beyond {@code deadline}.
+   *
+   * @param resourceOwner the resource owner whose token to refresh.
+   * @param useQueryParameters whether to send the refresh token in the query instead of the body of the request.
+   * @param deadline how long the caller is willing to wait for the refresh.
+   * @return a future that fails with a {@link TokenDeadlineExceededException} if the token could not be refreshed in time.
+   */
+  public CompletableFuture<Void> refreshToken(String resourceOwner, boolean useQueryParameters, Duration deadline) {
+    final Deadline refreshDeadline = Deadline.after(deadline);
+    return doRefreshToken(getContextForResourceOwnerAsync(resourceOwner, refreshDeadline),
+                          ctx -> doRefreshTokenRequest(useQueryParameters, (ResourceOwnerOAuthContextWithRefreshState) ctx,
+                                                       refreshDeadline),
+                          refreshDeadline);
+  }
+
+  @Override
+  protected CompletableFuture<Void> refreshOwnedToken(String resourceOwnerId) {
+    if (getContextForResourceOwner(resourceOwnerId).getRefreshToken() == null) {
+      // Can't be refreshed without the user, so it is left as is until it expires
+      return completedFuture(null);
+    }
+    return refreshToken(resourceOwnerId);
   }
 
   protected CompletableFuture<Void> doRefreshTokenRequest(boolean useQueryParameters,
                                                           final ResourceOwnerOAuthContextWithRefreshState resourceOwnerOAuthContext) {
+    return doRefreshTokenRequest(useQueryParameters, resourceOwnerOAuthContext, Deadline.NONE);
+  }
+
+  private CompletableFuture<Void> doRefreshTokenRequest(boolean useQueryParameters,
+                                                        final ResourceOwnerOAuthContextWithRefreshState resourceOwnerOAuthContext,
+                                                        Deadline deadline) {
     final String userRefreshToken = resourceOwnerOAuthContext.getRefreshToken();
     if (userRefreshToken == null) {
       throw new MuleRuntimeException(createStaticMessage(
@@ -548,7 +679,9 @@ public class DefaultAuthorizationCodeOAuthDancer extends AbstractOAuthDancer imp
       formData = requestParameters;
     }
 
-    return invokeTokenUrl(tokenUrl, formData, queryParams, emptyMultiMap(), authorization, true, encoding)
+    final CompletableFuture<TokenResponse> tokenResponseFuture =
+        invokeTokenUrl(tokenUrl, formData, queryParams, emptyMultiMap(), authorization, true, encoding, deadline);
+    return propagateCancellation(tokenResponseFuture
         .thenAccept(tokenResponse -> {
           withContextClassLoader(DefaultAuthorizationCodeOAuthDancer.class.getClassLoader(), () -> {
             if (LOGGER.isDebugEnabled()) {
@@ -556,10 +689,10 @@ public class DefaultAuthorizationCodeOAuthDancer extends AbstractOAuthDancer imp
             }
             updateResourceOwnerState(resourceOwnerOAuthContext, null, tokenResponse);
             updateOAuthContextAfterTokenResponse(resourceOwnerOAuthContext);
-            forEachListener(l -> l.onTokenRefreshed(resourceOwnerOAuthContext));
+            forEachListener("onTokenRefreshed", l -> l.onTokenRefreshed(resourceOwnerOAuthContext));
           });
         })
-        .exceptionally(tokenUrlExceptionHandler(resourceOwnerOAuthContext));
+        .exceptionally(tokenUrlExceptionHandler(resourceOwnerOAuthContext)), tokenResponseFuture);
   }
 
   private void updateResourceOwnerState(ResourceOwnerOAuthContextWithRefreshState resourceOwnerOAuthContext, String newState,
@@ -592,7 +725,7 @@ public class DefaultAuthorizationCodeOAuthDancer extends AbstractOAuthDancer imp
     }
   }
 
-  private void forEachListener(Consumer<AuthorizationCodeListener> action) {
-    onEachListener(l -> action.accept((AuthorizationCodeListener) l));
+  private void forEachListener(String callback, Consumer<AuthorizationCodeListener> action) {
+    onEachListener(callback, l -> action.accept((AuthorizationCodeListener) l));
   }
 }
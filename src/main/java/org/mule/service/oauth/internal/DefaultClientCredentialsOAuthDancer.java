@@ -6,8 +6,13 @@
  */
 package org.mule.service.oauth.internal;
 
+import static com.github.benmanes.caffeine.cache.Caffeine.newBuilder;
+import static java.lang.Boolean.getBoolean;
+import static java.lang.String.join;
+import static java.lang.System.currentTimeMillis;
 import static java.lang.Thread.currentThread;
 import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.mule.runtime.api.util.Preconditions.checkArgument;
 import static org.mule.runtime.core.api.util.ClassUtils.withContextClassLoader;
 import static org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContext.DEFAULT_RESOURCE_OWNER_ID;
 import static org.mule.service.oauth.internal.OAuthConstants.GRANT_TYPE_CLIENT_CREDENTIALS;
@@ -31,17 +36,30 @@ import org.mule.runtime.oauth.api.exception.TokenNotFoundException;
 import org.mule.runtime.oauth.api.exception.TokenUrlResponseException;
 import org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContext;
 import org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContextWithRefreshState;
+import org.mule.service.oauth.internal.ClientCredentialsTokenPool.SharedToken;
+import org.mule.service.oauth.internal.cluster.RefreshOwnership;
+import org.mule.service.oauth.internal.state.TokenExpiry;
+import org.mule.service.oauth.internal.state.TokenResponse;
+import org.mule.service.oauth.internal.state.TokenUpdate;
 
 import java.nio.charset.Charset;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
+import com.github.benmanes.caffeine.cache.Cache;
+
+import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 
 /**
@@ -53,9 +71,20 @@ public class DefaultClientCredentialsOAuthDancer extends AbstractOAuthDancer imp
 
   private static final Logger LOGGER = getLogger(DefaultClientCredentialsOAuthDancer.class);
 
-  private boolean accessTokenRefreshedOnStart = false;
+  private static final int MAX_SCOPED_TOKENS = 100;
+  // How long a scoped token is used when the token url doesn't tell when it expires
+  private static final long UNKNOWN_EXPIRY_SCOPED_TOKEN_TTL_MILLIS = 300000;
+
+  // The token request done on start, until a call to accessToken finds it completed. null once it is not relevant anymore.
+  private final AtomicReference<CompletableFuture<Void>> initialRefresh = new AtomicReference<>();
+  private final boolean asyncStart;
+  private final boolean refreshExpiredToken = getBoolean(REFRESH_EXPIRED_TOKEN_PROPERTY);
   private final MultiMap<String, String> customParameters;
   private final MultiMap<String, String> customHeaders;
+  private final ClientCredentialsTokenPool tokenPool;
+  private final List<Object> sharedTokenKey;
+  private volatile SharedToken sharedToken;
+  private final Cache<String, SharedToken> scopedTokens = newBuilder().maximumSize(MAX_SCOPED_TOKENS).build();
 
   public DefaultClientCredentialsOAuthDancer(String name, String clientId, String clientSecret, String tokenUrl, String scopes,
                                              ClientCredentialsLocation clientCredentialsLocation, Charset encoding,
@@ -68,77 +97,269 @@ public class DefaultClientCredentialsOAuthDancer extends AbstractOAuthDancer imp
                                              MultiMap<String, String> customParameters,
                                              MultiMap<String, String> customHeaders,
                                              List<ClientCredentialsListener> listeners) {
+    this(name, clientId, clientSecret, tokenUrl, scopes, clientCredentialsLocation, encoding, responseAccessTokenExpr,
+         responseRefreshTokenExpr, responseExpiresInExpr, customParametersExprs, resourceOwnerIdTransformer, schedulerService,
+         null, null, lockProvider, tokensStore, httpClient, expressionEvaluator, customParameters, customHeaders, null, false,
+         listeners);
+  }
+
+  public DefaultClientCredentialsOAuthDancer(String name, String clientId, String clientSecret, String tokenUrl, String scopes,
+                                             ClientCredentialsLocation clientCredentialsLocation, Charset encoding,
+                                             String responseAccessTokenExpr, String responseRefreshTokenExpr,
+                                             String responseExpiresInExpr, Map<String, String> customParametersExprs,
+                                             Function<String, String> resourceOwnerIdTransformer,
+                                             SchedulerService schedulerService, SharedDancerScheduler sharedScheduler,
+                                             RefreshOwnership refreshOwnership, LockFactory lockProvider,
+                                             Map<String, ResourceOwnerOAuthContext> tokensStore, HttpClient httpClient,
+                                             MuleExpressionLanguage expressionEvaluator,
+                                             MultiMap<String, String> customParameters,
+                                             MultiMap<String, String> customHeaders,
+                                             ClientCredentialsTokenPool tokenPool, boolean asyncStart,
+                                             List<ClientCredentialsListener> listeners) {
     super(name, clientId, clientSecret, tokenUrl, encoding, scopes, clientCredentialsLocation, responseAccessTokenExpr,
           responseRefreshTokenExpr, responseExpiresInExpr, customParametersExprs, resourceOwnerIdTransformer, schedulerService,
-          lockProvider, tokensStore, httpClient, expressionEvaluator, listeners);
+          sharedScheduler, refreshOwnership, lockProvider, tokensStore, httpClient, expressionEvaluator, listeners);
 
     this.customParameters = customParameters;
     this.customHeaders = customHeaders;
+    this.tokenPool = tokenPool;
+    this.asyncStart = asyncStart;
+    this.sharedTokenKey = tokenPool != null
+        ? ClientCredentialsTokenPool.key(tokenUrl, clientId, clientSecret, scopes, clientCredentialsLocation, customParameters,
+                                         customHeaders, responseAccessTokenExpr, responseExpiresInExpr, customParametersExprs)
+        : null;
   }
 
   @Override
   public void start() throws MuleException {
     super.start();
+    if (tokenPool != null) {
+      sharedToken = tokenPool.acquire(sharedTokenKey);
+    }
+    if (isStoredTokenUsable(getContext())) {
+      // Another node, or the snapshot of this one, already has a token that is good for a while
+      LOGGER.debug("Using token already in the tokens store for dancer '{}'", name);
+      initialRefresh.set(null);
+      return;
+    }
+
+    // When waiting for the token, a failure other than an unexpected response of the token url makes the start fail
+    final CompletableFuture<Void> refresh = asyncStart ? startRefreshInBackground() : refreshToken();
+    initialRefresh.set(refresh);
+    if (asyncStart) {
+      refresh.whenComplete((v, t) -> {
+        if (t != null) {
+          LOGGER.warn("Could not retrieve the token on start for dancer '" + name + "'. It will be retried when requested.", t);
+        }
+      });
+      return;
+    }
+
     try {
-      refreshToken().get();
-      accessTokenRefreshedOnStart = true;
+      refresh.get();
     } catch (ExecutionException e) {
       if (!(e.getCause() instanceof TokenUrlResponseException) && !(e.getCause() instanceof TokenNotFoundException)) {
+        releaseSharedToken();
         super.stop();
         throw new LifecycleException(e.getCause(), this);
       }
-      // else nothing to do, accessTokenRefreshedOnStart remains false and this is called later
+      // else nothing to do, the failed initialRefresh makes the token be requested again on the first call to accessToken
     } catch (InterruptedException e) {
+      releaseSharedToken();
       super.stop();
       currentThread().interrupt();
       throw new LifecycleException(e, this);
     }
   }
 
+  private CompletableFuture<Void> startRefreshInBackground() {
+    try {
+      return refreshToken();
+    } catch (RuntimeException e) {
+      final CompletableFuture<Void> failed = new CompletableFuture<>();
+      failed.completeExceptionally(e);
+      return failed;
+    }
+  }
+
+  @Override
+  public void stop() throws MuleException {
+    initialRefresh.set(null);
+    releaseSharedToken();
+    super.stop();
+  }
+
+  private void releaseSharedToken() {
+    if (sharedToken != null) {
+      tokenPool.release(sharedTokenKey);
+      sharedToken = null;
+    }
+  }
+
   @Override
   public CompletableFuture<String> accessToken() throws RequestAuthenticationException {
-    if (!accessTokenRefreshedOnStart) {
-      accessTokenRefreshedOnStart = true;
-      return refreshToken().thenApply(v -> getContext().getAccessToken());
+    return accessToken(Deadline.NONE);
+  }
+
+  /**
+   * Same as {@link #accessToken()}, but not waiting for a token beyond {@code deadline}.
+   *
+   * @param deadline how long the caller is willing to wait for the token.
+   * @return the token, or a future that fails with a {@link TokenDeadlineExceededException} if it could not be got in time.
+   */
+  public CompletableFuture<String> accessToken(Duration deadline) {
+    return accessToken(Deadline.after(deadline));
+  }
+
+  private CompletableFuture<String> accessToken(Deadline deadline) {
+    final CompletableFuture<Void> pendingInitialRefresh = initialRefresh.get();
+    if (pendingInitialRefresh != null) {
+      if (!pendingInitialRefresh.isDone()) {
+        // Started asynchronously and the token is still being retrieved, so wait for it instead of requesting another one. The
+        // initial refresh is not cancelled along with the future of a single caller
+        return withinDeadline(pendingInitialRefresh.thenApply(v -> getContext().getAccessToken()), deadline,
+                              DEFAULT_RESOURCE_OWNER_ID);
+      }
+      if (initialRefresh.compareAndSet(pendingInitialRefresh, null)
+          && pendingInitialRefresh.isCompletedExceptionally()) {
+        // The token could not be retrieved on start. Only the caller that clears the initial refresh retries it, the others
+        // find the context without a token and join that refresh
+        return thenAccessToken(doRefreshTokenRequest(true, true, deadline));
+      }
     }
 
-    final String accessToken = getContext().getAccessToken();
+    // Fails on a timeout acquiring the lock to create the context, or the deadline reached waiting for it
+    return thenCompose(getContextForResourceOwnerAsync(DEFAULT_RESOURCE_OWNER_ID, deadline),
+                       context -> accessToken(context, deadline));
+  }
+
+  private CompletableFuture<String> accessToken(ResourceOwnerOAuthContext context, Deadline deadline) {
+    final String accessToken = context.getAccessToken();
     if (accessToken == null) {
       LOGGER.info("Previously stored token has been invalidated. Refreshing...");
-      return doRefreshTokenRequest(false).thenApply(v -> getContext().getAccessToken());
+      return thenAccessToken(doRefreshTokenRequest(false, true, deadline));
+    }
+
+    if (refreshExpiredToken && isAccessTokenExpired(context)) {
+      LOGGER.debug("Stored token has expired. Refreshing...");
+      return thenAccessToken(doRefreshTokenRequest(false, true, deadline));
     }
 
-    // TODO MULE-11858 proactively refresh if the token has already expired based on its 'expiresIn' parameter
     return completedFuture(accessToken);
   }
 
+  private CompletableFuture<String> thenAccessToken(CompletableFuture<Void> refresh) {
+    return propagateCancellation(refresh.thenApply(v -> getContext().getAccessToken()), refresh);
+  }
+
+  /**
+   * Gets a token for {@code scopes} instead of the scopes the dancer was configured with, so that a single dancer can provide
+   * narrow tokens for different downstream APIs.
+   * <p>
+   * These tokens are kept in memory by the dancer, not in its tokens store, up to {@value #MAX_SCOPED_TOKENS} scope sets. Each
+   * one is refreshed when it expires, with a single request to the token url for all the concurrent callers.
+   *
+   * @param scopes the scopes to request. Their order is not relevant.
+   * @return a token for {@code scopes}.
+   */
+  public CompletableFuture<String> accessToken(Set<String> scopes) {
+    final String normalizedScopes = normalizeScopes(scopes);
+    final CompletableFuture<TokenResponse> tokenResponseFuture = scopedTokens.get(normalizedScopes, k -> new SharedToken())
+        .refresh(null, () -> requestToken(normalizedScopes.isEmpty() ? null : normalizedScopes, Deadline.NONE),
+                 this::scopedTokenExpiry);
+    return propagateCancellation(tokenResponseFuture.thenApply(TokenResponse::getAccessToken), tokenResponseFuture);
+  }
+
+  private TokenExpiry scopedTokenExpiry(String accessToken) {
+    final TokenExpiry tokenExpiry = getTokenExpiry(accessToken);
+    // Otherwise it would only be replaced once invalidated
+    return tokenExpiry.isKnown() ? tokenExpiry : TokenExpiry.at(currentTimeMillis() + UNKNOWN_EXPIRY_SCOPED_TOKEN_TTL_MILLIS);
+  }
+
+  /**
+   * Discards the token for {@code scopes}, for instance if it has been rejected, so that the next call to
+   * {@link #accessToken(Set)} gets a new one.
+   *
+   * @param scopes the scopes of the token to discard.
+   */
+  public void invalidateAccessToken(Set<String> scopes) {
+    scopedTokens.invalidate(normalizeScopes(scopes));
+  }
+
+  private static String normalizeScopes(Set<String> scopes) {
+    checkArgument(scopes != null, "scopes cannot be null");
+    final Set<String> normalized = new TreeSet<>();
+    for (String scope : scopes) {
+      if (scope != null && !scope.trim().isEmpty()) {
+        normalized.add(scope.trim());
+      }
+    }
+    return join(" ", normalized);
+  }
+
+  /**
+   * Subscribes to the tokens this dancer retrieves.
+   *
+   * @return a publisher of each token retrieved after the subscription.
+   * @see #tokenUpdates(String)
+   */
+  public Publisher<TokenUpdate> tokenUpdates() {
+    return tokenUpdates(DEFAULT_RESOURCE_OWNER_ID);
+  }
+
   @Override
   public CompletableFuture<Void> refreshToken() {
-    return doRefreshTokenRequest(true);
+    return doRefreshTokenRequest(true, false, Deadline.NONE);
   }
 
-  private CompletableFuture<Void> doRefreshTokenRequest(boolean notifyListeners) {
-    return doRefreshToken(() -> getContext(),
-                          ctx -> doRefreshTokenRequest(notifyListeners, (ResourceOwnerOAuthContextWithRefreshState) ctx));
+  /**
+   * Same as {@link #refreshToken()}, but not waiting for the new token beyond {@code deadline}.
+   *
+   * @param deadline how long the caller is willing to wait for the refresh.
+   * @return a future that fails with a {@link TokenDeadlineExceededException} if the token could not be refreshed in time.
+   */
+  public CompletableFuture<Void> refreshToken(Duration deadline) {
+    return doRefreshTokenRequest(true, false, Deadline.after(deadline));
   }
 
-  private CompletableFuture<Void> doRefreshTokenRequest(boolean notifyListeners,
-                                                        ResourceOwnerOAuthContextWithRefreshState defaultUserState) {
-    final Map<String, String> formData = new HashMap<>();
+  @Override
+  protected CompletableFuture<Void> refreshOwnedToken(String resourceOwnerId) {
+    return refreshToken();
+  }
 
-    formData.put(GRANT_TYPE_PARAMETER, GRANT_TYPE_CLIENT_CREDENTIALS);
-    if (scopes != null) {
-      formData.put(SCOPE_PARAMETER, scopes);
-    }
-    String authorization = handleClientCredentials(formData);
+  private CompletableFuture<Void> doRefreshTokenRequest(boolean notifyListeners, boolean tokenRead, Deadline deadline) {
+    final CompletableFuture<ResourceOwnerOAuthContext> context =
+        getContextForResourceOwnerAsync(DEFAULT_RESOURCE_OWNER_ID, deadline);
+    final Function<ResourceOwnerOAuthContext, CompletableFuture<Void>> tokenRefreshRequester =
+        ctx -> doRefreshTokenRequest(notifyListeners, (ResourceOwnerOAuthContextWithRefreshState) ctx, deadline);
+    // An explicit refresh joins the one in progress, only callers reading the token may get the previous one meanwhile
+    return tokenRead
+        ? doRefreshTokenForRead(context, tokenRefreshRequester, deadline)
+        : doRefreshToken(context, tokenRefreshRequester, deadline);
+  }
+
+  private CompletableFuture<Void> doRefreshTokenRequest(boolean notifyListeners,
+                                                        ResourceOwnerOAuthContextWithRefreshState defaultUserState,
+                                                        Deadline deadline) {
+    final SharedToken currentSharedToken = sharedToken;
+    // A request shared with other dancers is not cut short by the deadline of the caller that happened to start it
+    final Supplier<CompletableFuture<TokenResponse>> tokenRequester =
+        () -> requestToken(scopes, currentSharedToken != null ? Deadline.NONE : deadline);
+    final CompletableFuture<TokenResponse> tokenResponseFuture = currentSharedToken != null
+        ? currentSharedToken.refresh(defaultUserState.getAccessToken(), tokenRequester, this::getTokenExpiry)
+        : tokenRequester.get();
 
-    return invokeTokenUrl(tokenUrl, formData, customParameters, customHeaders, authorization, false, encoding)
+    return propagateCancellation(tokenResponseFuture
         .thenAccept(tokenResponse -> {
           withContextClassLoader(DefaultClientCredentialsOAuthDancer.class.getClassLoader(), () -> {
             if (LOGGER.isDebugEnabled()) {
               LOGGER.debug("Retrieved access token, refresh token and expires from token url are: %s, %s, %s",
                            tokenResponse.getAccessToken(), tokenResponse.getRefreshToken(), tokenResponse.getExpiresIn());
             }
+            if (currentSharedToken != null) {
+              // The response may have been processed by another dancer
+              rememberTokenExpiry(tokenResponse.getAccessToken(), currentSharedToken.getExpiry(tokenResponse.getAccessToken()));
+            }
 
             defaultUserState.setAccessToken(tokenResponse.getAccessToken());
             defaultUserState.setExpiresIn(tokenResponse.getExpiresIn());
@@ -149,11 +370,23 @@ public class DefaultClientCredentialsOAuthDancer extends AbstractOAuthDancer imp
 
             updateOAuthContextAfterTokenResponse(defaultUserState);
             if (notifyListeners) {
-              forEachListener(l -> l.onTokenRefreshed(defaultUserState));
+              forEachListener("onTokenRefreshed", l -> l.onTokenRefreshed(defaultUserState));
             }
           });
         })
-        .exceptionally(tokenUrlExceptionHandler(defaultUserState));
+        .exceptionally(tokenUrlExceptionHandler(defaultUserState)), tokenResponseFuture);
+  }
+
+  private CompletableFuture<TokenResponse> requestToken(String scopes, Deadline deadline) {
+    final Map<String, String> formData = new HashMap<>();
+
+    formData.put(GRANT_TYPE_PARAMETER, GRANT_TYPE_CLIENT_CREDENTIALS);
+    if (scopes != null) {
+      formData.put(SCOPE_PARAMETER, scopes);
+    }
+    String authorization = handleClientCredentials(formData);
+
+    return invokeTokenUrl(tokenUrl, formData, customParameters, customHeaders, authorization, false, encoding, deadline);
   }
 
   @Override
@@ -176,7 +409,7 @@ public class DefaultClientCredentialsOAuthDancer extends AbstractOAuthDancer imp
     return getContextForResourceOwner(DEFAULT_RESOURCE_OWNER_ID);
   }
 
-  private void forEachListener(Consumer<ClientCredentialsListener> action) {
-    onEachListener(listener -> action.accept((ClientCredentialsListener) listener));
+  private void forEachListener(String callback, Consumer<ClientCredentialsListener> action) {
+    onEachListener(callback, listener -> action.accept((ClientCredentialsListener) listener));
   }
 }
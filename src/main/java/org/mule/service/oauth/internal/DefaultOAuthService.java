@@ -7,8 +7,13 @@
 package org.mule.service.oauth.internal;
 
 import static com.github.benmanes.caffeine.cache.Caffeine.newBuilder;
+import static java.util.concurrent.CompletableFuture.allOf;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.runAsync;
 
 import org.mule.runtime.api.el.MuleExpressionLanguage;
+import org.mule.runtime.api.exception.MuleException;
+import org.mule.runtime.api.lifecycle.Startable;
 import org.mule.runtime.api.lock.LockFactory;
 import org.mule.runtime.api.scheduler.SchedulerService;
 import org.mule.runtime.api.tls.TlsContextFactory;
@@ -25,12 +30,17 @@ import org.mule.runtime.oauth.api.OAuthService;
 import org.mule.runtime.oauth.api.builder.OAuthAuthorizationCodeDancerBuilder;
 import org.mule.runtime.oauth.api.builder.OAuthClientCredentialsDancerBuilder;
 import org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContext;
+import org.mule.service.oauth.internal.SharedDancerScheduler.Lane;
 import org.mule.service.oauth.internal.builder.DefaultOAuthAuthorizationCodeDancerBuilder;
 import org.mule.service.oauth.internal.builder.DefaultOAuthClientCredentialsDancerBuilder;
+import org.mule.service.oauth.internal.cluster.ClusterMembership;
+import org.mule.service.oauth.internal.cluster.RefreshOwnership;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -41,12 +51,25 @@ public final class DefaultOAuthService implements OAuthService {
 
   private final HttpService httpService;
   private final SchedulerService schedulerService;
+  private final SharedDancerScheduler sharedScheduler;
+  private final RefreshOwnership refreshOwnership;
+  private final ClientCredentialsTokenPool clientCredentialsTokenPool = new ClientCredentialsTokenPool();
 
   private final LoadingCache<Pair<TlsContextFactory, ProxyConfig>, HttpClient> httpClientCache;
 
   public DefaultOAuthService(HttpService httpService, SchedulerService schedulerService) {
+    this(httpService, schedulerService, null);
+  }
+
+  /**
+   * @param clusterMembership the nodes of the cluster, so that each token is refreshed only by the node that owns its resource
+   *        owner. If {@code null}, any node refreshes the tokens it finds expired.
+   */
+  public DefaultOAuthService(HttpService httpService, SchedulerService schedulerService, ClusterMembership clusterMembership) {
     this.httpService = httpService;
     this.schedulerService = schedulerService;
+    this.sharedScheduler = new SharedDancerScheduler(schedulerService);
+    this.refreshOwnership = clusterMembership != null ? new RefreshOwnership(clusterMembership) : null;
 
     this.httpClientCache = newBuilder().build(key -> {
       final Builder clientConfigBuilder = new HttpClientConfiguration.Builder().setName("oauthToken.requester");
@@ -96,16 +119,54 @@ public final class DefaultOAuthService implements OAuthService {
   public <T> OAuthClientCredentialsDancerBuilder clientCredentialsGrantTypeDancerBuilder(LockFactory lockProvider,
                                                                                          Map<String, T> tokensStore,
                                                                                          MuleExpressionLanguage expressionEvaluator) {
-    return new DefaultOAuthClientCredentialsDancerBuilder(schedulerService, lockProvider,
+    return new DefaultOAuthClientCredentialsDancerBuilder(schedulerService, sharedScheduler, refreshOwnership, lockProvider,
                                                           (Map<String, ResourceOwnerOAuthContext>) tokensStore,
-                                                          httpClientCache, expressionEvaluator);
+                                                          httpClientCache, clientCredentialsTokenPool, expressionEvaluator);
+  }
+
+  /**
+   * Starts {@code dancers} in parallel, so that the time it takes to start them all is that of the slowest one instead of the
+   * sum of all, as it would be if each one waited for its first token before the next one is started. They are started on the
+   * scheduler shared by the dancers of this service.
+   *
+   * @param dancers the dancers built by this service to start.
+   * @return a future completed when all the dancers are started, or failed as soon as one of them could not start. The other
+   *         dancers go on starting in that case.
+   */
+  public CompletableFuture<Void> startDancers(Collection<? extends Startable> dancers) {
+    if (dancers.isEmpty()) {
+      return completedFuture(null);
+    }
+
+    // Starting a dancer may block until it gets its first token, so all of them are started at once
+    final Lane startLane = sharedScheduler.openLane("dancerStart", dancers.size());
+    final CompletableFuture<Void> result = new CompletableFuture<>();
+    final CompletableFuture<?>[] started = dancers.stream()
+        .map(dancer -> runAsync(() -> {
+          try {
+            dancer.start();
+          } catch (MuleException e) {
+            throw new CompletionException(e);
+          }
+        }, startLane).whenComplete((v, t) -> {
+          if (t != null) {
+            result.completeExceptionally(t);
+          }
+        }))
+        .toArray(CompletableFuture[]::new);
+
+    allOf(started).whenComplete((v, t) -> {
+      startLane.close();
+      result.complete(null);
+    });
+    return result;
   }
 
   @Override
   public <T> OAuthAuthorizationCodeDancerBuilder authorizationCodeGrantTypeDancerBuilder(LockFactory lockProvider,
                                                                                          Map<String, T> tokensStore,
                                                                                          MuleExpressionLanguage expressionEvaluator) {
-    return new DefaultOAuthAuthorizationCodeDancerBuilder(schedulerService, lockProvider,
+    return new DefaultOAuthAuthorizationCodeDancerBuilder(schedulerService, sharedScheduler, refreshOwnership, lockProvider,
                                                           (Map<String, ResourceOwnerOAuthContext>) tokensStore,
                                                           httpService, httpClientCache, expressionEvaluator);
   }
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.internal;
+
+import static java.util.regex.Pattern.compile;
+import static java.util.regex.Pattern.quote;
+
+import org.mule.runtime.api.el.BindingContext;
+import org.mule.runtime.api.el.MuleExpressionLanguage;
+import org.mule.runtime.api.metadata.DataType;
+import org.mule.runtime.api.metadata.MediaType;
+import org.mule.runtime.api.metadata.TypedValue;
+
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * The bindings the dancers provide to the expressions they evaluate against a token url response or a request to the local
+ * authorization url.
+ * <p>
+ * Each binding is created the first time an expression that uses it is evaluated and then shared by the rest of the expressions
+ * evaluated against the same response, so a {@code #[payload.access_token]} never causes the headers to be copied. Instances are
+ * meant to be used by a single thread.
+ *
+ * @since 2.0
+ */
+final class ExpressionBindings {
+
+  static final String PAYLOAD = "payload";
+  static final String ATTRIBUTES = "attributes";
+  static final String DATA_TYPE = "dataType";
+
+  static final int PAYLOAD_BINDING = 1;
+  static final int ATTRIBUTES_BINDING = 1 << 1;
+  static final int DATA_TYPE_BINDING = 1 << 2;
+  static final int ALL_BINDINGS = PAYLOAD_BINDING | ATTRIBUTES_BINDING | DATA_TYPE_BINDING;
+
+  private static final Pattern PAYLOAD_REFERENCE = referencePattern(PAYLOAD);
+  private static final Pattern ATTRIBUTES_REFERENCE = referencePattern(ATTRIBUTES);
+  private static final Pattern DATA_TYPE_REFERENCE = referencePattern(DATA_TYPE);
+
+  private final Object body;
+  private final MediaType mediaType;
+  private final Supplier<Map<Object, Object>> attributesFactory;
+
+  private DataType bodyDataType;
+  private TypedValue payload;
+  private TypedValue attributes;
+  private TypedValue dataType;
+  private final BindingContext[] contexts = new BindingContext[ALL_BINDINGS + 1];
+
+  /**
+   * @param body the value for the {@code payload} binding.
+   * @param mediaType the media type of {@code body}.
+   * @param attributesFactory creates the value for the {@code attributes} binding, only invoked if an expression uses it.
+   */
+  ExpressionBindings(Object body, MediaType mediaType, Supplier<Map<Object, Object>> attributesFactory) {
+    this.body = body;
+    this.mediaType = mediaType;
+    this.attributesFactory = attributesFactory;
+  }
+
+  /**
+   * @param bindings the bindings to include, as returned by {@link #usedBindings(MuleExpressionLanguage, String)}.
+   * @return a context with just the requested {@code bindings}.
+   */
+  BindingContext forBindings(int bindings) {
+    BindingContext context = contexts[bindings];
+    if (context == null) {
+      final BindingContext.Builder builder = BindingContext.builder();
+      if ((bindings & PAYLOAD_BINDING) != 0) {
+        builder.addBinding(PAYLOAD, payload());
+      }
+      if ((bindings & ATTRIBUTES_BINDING) != 0) {
+        builder.addBinding(ATTRIBUTES, attributes());
+      }
+      if ((bindings & DATA_TYPE_BINDING) != 0) {
+        builder.addBinding(DATA_TYPE, dataType());
+      }
+      context = builder.build();
+      contexts[bindings] = context;
+    }
+    return context;
+  }
+
+  private DataType bodyDataType() {
+    if (bodyDataType == null) {
+      bodyDataType = DataType.builder().fromObject(body).mediaType(mediaType).build();
+    }
+    return bodyDataType;
+  }
+
+  private TypedValue payload() {
+    if (payload == null) {
+      payload = new TypedValue(body, bodyDataType());
+    }
+    return payload;
+  }
+
+  private TypedValue attributes() {
+    if (attributes == null) {
+      attributes = new TypedValue(attributesFactory.get(), DataType.fromType(Map.class));
+    }
+    return attributes;
+  }
+
+  private TypedValue dataType() {
+    if (dataType == null) {
+      dataType = new TypedValue(bodyDataType(), DataType.fromType(DataType.class));
+    }
+    return dataType;
+  }
+
+  /**
+   * Tells which bindings {@code expr} may reference. Any occurrence of a binding name as a whole word counts as a reference, so
+   * this may report bindings that are not actually used but never misses one that is.
+   *
+   * @param expressionEvaluator the expression language the expression will be evaluated with.
+   * @param expr the expression to analyse, may be {@code null} or a literal.
+   * @return the bitwise or of the {@code *_BINDING} constants for the bindings that {@code expr} may reference.
+   */
+  static int usedBindings(MuleExpressionLanguage expressionEvaluator, String expr) {
+    if (expr == null || !expressionEvaluator.isExpression(expr)) {
+      return 0;
+    }
+
+    int bindings = 0;
+    if (PAYLOAD_REFERENCE.matcher(expr).find()) {
+      bindings |= PAYLOAD_BINDING;
+    }
+    if (ATTRIBUTES_REFERENCE.matcher(expr).find()) {
+      bindings |= ATTRIBUTES_BINDING;
+    }
+    if (DATA_TYPE_REFERENCE.matcher(expr).find()) {
+      bindings |= DATA_TYPE_BINDING;
+    }
+    return bindings;
+  }
+
+  private static Pattern referencePattern(String binding) {
+    return compile("(?<![\\w$])" + quote(binding) + "(?![\\w$])");
+  }
+}
@@ -0,0 +1,26 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.internal;
+
+/**
+ * What a dancer does when the lock that guards the context of a resource owner is not acquired within the configured timeout.
+ *
+ * @since 2.0
+ */
+public enum LockTimeoutFallback {
+
+  /**
+   * The operation that needed the lock fails, so that the refresh or request that triggered it fails too.
+   */
+  FAIL,
+
+  /**
+   * The operation that needed the lock is skipped, and the token already in the tokens store keeps being used even if it is
+   * stale.
+   */
+  SERVE_STALE
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.internal;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs the tasks given to it on another {@link Executor}, one at a time and in the order they were given, such as the callbacks
+ * of a listener that must see the changes of a token in the order they happened.
+ *
+ * @since 2.0
+ */
+public final class SerialExecutor implements Executor {
+
+  private final Executor executor;
+  private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean running = new AtomicBoolean(false);
+
+  /**
+   * @param executor the executor to run the tasks on.
+   */
+  public SerialExecutor(Executor executor) {
+    this.executor = executor;
+  }
+
+  @Override
+  public void execute(Runnable task) {
+    tasks.add(task);
+    drainIfIdle();
+  }
+
+  private void drainIfIdle() {
+    if (!tasks.isEmpty() && running.compareAndSet(false, true)) {
+      try {
+        executor.execute(this::drain);
+      } catch (RuntimeException e) {
+        running.set(false);
+        throw e;
+      }
+    }
+  }
+
+  private void drain() {
+    try {
+      Runnable task;
+      while ((task = tasks.poll()) != null) {
+        task.run();
+      }
+    } finally {
+      running.set(false);
+      // A task may have been added after the queue was found empty but before the drain ended
+      drainIfIdle();
+    }
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.internal;
+
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.mule.runtime.api.scheduler.SchedulerConfig.config;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import org.mule.runtime.api.scheduler.Scheduler;
+import org.mule.runtime.api.scheduler.SchedulerService;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+
+/**
+ * A scheduler shared by all the dancers created by a {@link DefaultOAuthService}, for the work they do in the background (checking
+ * for a refresh being done elsewhere, retrying locks, timing out deadlines).
+ * <p>
+ * That work is idle almost all the time, so instead of a scheduler per dancer a single one is created when the first dancer
+ * starts and stopped when the last one stops. Each dancer submits its tasks through its own {@link Lane}, which keeps the
+ * accounting of them and caps how many of the tasks {@link Lane#execute(Runnable) executed} through it run at a time to
+ * {@link #MAX_CONCURRENT_TASKS_PER_LANE}, queueing the rest, so that a single dancer cannot take all the threads from the others.
+ * The tasks {@link Lane#schedule(Runnable, long, TimeUnit) scheduled} through a lane are timers, so they are not subject to that
+ * cap.
+ *
+ * @since 2.0
+ */
+public final class SharedDancerScheduler {
+
+  private static final Logger LOGGER = getLogger(SharedDancerScheduler.class);
+
+  static final int MAX_CONCURRENT_TASKS_PER_LANE = 4;
+
+  private final SchedulerService schedulerService;
+
+  private Scheduler scheduler;
+  private int lanes = 0;
+
+  public SharedDancerScheduler(SchedulerService schedulerService) {
+    this.schedulerService = schedulerService;
+  }
+
+  /**
+   * Creates the lane for a dancer, starting the shared scheduler if this is the first one.
+   *
+   * @param dancerName the name of the dancer, used for logging.
+   * @return the lane through which the dancer submits its tasks. It has to be {@link Lane#close() closed} when the dancer stops.
+   */
+  public Lane openLane(String dancerName) {
+    return openLane(dancerName, MAX_CONCURRENT_TASKS_PER_LANE);
+  }
+
+  /**
+   * Same as {@link #openLane(String)}, but running up to {@code maxConcurrentTasks} of its tasks at a time.
+   */
+  synchronized Lane openLane(String dancerName, int maxConcurrentTasks) {
+    if (lanes++ == 0) {
+      scheduler = schedulerService.ioScheduler(config()
+          .withName("oauthService-tokenRefreshPoll")
+          .withShutdownTimeout(0, MILLISECONDS));
+    }
+    return new Lane(dancerName, scheduler, maxConcurrentTasks);
+  }
+
+  private synchronized void closeLane() {
+    if (--lanes == 0) {
+      try {
+        scheduler.stop();
+      } catch (Throwable t) {
+        LOGGER.warn("Found error trying to stop the shared OAuth dancers scheduler. Execution will continue...", t);
+      }
+      scheduler = null;
+    }
+  }
+
+  /**
+   * The tasks of a single dancer on the shared scheduler, along with the accounting of how they are doing.
+   */
+  public final class Lane implements Executor {
+
+    private final String dancerName;
+    private final Scheduler executor;
+    private final int maxConcurrentTasks;
+
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+    private volatile boolean closed = false;
+
+    private Lane(String dancerName, Scheduler executor, int maxConcurrentTasks) {
+      this.dancerName = dancerName;
+      this.executor = executor;
+      this.maxConcurrentTasks = maxConcurrentTasks;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+      if (closed) {
+        throw new IllegalStateException("Dancer '" + dancerName + "' has been stopped");
+      }
+      submitted.incrementAndGet();
+      queue.add(task);
+      trySchedule();
+    }
+
+    /**
+     * Runs {@code task} after {@code delay} directly on the shared scheduler, so that it is not queued behind the tasks of this
+     * lane. {@code task} must be short and must not block.
+     *
+     * @return the future to cancel {@code task} with before it runs.
+     */
+    public ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+      if (closed) {
+        throw new IllegalStateException("Dancer '" + dancerName + "' has been stopped");
+      }
+      submitted.incrementAndGet();
+      return executor.schedule(() -> {
+        if (!closed) {
+          run(task);
+        }
+      }, delay, unit);
+    }
+
+    private void trySchedule() {
+      int current;
+      while ((current = running.get()) < maxConcurrentTasks && !queue.isEmpty()) {
+        if (running.compareAndSet(current, current + 1)) {
+          try {
+            executor.execute(this::runNext);
+          } catch (RuntimeException e) {
+            running.decrementAndGet();
+            throw e;
+          }
+          return;
+        }
+      }
+    }
+
+    private void runNext() {
+      try {
+        final Runnable task = queue.poll();
+        if (task != null && !closed) {
+          run(task);
+        }
+      } finally {
+        running.decrementAndGet();
+      }
+      if (!closed) {
+        // The slot just freed goes to the next queued task of this lane, if any
+        trySchedule();
+      }
+    }
+
+    private void run(Runnable task) {
+      final long startNanos = nanoTime();
+      try {
+        task.run();
+        completed.incrementAndGet();
+      } catch (Throwable t) {
+        failed.incrementAndGet();
+        LOGGER.warn("Background task of dancer '" + dancerName + "' failed", t);
+      } finally {
+        busyNanos.addAndGet(nanoTime() - startNanos);
+      }
+    }
+
+    /**
+     * Discards the tasks not yet started and releases the shared scheduler.
+     */
+    public void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      queue.clear();
+      closeLane();
+    }
+
+    public int getQueued() {
+      return queue.size();
+    }
+
+    public int getRunning() {
+      return running.get();
+    }
+
+    public long getSubmitted() {
+      return submitted.get();
+    }
+
+    public long getCompleted() {
+      return completed.get();
+    }
+
+    public long getFailed() {
+      return failed.get();
+    }
+
+    /**
+     * @return the total time the tasks of this lane have been running on the shared scheduler.
+     */
+    public long getBusyNanos() {
+      return busyNanos.get();
+    }
+
+    @Override
+    public String toString() {
+      return "Lane[dancer: " + dancerName + ", submitted: " + submitted + ", completed: " + completed + ", failed: " + failed
+          + ", running: " + running + ", queued: " + queue.size() + ", busy: " + NANOSECONDS.toMillis(busyNanos.get()) + "ms]";
+    }
+  }
+}
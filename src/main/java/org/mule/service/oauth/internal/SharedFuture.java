@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.internal;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Work done once for several callers, such as a request to the token url, each of which gets its own future for it.
+ * <p>
+ * A caller that is no longer interested cancels its own future, which doesn't affect the futures of the other callers. The work
+ * itself is cancelled only when all the callers have cancelled theirs, so that it is not left running for nobody.
+ *
+ * @since 2.0
+ */
+public final class SharedFuture<T> {
+
+  private final CompletableFuture<T> work;
+  private int waiters = 0;
+
+  /**
+   * @param work the future of the work to share. It is cancelled when all the futures {@link #join() joined} to it are.
+   */
+  public SharedFuture(CompletableFuture<T> work) {
+    this.work = work;
+  }
+
+  /**
+   * @return a future with the result of the work for one more caller.
+   */
+  public CompletableFuture<T> join() {
+    synchronized (this) {
+      ++waiters;
+    }
+
+    final CompletableFuture<T> waiter = new CompletableFuture<>();
+    work.whenComplete((value, t) -> {
+      if (t != null) {
+        waiter.completeExceptionally(t);
+      } else {
+        waiter.complete(value);
+      }
+    });
+    waiter.whenComplete((value, t) -> {
+      if (waiter.isCancelled()) {
+        leave();
+      }
+    });
+    return waiter;
+  }
+
+  private void leave() {
+    final boolean abandoned;
+    synchronized (this) {
+      abandoned = --waiters == 0;
+    }
+    if (abandoned) {
+      // Nothing if the work is already done
+      work.cancel(false);
+    }
+  }
+
+  /**
+   * @return whether the work failed or was cancelled.
+   */
+  public boolean isCompletedExceptionally() {
+    return work.isCompletedExceptionally();
+  }
+}
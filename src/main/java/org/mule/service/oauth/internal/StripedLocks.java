@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.internal;
+
+import static java.lang.Integer.highestOneBit;
+import static org.mule.runtime.api.util.Preconditions.checkArgument;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of in-memory locks for writing the contexts of the resource owners of a dancer to its tokens store, picked by the
+ * hash of the resource owner, so that getting the lock for a write is an array index instead of a call to the
+ * {@code LockFactory}.
+ * <p>
+ * Resource owners whose hashes fall in the same stripe share a lock, which only costs some contention between them as long as it
+ * is held just for the write. These locks are not visible to other nodes, so they may only be used when the application is not
+ * deployed in a cluster.
+ *
+ * @since 2.0
+ */
+public final class StripedLocks {
+
+  private final Lock[] locks;
+  private final int mask;
+
+  /**
+   * @param stripes the minimum number of locks, rounded up to a power of 2.
+   */
+  public StripedLocks(int stripes) {
+    checkArgument(stripes > 0 && stripes <= 1 << 16, "stripes must be between 1 and 65536");
+    final int size = stripes == 1 ? 1 : highestOneBit(stripes - 1) << 1;
+    locks = new Lock[size];
+    for (int i = 0; i < size; ++i) {
+      locks[i] = new ReentrantLock();
+    }
+    mask = size - 1;
+  }
+
+  /**
+   * @param hash the hash of the resource owner.
+   * @return the lock for the resource owner.
+   */
+  public Lock forHash(int hash) {
+    // Spreads the higher bits, as the hashes of ids with a common prefix tend to differ only in the lower ones
+    return locks[(hash ^ (hash >>> 16)) & mask];
+  }
+
+  public int size() {
+    return locks.length;
+  }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.internal;
+
+import org.mule.runtime.api.exception.MuleRuntimeException;
+import org.mule.runtime.api.i18n.I18nMessage;
+
+/**
+ * Thrown when a token cannot be got by the {@link Deadline} of its caller, so that the caller can tell it apart from a failure of
+ * the token url and give up without retrying.
+ * <p>
+ * Only the caller with the deadline gives up: a refresh it was waiting for on behalf of other callers or being done elsewhere goes
+ * on, and its result is available to the next callers.
+ *
+ * @since 2.0
+ */
+public final class TokenDeadlineExceededException extends MuleRuntimeException {
+
+  private static final long serialVersionUID = -5310318263580553524L;
+
+  public TokenDeadlineExceededException(I18nMessage message) {
+    super(message);
+  }
+
+  public TokenDeadlineExceededException(I18nMessage message, Throwable cause) {
+    super(message, cause);
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.internal;
+
+import static java.util.concurrent.ConcurrentHashMap.newKeySet;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import org.mule.service.oauth.internal.state.TokenUpdate;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+
+/**
+ * Keeps the subscribers to the tokens a dancer stores, by resource owner, and emits each new token to them.
+ * <p>
+ * Only the latest token matters to a subscriber, so a subscriber that has not requested more elements when several tokens are
+ * stored gets just the last one of them once it does, instead of buffering all of them.
+ *
+ * @since 2.0
+ */
+final class TokenUpdates {
+
+  private static final Logger LOGGER = getLogger(TokenUpdates.class);
+
+  private final ConcurrentMap<String, Set<TokenSubscription>> subscriptions = new ConcurrentHashMap<>();
+
+  /**
+   * @param resourceOwnerId the resource owner whose tokens to emit.
+   * @return a publisher of the tokens stored for {@code resourceOwnerId} from the moment of the subscription.
+   */
+  Publisher<TokenUpdate> publisher(String resourceOwnerId) {
+    return subscriber -> {
+      if (subscriber == null) {
+        throw new NullPointerException("subscriber cannot be null");
+      }
+      final TokenSubscription subscription = new TokenSubscription(resourceOwnerId, subscriber);
+      subscriptions.compute(resourceOwnerId, (id, owned) -> {
+        final Set<TokenSubscription> result = owned != null ? owned : newKeySet();
+        result.add(subscription);
+        return result;
+      });
+      subscriber.onSubscribe(subscription);
+    };
+  }
+
+  /**
+   * Emits {@code update} to the subscribers of its resource owner.
+   */
+  void emit(TokenUpdate update) {
+    final Set<TokenSubscription> owned = subscriptions.get(update.getResourceOwnerId());
+    if (owned != null) {
+      owned.forEach(subscription -> subscription.offer(update));
+    }
+  }
+
+  /**
+   * Completes all the subscriptions, for when the dancer is stopped.
+   */
+  void complete() {
+    subscriptions.values().forEach(owned -> owned.forEach(TokenSubscription::complete));
+    subscriptions.clear();
+  }
+
+  private void remove(TokenSubscription subscription) {
+    subscriptions.computeIfPresent(subscription.resourceOwnerId, (id, owned) -> {
+      owned.remove(subscription);
+      return owned.isEmpty() ? null : owned;
+    });
+  }
+
+  private final class TokenSubscription implements Subscription {
+
+    private final String resourceOwnerId;
+    private final Subscriber<? super TokenUpdate> subscriber;
+
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicReference<TokenUpdate> latest = new AtomicReference<>();
+    private final AtomicInteger wip = new AtomicInteger();
+    private volatile boolean cancelled;
+    private volatile boolean completed;
+
+    TokenSubscription(String resourceOwnerId, Subscriber<? super TokenUpdate> subscriber) {
+      this.resourceOwnerId = resourceOwnerId;
+      this.subscriber = subscriber;
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        cancel();
+        subscriber.onError(new IllegalArgumentException("Requested elements must be positive, got " + n));
+        return;
+      }
+      requested.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+      drain();
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+      remove(this);
+    }
+
+    void offer(TokenUpdate update) {
+      latest.set(update);
+      drain();
+    }
+
+    void complete() {
+      completed = true;
+      drain();
+    }
+
+    // Serializes the signals to the subscriber, whichever thread stores a token or requests more
+    private void drain() {
+      if (wip.getAndIncrement() != 0) {
+        return;
+      }
+      do {
+        if (!cancelled) {
+          if (requested.get() > 0) {
+            final TokenUpdate update = latest.getAndSet(null);
+            if (update != null) {
+              if (requested.get() != Long.MAX_VALUE) {
+                requested.decrementAndGet();
+              }
+              signal(update);
+            }
+          }
+          if (completed && latest.get() == null) {
+            cancelled = true;
+            subscriber.onComplete();
+          }
+        }
+      } while (wip.decrementAndGet() != 0);
+    }
+
+    private void signal(TokenUpdate update) {
+      try {
+        subscriber.onNext(update);
+      } catch (Throwable t) {
+        LOGGER.warn("Subscriber for tokens of resource owner '{}' failed, cancelling its subscription", resourceOwnerId, t);
+        cancel();
+      }
+    }
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.internal;
+
+import static java.lang.Boolean.getBoolean;
+import static org.mule.service.oauth.internal.AbstractOAuthDancer.VIRTUAL_THREADS_PROPERTY;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+
+/**
+ * Opt-in execution of the blocking sections of the dancers (waiting for the locks of the contexts and invoking listeners) on
+ * virtual threads, enabled with the {@link AbstractOAuthDancer#VIRTUAL_THREADS_PROPERTY} system property.
+ * <p>
+ * Virtual threads exist since Java 21 while this service targets Java 8, so they are created through reflection and the mode is
+ * ignored, with a warning, on older runtimes.
+ *
+ * @since 2.0
+ */
+final class VirtualThreads {
+
+  private static final Logger LOGGER = getLogger(VirtualThreads.class);
+
+  private VirtualThreads() {
+    // Nothing to do
+  }
+
+  /**
+   * @param name the prefix for the names of the threads of the executor.
+   * @return an executor that runs each task on a new virtual thread, or empty if the mode is not enabled or the runtime does not
+   *         support virtual threads.
+   */
+  static Optional<ExecutorService> newVirtualThreadPerTaskExecutor(String name) {
+    if (!getBoolean(VIRTUAL_THREADS_PROPERTY)) {
+      return Optional.empty();
+    }
+
+    try {
+      final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name + "-", 0L);
+      final ThreadFactory threadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+      return Optional.of((ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+          .invoke(null, threadFactory));
+    } catch (ReflectiveOperationException e) {
+      LOGGER.warn("'{}' is set but virtual threads are not available in this runtime ({}). Using the io scheduler instead.",
+                  VIRTUAL_THREADS_PROPERTY, e.toString());
+      return Optional.empty();
+    }
+  }
+}
@@ -6,32 +6,18 @@
  */
 package org.mule.service.oauth.internal.authorizationcode;
 
-import static java.lang.String.format;
-import static java.net.URLEncoder.encode;
 import static org.mule.runtime.api.util.Preconditions.checkArgument;
 import static org.mule.runtime.core.api.util.StringUtils.isBlank;
-import static org.mule.service.oauth.internal.OAuthConstants.CLIENT_ID_PARAMETER;
-import static org.mule.service.oauth.internal.OAuthConstants.REDIRECT_URI_PARAMETER;
-import static org.mule.service.oauth.internal.OAuthConstants.SCOPE_PARAMETER;
-import static org.mule.service.oauth.internal.OAuthConstants.STATE_PARAMETER;
-import static org.slf4j.LoggerFactory.getLogger;
 
-import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.Map;
 
-import org.slf4j.Logger;
-
 /**
  * Builds the authorization url to redirect the user to.
  */
 public class AuthorizationRequestUrlBuilder {
 
-  private static final Logger LOGGER = getLogger(AuthorizationRequestUrlBuilder.class);
-
-  private static final String ADDED_PARAMETER_TEMPLATE = "&%s=";
-
   private String authorizationUrl;
   private String redirectUrl;
   private String clientId;
@@ -81,43 +67,21 @@ public class AuthorizationRequestUrlBuilder {
    * @return the authorization url with all the query parameters from the config.
    */
   public String buildUrl() {
+    return buildTemplate().buildUrl(state);
+  }
+
+  /**
+   * Encodes everything set in this builder but the state once, so that urls for different states can be built from the returned
+   * template without encoding the rest again.
+   *
+   * @return a template for the authorization url with all the query parameters from the config but the state.
+   */
+  public AuthorizationRequestUrlTemplate buildTemplate() {
     checkArgument(!isBlank(clientId), "clientId cannot be blank");
     checkArgument(!isBlank(clientSecret), "clientSecret cannot be blank");
     checkArgument(!isBlank(authorizationUrl), "authorizationUrl cannot be blank");
     checkArgument(customParameters != null, "customParameters cannot be null");
-    return buildAuthorizeUrl();
-  }
-
-  private final String buildAuthorizeUrl() {
-    StringBuilder urlBuilder = new StringBuilder();
-    urlBuilder.append(authorizationUrl);
-
-    urlBuilder.append("?").append("response_type=code&").append(CLIENT_ID_PARAMETER + "=").append(clientId);
-
-    try {
-      if (!isBlank(scope)) {
-        urlBuilder.append(format(ADDED_PARAMETER_TEMPLATE, SCOPE_PARAMETER))
-            .append(encode(scope, encoding.name()));
-      }
-      if (!isBlank(state)) {
-        urlBuilder.append(format(ADDED_PARAMETER_TEMPLATE, STATE_PARAMETER))
-            .append(encode(state, encoding.name()));
-      }
-
-      for (Map.Entry<String, String> entry : customParameters.entrySet()) {
-        urlBuilder.append("&").append(entry.getKey()).append("=").append(encode(entry.getValue(), encoding.name()));
-      }
-
-      urlBuilder.append(format(ADDED_PARAMETER_TEMPLATE, REDIRECT_URI_PARAMETER))
-          .append(encode(redirectUrl, encoding.name()));
-    } catch (UnsupportedEncodingException e) {
-      throw new RuntimeException(e);
-    }
-
-    if (LOGGER.isDebugEnabled()) {
-      LOGGER.debug(("Authorization URL has been generated as follows: " + urlBuilder));
-    }
-    return urlBuilder.toString();
+    return new AuthorizationRequestUrlTemplate(authorizationUrl, clientId, scope, redirectUrl, customParameters, encoding);
   }
 
   public AuthorizationRequestUrlBuilder setState(String state) {
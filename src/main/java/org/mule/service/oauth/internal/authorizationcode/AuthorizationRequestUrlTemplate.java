@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.internal.authorizationcode;
+
+import static org.mule.runtime.api.util.Preconditions.checkArgument;
+import static org.mule.runtime.core.api.util.StringUtils.isBlank;
+import static org.mule.service.oauth.internal.OAuthConstants.CLIENT_ID_PARAMETER;
+import static org.mule.service.oauth.internal.OAuthConstants.REDIRECT_URI_PARAMETER;
+import static org.mule.service.oauth.internal.OAuthConstants.SCOPE_PARAMETER;
+import static org.mule.service.oauth.internal.OAuthConstants.STATE_PARAMETER;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.nio.charset.Charset;
+import java.util.BitSet;
+import java.util.Map;
+
+import org.slf4j.Logger;
+
+/**
+ * Authorization url with everything that doesn't change between requests already encoded, so that building the url for a
+ * request only needs to encode its state and its dynamic custom parameters.
+ * <p>
+ * Instances are immutable and can be shared by all the requests to the local authorization url of a dancer.
+ *
+ * @since 2.0
+ */
+public final class AuthorizationRequestUrlTemplate {
+
+  private static final Logger LOGGER = getLogger(AuthorizationRequestUrlTemplate.class);
+
+  private static final String STATE_PARAMETER_ASSIGN = "&" + STATE_PARAMETER + "=";
+  private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+  // Same characters that java.net.URLEncoder leaves as they are, besides the space which it turns into '+'
+  private static final BitSet DONT_NEED_ENCODING = new BitSet(128);
+
+  static {
+    DONT_NEED_ENCODING.set('a', 'z' + 1);
+    DONT_NEED_ENCODING.set('A', 'Z' + 1);
+    DONT_NEED_ENCODING.set('0', '9' + 1);
+    DONT_NEED_ENCODING.set('-');
+    DONT_NEED_ENCODING.set('_');
+    DONT_NEED_ENCODING.set('.');
+    DONT_NEED_ENCODING.set('*');
+  }
+
+  private final Charset encoding;
+  private final String prefix;
+  private final String suffix;
+
+  AuthorizationRequestUrlTemplate(String authorizationUrl, String clientId, String scope, String redirectUrl,
+                                  Map<String, String> staticCustomParameters, Charset encoding) {
+    this.encoding = encoding;
+
+    final StringBuilder prefixBuilder = new StringBuilder(authorizationUrl.length() + 64);
+    prefixBuilder.append(authorizationUrl).append("?response_type=code&").append(CLIENT_ID_PARAMETER).append('=')
+        .append(clientId);
+    if (!isBlank(scope)) {
+      prefixBuilder.append('&').append(SCOPE_PARAMETER).append('=');
+      appendEncoded(prefixBuilder, scope, encoding);
+    }
+    this.prefix = prefixBuilder.toString();
+
+    if (redirectUrl == null) {
+      this.suffix = null;
+    } else {
+      final StringBuilder suffixBuilder = new StringBuilder(redirectUrl.length() + 64);
+      appendCustomParameters(suffixBuilder, staticCustomParameters, encoding);
+      suffixBuilder.append('&').append(REDIRECT_URI_PARAMETER).append('=');
+      appendEncoded(suffixBuilder, redirectUrl, encoding);
+      this.suffix = suffixBuilder.toString();
+    }
+  }
+
+  /**
+   * @param state the state to send to the authorization server, may be {@code null}.
+   * @return the authorization url for a request with the given {@code state}.
+   */
+  public String buildUrl(String state) {
+    return buildUrl(state, null);
+  }
+
+  /**
+   * @param state the state to send to the authorization server, may be {@code null}.
+   * @param dynamicCustomParameters custom parameters for this request only, added before the ones of the template. May be
+   *        {@code null}.
+   * @return the authorization url for a request with the given {@code state} and custom parameters.
+   */
+  public String buildUrl(String state, Map<String, String> dynamicCustomParameters) {
+    checkArgument(suffix != null, "redirectUrl cannot be null");
+
+    int capacity = prefix.length() + suffix.length();
+    final boolean hasState = !isBlank(state);
+    if (hasState) {
+      // Leave some room for the characters that expand when encoded
+      capacity += STATE_PARAMETER_ASSIGN.length() + 2 * state.length();
+    }
+    if (dynamicCustomParameters != null) {
+      for (Map.Entry<String, String> entry : dynamicCustomParameters.entrySet()) {
+        capacity += 2 + entry.getKey().length() + 2 * entry.getValue().length();
+      }
+    }
+
+    final StringBuilder urlBuilder = new StringBuilder(capacity).append(prefix);
+    if (hasState) {
+      urlBuilder.append(STATE_PARAMETER_ASSIGN);
+      appendEncoded(urlBuilder, state, encoding);
+    }
+    appendCustomParameters(urlBuilder, dynamicCustomParameters, encoding);
+    urlBuilder.append(suffix);
+
+    if (LOGGER.isDebugEnabled()) {
+      LOGGER.debug(("Authorization URL has been generated as follows: " + urlBuilder));
+    }
+    return urlBuilder.toString();
+  }
+
+  private static void appendCustomParameters(StringBuilder builder, Map<String, String> customParameters, Charset encoding) {
+    if (customParameters != null) {
+      for (Map.Entry<String, String> entry : customParameters.entrySet()) {
+        builder.append('&').append(entry.getKey()).append('=');
+        appendEncoded(builder, entry.getValue(), encoding);
+      }
+    }
+  }
+
+  /**
+   * Appends {@code value} to {@code builder} encoded as {@link java.net.URLEncoder#encode(String, String)} would, without looking
+   * the charset up by name nor creating intermediate strings for the characters that don't need encoding.
+   */
+  static void appendEncoded(StringBuilder builder, String value, Charset encoding) {
+    final int length = value.length();
+    int i = 0;
+    while (i < length) {
+      final char c = value.charAt(i);
+      if (c < 128 && DONT_NEED_ENCODING.get(c)) {
+        builder.append(c);
+        ++i;
+      } else if (c == ' ') {
+        builder.append('+');
+        ++i;
+      } else {
+        // Encode the whole run of characters that need it at once, so surrogate pairs are kept together
+        int end = i + 1;
+        while (end < length && !doesNotNeedEncoding(value.charAt(end))) {
+          ++end;
+        }
+        for (byte b : value.substring(i, end).getBytes(encoding)) {
+          builder.append('%').append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
+        }
+        i = end;
+      }
+    }
+  }
+
+  private static boolean doesNotNeedEncoding(char c) {
+    return c == ' ' || (c < 128 && DONT_NEED_ENCODING.get(c));
+  }
+}
@@ -23,6 +23,8 @@ import org.mule.runtime.http.api.domain.message.response.HttpResponse;
 import org.mule.runtime.oauth.api.builder.ClientCredentialsLocation;
 import org.mule.runtime.oauth.api.builder.OAuthDancerBuilder;
 import org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContext;
+import org.mule.service.oauth.internal.SharedDancerScheduler;
+import org.mule.service.oauth.internal.cluster.RefreshOwnership;
 
 import java.io.IOException;
 import java.nio.charset.Charset;
@@ -37,6 +39,8 @@ import com.github.benmanes.caffeine.cache.LoadingCache;
 public abstract class AbstractOAuthDancerBuilder<D> implements OAuthDancerBuilder<D> {
 
   protected final SchedulerService schedulerService;
+  protected final SharedDancerScheduler sharedScheduler;
+  protected final RefreshOwnership refreshOwnership;
   protected final LockFactory lockProvider;
   protected final Map<String, ResourceOwnerOAuthContext> tokensStore;
   protected final LoadingCache<Pair<TlsContextFactory, ProxyConfig>, HttpClient> httpClientCache;
@@ -58,11 +62,14 @@ public abstract class AbstractOAuthDancerBuilder<D> implements OAuthDancerBuilde
   protected Map<String, String> customParametersExtractorsExprs;
   protected Function<String, String> resourceOwnerIdTransformer = resourceOwnerId -> resourceOwnerId;
 
-  public AbstractOAuthDancerBuilder(SchedulerService schedulerService, LockFactory lockProvider,
+  public AbstractOAuthDancerBuilder(SchedulerService schedulerService, SharedDancerScheduler sharedScheduler,
+                                    RefreshOwnership refreshOwnership, LockFactory lockProvider,
                                     Map<String, ResourceOwnerOAuthContext> tokensStore,
                                     LoadingCache<Pair<TlsContextFactory, ProxyConfig>, HttpClient> httpClientCache,
                                     MuleExpressionLanguage expressionEvaluator) {
     this.schedulerService = schedulerService;
+    this.sharedScheduler = sharedScheduler;
+    this.refreshOwnership = refreshOwnership;
     this.lockProvider = lockProvider;
     this.tokensStore = tokensStore;
     this.httpClientCache = httpClientCache;
@@ -33,6 +33,8 @@ import org.mule.runtime.oauth.api.listener.AuthorizationCodeListener;
 import org.mule.runtime.oauth.api.builder.OAuthAuthorizationCodeDancerBuilder;
 import org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContext;
 import org.mule.service.oauth.internal.DefaultAuthorizationCodeOAuthDancer;
+import org.mule.service.oauth.internal.SharedDancerScheduler;
+import org.mule.service.oauth.internal.cluster.RefreshOwnership;
 
 import java.net.URL;
 import java.util.LinkedList;
@@ -62,18 +64,20 @@ public class DefaultOAuthAuthorizationCodeDancerBuilder extends AbstractOAuthDan
   private final List<AuthorizationCodeListener> listeners = new LinkedList<>();
 
   private Supplier<Map<String, String>> customParameters = () -> emptyMap();
+  private boolean staticCustomParameters = true;
   private Supplier<Map<String, String>> customHeaders = () -> emptyMap();
 
   private Function<AuthorizationCodeRequest, AuthorizationCodeDanceCallbackContext> beforeDanceCallback = r -> k -> empty();
   private BiConsumer<AuthorizationCodeDanceCallbackContext, ResourceOwnerOAuthContext> afterDanceCallback = (vars, ctx) -> {
   };
 
-  public DefaultOAuthAuthorizationCodeDancerBuilder(SchedulerService schedulerService, LockFactory lockProvider,
+  public DefaultOAuthAuthorizationCodeDancerBuilder(SchedulerService schedulerService, SharedDancerScheduler sharedScheduler,
+                                                    RefreshOwnership refreshOwnership, LockFactory lockProvider,
                                                     Map<String, ResourceOwnerOAuthContext> tokensStore,
                                                     HttpService httpService,
                                                     LoadingCache<Pair<TlsContextFactory, ProxyConfig>, HttpClient> httpClientCache,
                                                     MuleExpressionLanguage expressionEvaluator) {
-    super(schedulerService, lockProvider, tokensStore, httpClientCache, expressionEvaluator);
+    super(schedulerService, sharedScheduler, refreshOwnership, lockProvider, tokensStore, httpClientCache, expressionEvaluator);
     this.httpService = httpService;
     clientCredentialsLocation = BODY;
   }
@@ -136,13 +140,16 @@ public class DefaultOAuthAuthorizationCodeDancerBuilder extends AbstractOAuthDan
   @Override
   public OAuthAuthorizationCodeDancerBuilder customParameters(Map<String, String> customParameters) {
     requireNonNull(customParameters, "customParameters cannot be null");
-    return customParameters(() -> customParameters);
+    this.customParameters = () -> customParameters;
+    this.staticCustomParameters = true;
+    return this;
   }
 
   @Override
   public OAuthAuthorizationCodeDancerBuilder customParameters(Supplier<Map<String, String>> customParameters) {
     requireNonNull(customParameters, "customParameters cannot be null");
     this.customParameters = customParameters;
+    this.staticCustomParameters = false;
     return this;
   }
 
@@ -218,9 +225,11 @@ public class DefaultOAuthAuthorizationCodeDancerBuilder extends AbstractOAuthDan
                                                    localCallbackUrlPath, localAuthorizationUrlPath,
                                                    localAuthorizationUrlResourceOwnerId, state,
                                                    authorizationUrl, responseAccessTokenExpr, responseRefreshTokenExpr,
-                                                   responseExpiresInExpr, customParameters, customHeaders,
+                                                   responseExpiresInExpr, customParameters, staticCustomParameters,
+                                                   customHeaders,
                                                    customParametersExtractorsExprs,
-                                                   resourceOwnerIdTransformer, schedulerService, lockProvider, tokensStore,
+                                                   resourceOwnerIdTransformer, schedulerService, sharedScheduler, refreshOwnership,
+                                                   lockProvider, tokensStore,
                                                    httpClientFactory.get(), expressionEvaluator, beforeDanceCallback,
                                                    afterDanceCallback, listeners);
   }
@@ -22,7 +22,10 @@ import org.mule.runtime.oauth.api.ClientCredentialsOAuthDancer;
 import org.mule.runtime.oauth.api.listener.ClientCredentialsListener;
 import org.mule.runtime.oauth.api.builder.OAuthClientCredentialsDancerBuilder;
 import org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContext;
+import org.mule.service.oauth.internal.ClientCredentialsTokenPool;
 import org.mule.service.oauth.internal.DefaultClientCredentialsOAuthDancer;
+import org.mule.service.oauth.internal.SharedDancerScheduler;
+import org.mule.service.oauth.internal.cluster.RefreshOwnership;
 
 import java.util.LinkedList;
 import java.util.List;
@@ -37,13 +40,42 @@ public class DefaultOAuthClientCredentialsDancerBuilder extends AbstractOAuthDan
   private final List<ClientCredentialsListener> listeners = new LinkedList<>();
   private final MultiMap<String, String> customParameters = new MultiMap<>();
   private final MultiMap<String, String> customHeaders = new MultiMap<>();
+  private final ClientCredentialsTokenPool tokenPool;
+  private boolean sharedToken = false;
+  private boolean asyncStart = false;
 
-
-  public DefaultOAuthClientCredentialsDancerBuilder(SchedulerService schedulerService, LockFactory lockProvider,
+  public DefaultOAuthClientCredentialsDancerBuilder(SchedulerService schedulerService, SharedDancerScheduler sharedScheduler,
+                                                    RefreshOwnership refreshOwnership, LockFactory lockProvider,
                                                     Map<String, ResourceOwnerOAuthContext> tokensStore,
                                                     LoadingCache<Pair<TlsContextFactory, ProxyConfig>, HttpClient> httpClientCache,
+                                                    ClientCredentialsTokenPool tokenPool,
                                                     MuleExpressionLanguage expressionEvaluator) {
-    super(schedulerService, lockProvider, tokensStore, httpClientCache, expressionEvaluator);
+    super(schedulerService, sharedScheduler, refreshOwnership, lockProvider, tokensStore, httpClientCache, expressionEvaluator);
+    this.tokenPool = tokenPool;
+  }
+
+  /**
+   * Makes the dancer share its token and refresh cycle with the other dancers of the service that have the same token url,
+   * client credentials, scopes and token request and response configuration, and also opted in to share it.
+   *
+   * @param sharedToken whether to share the token.
+   * @return this builder
+   */
+  public OAuthClientCredentialsDancerBuilder sharedToken(boolean sharedToken) {
+    this.sharedToken = sharedToken;
+    return this;
+  }
+
+  /**
+   * Makes the dancer retrieve its first token in the background instead of waiting for it when started, so that many dancers can
+   * be started without each one waiting for the token url. Until that token is retrieved, calls for a token wait for it.
+   *
+   * @param asyncStart whether to retrieve the first token in the background.
+   * @return this builder
+   */
+  public OAuthClientCredentialsDancerBuilder asyncStart(boolean asyncStart) {
+    this.asyncStart = asyncStart;
+    return this;
   }
 
   @Override
@@ -92,9 +124,11 @@ public class DefaultOAuthClientCredentialsDancerBuilder extends AbstractOAuthDan
     return new DefaultClientCredentialsOAuthDancer(name, clientId, clientSecret, tokenUrl, scopes, clientCredentialsLocation,
                                                    encoding, responseAccessTokenExpr, responseRefreshTokenExpr,
                                                    responseExpiresInExpr, customParametersExtractorsExprs,
-                                                   resourceOwnerIdTransformer, schedulerService, lockProvider, tokensStore,
+                                                   resourceOwnerIdTransformer, schedulerService, sharedScheduler, refreshOwnership,
+                                                   lockProvider, tokensStore,
                                                    httpClientFactory.get(), expressionEvaluator, customParameters,
-                                                   customHeaders, listeners);
+                                                   customHeaders, sharedToken ? tokenPool : null, asyncStart,
+                                                   listeners);
   }
 
 }
@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.internal.cluster;
+
+import java.util.Set;
+
+/**
+ * Provides the nodes of the cluster the dancers run in, so that the refresh of each resource owner's token can be assigned to a
+ * single node.
+ *
+ * @since 2.0
+ */
+public interface ClusterMembership {
+
+  /**
+   * @return the id of the node this service runs in.
+   */
+  String getLocalNodeId();
+
+  /**
+   * @return the ids of the nodes currently in the cluster, including the local one.
+   */
+  Set<String> getNodeIds();
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.internal.cluster;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.unmodifiableSet;
+import static org.mule.runtime.api.util.Preconditions.checkArgument;
+
+import java.util.HashSet;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Assigns keys to nodes by consistent hashing, so that when a node joins or leaves the cluster only the keys of that node are
+ * reassigned.
+ * <p>
+ * Each node is placed at {@link #VIRTUAL_NODES} points of the ring so that the keys are evenly spread among the nodes. Instances
+ * are immutable, a new ring is built when the membership changes.
+ *
+ * @since 2.0
+ */
+public final class ConsistentHashRing {
+
+  static final int VIRTUAL_NODES = 128;
+
+  private final Set<String> nodeIds;
+  private final TreeMap<Long, String> ring = new TreeMap<>();
+
+  /**
+   * @param nodeIds the nodes among which to assign the keys, not empty.
+   */
+  public ConsistentHashRing(Set<String> nodeIds) {
+    checkArgument(nodeIds != null && !nodeIds.isEmpty(), "Cannot build a ring without nodes");
+    this.nodeIds = unmodifiableSet(new HashSet<>(nodeIds));
+    for (String nodeId : this.nodeIds) {
+      for (int i = 0; i < VIRTUAL_NODES; ++i) {
+        ring.put(hash(nodeId + "#" + i), nodeId);
+      }
+    }
+  }
+
+  /**
+   * @return the node that owns {@code key}.
+   */
+  public String ownerOf(String key) {
+    final Entry<Long, String> entry = ring.ceilingEntry(hash(key));
+    return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+  }
+
+  /**
+   * @return the nodes of this ring.
+   */
+  public Set<String> getNodeIds() {
+    return nodeIds;
+  }
+
+  /**
+   * 64-bit FNV-1a of the UTF-8 bytes of {@code value}, finalized with the MurmurHash3 mixer so that similar keys are spread over
+   * the whole ring.
+   */
+  static long hash(String value) {
+    long hash = 0xcbf29ce484222325L;
+    for (byte b : value.getBytes(UTF_8)) {
+      hash ^= b & 0xff;
+      hash *= 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.internal.cluster;
+
+import static java.util.Collections.unmodifiableSet;
+
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * A {@link ClusterMembership} whose nodes are set programmatically, standing in for the membership of an actual cluster in tests
+ * and in single-node deployments.
+ *
+ * @since 2.0
+ */
+public final class LocalClusterMembership implements ClusterMembership {
+
+  private final String localNodeId;
+  private final Set<String> nodeIds = new CopyOnWriteArraySet<>();
+
+  /**
+   * @param localNodeId the id of the local node, which is a member from the start.
+   */
+  public LocalClusterMembership(String localNodeId) {
+    this.localNodeId = localNodeId;
+    nodeIds.add(localNodeId);
+  }
+
+  /**
+   * Adds {@code nodeId} to the cluster.
+   */
+  public void join(String nodeId) {
+    nodeIds.add(nodeId);
+  }
+
+  /**
+   * Removes {@code nodeId} from the cluster.
+   */
+  public void leave(String nodeId) {
+    nodeIds.remove(nodeId);
+  }
+
+  @Override
+  public String getLocalNodeId() {
+    return localNodeId;
+  }
+
+  @Override
+  public Set<String> getNodeIds() {
+    return unmodifiableSet(nodeIds);
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.internal.cluster;
+
+import java.util.Set;
+
+/**
+ * Tells which node of the cluster refreshes the tokens of each resource owner, so that instead of all the nodes that find an
+ * expired token competing for the same cluster-wide lock, only the owner does the refresh and the other nodes wait for its result
+ * in the shared tokens store.
+ * <p>
+ * The ring is rebuilt whenever the {@link ClusterMembership} reports a different set of nodes.
+ *
+ * @since 2.0
+ */
+public final class RefreshOwnership {
+
+  private final ClusterMembership membership;
+  private volatile ConsistentHashRing ring;
+
+  public RefreshOwnership(ClusterMembership membership) {
+    this.membership = membership;
+  }
+
+  /**
+   * @param dancerName the name of the dancer holding the token.
+   * @param resourceOwnerId the resource owner whose token is to be refreshed.
+   * @return whether the local node is the one to refresh the token. It is also the case if the membership doesn't include the
+   *         local node, so that a node that lost track of the cluster keeps refreshing its tokens.
+   */
+  public boolean isOwnedLocally(String dancerName, String resourceOwnerId) {
+    final Set<String> nodeIds = membership.getNodeIds();
+    if (nodeIds.size() <= 1 || !nodeIds.contains(membership.getLocalNodeId())) {
+      return true;
+    }
+
+    ConsistentHashRing current = ring;
+    if (current == null || !current.getNodeIds().equals(nodeIds)) {
+      current = new ConsistentHashRing(nodeIds);
+      ring = current;
+    }
+    return membership.getLocalNodeId().equals(current.ownerOf(dancerName + ":" + resourceOwnerId));
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.internal.cluster;
+
+import static java.lang.System.getProperty;
+import static java.util.Collections.singleton;
+import static java.util.Collections.unmodifiableSet;
+import static org.mule.runtime.core.api.config.MuleProperties.SYSTEM_PROPERTY_PREFIX;
+
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A {@link ClusterMembership} read from system properties: the id of the local node from {@value #NODE_ID_PROPERTY}, the one the
+ * runtime sets on the nodes of a cluster, and the ids of all the nodes from the comma separated {@value #NODE_IDS_PROPERTY}.
+ * <p>
+ * The services of the container can only be injected other services, none of which tells the nodes of the cluster, so this is
+ * how the {@link org.mule.service.oauth.provider.OAuthServiceProvider provider} of the service finds them. The nodes are read
+ * again whenever the property changes, so that a node can be added or removed without restarting the others.
+ *
+ * @since 2.0
+ */
+public final class SystemPropertyClusterMembership implements ClusterMembership {
+
+  /**
+   * System property with the id of the local node of the cluster.
+   */
+  public static final String NODE_ID_PROPERTY = SYSTEM_PROPERTY_PREFIX + "clusterNodeId";
+
+  /**
+   * System property with the ids of the nodes of the cluster, including the local one, separated by commas.
+   */
+  public static final String NODE_IDS_PROPERTY = SYSTEM_PROPERTY_PREFIX + "oauth.clusterNodeIds";
+
+  private final String localNodeId;
+  private volatile NodeIds nodeIds;
+
+  private SystemPropertyClusterMembership(String localNodeId) {
+    this.localNodeId = localNodeId;
+  }
+
+  /**
+   * @return the membership from the system properties, or {@code null} if this node is not in a cluster.
+   */
+  public static ClusterMembership fromSystemProperties() {
+    final String localNodeId = getProperty(NODE_ID_PROPERTY);
+    if (localNodeId == null || localNodeId.trim().isEmpty() || getProperty(NODE_IDS_PROPERTY) == null) {
+      return null;
+    }
+    return new SystemPropertyClusterMembership(localNodeId.trim());
+  }
+
+  @Override
+  public String getLocalNodeId() {
+    return localNodeId;
+  }
+
+  @Override
+  public Set<String> getNodeIds() {
+    final String property = getProperty(NODE_IDS_PROPERTY);
+    NodeIds current = nodeIds;
+    if (current == null || !Objects.equals(current.property, property)) {
+      current = new NodeIds(property, parse(property));
+      nodeIds = current;
+    }
+    return current.ids;
+  }
+
+  private Set<String> parse(String property) {
+    if (property == null) {
+      // Not in a cluster anymore
+      return singleton(localNodeId);
+    }
+    final Set<String> ids = new LinkedHashSet<>();
+    for (String id : property.split(",")) {
+      if (!id.trim().isEmpty()) {
+        ids.add(id.trim());
+      }
+    }
+    return unmodifiableSet(ids);
+  }
+
+  /**
+   * The ids of the nodes along with the value of the property they were read from, so that they are parsed only when it changes.
+   */
+  private static final class NodeIds {
+
+    private final String property;
+    private final Set<String> ids;
+
+    private NodeIds(String property, Set<String> ids) {
+      this.property = property;
+      this.ids = ids;
+    }
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.internal.jfr;
+
+import jdk.jfr.EventType;
+
+/**
+ * Creates and commits the flight recorder events. Only used by {@link OAuthEvents} once it has verified that {@code jdk.jfr} is
+ * present and that this class could be initialized, since registering the event types fails on JVMs built without flight
+ * recorder support.
+ * <p>
+ * Whether each event type is enabled is checked on its {@link EventType} before creating the event, so that nothing is allocated
+ * when it is not being recorded.
+ */
+final class FlightRecorderEmitter {
+
+  private static final EventType TOKEN_REQUEST = EventType.getEventType(TokenRequestEvent.class);
+  private static final EventType REFRESH_LOCK = EventType.getEventType(RefreshLockEvent.class);
+  private static final EventType STORE_LOCK = EventType.getEventType(StoreLockEvent.class);
+  private static final EventType REFRESH_LOCK_HOLD = EventType.getEventType(RefreshLockHoldEvent.class);
+  private static final EventType REFRESH_POLL = EventType.getEventType(RefreshPollEvent.class);
+  private static final EventType TOKENS_STORE_WRITE = EventType.getEventType(TokensStoreWriteEvent.class);
+  private static final EventType LISTENER_CALLBACK = EventType.getEventType(ListenerCallbackEvent.class);
+
+  private FlightRecorderEmitter() {
+    // Nothing to do
+  }
+
+  /**
+   * Does nothing, but calling it initializes this class and registers the event types.
+   */
+  static void init() {
+    // Nothing to do
+  }
+
+  static void tokenRequest(String dancer, String grantType, String tokenUrl, int statusCode, long elapsedNanos) {
+    if (TOKEN_REQUEST.isEnabled()) {
+      final TokenRequestEvent event = new TokenRequestEvent();
+      event.dancer = dancer;
+      event.grantType = grantType;
+      event.tokenUrl = tokenUrl;
+      event.statusCode = statusCode;
+      event.requestTime = elapsedNanos;
+      event.commit();
+    }
+  }
+
+  static void refreshLock(String dancer, String resourceOwner, long elapsedNanos) {
+    if (REFRESH_LOCK.isEnabled()) {
+      final RefreshLockEvent event = new RefreshLockEvent();
+      event.dancer = dancer;
+      event.resourceOwner = resourceOwner;
+      event.waitTime = elapsedNanos;
+      event.commit();
+    }
+  }
+
+  static void refreshLockTimeout(String dancer, String resourceOwner, long elapsedNanos) {
+    if (REFRESH_LOCK.isEnabled()) {
+      final RefreshLockEvent event = new RefreshLockEvent();
+      event.dancer = dancer;
+      event.resourceOwner = resourceOwner;
+      event.waitTime = elapsedNanos;
+      event.timedOut = true;
+      event.commit();
+    }
+  }
+
+  static void storeLock(String dancer, String resourceOwner, String operation, boolean timedOut, long elapsedNanos) {
+    if (STORE_LOCK.isEnabled()) {
+      final StoreLockEvent event = new StoreLockEvent();
+      event.dancer = dancer;
+      event.resourceOwner = resourceOwner;
+      event.operation = operation;
+      event.timedOut = timedOut;
+      event.waitTime = elapsedNanos;
+      event.commit();
+    }
+  }
+
+  static void refreshLockHold(String dancer, String resourceOwner, long elapsedNanos) {
+    if (REFRESH_LOCK_HOLD.isEnabled()) {
+      final RefreshLockHoldEvent event = new RefreshLockHoldEvent();
+      event.dancer = dancer;
+      event.resourceOwner = resourceOwner;
+      event.holdTime = elapsedNanos;
+      event.commit();
+    }
+  }
+
+  static void refreshPoll(String dancer, String resourceOwner, boolean timedOut, long elapsedNanos) {
+    if (REFRESH_POLL.isEnabled()) {
+      final RefreshPollEvent event = new RefreshPollEvent();
+      event.dancer = dancer;
+      event.resourceOwner = resourceOwner;
+      event.timedOut = timedOut;
+      event.waitTime = elapsedNanos;
+      event.commit();
+    }
+  }
+
+  static void tokensStoreWrite(String dancer, String resourceOwner, String dancerState, long elapsedNanos) {
+    if (TOKENS_STORE_WRITE.isEnabled()) {
+      final TokensStoreWriteEvent event = new TokensStoreWriteEvent();
+      event.dancer = dancer;
+      event.resourceOwner = resourceOwner;
+      event.dancerState = dancerState;
+      event.writeTime = elapsedNanos;
+      event.commit();
+    }
+  }
+
+  static void listenerCallback(String dancer, String callback, Object listener, long elapsedNanos) {
+    if (LISTENER_CALLBACK.isEnabled()) {
+      final ListenerCallbackEvent event = new ListenerCallbackEvent();
+      event.dancer = dancer;
+      event.callback = callback;
+      event.listenerClass = listener != null ? listener.getClass().getName() : null;
+      event.callbackTime = elapsedNanos;
+      event.commit();
+    }
+  }
+}
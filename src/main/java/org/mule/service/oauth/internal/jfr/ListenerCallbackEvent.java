@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.internal.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The invocation of a dancer listener or dance callback.
+ */
+@Name("org.mule.oauth.ListenerCallback")
+@Label("Listener Callback")
+@Category({"Mule", "OAuth"})
+@StackTrace(false)
+final class ListenerCallbackEvent extends Event {
+
+  @Label("Dancer")
+  String dancer;
+
+  @Label("Callback")
+  String callback;
+
+  @Label("Listener Class")
+  String listenerClass;
+
+  @Label("Callback Time")
+  @Timespan(Timespan.NANOSECONDS)
+  long callbackTime;
+}
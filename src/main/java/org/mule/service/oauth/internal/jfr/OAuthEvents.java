@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.internal.jfr;
+
+import static java.lang.System.nanoTime;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import org.slf4j.Logger;
+
+/**
+ * Entry point for emitting the OAuth service's Java Flight Recorder events.
+ * <p>
+ * Callers take a {@link System#nanoTime()} timestamp before the measured section and hand it to the corresponding method once
+ * the section is done. When the running JVM has no {@code jdk.jfr} support, or the event type is not enabled in the active
+ * recording, nothing is allocated or recorded.
+ *
+ * @since 2.0
+ */
+public final class OAuthEvents {
+
+  private static final Logger LOGGER = getLogger(OAuthEvents.class);
+
+  private static final boolean JFR_AVAILABLE = isJfrAvailable();
+
+  private OAuthEvents() {
+    // Nothing to do
+  }
+
+  /**
+   * Records a call to the token url.
+   *
+   * @param dancer the name of the dancer doing the call
+   * @param grantType the grant type sent to the token url
+   * @param tokenUrl the url called
+   * @param statusCode the http status of the response, or {@code -1} if no response was received
+   * @param startNanos the {@link System#nanoTime()} when the request was sent
+   */
+  public static void tokenRequest(String dancer, String grantType, String tokenUrl, int statusCode, long startNanos) {
+    if (JFR_AVAILABLE) {
+      FlightRecorderEmitter.tokenRequest(dancer, grantType, tokenUrl, statusCode, nanoTime() - startNanos);
+    }
+  }
+
+  /**
+   * Records the acquisition of the lock that guards the context of a resource owner to refresh its token.
+   *
+   * @param dancer the name of the dancer acquiring the lock
+   * @param resourceOwner the resource owner whose context the lock guards
+   * @param startNanos the {@link System#nanoTime()} when the acquisition started
+   */
+  public static void refreshLockAcquired(String dancer, String resourceOwner, long startNanos) {
+    if (JFR_AVAILABLE) {
+      FlightRecorderEmitter.refreshLock(dancer, resourceOwner, nanoTime() - startNanos);
+    }
+  }
+
+  /**
+   * Records a wait for the lock that guards the context of a resource owner to refresh its token that gave up before acquiring
+   * it.
+   *
+   * @param dancer the name of the dancer waiting for the lock
+   * @param resourceOwner the resource owner whose context the lock guards
+   * @param startNanos the {@link System#nanoTime()} when the acquisition started
+   */
+  public static void refreshLockTimedOut(String dancer, String resourceOwner, long startNanos) {
+    if (JFR_AVAILABLE) {
+      FlightRecorderEmitter.refreshLockTimeout(dancer, resourceOwner, nanoTime() - startNanos);
+    }
+  }
+
+  /**
+   * Records the acquisition of the lock that guards the context of a resource owner to write it to the tokens store, outside of a
+   * token refresh.
+   *
+   * @param dancer the name of the dancer acquiring the lock
+   * @param resourceOwner the resource owner whose context the lock guards
+   * @param operation what is done to the context in the tokens store
+   * @param startNanos the {@link System#nanoTime()} when the acquisition started
+   */
+  public static void storeLockAcquired(String dancer, String resourceOwner, String operation, long startNanos) {
+    if (JFR_AVAILABLE) {
+      FlightRecorderEmitter.storeLock(dancer, resourceOwner, operation, false, nanoTime() - startNanos);
+    }
+  }
+
+  /**
+   * Records a wait for the lock that guards the context of a resource owner to write it to the tokens store that gave up before
+   * acquiring it.
+   *
+   * @param dancer the name of the dancer waiting for the lock
+   * @param resourceOwner the resource owner whose context the lock guards
+   * @param operation what was to be done to the context in the tokens store
+   * @param startNanos the {@link System#nanoTime()} when the acquisition started
+   */
+  public static void storeLockTimedOut(String dancer, String resourceOwner, String operation, long startNanos) {
+    if (JFR_AVAILABLE) {
+      FlightRecorderEmitter.storeLock(dancer, resourceOwner, operation, true, nanoTime() - startNanos);
+    }
+  }
+
+  /**
+   * Records the release of the lock that guards the context of a resource owner.
+   *
+   * @param dancer the name of the dancer that held the lock
+   * @param resourceOwner the resource owner whose context the lock guards
+   * @param acquiredNanos the {@link System#nanoTime()} when the lock was acquired
+   */
+  public static void refreshLockHeld(String dancer, String resourceOwner, long acquiredNanos) {
+    if (JFR_AVAILABLE) {
+      FlightRecorderEmitter.refreshLockHold(dancer, resourceOwner, nanoTime() - acquiredNanos);
+    }
+  }
+
+  /**
+   * Records the wait for a token refresh being done by another thread or node.
+   *
+   * @param dancer the name of the waiting dancer
+   * @param resourceOwner the resource owner whose token is being refreshed
+   * @param timedOut whether the wait gave up before the refresh completed
+   * @param startNanos the {@link System#nanoTime()} when the wait started
+   */
+  public static void refreshPoll(String dancer, String resourceOwner, boolean timedOut, long startNanos) {
+    if (JFR_AVAILABLE) {
+      FlightRecorderEmitter.refreshPoll(dancer, resourceOwner, timedOut, nanoTime() - startNanos);
+    }
+  }
+
+  /**
+   * Records a write of a resource owner context to the tokens store.
+   *
+   * @param dancer the name of the dancer writing the context
+   * @param resourceOwner the resource owner whose context was written
+   * @param dancerState the state of the written context
+   * @param startNanos the {@link System#nanoTime()} when the write started, lock acquisition included
+   */
+  public static void tokensStoreWrite(String dancer, String resourceOwner, String dancerState, long startNanos) {
+    if (JFR_AVAILABLE) {
+      FlightRecorderEmitter.tokensStoreWrite(dancer, resourceOwner, dancerState, nanoTime() - startNanos);
+    }
+  }
+
+  /**
+   * Records the invocation of a listener or dance callback.
+   *
+   * @param dancer the name of the dancer invoking the callback
+   * @param callback the kind of callback invoked
+   * @param listener the object that was called
+   * @param startNanos the {@link System#nanoTime()} when the callback was invoked
+   */
+  public static void listenerCallback(String dancer, String callback, Object listener, long startNanos) {
+    if (JFR_AVAILABLE) {
+      FlightRecorderEmitter.listenerCallback(dancer, callback, listener, nanoTime() - startNanos);
+    }
+  }
+
+  private static boolean isJfrAvailable() {
+    try {
+      Class.forName("jdk.jfr.Event", false, OAuthEvents.class.getClassLoader());
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+    try {
+      // The classes may be there but registering the event types fail, for instance on a JVM built without flight recorder
+      FlightRecorderEmitter.init();
+      return true;
+    } catch (LinkageError | InternalError e) {
+      LOGGER.debug("Flight recorder events of the OAuth service are disabled, they could not be registered", e);
+      return false;
+    }
+  }
+}
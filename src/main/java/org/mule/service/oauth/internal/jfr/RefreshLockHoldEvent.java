@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.internal.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The time the lock that guards the OAuth context of a resource owner is held.
+ */
+@Name("org.mule.oauth.RefreshLockHold")
+@Label("Refresh Lock Hold")
+@Category({"Mule", "OAuth"})
+@StackTrace(false)
+final class RefreshLockHoldEvent extends Event {
+
+  @Label("Dancer")
+  String dancer;
+
+  @Label("Resource Owner")
+  String resourceOwner;
+
+  @Label("Hold Time")
+  @Timespan(Timespan.NANOSECONDS)
+  long holdTime;
+}
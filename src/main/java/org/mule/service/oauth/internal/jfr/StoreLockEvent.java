@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.internal.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The acquisition of the lock that guards the OAuth context of a resource owner to write it to the tokens store, outside of a
+ * token refresh.
+ */
+@Name("org.mule.oauth.StoreLock")
+@Label("Store Lock Acquisition")
+@Category({"Mule", "OAuth"})
+@StackTrace(false)
+final class StoreLockEvent extends Event {
+
+  @Label("Dancer")
+  String dancer;
+
+  @Label("Resource Owner")
+  String resourceOwner;
+
+  @Label("Operation")
+  String operation;
+
+  @Label("Wait Time")
+  @Timespan(Timespan.NANOSECONDS)
+  long waitTime;
+
+  @Label("Timed Out")
+  boolean timedOut;
+}
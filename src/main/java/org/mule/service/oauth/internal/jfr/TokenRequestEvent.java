@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.internal.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A call to the token url of an OAuth provider, from the moment it is sent until its response is processed.
+ */
+@Name("org.mule.oauth.TokenRequest")
+@Label("Token Request")
+@Category({"Mule", "OAuth"})
+@StackTrace(false)
+final class TokenRequestEvent extends Event {
+
+  @Label("Dancer")
+  String dancer;
+
+  @Label("Grant Type")
+  String grantType;
+
+  @Label("Token URL")
+  String tokenUrl;
+
+  @Label("Status Code")
+  @Description("HTTP status of the response, -1 if no response was received")
+  int statusCode;
+
+  @Label("Request Time")
+  @Timespan(Timespan.NANOSECONDS)
+  long requestTime;
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.internal.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A write of the OAuth context of a resource owner to the tokens store, including the wait for its lock.
+ */
+@Name("org.mule.oauth.TokensStoreWrite")
+@Label("Tokens Store Write")
+@Category({"Mule", "OAuth"})
+@StackTrace(false)
+final class TokensStoreWriteEvent extends Event {
+
+  @Label("Dancer")
+  String dancer;
+
+  @Label("Resource Owner")
+  String resourceOwner;
+
+  @Label("Dancer State")
+  String dancerState;
+
+  @Label("Write Time")
+  @Timespan(Timespan.NANOSECONDS)
+  long writeTime;
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.internal.state;
+
+/**
+ * The strings derived from a resource owner id by a dancer: the key of its context in the tokens store and the name of the lock
+ * that guards it. These are computed once for each read of a context, and reused for the later accesses to the store for that
+ * context, as the transformation of the id may depend on the caller.
+ *
+ * @since 2.0
+ */
+public final class ResourceOwnerKey {
+
+  private final String resourceOwnerId;
+  private final String transformedId;
+  private final String lockName;
+  private final int hash;
+
+  /**
+   * @param resourceOwnerId the id of the resource owner.
+   * @param transformedId the key of the context of the resource owner in the tokens store.
+   * @param lockName the name of the lock for the context of the resource owner.
+   */
+  public ResourceOwnerKey(String resourceOwnerId, String transformedId, String lockName) {
+    this.resourceOwnerId = resourceOwnerId;
+    this.transformedId = transformedId;
+    this.lockName = lockName;
+    this.hash = transformedId.hashCode();
+  }
+
+  public String getResourceOwnerId() {
+    return resourceOwnerId;
+  }
+
+  /**
+   * @return the key of the context of the resource owner in the tokens store.
+   */
+  public String getTransformedId() {
+    return transformedId;
+  }
+
+  /**
+   * @return the name of the lock for the context of the resource owner.
+   */
+  public String getLockName() {
+    return lockName;
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof ResourceOwnerKey)) {
+      return false;
+    }
+    final ResourceOwnerKey other = (ResourceOwnerKey) obj;
+    return hash == other.hash && transformedId.equals(other.transformedId) && lockName.equals(other.lockName);
+  }
+
+  @Override
+  public String toString() {
+    return "ResourceOwnerKey[" + transformedId + "]";
+  }
+}
@@ -14,13 +14,52 @@ import static org.mule.service.oauth.internal.state.StateEncoder.RESOURCE_OWNER_
  */
 public class StateDecoder {
 
-  private String state;
+  private final String originalState;
+  private final String resourceOwnerId;
+  private final String onCompleteRedirectTo;
 
   /**
+   * Splits {@code state} in all of its components in a single pass.
+   * <p>
+   * {@link StateEncoder} always writes the parameters after the original state, with the on complete redirect to last, and does
+   * not allow the markers in any value but the on complete redirect to. So the first on complete redirect to marker ends the
+   * resource owner id, and everything after it is the redirect url, no matter which markers it contains.
+   *
    * @param state the raw state or null if there's no state.
    */
   public StateDecoder(String state) {
-    this.state = state;
+    if (state == null) {
+      originalState = null;
+      resourceOwnerId = null;
+      onCompleteRedirectTo = null;
+      return;
+    }
+
+    int resourceOwnerIdIndex = -1;
+    int onCompleteRedirectToIndex = -1;
+    for (int i = state.indexOf(':'); i != -1; i = state.indexOf(':', i + 1)) {
+      if (state.startsWith(ON_COMPLETE_REDIRECT_TO_PARAM_NAME_ASSIGN, i)) {
+        onCompleteRedirectToIndex = i;
+        break;
+      } else if (resourceOwnerIdIndex == -1 && state.startsWith(RESOURCE_OWNER_PARAM_NAME_ASSIGN, i)) {
+        resourceOwnerIdIndex = i;
+        i += RESOURCE_OWNER_PARAM_NAME_ASSIGN.length() - 1;
+      }
+    }
+
+    final int headEnd = onCompleteRedirectToIndex != -1 ? onCompleteRedirectToIndex : state.length();
+    final int originalStateEnd = resourceOwnerIdIndex != -1 ? resourceOwnerIdIndex : onCompleteRedirectToIndex;
+    if (originalStateEnd == -1) {
+      originalState = state;
+    } else {
+      originalState = originalStateEnd == 0 ? null : state.substring(0, originalStateEnd);
+    }
+    resourceOwnerId = resourceOwnerIdIndex != -1
+        ? state.substring(resourceOwnerIdIndex + RESOURCE_OWNER_PARAM_NAME_ASSIGN.length(), headEnd)
+        : null;
+    onCompleteRedirectTo = onCompleteRedirectToIndex != -1
+        ? state.substring(onCompleteRedirectToIndex + ON_COMPLETE_REDIRECT_TO_PARAM_NAME_ASSIGN.length())
+        : null;
   }
 
   /**
@@ -30,18 +69,6 @@ public class StateDecoder {
    * @return the original state, null if the original state was empty.
    */
   public String decodeOriginalState() {
-    String originalState = state;
-    if (state != null) {
-      final int indexOfResourceOwnerParameter = state.indexOf(RESOURCE_OWNER_PARAM_NAME_ASSIGN);
-      final int resourceOwnerIdSuffixIndex = indexOfResourceOwnerParameter != -1 ? indexOfResourceOwnerParameter
-          : state.indexOf(ON_COMPLETE_REDIRECT_TO_PARAM_NAME_ASSIGN);
-      if (resourceOwnerIdSuffixIndex != -1) {
-        originalState = state.substring(0, resourceOwnerIdSuffixIndex);
-        if (originalState.isEmpty()) {
-          originalState = null;
-        }
-      }
-    }
     return originalState;
   }
 
@@ -51,7 +78,7 @@ public class StateDecoder {
    * @return the resource owner id, null if there's no oauth state id encoded in it.
    */
   public String decodeResourceOwnerId() {
-    return decodeParameter(RESOURCE_OWNER_PARAM_NAME_ASSIGN);
+    return resourceOwnerId;
   }
 
   /**
@@ -61,28 +88,7 @@ public class StateDecoder {
    * @return the resource owner id, null if there's no oauth state id encoded in it.
    */
   public String decodeOnCompleteRedirectTo() {
-    String parameterValue = null;
-    if (state != null && state.contains(ON_COMPLETE_REDIRECT_TO_PARAM_NAME_ASSIGN)) {
-      final int onCompleteRedirectToSuffixIndex = state.indexOf(ON_COMPLETE_REDIRECT_TO_PARAM_NAME_ASSIGN);
-      parameterValue =
-          state.substring(onCompleteRedirectToSuffixIndex + ON_COMPLETE_REDIRECT_TO_PARAM_NAME_ASSIGN.length(),
-                          state.length());
-    }
-    return parameterValue;
-  }
-
-  private String decodeParameter(String parameterNameAssignation) {
-    String parameterValue = null;
-    if (state != null && state.contains(parameterNameAssignation)) {
-      final int resourceOwnerIdSuffixIndex = state.indexOf(parameterNameAssignation);
-      final String stateCustomParameters =
-          state.substring(resourceOwnerIdSuffixIndex + parameterNameAssignation.length(), state.length());
-      final int onCompleteRedirectToParamIndex =
-          stateCustomParameters.indexOf(ON_COMPLETE_REDIRECT_TO_PARAM_NAME_ASSIGN);
-      int endIndex = onCompleteRedirectToParamIndex != -1 ? onCompleteRedirectToParamIndex : stateCustomParameters.length();
-      parameterValue = stateCustomParameters.substring(0, endIndex);
-    }
-    return parameterValue;
+    return onCompleteRedirectTo;
   }
 
 }
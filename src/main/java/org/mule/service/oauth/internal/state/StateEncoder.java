@@ -21,6 +21,9 @@ public class StateEncoder {
   private String state;
 
   public StateEncoder(String originalState) {
+    Preconditions.checkArgument(!containsParameterName(originalState),
+                                "original state cannot contain " + RESOURCE_OWNER_PARAM_NAME_ASSIGN + " or "
+                                    + ON_COMPLETE_REDIRECT_TO_PARAM_NAME_ASSIGN);
     this.state = originalState;
   }
 
@@ -31,6 +34,11 @@ public class StateEncoder {
    * @return an updated state with the original content plus the oath state id.
    */
   public void encodeResourceOwnerIdInState(final String resourceOwnerId) {
+    Preconditions.checkArgument(!containsParameterName(resourceOwnerId),
+                                "resource owner id cannot contain " + RESOURCE_OWNER_PARAM_NAME_ASSIGN + " or "
+                                    + ON_COMPLETE_REDIRECT_TO_PARAM_NAME_ASSIGN);
+    Preconditions.checkArgument(state == null || !state.contains(RESOURCE_OWNER_PARAM_NAME_ASSIGN),
+                                "resource owner id already encoded in state");
     encodeParameter(resourceOwnerId, RESOURCE_OWNER_PARAM_NAME_ASSIGN);
   }
 
@@ -55,6 +63,11 @@ public class StateEncoder {
     }
   }
 
+  private static boolean containsParameterName(String value) {
+    return value != null
+        && (value.contains(RESOURCE_OWNER_PARAM_NAME_ASSIGN) || value.contains(ON_COMPLETE_REDIRECT_TO_PARAM_NAME_ASSIGN));
+  }
+
   public String getEncodedState() {
     return state;
   }
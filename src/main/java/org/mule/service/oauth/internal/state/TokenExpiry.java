@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.internal.state;
+
+import static java.lang.Long.MAX_VALUE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Base64.getUrlDecoder;
+import static java.util.Optional.empty;
+import static java.util.Optional.of;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * When an access token expires, as an absolute instant in millis so that checking it is a single comparison.
+ * <p>
+ * It is derived either from the {@code expires_in} of the token response or, for providers that omit it, from the {@code exp} and
+ * {@code iat} claims of a JWT access token. The signature of the JWT is not verified: the claims are only used to know when to
+ * refresh, not to trust the token.
+ *
+ * @since 2.0
+ */
+public final class TokenExpiry {
+
+  /**
+   * The expiry of a token for which neither {@code expires_in} nor JWT claims are available. It never expires.
+   */
+  public static final TokenExpiry UNKNOWN = new TokenExpiry(MAX_VALUE, -1);
+
+  private static final long MAX_SECONDS = MAX_VALUE / 1000;
+
+  private final long expiresAtMillis;
+  private final long lifetimeSeconds;
+
+  private TokenExpiry(long expiresAtMillis, long lifetimeSeconds) {
+    this.expiresAtMillis = expiresAtMillis;
+    this.lifetimeSeconds = lifetimeSeconds;
+  }
+
+  /**
+   * @param expiresIn the {@code expires_in} of the token response, may be {@code null}.
+   * @param receivedAtMillis when the token response was received.
+   * @return the expiry of the token, or {@link #UNKNOWN} if {@code expiresIn} is not a positive number of seconds.
+   */
+  public static TokenExpiry fromExpiresIn(String expiresIn, long receivedAtMillis) {
+    if (expiresIn == null) {
+      return UNKNOWN;
+    }
+    final String trimmed = expiresIn.trim();
+    final long seconds = readSeconds(trimmed, 0);
+    if (seconds <= 0 || !trimmed.chars().allMatch(Character::isDigit)) {
+      return UNKNOWN;
+    }
+    return new TokenExpiry(plusSeconds(receivedAtMillis, seconds), seconds);
+  }
+
+  /**
+   * @param expiresAtMillis when the token expires, as previously obtained from {@link #getExpiresAt()}.
+   * @return the expiry of the token, whose lifetime as issued is not known.
+   */
+  public static TokenExpiry at(long expiresAtMillis) {
+    return new TokenExpiry(expiresAtMillis, -1);
+  }
+
+  /**
+   * Decodes the {@code exp} and {@code iat} claims of a JWT access token just received from the token url.
+   * <p>
+   * When the token has an {@code iat}, the expiry is relative to {@code receivedAtMillis}, so a skew between the clocks of the
+   * provider and this node does not shorten or stretch the lifetime of the token.
+   *
+   * @param accessToken the access token, which may or may not be a JWT.
+   * @param receivedAtMillis when the token response was received.
+   * @return the expiry of the token, or {@link #UNKNOWN} if it is not a JWT with an {@code exp} claim.
+   */
+  public static TokenExpiry fromJwt(String accessToken, long receivedAtMillis) {
+    final long[] claims = decodeClaims(accessToken);
+    if (claims == null) {
+      return UNKNOWN;
+    }
+    final long exp = claims[0];
+    final long iat = claims[1];
+    if (iat >= 0 && exp >= iat) {
+      return new TokenExpiry(plusSeconds(receivedAtMillis, exp - iat), exp - iat);
+    }
+    final long expiresAtMillis = plusSeconds(0, exp);
+    return new TokenExpiry(expiresAtMillis, Math.max(0, (expiresAtMillis - receivedAtMillis) / 1000));
+  }
+
+  /**
+   * Decodes the {@code exp} claim of a JWT access token whose response was not processed by this node, such as one refreshed by
+   * another node of the cluster.
+   *
+   * @param accessToken the access token, which may or may not be a JWT.
+   * @return the expiry of the token, or {@link #UNKNOWN} if it is not a JWT with an {@code exp} claim.
+   */
+  public static TokenExpiry fromJwt(String accessToken) {
+    final long[] claims = decodeClaims(accessToken);
+    if (claims == null) {
+      return UNKNOWN;
+    }
+    return new TokenExpiry(plusSeconds(0, claims[0]), -1);
+  }
+
+  /**
+   * @return whether the token is expired at {@code nowMillis}.
+   */
+  public boolean isExpired(long nowMillis) {
+    return nowMillis >= expiresAtMillis;
+  }
+
+  /**
+   * @return whether the expiry of the token is known.
+   */
+  public boolean isKnown() {
+    return this != UNKNOWN;
+  }
+
+  /**
+   * @return when the token expires, if known.
+   */
+  public Optional<Instant> getExpiresAt() {
+    return isKnown() ? of(Instant.ofEpochMilli(expiresAtMillis)) : empty();
+  }
+
+  /**
+   * @return the lifetime of the token in seconds as issued, or a negative number if not known.
+   */
+  public long getLifetimeSeconds() {
+    return lifetimeSeconds;
+  }
+
+  private static long plusSeconds(long millis, long seconds) {
+    return seconds >= (MAX_VALUE - millis) / 1000 ? MAX_VALUE : millis + seconds * 1000;
+  }
+
+  /**
+   * @return the {@code exp} and {@code iat} (-1 if absent) claims of {@code accessToken}, or {@code null} if it is not a signed
+   *         JWT with an {@code exp} claim.
+   */
+  private static long[] decodeClaims(String accessToken) {
+    if (accessToken == null) {
+      return null;
+    }
+    final int payloadStart = accessToken.indexOf('.') + 1;
+    final int payloadEnd = payloadStart == 0 ? -1 : accessToken.indexOf('.', payloadStart);
+    // Only the compact serialization of a JWS has its claims in clear, in the second of its 3 parts
+    if (payloadEnd < 0 || accessToken.indexOf('.', payloadEnd + 1) >= 0) {
+      return null;
+    }
+
+    final String json;
+    try {
+      json = new String(getUrlDecoder().decode(accessToken.substring(payloadStart, payloadEnd)), UTF_8);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+
+    long exp = -1;
+    long iat = -1;
+    int depth = 0;
+    int i = 0;
+    while (i < json.length()) {
+      final char c = json.charAt(i);
+      if (c == '"') {
+        final int end = endOfString(json, i + 1);
+        if (end < 0) {
+          return null;
+        }
+        int next = skipWhitespace(json, end + 1);
+        if (depth == 1 && next < json.length() && json.charAt(next) == ':') {
+          // A member of the claims object, not of a nested one
+          next = skipWhitespace(json, next + 1);
+          if (json.regionMatches(i, "\"exp\"", 0, end + 1 - i)) {
+            exp = readSeconds(json, next);
+          } else if (json.regionMatches(i, "\"iat\"", 0, end + 1 - i)) {
+            iat = readSeconds(json, next);
+          }
+        }
+        i = next;
+      } else {
+        if (c == '{' || c == '[') {
+          depth++;
+        } else if (c == '}' || c == ']') {
+          depth--;
+        }
+        i++;
+      }
+    }
+
+    return exp < 0 ? null : new long[] {exp, iat};
+  }
+
+  private static int endOfString(String json, int from) {
+    for (int i = from; i < json.length(); ++i) {
+      final char c = json.charAt(i);
+      if (c == '\\') {
+        ++i;
+      } else if (c == '"') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static int skipWhitespace(String json, int from) {
+    int i = from;
+    while (i < json.length() && Character.isWhitespace(json.charAt(i))) {
+      ++i;
+    }
+    return i;
+  }
+
+  /**
+   * @return the whole seconds of the non-negative number at {@code from}, ignoring any fraction, or -1 if there is none.
+   */
+  private static long readSeconds(String value, int from) {
+    long seconds = 0;
+    int i = from;
+    while (i < value.length() && value.charAt(i) >= '0' && value.charAt(i) <= '9') {
+      seconds = seconds >= MAX_SECONDS ? MAX_SECONDS : seconds * 10 + (value.charAt(i) - '0');
+      ++i;
+    }
+    return i == from ? -1 : seconds;
+  }
+
+  @Override
+  public String toString() {
+    return "TokenExpiry[expiresAt: " + (isKnown() ? Instant.ofEpochMilli(expiresAtMillis) : "unknown") + "]";
+  }
+}
@@ -0,0 +1,385 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.internal.state;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.deleteIfExists;
+import static java.nio.file.Files.exists;
+import static java.nio.file.Files.move;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.nio.file.attribute.PosixFilePermissions.asFileAttribute;
+import static java.nio.file.attribute.PosixFilePermissions.fromString;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * A local file with the still valid tokens of a dancer, so that they can be used right away after a restart instead of getting
+ * new ones from the token url.
+ * <p>
+ * The file is encrypted with AES-GCM, with a key derived from the client credentials of the dancer with PBKDF2 and a random salt
+ * kept in the file, so only a dancer configured with the same credentials can read it and any tampering makes it unreadable. It is written to a temporary file which then
+ * replaces the previous snapshot, so a crash while writing leaves the previous snapshot in place.
+ *
+ * @since 2.0
+ */
+public final class TokenSnapshot {
+
+  private static final byte[] MAGIC = {'M', 'O', 'T', 'S'};
+  private static final int FORMAT_VERSION = 2;
+  private static final String CIPHER = "AES/GCM/NoPadding";
+  private static final int IV_LENGTH = 12;
+  private static final int TAG_LENGTH_BITS = 128;
+  private static final String KEY_DERIVATION = "PBKDF2WithHmacSHA256";
+  private static final int KEY_DERIVATION_ITERATIONS = 100000;
+  private static final int KEY_LENGTH_BITS = 256;
+  private static final int SALT_LENGTH = 16;
+  private static final int HEADER_LENGTH = MAGIC.length + 4 + SALT_LENGTH;
+
+  private static final SecureRandom RANDOM = new SecureRandom();
+
+  private final Path file;
+  private final char[] credentials;
+  // Deriving the key is slow on purpose, so it is done once for the salt of the file and reused while it doesn't change
+  private volatile SaltedKey saltedKey;
+
+  private TokenSnapshot(Path file, char[] credentials) {
+    this.file = file;
+    this.credentials = credentials;
+  }
+
+  /**
+   * @param directory where the snapshots are kept.
+   * @param dancerName the name of the dancer whose tokens are kept in the snapshot.
+   * @param tokenUrl the token url of the dancer.
+   * @param clientId the client id of the dancer.
+   * @param clientSecret the client secret of the dancer.
+   * @return the snapshot for the dancer.
+   */
+  public static TokenSnapshot forDancer(Path directory, String dancerName, String tokenUrl, String clientId,
+                                        String clientSecret) {
+    final byte[] fileId = sha256("file", dancerName, tokenUrl, clientId);
+    final StringBuilder fileName = new StringBuilder();
+    for (int i = 0; i < 16; ++i) {
+      fileName.append(String.format("%02x", fileId[i]));
+    }
+    return new TokenSnapshot(directory.resolve(fileName.append(".snapshot").toString()),
+                             ((clientId != null ? clientId : "") + '\0' + (clientSecret != null ? clientSecret : ""))
+                                 .toCharArray());
+  }
+
+  private SaltedKey keyFor(byte[] salt) throws GeneralSecurityException {
+    final SaltedKey current = saltedKey;
+    if (current != null && Arrays.equals(current.salt, salt)) {
+      return current;
+    }
+    final PBEKeySpec spec = new PBEKeySpec(credentials, salt, KEY_DERIVATION_ITERATIONS, KEY_LENGTH_BITS);
+    try {
+      final byte[] key = SecretKeyFactory.getInstance(KEY_DERIVATION).generateSecret(spec).getEncoded();
+      final SaltedKey derived = new SaltedKey(salt, new SecretKeySpec(key, "AES"));
+      saltedKey = derived;
+      return derived;
+    } finally {
+      spec.clearPassword();
+    }
+  }
+
+  private SaltedKey keyForWrite() throws GeneralSecurityException {
+    final SaltedKey current = saltedKey;
+    if (current != null) {
+      return current;
+    }
+    final byte[] salt = new byte[SALT_LENGTH];
+    RANDOM.nextBytes(salt);
+    return keyFor(salt);
+  }
+
+  private static byte[] sha256(String purpose, String... values) {
+    try {
+      final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(("mule-oauth-token-snapshot-" + purpose).getBytes(UTF_8));
+      for (String value : values) {
+        // Separated, so that moving characters from one value to the next gives a different digest
+        digest.update((byte) 0);
+        if (value != null) {
+          digest.update(value.getBytes(UTF_8));
+        }
+      }
+      return digest.digest();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+
+  public Path getFile() {
+    return file;
+  }
+
+  /**
+   * Replaces the snapshot with {@code entries}.
+   *
+   * @throws IOException if the snapshot could not be written.
+   */
+  public void write(Collection<Entry> entries) throws IOException {
+    final ByteArrayOutputStream plain = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(plain)) {
+      out.writeInt(entries.size());
+      for (Entry entry : entries) {
+        writeString(out, entry.storeKey);
+        writeString(out, entry.resourceOwnerId);
+        writeString(out, entry.accessToken);
+        writeString(out, entry.refreshToken);
+        writeString(out, entry.expiresIn);
+        out.writeLong(entry.expiresAtMillis);
+        out.writeInt(entry.tokenResponseParameters.size());
+        for (Map.Entry<String, String> parameter : entry.tokenResponseParameters.entrySet()) {
+          writeString(out, parameter.getKey());
+          writeString(out, parameter.getValue());
+        }
+      }
+    }
+
+    final byte[] iv = new byte[IV_LENGTH];
+    RANDOM.nextBytes(iv);
+    final ByteBuffer header;
+    final byte[] encrypted;
+    try {
+      // The salt of the file read on start, if any, is kept
+      final SaltedKey key = keyForWrite();
+      header = header(key.salt);
+      final Cipher cipher = Cipher.getInstance(CIPHER);
+      cipher.init(Cipher.ENCRYPT_MODE, key.key, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+      cipher.updateAAD(header.array());
+      encrypted = cipher.doFinal(plain.toByteArray());
+    } catch (GeneralSecurityException e) {
+      throw new IOException("Could not encrypt token snapshot " + file, e);
+    }
+
+    createDirectories(file.getParent());
+    final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    // Left by a crash while writing. Not reused, so that the new one is created with the permissions below
+    deleteIfExists(temp);
+    final Set<OpenOption> options = new HashSet<>(Arrays.asList(CREATE_NEW, WRITE));
+    try (FileChannel channel = FileChannel.open(temp, options, ownerOnly(temp))) {
+      final ByteBuffer[] content = {header, ByteBuffer.wrap(iv), ByteBuffer.wrap(encrypted)};
+      while (content[2].hasRemaining()) {
+        channel.write(content);
+      }
+      channel.force(false);
+    }
+    move(temp, file, REPLACE_EXISTING, ATOMIC_MOVE);
+  }
+
+  /**
+   * @return the attributes to create {@code path} readable and writable only by its owner, not even for an instant with the
+   *         default permissions, or none if it is not in a POSIX file system, where the permissions of the directory apply.
+   */
+  private static FileAttribute<?>[] ownerOnly(Path path) {
+    if (!path.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+      return new FileAttribute<?>[0];
+    }
+    return new FileAttribute<?>[] {asFileAttribute(fromString("rw-------"))};
+  }
+
+  /**
+   * Reads the snapshot, decrypting it once read into memory.
+   *
+   * @return the entries in the snapshot, empty if there is no snapshot.
+   * @throws IOException if the snapshot could not be read, or it was written with other credentials or tampered with.
+   */
+  public List<Entry> read() throws IOException {
+    if (!exists(file)) {
+      return unmodifiableList(new ArrayList<>());
+    }
+
+    final ByteBuffer plain;
+    try (FileChannel channel = FileChannel.open(file, READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Token snapshot " + file + " is too large");
+      }
+      final ByteBuffer content = ByteBuffer.allocate((int) channel.size());
+      while (content.hasRemaining() && channel.read(content) >= 0) {
+        // Until the whole file is read
+      }
+      content.flip();
+      final byte[] header = new byte[HEADER_LENGTH];
+      final byte[] iv = new byte[IV_LENGTH];
+      try {
+        content.get(header).get(iv);
+      } catch (BufferUnderflowException e) {
+        throw new IOException("Token snapshot " + file + " is truncated");
+      }
+      final byte[] salt = Arrays.copyOfRange(header, HEADER_LENGTH - SALT_LENGTH, HEADER_LENGTH);
+      if (!Arrays.equals(header, header(salt).array())) {
+        throw new IOException("Token snapshot " + file + " has an unknown format");
+      }
+
+      final Cipher cipher = Cipher.getInstance(CIPHER);
+      cipher.init(Cipher.DECRYPT_MODE, keyFor(salt).key, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+      cipher.updateAAD(header);
+      plain = ByteBuffer.allocate(cipher.getOutputSize(content.remaining()));
+      cipher.doFinal(content, plain);
+      plain.flip();
+    } catch (GeneralSecurityException e) {
+      throw new IOException("Could not decrypt token snapshot " + file, e);
+    }
+
+    try {
+      final int count = plain.getInt();
+      final List<Entry> entries = new ArrayList<>(count);
+      for (int i = 0; i < count; ++i) {
+        final String storeKey = readString(plain);
+        final String resourceOwnerId = readString(plain);
+        final String accessToken = readString(plain);
+        final String refreshToken = readString(plain);
+        final String expiresIn = readString(plain);
+        final long expiresAtMillis = plain.getLong();
+        final int parameters = plain.getInt();
+        final Map<String, String> tokenResponseParameters = new LinkedHashMap<>();
+        for (int j = 0; j < parameters; ++j) {
+          tokenResponseParameters.put(readString(plain), readString(plain));
+        }
+        entries.add(new Entry(storeKey, resourceOwnerId, accessToken, refreshToken, expiresIn, expiresAtMillis,
+                              tokenResponseParameters));
+      }
+      return unmodifiableList(entries);
+    } catch (BufferUnderflowException | IllegalArgumentException e) {
+      throw new IOException("Token snapshot " + file + " is corrupt", e);
+    }
+  }
+
+  private static ByteBuffer header(byte[] salt) {
+    final ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+    header.put(MAGIC).putInt(FORMAT_VERSION).put(salt).flip();
+    return header;
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+    } else {
+      final byte[] bytes = value.getBytes(UTF_8);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  private static String readString(ByteBuffer in) {
+    final int length = in.getInt();
+    if (length < 0) {
+      return null;
+    }
+    final byte[] bytes = new byte[length];
+    in.get(bytes);
+    return new String(bytes, UTF_8);
+  }
+
+  private static final class SaltedKey {
+
+    private final byte[] salt;
+    private final SecretKeySpec key;
+
+    private SaltedKey(byte[] salt, SecretKeySpec key) {
+      this.salt = salt;
+      this.key = key;
+    }
+  }
+
+  /**
+   * The token of a resource owner in a snapshot.
+   */
+  public static final class Entry {
+
+    private final String storeKey;
+    private final String resourceOwnerId;
+    private final String accessToken;
+    private final String refreshToken;
+    private final String expiresIn;
+    private final long expiresAtMillis;
+    private final Map<String, String> tokenResponseParameters;
+
+    /**
+     * @param storeKey the key of the context of the resource owner in the tokens store.
+     * @param resourceOwnerId the id of the resource owner.
+     * @param accessToken the access token.
+     * @param refreshToken the refresh token, may be {@code null}.
+     * @param expiresIn the {@code expires_in} of the token response, may be {@code null}.
+     * @param expiresAtMillis when the access token expires.
+     * @param tokenResponseParameters the custom parameters extracted from the token response.
+     */
+    public Entry(String storeKey, String resourceOwnerId, String accessToken, String refreshToken, String expiresIn,
+                 long expiresAtMillis, Map<String, String> tokenResponseParameters) {
+      this.storeKey = storeKey;
+      this.resourceOwnerId = resourceOwnerId;
+      this.accessToken = accessToken;
+      this.refreshToken = refreshToken;
+      this.expiresIn = expiresIn;
+      this.expiresAtMillis = expiresAtMillis;
+      this.tokenResponseParameters = unmodifiableMap(new LinkedHashMap<>(tokenResponseParameters));
+    }
+
+    public String getStoreKey() {
+      return storeKey;
+    }
+
+    public String getResourceOwnerId() {
+      return resourceOwnerId;
+    }
+
+    public String getAccessToken() {
+      return accessToken;
+    }
+
+    public String getRefreshToken() {
+      return refreshToken;
+    }
+
+    public String getExpiresIn() {
+      return expiresIn;
+    }
+
+    public long getExpiresAtMillis() {
+      return expiresAtMillis;
+    }
+
+    public Map<String, String> getTokenResponseParameters() {
+      return tokenResponseParameters;
+    }
+  }
+}
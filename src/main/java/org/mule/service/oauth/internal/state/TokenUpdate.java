@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.service.oauth.internal.state;
+
+import static java.util.Optional.ofNullable;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * A token just stored by a dancer for a resource owner, as emitted to the subscribers of its token updates.
+ *
+ * @since 2.0
+ */
+public final class TokenUpdate {
+
+  private final String resourceOwnerId;
+  private final String accessToken;
+  private final String expiresIn;
+  private final Instant expiresAt;
+
+  public TokenUpdate(String resourceOwnerId, String accessToken, String expiresIn, Instant expiresAt) {
+    this.resourceOwnerId = resourceOwnerId;
+    this.accessToken = accessToken;
+    this.expiresIn = expiresIn;
+    this.expiresAt = expiresAt;
+  }
+
+  public String getResourceOwnerId() {
+    return resourceOwnerId;
+  }
+
+  public String getAccessToken() {
+    return accessToken;
+  }
+
+  /**
+   * @return the {@code expires_in} as returned by the token url, may be {@code null}.
+   */
+  public String getExpiresIn() {
+    return expiresIn;
+  }
+
+  /**
+   * @return when the token expires, if known.
+   */
+  public Optional<Instant> getExpiresAt() {
+    return ofNullable(expiresAt);
+  }
+
+  @Override
+  public String toString() {
+    return "TokenUpdate[resourceOwnerId: " + resourceOwnerId + ", expiresAt: " + expiresAt + "]";
+  }
+}
@@ -6,6 +6,8 @@
  */
 package org.mule.service.oauth.provider;
 
+import static org.mule.service.oauth.internal.cluster.SystemPropertyClusterMembership.fromSystemProperties;
+
 import org.mule.runtime.api.scheduler.SchedulerService;
 import org.mule.runtime.api.service.ServiceDefinition;
 import org.mule.runtime.api.service.ServiceProvider;
@@ -25,7 +27,7 @@ public class OAuthServiceProvider implements ServiceProvider {
 
   @Override
   public ServiceDefinition getServiceDefinition() {
-    DefaultOAuthService service = new DefaultOAuthService(httpService, schedulerService);
+    DefaultOAuthService service = new DefaultOAuthService(httpService, schedulerService, fromSystemProperties());
     ServiceDefinition serviceDefinition = new ServiceDefinition(OAuthService.class, service);
 
     return serviceDefinition;
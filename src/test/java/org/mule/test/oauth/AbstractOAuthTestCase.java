@@ -8,12 +8,16 @@ package org.mule.test.oauth;
 
 import static java.lang.Thread.currentThread;
 import static java.lang.Thread.sleep;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Base64.getUrlEncoder;
 import static java.util.concurrent.Executors.newSingleThreadExecutor;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.mule.runtime.core.api.lifecycle.LifecycleUtils.initialiseIfNeeded;
 import static org.mule.runtime.core.api.lifecycle.LifecycleUtils.startIfNeeded;
+import static org.mule.runtime.oauth.api.state.DancerState.HAS_TOKEN;
+import static org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContext.DEFAULT_RESOURCE_OWNER_ID;
 
 import org.mule.runtime.api.el.MuleExpressionLanguage;
 import org.mule.runtime.api.exception.MuleException;
@@ -30,6 +34,7 @@ import org.mule.runtime.oauth.api.OAuthService;
 import org.mule.runtime.oauth.api.builder.OAuthAuthorizationCodeDancerBuilder;
 import org.mule.runtime.oauth.api.builder.OAuthClientCredentialsDancerBuilder;
 import org.mule.runtime.oauth.api.builder.OAuthDancerBuilder;
+import org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContextWithRefreshState;
 import org.mule.service.oauth.internal.DefaultOAuthService;
 import org.mule.tck.SimpleUnitTestSupportSchedulerService;
 import org.mule.tck.junit4.AbstractMuleContextTestCase;
@@ -139,4 +144,19 @@ public abstract class AbstractOAuthTestCase extends AbstractMuleContextTestCase
 
     return dancer;
   }
+
+  protected static ResourceOwnerOAuthContextWithRefreshState storedContext(String accessToken) {
+    return storedContext(DEFAULT_RESOURCE_OWNER_ID, accessToken);
+  }
+
+  protected static ResourceOwnerOAuthContextWithRefreshState storedContext(String resourceOwnerId, String accessToken) {
+    final ResourceOwnerOAuthContextWithRefreshState context = new ResourceOwnerOAuthContextWithRefreshState(resourceOwnerId);
+    context.setAccessToken(accessToken);
+    context.setDancerState(HAS_TOKEN);
+    return context;
+  }
+
+  protected static String jwt(String claims) {
+    return "eyJhbGciOiJSUzI1NiJ9." + getUrlEncoder().withoutPadding().encodeToString(claims.getBytes(UTF_8)) + ".c2ln";
+  }
 }
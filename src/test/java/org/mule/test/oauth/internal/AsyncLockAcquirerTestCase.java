@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.test.oauth.internal;
+
+import static java.lang.Thread.currentThread;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import org.mule.service.oauth.internal.AsyncLockAcquirer;
+import org.mule.tck.junit4.AbstractMuleTestCase;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.qameta.allure.Feature;
+
+@Feature("OAuth Service")
+public class AsyncLockAcquirerTestCase extends AbstractMuleTestCase {
+
+  private ScheduledExecutorService scheduler;
+  private AsyncLockAcquirer lockAcquirer;
+
+  @Before
+  public void before() {
+    scheduler = newSingleThreadScheduledExecutor();
+    lockAcquirer = new AsyncLockAcquirer((task, delayMillis) -> scheduler.schedule(task, delayMillis, MILLISECONDS));
+  }
+
+  @After
+  public void after() {
+    scheduler.shutdownNow();
+  }
+
+  @Test
+  public void availableLockNotTriedOnCaller() throws Exception {
+    final Thread caller = currentThread();
+    final AtomicReference<Thread> triedOn = new AtomicReference<>();
+    // Trying a distributed lock may take a network round trip
+    final ReentrantLock lock = new ReentrantLock() {
+
+      @Override
+      public boolean tryLock() {
+        triedOn.compareAndSet(null, currentThread());
+        return super.tryLock();
+      }
+    };
+    final AtomicReference<Thread> runOn = new AtomicReference<>();
+
+    lockAcquirer.withLock(lock, () -> {
+      runOn.set(currentThread());
+      return completedFuture(null);
+    }).get(5, SECONDS);
+
+    assertThat(triedOn.get(), not(sameInstance(caller)));
+    assertThat(runOn.get(), not(sameInstance(caller)));
+    assertThat(lock.isLocked(), is(false));
+  }
+
+  @Test
+  public void criticalSectionFailureCompletesFuture() throws Exception {
+    final IllegalStateException thrown = new IllegalStateException();
+
+    final CompletableFuture<Void> result = lockAcquirer.withLock(new ReentrantLock(), () -> {
+      throw thrown;
+    });
+
+    try {
+      result.get(5, SECONDS);
+      fail("The failure of the critical section was not propagated");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), sameInstance(thrown));
+    }
+  }
+
+  @Test
+  public void heldLockDoesNotBlockCaller() throws Exception {
+    final ReentrantLock lock = new ReentrantLock();
+    final CompletableFuture<Void> holderRelease = new CompletableFuture<>();
+    final Thread holder = new Thread(() -> {
+      lock.lock();
+      try {
+        holderRelease.join();
+      } finally {
+        lock.unlock();
+      }
+    });
+    holder.start();
+    while (!lock.isLocked()) {
+      Thread.yield();
+    }
+
+    final Thread caller = currentThread();
+    final AtomicReference<Thread> runOn = new AtomicReference<>();
+    final CompletableFuture<String> result = lockAcquirer.withLock(lock, () -> {
+      runOn.set(currentThread());
+      return completedFuture("done");
+    });
+    assertThat(result.isDone(), is(false));
+
+    holderRelease.complete(null);
+    assertThat(result.get(5, SECONDS), is("done"));
+    assertThat(runOn.get(), not(sameInstance(caller)));
+    assertThat(lock.isLocked(), is(false));
+    holder.join();
+  }
+
+  @Test
+  public void heldLockWaitedForOnBlockingExecutor() throws Exception {
+    final ExecutorService blockingExecutor = newCachedThreadPool();
+    final AsyncLockAcquirer blockingLockAcquirer =
+        new AsyncLockAcquirer((task, delayMillis) -> scheduler.schedule(task, delayMillis, MILLISECONDS), blockingExecutor);
+    final ReentrantLock lock = new ReentrantLock();
+    final CompletableFuture<Void> holderRelease = new CompletableFuture<>();
+    final Thread holder = new Thread(() -> {
+      lock.lock();
+      try {
+        holderRelease.join();
+      } finally {
+        lock.unlock();
+      }
+    });
+    holder.start();
+    while (!lock.isLocked()) {
+      Thread.yield();
+    }
+
+    try {
+      final AtomicReference<Thread> runOn = new AtomicReference<>();
+      final CompletableFuture<String> result = blockingLockAcquirer.withLock(lock, () -> {
+        runOn.set(currentThread());
+        return completedFuture("done");
+      });
+      // Waiting for the lock, not retrying it
+      while (!lock.hasQueuedThreads()) {
+        Thread.yield();
+      }
+      assertThat(result.isDone(), is(false));
+
+      holderRelease.complete(null);
+      assertThat(result.get(5, SECONDS), is("done"));
+      assertThat(runOn.get().getName(), startsWith("pool-"));
+      assertThat(lock.isLocked(), is(false));
+      holder.join();
+    } finally {
+      blockingExecutor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void timeoutFallbackAppliedOnBlockingExecutor() throws Exception {
+    final ExecutorService blockingExecutor = newCachedThreadPool();
+    final AsyncLockAcquirer blockingLockAcquirer =
+        new AsyncLockAcquirer((task, delayMillis) -> scheduler.schedule(task, delayMillis, MILLISECONDS), blockingExecutor);
+    final ReentrantLock lock = new ReentrantLock();
+    final Thread holder = new Thread(lock::lock);
+    holder.start();
+    holder.join();
+
+    try {
+      final CompletableFuture<String> result = blockingLockAcquirer.withLock(lock, 50, () -> completedFuture("locked"),
+                                                                             () -> completedFuture("timedOut"));
+      assertThat(result.get(5, SECONDS), is("timedOut"));
+    } finally {
+      blockingExecutor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void timeoutFallbackApplied() throws Exception {
+    final ReentrantLock lock = new ReentrantLock();
+    final Thread holder = new Thread(lock::lock);
+    holder.start();
+    holder.join();
+
+    final CompletableFuture<String> result = lockAcquirer.withLock(lock, 50, () -> completedFuture("locked"),
+                                                                   () -> completedFuture("timedOut"));
+    assertThat(result.get(5, SECONDS), is("timedOut"));
+  }
+
+  @Test
+  public void stoppedSchedulerFailsAcquisition() throws Exception {
+    final ReentrantLock lock = new ReentrantLock();
+    final Thread holder = new Thread(lock::lock);
+    holder.start();
+    holder.join();
+    scheduler.shutdownNow();
+
+    final CompletableFuture<Void> result = lockAcquirer.withLock(lock, () -> completedFuture(null));
+    assertThat(result.isCompletedExceptionally(), is(true));
+  }
+}
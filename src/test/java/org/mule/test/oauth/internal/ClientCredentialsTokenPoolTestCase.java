@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.test.oauth.internal;
+
+import static java.lang.System.currentTimeMillis;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.mule.service.oauth.internal.ClientCredentialsTokenPool;
+import org.mule.service.oauth.internal.ClientCredentialsTokenPool.SharedToken;
+import org.mule.service.oauth.internal.state.TokenExpiry;
+import org.mule.service.oauth.internal.state.TokenResponse;
+import org.mule.tck.junit4.AbstractMuleTestCase;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import io.qameta.allure.Feature;
+
+@Feature("OAuth Service")
+public class ClientCredentialsTokenPoolTestCase extends AbstractMuleTestCase {
+
+  private final AtomicInteger requests = new AtomicInteger();
+  private final Supplier<CompletableFuture<TokenResponse>> tokenRequester = () -> {
+    final TokenResponse tokenResponse = new TokenResponse();
+    tokenResponse.setAccessToken("token" + requests.incrementAndGet());
+    return completedFuture(tokenResponse);
+  };
+
+  @Test
+  public void expiredTokenRequestedAgain() throws Exception {
+    final SharedToken sharedToken = newSharedToken();
+
+    sharedToken.refresh(null, tokenRequester, token -> TokenExpiry.at(currentTimeMillis() - 1)).get();
+    assertThat(sharedToken.refresh(null, tokenRequester, token -> TokenExpiry.UNKNOWN).get().getAccessToken(), is("token2"));
+    assertThat(requests.get(), is(2));
+  }
+
+  @Test
+  public void tokenReusedUntilItExpires() throws Exception {
+    final SharedToken sharedToken = newSharedToken();
+
+    sharedToken.refresh(null, tokenRequester, token -> TokenExpiry.at(currentTimeMillis() + 60000)).get();
+    assertThat(sharedToken.refresh(null, tokenRequester, token -> TokenExpiry.UNKNOWN).get().getAccessToken(), is("token1"));
+    assertThat(sharedToken.getExpiry("token1").isKnown(), is(true));
+    assertThat(requests.get(), is(1));
+  }
+
+  private static SharedToken newSharedToken() {
+    return new ClientCredentialsTokenPool().acquire(ClientCredentialsTokenPool.key("http://host/token", "clientId",
+                                                                                  "clientSecret", null, null, null, null,
+                                                                                  null, null, null));
+  }
+}
@@ -11,9 +11,12 @@ import static java.util.Collections.singleton;
 import static java.util.Collections.singletonMap;
 import static java.util.Optional.empty;
 import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertThat;
@@ -31,6 +34,7 @@ import static org.mockito.Mockito.when;
 import static org.mule.runtime.core.api.lifecycle.LifecycleUtils.stopIfNeeded;
 import static org.mule.runtime.http.api.HttpConstants.Method.GET;
 import static org.mule.runtime.oauth.api.state.DancerState.NO_TOKEN;
+import static org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContextWithRefreshState.createRefreshOAuthContextLock;
 import static org.mule.service.oauth.internal.OAuthConstants.CODE_PARAMETER;
 import static org.mule.service.oauth.internal.OAuthConstants.STATE_PARAMETER;
 import static org.mule.service.oauth.internal.state.StateEncoder.RESOURCE_OWNER_PARAM_NAME_ASSIGN;
@@ -39,6 +43,7 @@ import static org.mule.tck.probe.PollingProber.probe;
 import org.mule.runtime.api.el.MuleExpressionLanguage;
 import org.mule.runtime.api.exception.MuleException;
 import org.mule.runtime.api.lifecycle.InitialisationException;
+import org.mule.runtime.api.lock.LockFactory;
 import org.mule.runtime.api.util.MultiMap;
 import org.mule.runtime.http.api.domain.entity.InputStreamHttpEntity;
 import org.mule.runtime.http.api.domain.message.request.HttpRequest;
@@ -62,10 +67,14 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.io.input.ReaderInputStream;
@@ -448,6 +457,61 @@ public class DancerConfigTestCase extends AbstractOAuthTestCase {
     assertThat(ctx2.getResourceOwnerId(), is("owner2"));
   }
 
+  @Test
+  public void resourceOwnerIdTransformedOnceForEachCall() throws Exception {
+    final Map<String, Object> tokensStore = new HashMap<>();
+    final List<String> lockNames = new ArrayList<>();
+    final LockFactory recordingLockFactory = lockName -> {
+      lockNames.add(lockName);
+      return lockFactory.createLock(lockName);
+    };
+    final OAuthAuthorizationCodeDancerBuilder builder =
+        service.authorizationCodeGrantTypeDancerBuilder(recordingLockFactory, tokensStore, mock(MuleExpressionLanguage.class));
+    builder.name("dancer");
+    builder.clientCredentials("clientId", "clientSecret");
+    minimalAuthCodeConfig(builder);
+
+    final AtomicInteger transformations = new AtomicInteger();
+    final AtomicReference<String> tenant = new AtomicReference<>("tenant1");
+    builder.resourceOwnerIdTransformer(roid -> {
+      transformations.incrementAndGet();
+      return tenant.get() + "-" + roid;
+    });
+    final AuthorizationCodeOAuthDancer dancer = startDancer(builder);
+    final ResourceOwnerOAuthContextWithRefreshState tenant1Context = new ResourceOwnerOAuthContextWithRefreshState("owner");
+    tenant1Context.setRefreshToken("refreshToken");
+    final ResourceOwnerOAuthContextWithRefreshState tenant2Context = new ResourceOwnerOAuthContextWithRefreshState("owner");
+    tokensStore.put("tenant1-owner", tenant1Context);
+    tokensStore.put("tenant2-owner", tenant2Context);
+
+    assertThat(dancer.getContextForResourceOwner("owner"), sameInstance(tenant1Context));
+    assertThat(transformations.get(), is(1));
+
+    // The context read for the refresh is read again, locked and stored with the key of that read
+    dancer.refreshToken("owner").get(5, SECONDS);
+    assertThat(transformations.get(), is(2));
+    assertThat(tenant1Context.getAccessToken(), notNullValue());
+    assertThat(tenant2Context.getAccessToken(), nullValue());
+
+    // Each call resolves the id again, so a change of tenant is seen by the next one
+    tenant.set("tenant2");
+    assertThat(dancer.getContextForResourceOwner("owner"), sameInstance(tenant2Context));
+    assertThat(transformations.get(), is(3));
+
+    dancer.invalidateContext("owner");
+    assertThat(transformations.get(), is(4));
+    assertThat(tokensStore.containsKey("tenant2-owner"), is(false));
+    assertThat(tokensStore.containsKey("tenant1-owner"), is(true));
+
+    // The locks are the same as the ones the contexts themselves create
+    final List<String> apiLockNames = new ArrayList<>();
+    createRefreshOAuthContextLock("dancer", lockName -> {
+      apiLockNames.add(lockName);
+      return lockFactory.createLock(lockName);
+    }, "owner");
+    assertThat(lockNames, everyItem(is(apiLockNames.get(0))));
+  }
+
   private void configureRequestHandler(String resourceOwner, String state) {
     HttpRequest authorizationRequest = mock(HttpRequest.class);
     MultiMap<String, String> authReqQueryParams = new MultiMap<>();
@@ -462,3 +526,4 @@ public class DancerConfigTestCase extends AbstractOAuthTestCase {
                                                              mock(HttpResponseReadyCallback.class));
   }
 }
+
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.test.oauth.internal;
+
+import static java.lang.Thread.State.WAITING;
+import static java.lang.Thread.currentThread;
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mule.runtime.core.api.lifecycle.LifecycleUtils.stopIfNeeded;
+import static org.mule.runtime.oauth.api.state.DancerState.REFRESHING_TOKEN;
+import static org.mule.service.oauth.internal.AbstractOAuthDancer.LOCAL_LOCK_STRIPES_PROPERTY;
+import static org.mule.tck.probe.PollingProber.probe;
+
+import org.mule.runtime.api.el.MuleExpressionLanguage;
+import org.mule.runtime.oauth.api.AuthorizationCodeOAuthDancer;
+import org.mule.runtime.oauth.api.builder.OAuthAuthorizationCodeDancerBuilder;
+import org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContext;
+import org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContextWithRefreshState;
+import org.mule.tck.junit4.rule.SystemProperty;
+import org.mule.test.oauth.AbstractOAuthTestCase;
+
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+import io.qameta.allure.Feature;
+
+@Feature("OAuth Service")
+public class LocalLockStripesTestCase extends AbstractOAuthTestCase {
+
+  // All the resource owners share a stripe
+  @Rule
+  public SystemProperty lockStripes = new SystemProperty(LOCAL_LOCK_STRIPES_PROPERTY, "1");
+
+  private final ExecutorService callers = newFixedThreadPool(2);
+
+  @After
+  public void after() {
+    callers.shutdownNow();
+  }
+
+  @Test
+  public void resourceOwnersInSameStripeRefreshedConcurrently() throws Exception {
+    final CountDownLatch storeWriteStarted = new CountDownLatch(1);
+    final CountDownLatch storeWriteReleased = new CountDownLatch(1);
+    // Holds the stripe while the refresh of owner1 is being stored
+    final Map<String, ResourceOwnerOAuthContext> tokensStore = new ConcurrentHashMap<String, ResourceOwnerOAuthContext>() {
+
+      @Override
+      public ResourceOwnerOAuthContext put(String key, ResourceOwnerOAuthContext value) {
+        if (key.equals("owner1") && value.getDancerState() == REFRESHING_TOKEN && storeWriteStarted.getCount() > 0) {
+          storeWriteStarted.countDown();
+          try {
+            storeWriteReleased.await();
+          } catch (InterruptedException e) {
+            currentThread().interrupt();
+          }
+        }
+        return super.put(key, value);
+      }
+    };
+    tokensStore.put("owner1", contextWithRefreshToken("owner1"));
+    tokensStore.put("owner2", contextWithRefreshToken("owner2"));
+
+    final OAuthAuthorizationCodeDancerBuilder builder =
+        service.authorizationCodeGrantTypeDancerBuilder(lockFactory, tokensStore, mock(MuleExpressionLanguage.class));
+    builder.clientCredentials("clientId", "clientSecret");
+    builder.tokenUrl("http://host/token");
+    builder.authorizationUrl("http://host/auth");
+    builder.localCallback(new URL("http://localhost:8080/localCallback"));
+    final AuthorizationCodeOAuthDancer dancer = startDancer(builder);
+
+    try {
+      final CompletableFuture<CompletableFuture<Void>> refresh1 =
+          supplyAsync(() -> dancer.refreshToken("owner1"), callers);
+      assertThat(storeWriteStarted.await(5, SECONDS), is(true));
+
+      final Thread[] caller2 = new Thread[1];
+      final CompletableFuture<CompletableFuture<Void>> refresh2 = supplyAsync(() -> {
+        caller2[0] = currentThread();
+        return dancer.refreshToken("owner2");
+      }, callers);
+      // The refresh of owner2 is not skipped, but waits for the stripe to store its new state
+      probe(() -> caller2[0] != null && caller2[0].getState() == WAITING);
+      storeWriteReleased.countDown();
+
+      refresh1.get(5, SECONDS).get(5, SECONDS);
+      refresh2.get(5, SECONDS).get(5, SECONDS);
+      assertThat(dancer.getContextForResourceOwner("owner1").getAccessToken(), notNullValue());
+      assertThat(dancer.getContextForResourceOwner("owner2").getAccessToken(), notNullValue());
+      verify(httpClient, times(2)).sendAsync(any(), any());
+    } finally {
+      storeWriteReleased.countDown();
+      stopIfNeeded(dancer);
+    }
+  }
+
+  private static ResourceOwnerOAuthContext contextWithRefreshToken(String resourceOwnerId) {
+    final ResourceOwnerOAuthContextWithRefreshState context = new ResourceOwnerOAuthContextWithRefreshState(resourceOwnerId);
+    context.setRefreshToken("refreshToken");
+    return context;
+  }
+}
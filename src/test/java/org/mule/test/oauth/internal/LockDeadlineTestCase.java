@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.test.oauth.internal;
+
+import static java.time.Duration.ofMillis;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mule.runtime.core.api.lifecycle.LifecycleUtils.stopIfNeeded;
+import static org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContextWithRefreshState.createRefreshOAuthContextLock;
+
+import org.mule.runtime.api.el.MuleExpressionLanguage;
+import org.mule.runtime.http.api.server.RequestHandler;
+import org.mule.runtime.http.api.server.RequestHandlerManager;
+import org.mule.runtime.oauth.api.builder.OAuthAuthorizationCodeDancerBuilder;
+import org.mule.service.oauth.internal.DefaultAuthorizationCodeOAuthDancer;
+import org.mule.service.oauth.internal.TokenDeadlineExceededException;
+import org.mule.test.oauth.AbstractOAuthTestCase;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.locks.Lock;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.qameta.allure.Feature;
+
+/**
+ * The lock timeout of the dancer is not set, so it is only the deadline of the caller that bounds the waits for the lock.
+ */
+@Feature("OAuth Service")
+public class LockDeadlineTestCase extends AbstractOAuthTestCase {
+
+  private static final String DANCER_NAME = "dancer";
+
+  private final ExecutorService lockHolder = newSingleThreadExecutor();
+  private final CountDownLatch lockReleased = new CountDownLatch(1);
+
+  private DefaultAuthorizationCodeOAuthDancer dancer;
+
+  @Before
+  public void before() throws Exception {
+    when(httpServer.addRequestHandler(anyString(), any(RequestHandler.class))).thenReturn(mock(RequestHandlerManager.class));
+    when(httpServer.addRequestHandler(any(), anyString(), any(RequestHandler.class)))
+        .thenReturn(mock(RequestHandlerManager.class));
+
+    final OAuthAuthorizationCodeDancerBuilder builder =
+        service.authorizationCodeGrantTypeDancerBuilder(lockFactory, new HashMap<>(), mock(MuleExpressionLanguage.class));
+    builder.name(DANCER_NAME);
+    builder.clientCredentials("clientId", "clientSecret");
+    builder.tokenUrl("http://host/token");
+    builder.authorizationUrl("http://host/auth");
+    builder.localCallback(new URL("http://localhost:8080/localCallback"));
+    dancer = (DefaultAuthorizationCodeOAuthDancer) startDancer(builder);
+
+    holdLock("owner");
+  }
+
+  @After
+  public void after() throws Exception {
+    lockReleased.countDown();
+    lockHolder.shutdownNow();
+    stopIfNeeded(dancer);
+  }
+
+  @Test
+  public void accessTokenGivesUpCreatingContextOnDeadline() throws Exception {
+    final Throwable failure = dancer.accessToken("owner", ofMillis(100)).handle((v, t) -> t).get(5, SECONDS);
+    assertThat(failure, instanceOf(TokenDeadlineExceededException.class));
+  }
+
+  @Test
+  public void refreshTokenGivesUpCreatingContextOnDeadline() throws Exception {
+    final Throwable failure = dancer.refreshToken("owner", ofMillis(100)).handle((v, t) -> t).get(5, SECONDS);
+    assertThat(failure, instanceOf(TokenDeadlineExceededException.class));
+  }
+
+  @Test
+  public void invalidateContextGivesUpOnDeadline() {
+    try {
+      dancer.invalidateContext("owner", ofMillis(100));
+      fail("The context was invalidated without the lock");
+    } catch (TokenDeadlineExceededException e) {
+      // Expected
+    }
+  }
+
+  private void holdLock(String resourceOwnerId) throws InterruptedException {
+    final Lock lock = createRefreshOAuthContextLock(DANCER_NAME, lockFactory, resourceOwnerId);
+    final CountDownLatch lockHeld = new CountDownLatch(1);
+    lockHolder.execute(() -> {
+      lock.lock();
+      try {
+        lockHeld.countDown();
+        lockReleased.await();
+      } catch (InterruptedException e) {
+        // Released
+      } finally {
+        lock.unlock();
+      }
+    });
+    assertThat(lockHeld.await(5, SECONDS), is(true));
+  }
+}
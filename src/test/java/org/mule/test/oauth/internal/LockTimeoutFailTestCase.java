@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.test.oauth.internal;
+
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mule.runtime.core.api.lifecycle.LifecycleUtils.stopIfNeeded;
+import static org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContextWithRefreshState.createRefreshOAuthContextLock;
+import static org.mule.service.oauth.internal.AbstractOAuthDancer.LOCK_TIMEOUT_FALLBACK_PROPERTY;
+import static org.mule.service.oauth.internal.AbstractOAuthDancer.LOCK_TIMEOUT_PROPERTY;
+
+import org.mule.runtime.api.el.MuleExpressionLanguage;
+import org.mule.runtime.api.exception.MuleRuntimeException;
+import org.mule.runtime.http.api.server.RequestHandler;
+import org.mule.runtime.http.api.server.RequestHandlerManager;
+import org.mule.runtime.oauth.api.AuthorizationCodeOAuthDancer;
+import org.mule.runtime.oauth.api.builder.OAuthAuthorizationCodeDancerBuilder;
+import org.mule.tck.junit4.rule.SystemProperty;
+import org.mule.test.oauth.AbstractOAuthTestCase;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.locks.Lock;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+import io.qameta.allure.Feature;
+
+@Feature("OAuth Service")
+public class LockTimeoutFailTestCase extends AbstractOAuthTestCase {
+
+  private static final String DANCER_NAME = "dancer";
+
+  @Rule
+  public SystemProperty lockTimeout = new SystemProperty(LOCK_TIMEOUT_PROPERTY, "100");
+
+  // Not a valid fallback, so the default one applies
+  @Rule
+  public SystemProperty lockTimeoutFallback = new SystemProperty(LOCK_TIMEOUT_FALLBACK_PROPERTY, "notAFallback");
+
+  private final ExecutorService lockHolder = newSingleThreadExecutor();
+  private final CountDownLatch lockReleased = new CountDownLatch(1);
+
+  @After
+  public void after() {
+    lockReleased.countDown();
+    lockHolder.shutdownNow();
+  }
+
+  @Test
+  public void accessTokenFailsAsynchronouslyOnLockTimeout() throws Exception {
+    when(httpServer.addRequestHandler(anyString(), any(RequestHandler.class))).thenReturn(mock(RequestHandlerManager.class));
+    when(httpServer.addRequestHandler(any(), anyString(), any(RequestHandler.class)))
+        .thenReturn(mock(RequestHandlerManager.class));
+
+    final OAuthAuthorizationCodeDancerBuilder builder =
+        service.authorizationCodeGrantTypeDancerBuilder(lockFactory, new HashMap<>(), mock(MuleExpressionLanguage.class));
+    builder.name(DANCER_NAME);
+    builder.clientCredentials("clientId", "clientSecret");
+    builder.tokenUrl("http://host/token");
+    builder.authorizationUrl("http://host/auth");
+    builder.localCallback(new URL("http://localhost:8080/localCallback"));
+    final AuthorizationCodeOAuthDancer dancer = startDancer(builder);
+
+    try {
+      holdLock("owner");
+
+      // Creating the context of the owner times out
+      final CompletableFuture<String> accessToken = dancer.accessToken("owner");
+      try {
+        accessToken.get(5, SECONDS);
+        fail("The access token was got without the lock");
+      } catch (ExecutionException e) {
+        assertThat(e.getCause(), instanceOf(MuleRuntimeException.class));
+      }
+    } finally {
+      stopIfNeeded(dancer);
+    }
+  }
+
+  private void holdLock(String resourceOwnerId) throws InterruptedException {
+    final Lock lock = createRefreshOAuthContextLock(DANCER_NAME, lockFactory, resourceOwnerId);
+    final CountDownLatch lockHeld = new CountDownLatch(1);
+    lockHolder.execute(() -> {
+      lock.lock();
+      try {
+        lockHeld.countDown();
+        lockReleased.await();
+      } catch (InterruptedException e) {
+        // Released
+      } finally {
+        lock.unlock();
+      }
+    });
+    assertThat(lockHeld.await(5, SECONDS), is(true));
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.test.oauth.internal;
+
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mule.runtime.core.api.lifecycle.LifecycleUtils.stopIfNeeded;
+import static org.mule.runtime.oauth.api.state.DancerState.HAS_TOKEN;
+import static org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContextWithRefreshState.createRefreshOAuthContextLock;
+import static org.mule.service.oauth.internal.AbstractOAuthDancer.LOCK_TIMEOUT_FALLBACK_PROPERTY;
+import static org.mule.service.oauth.internal.AbstractOAuthDancer.LOCK_TIMEOUT_PROPERTY;
+import static org.mule.tck.probe.PollingProber.probe;
+
+import org.mule.runtime.api.el.MuleExpressionLanguage;
+import org.mule.runtime.http.api.domain.entity.InputStreamHttpEntity;
+import org.mule.runtime.http.api.domain.message.response.HttpResponse;
+import org.mule.runtime.http.api.server.RequestHandler;
+import org.mule.runtime.http.api.server.RequestHandlerManager;
+import org.mule.runtime.oauth.api.AuthorizationCodeOAuthDancer;
+import org.mule.runtime.oauth.api.builder.OAuthAuthorizationCodeDancerBuilder;
+import org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContext;
+import org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContextWithRefreshState;
+import org.mule.tck.junit4.rule.SystemProperty;
+import org.mule.test.oauth.AbstractOAuthTestCase;
+
+import java.io.StringReader;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+import org.apache.commons.io.input.ReaderInputStream;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+import io.qameta.allure.Feature;
+
+@Feature("OAuth Service")
+public class LockTimeoutServeStaleTestCase extends AbstractOAuthTestCase {
+
+  private static final String DANCER_NAME = "dancer";
+
+  @Rule
+  public SystemProperty lockTimeout = new SystemProperty(LOCK_TIMEOUT_PROPERTY, "100");
+
+  @Rule
+  public SystemProperty lockTimeoutFallback = new SystemProperty(LOCK_TIMEOUT_FALLBACK_PROPERTY, "SERVE_STALE");
+
+  private final ExecutorService lockHolder = newFixedThreadPool(2);
+  private final CountDownLatch lockHeld = new CountDownLatch(1);
+  private final CountDownLatch lockReleased = new CountDownLatch(1);
+
+  @After
+  public void after() {
+    lockReleased.countDown();
+    lockHolder.shutdownNow();
+  }
+
+  @Test
+  public void storeWriteRetriedAfterLockTimeout() throws Exception {
+    when(httpServer.addRequestHandler(anyString(), any(RequestHandler.class))).thenReturn(mock(RequestHandlerManager.class));
+    when(httpServer.addRequestHandler(any(), anyString(), any(RequestHandler.class)))
+        .thenReturn(mock(RequestHandlerManager.class));
+
+    final AtomicInteger refreshedTokenWrites = new AtomicInteger();
+    final Map<String, ResourceOwnerOAuthContext> tokensStore = new ConcurrentHashMap<String, ResourceOwnerOAuthContext>() {
+
+      @Override
+      public ResourceOwnerOAuthContext put(String key, ResourceOwnerOAuthContext value) {
+        if (value.getDancerState() == HAS_TOKEN && !"storedToken".equals(value.getAccessToken())) {
+          refreshedTokenWrites.incrementAndGet();
+        }
+        return super.put(key, value);
+      }
+    };
+    final ResourceOwnerOAuthContextWithRefreshState stored = new ResourceOwnerOAuthContextWithRefreshState("owner");
+    stored.setAccessToken("storedToken");
+    stored.setRefreshToken("refreshToken");
+    stored.setDancerState(HAS_TOKEN);
+    tokensStore.put("owner", stored);
+
+    // The lock is taken by someone else while the token is being requested, so the new one cannot be stored in time
+    final Lock lock = createRefreshOAuthContextLock(DANCER_NAME, lockFactory, "owner");
+    final HttpResponse httpResponse = mock(HttpResponse.class);
+    final InputStreamHttpEntity httpEntity = mock(InputStreamHttpEntity.class);
+    when(httpEntity.getContent()).thenReturn(new ReaderInputStream(new StringReader("")));
+    when(httpResponse.getEntity()).thenReturn(httpEntity);
+    when(httpClient.sendAsync(any(), any())).thenAnswer(invocation -> {
+      lockHolder.execute(() -> {
+        lock.lock();
+        try {
+          lockHeld.countDown();
+          lockReleased.await();
+        } catch (InterruptedException e) {
+          // Released
+        } finally {
+          lock.unlock();
+        }
+      });
+      return supplyAsync(() -> {
+        try {
+          lockHeld.await(5, SECONDS);
+        } catch (InterruptedException e) {
+          // Respond anyway
+        }
+        return httpResponse;
+      }, lockHolder);
+    });
+
+    final OAuthAuthorizationCodeDancerBuilder builder =
+        service.authorizationCodeGrantTypeDancerBuilder(lockFactory, tokensStore, mock(MuleExpressionLanguage.class));
+    builder.name(DANCER_NAME);
+    builder.clientCredentials("clientId", "clientSecret");
+    builder.tokenUrl("http://host/token");
+    builder.authorizationUrl("http://host/auth");
+    builder.localCallback(new URL("http://localhost:8080/localCallback"));
+    final AuthorizationCodeOAuthDancer dancer = startDancer(builder);
+
+    try {
+      dancer.refreshToken("owner").get(5, SECONDS);
+      assertThat(refreshedTokenWrites.get(), is(0));
+
+      lockReleased.countDown();
+      probe(5000, 100, () -> refreshedTokenWrites.get() == 1);
+    } finally {
+      stopIfNeeded(dancer);
+    }
+  }
+}
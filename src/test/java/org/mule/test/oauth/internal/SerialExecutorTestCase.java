@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.test.oauth.internal;
+
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.mule.service.oauth.internal.SerialExecutor;
+import org.mule.tck.junit4.AbstractMuleTestCase;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.qameta.allure.Feature;
+
+@Feature("OAuth Service")
+public class SerialExecutorTestCase extends AbstractMuleTestCase {
+
+  private final ExecutorService threads = newFixedThreadPool(4);
+
+  @After
+  public void after() {
+    threads.shutdownNow();
+  }
+
+  @Test
+  public void tasksRunInOrder() throws Exception {
+    final SerialExecutor executor = new SerialExecutor(threads);
+    final List<Integer> ran = new CopyOnWriteArrayList<>();
+    final CountDownLatch done = new CountDownLatch(1);
+
+    for (int i = 0; i < 5; ++i) {
+      final int task = i;
+      executor.execute(() -> ran.add(task));
+    }
+    executor.execute(done::countDown);
+
+    assertThat(done.await(5, SECONDS), is(true));
+    assertThat(ran, contains(0, 1, 2, 3, 4));
+  }
+
+  @Test
+  public void tasksNotRunConcurrently() throws Exception {
+    final SerialExecutor executor = new SerialExecutor(threads);
+    final AtomicBoolean running = new AtomicBoolean(false);
+    final AtomicInteger overlaps = new AtomicInteger();
+    final CountDownLatch done = new CountDownLatch(20);
+
+    for (int i = 0; i < 20; ++i) {
+      threads.execute(() -> executor.execute(() -> {
+        if (!running.compareAndSet(false, true)) {
+          overlaps.incrementAndGet();
+        }
+        Thread.yield();
+        running.set(false);
+        done.countDown();
+      }));
+    }
+
+    assertThat(done.await(5, SECONDS), is(true));
+    assertThat(overlaps.get(), is(0));
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.test.oauth.internal;
+
+import static java.util.concurrent.Executors.newScheduledThreadPool;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.mule.runtime.api.scheduler.Scheduler;
+import org.mule.runtime.api.scheduler.SchedulerConfig;
+import org.mule.runtime.api.scheduler.SchedulerService;
+import org.mule.service.oauth.internal.SharedDancerScheduler;
+import org.mule.service.oauth.internal.SharedDancerScheduler.Lane;
+import org.mule.tck.junit4.AbstractMuleTestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.qameta.allure.Feature;
+
+@Feature("OAuth Service")
+public class SharedDancerSchedulerTestCase extends AbstractMuleTestCase {
+
+  private ScheduledExecutorService executor;
+  private Scheduler scheduler;
+  private SchedulerService schedulerService;
+
+  @Before
+  public void before() {
+    executor = newScheduledThreadPool(8);
+    scheduler = mock(Scheduler.class);
+    doAnswer(inv -> {
+      executor.execute(inv.getArgument(0));
+      return null;
+    }).when(scheduler).execute(any());
+    doAnswer(inv -> executor.schedule((Runnable) inv.getArgument(0), inv.getArgument(1), inv.getArgument(2)))
+        .when(scheduler).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+    schedulerService = mock(SchedulerService.class);
+    when(schedulerService.ioScheduler(any(SchedulerConfig.class))).thenReturn(scheduler);
+  }
+
+  @After
+  public void after() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void schedulerSharedByLanes() {
+    final SharedDancerScheduler sharedScheduler = new SharedDancerScheduler(schedulerService);
+
+    final Lane laneA = sharedScheduler.openLane("dancerA");
+    final Lane laneB = sharedScheduler.openLane("dancerB");
+    verify(schedulerService, times(1)).ioScheduler(any(SchedulerConfig.class));
+
+    laneA.close();
+    verify(scheduler, never()).stop();
+    laneB.close();
+    verify(scheduler).stop();
+  }
+
+  @Test
+  public void laneConcurrencyIsBounded() throws Exception {
+    final SharedDancerScheduler sharedScheduler = new SharedDancerScheduler(schedulerService);
+    final Lane lane = sharedScheduler.openLane("dancer");
+
+    final CountDownLatch started = new CountDownLatch(4);
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(6);
+    for (int i = 0; i < 6; ++i) {
+      lane.execute(() -> {
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        done.countDown();
+      });
+    }
+
+    assertThat(started.await(5, SECONDS), is(true));
+    assertThat(lane.getRunning(), is(4));
+    assertThat(lane.getQueued(), is(2));
+
+    release.countDown();
+    assertThat(done.await(5, SECONDS), is(true));
+    assertThat(lane.getSubmitted(), is(6L));
+    lane.close();
+  }
+
+  @Test
+  public void scheduledTaskNotQueuedBehindLaneTasks() throws Exception {
+    final SharedDancerScheduler sharedScheduler = new SharedDancerScheduler(schedulerService);
+    final Lane lane = sharedScheduler.openLane("dancer");
+
+    final CountDownLatch started = new CountDownLatch(4);
+    final CountDownLatch release = new CountDownLatch(1);
+    for (int i = 0; i < 5; ++i) {
+      lane.execute(() -> {
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+    }
+    assertThat(started.await(5, SECONDS), is(true));
+
+    final CountDownLatch timerFired = new CountDownLatch(1);
+    lane.schedule(timerFired::countDown, 10, MILLISECONDS);
+    assertThat(timerFired.await(5, SECONDS), is(true));
+    assertThat(lane.getQueued(), is(1));
+
+    release.countDown();
+    lane.close();
+  }
+}
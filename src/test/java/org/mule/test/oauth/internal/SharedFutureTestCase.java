@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.test.oauth.internal;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.mule.service.oauth.internal.SharedFuture;
+import org.mule.tck.junit4.AbstractMuleTestCase;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+import io.qameta.allure.Feature;
+
+@Feature("OAuth Service")
+public class SharedFutureTestCase extends AbstractMuleTestCase {
+
+  @Test
+  public void workCancelledWhenAllWaitersCancel() {
+    final CompletableFuture<String> work = new CompletableFuture<>();
+    final SharedFuture<String> shared = new SharedFuture<>(work);
+    final CompletableFuture<String> waiterA = shared.join();
+    final CompletableFuture<String> waiterB = shared.join();
+
+    waiterA.cancel(false);
+    assertThat(work.isCancelled(), is(false));
+    assertThat(waiterB.isDone(), is(false));
+
+    waiterB.cancel(false);
+    assertThat(work.isCancelled(), is(true));
+  }
+
+  @Test
+  public void otherWaitersGetResult() throws Exception {
+    final CompletableFuture<String> work = new CompletableFuture<>();
+    final SharedFuture<String> shared = new SharedFuture<>(work);
+    final CompletableFuture<String> waiterA = shared.join();
+    final CompletableFuture<String> waiterB = shared.join();
+
+    waiterA.cancel(false);
+    work.complete("token");
+
+    assertThat(waiterB.get(), is("token"));
+    assertThat(shared.isCompletedExceptionally(), is(false));
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.test.oauth.internal;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import org.mule.service.oauth.internal.StripedLocks;
+import org.mule.tck.junit4.AbstractMuleTestCase;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+
+import org.junit.Test;
+
+import io.qameta.allure.Feature;
+
+@Feature("OAuth Service")
+public class StripedLocksTestCase extends AbstractMuleTestCase {
+
+  @Test
+  public void stripesRoundedToPowerOfTwo() {
+    assertThat(new StripedLocks(1).size(), is(1));
+    assertThat(new StripedLocks(16).size(), is(16));
+    assertThat(new StripedLocks(17).size(), is(32));
+  }
+
+  @Test
+  public void sameHashSameLock() {
+    final StripedLocks locks = new StripedLocks(64);
+    assertThat(locks.forHash("owner".hashCode()), sameInstance(locks.forHash("owner".hashCode())));
+  }
+
+  @Test
+  public void similarIdsSpreadAcrossStripes() {
+    final StripedLocks locks = new StripedLocks(16);
+    final Set<Lock> used = new HashSet<>();
+    for (int i = 0; i < 256; ++i) {
+      used.add(locks.forHash(("owner-" + i).hashCode()));
+    }
+    assertThat(used.size(), is(16));
+  }
+}
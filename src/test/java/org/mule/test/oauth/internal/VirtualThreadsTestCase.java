@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.test.oauth.internal;
+
+import static java.lang.Thread.currentThread;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Mockito.mock;
+import static org.mule.runtime.core.api.lifecycle.LifecycleUtils.stopIfNeeded;
+import static org.mule.runtime.oauth.api.state.DancerState.HAS_TOKEN;
+import static org.mule.runtime.oauth.api.state.DancerState.REFRESHING_TOKEN;
+import static org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContextWithRefreshState.createRefreshOAuthContextLock;
+import static org.mule.service.oauth.internal.AbstractOAuthDancer.VIRTUAL_THREADS_PROPERTY;
+
+import org.mule.runtime.api.el.MuleExpressionLanguage;
+import org.mule.runtime.oauth.api.AuthorizationCodeOAuthDancer;
+import org.mule.runtime.oauth.api.builder.OAuthAuthorizationCodeDancerBuilder;
+import org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContext;
+import org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContextWithRefreshState;
+import org.mule.tck.junit4.rule.SystemProperty;
+import org.mule.test.oauth.AbstractOAuthTestCase;
+
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import io.qameta.allure.Feature;
+
+@Feature("OAuth Service")
+public class VirtualThreadsTestCase extends AbstractOAuthTestCase {
+
+  private static final String DANCER_NAME = "dancer";
+
+  @Rule
+  public SystemProperty virtualThreads = new SystemProperty(VIRTUAL_THREADS_PROPERTY, "true");
+
+  private final ExecutorService lockHolder = newSingleThreadExecutor();
+  private final CountDownLatch lockReleased = new CountDownLatch(1);
+
+  private Method isVirtual;
+
+  @Before
+  public void before() {
+    try {
+      isVirtual = Thread.class.getMethod("isVirtual");
+    } catch (NoSuchMethodException e) {
+      isVirtual = null;
+    }
+    assumeTrue("Virtual threads not supported by this JVM", isVirtual != null);
+  }
+
+  @After
+  public void after() {
+    lockReleased.countDown();
+    lockHolder.shutdownNow();
+  }
+
+  @Test
+  public void heldContextLockWaitedForOnVirtualThread() throws Exception {
+    final AtomicReference<Thread> refreshStoredOn = new AtomicReference<>();
+    final Map<String, ResourceOwnerOAuthContext> tokensStore = new ConcurrentHashMap<String, ResourceOwnerOAuthContext>() {
+
+      @Override
+      public ResourceOwnerOAuthContext put(String key, ResourceOwnerOAuthContext value) {
+        if (value.getDancerState() == REFRESHING_TOKEN) {
+          refreshStoredOn.compareAndSet(null, currentThread());
+        }
+        return super.put(key, value);
+      }
+    };
+    final ResourceOwnerOAuthContextWithRefreshState stored = new ResourceOwnerOAuthContextWithRefreshState("owner");
+    stored.setAccessToken("storedToken");
+    stored.setRefreshToken("refreshToken");
+    stored.setDancerState(HAS_TOKEN);
+    tokensStore.put("owner", stored);
+
+    final OAuthAuthorizationCodeDancerBuilder builder =
+        service.authorizationCodeGrantTypeDancerBuilder(lockFactory, tokensStore, mock(MuleExpressionLanguage.class));
+    builder.name(DANCER_NAME);
+    builder.clientCredentials("clientId", "clientSecret");
+    builder.tokenUrl("http://host/token");
+    builder.authorizationUrl("http://host/auth");
+    builder.localCallback(new URL("http://localhost:8080/localCallback"));
+    final AuthorizationCodeOAuthDancer dancer = startDancer(builder);
+
+    try {
+      holdLock("owner");
+      final CompletableFuture<Void> refresh = dancer.refreshToken("owner");
+      assertThat(refresh.isDone(), is(false));
+
+      lockReleased.countDown();
+      refresh.get(5, SECONDS);
+      assertThat(isVirtual.invoke(refreshStoredOn.get()), is(true));
+    } finally {
+      stopIfNeeded(dancer);
+    }
+  }
+
+  private void holdLock(String resourceOwnerId) throws InterruptedException {
+    final Lock lock = createRefreshOAuthContextLock(DANCER_NAME, lockFactory, resourceOwnerId);
+    final CountDownLatch lockHeld = new CountDownLatch(1);
+    lockHolder.execute(() -> {
+      lock.lock();
+      try {
+        lockHeld.countDown();
+        lockReleased.await();
+      } catch (InterruptedException e) {
+        // Released
+      } finally {
+        lock.unlock();
+      }
+    });
+    assertThat(lockHeld.await(5, SECONDS), is(true));
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.test.oauth.internal.cluster;
+
+import static java.lang.Thread.sleep;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.when;
+import static org.mule.runtime.core.api.lifecycle.LifecycleUtils.stopIfNeeded;
+import static org.mule.tck.probe.PollingProber.probe;
+
+import org.mule.runtime.api.el.MuleExpressionLanguage;
+import org.mule.runtime.api.exception.MuleException;
+import org.mule.runtime.http.api.HttpService;
+import org.mule.runtime.http.api.server.HttpServerFactory;
+import org.mule.runtime.http.api.server.RequestHandler;
+import org.mule.runtime.http.api.server.RequestHandlerManager;
+import org.mule.runtime.oauth.api.AuthorizationCodeOAuthDancer;
+import org.mule.runtime.oauth.api.builder.OAuthAuthorizationCodeDancerBuilder;
+import org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContext;
+import org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContextWithRefreshState;
+import org.mule.service.oauth.internal.DefaultOAuthService;
+import org.mule.service.oauth.internal.cluster.LocalClusterMembership;
+import org.mule.service.oauth.internal.cluster.RefreshOwnership;
+import org.mule.tck.SimpleUnitTestSupportSchedulerService;
+import org.mule.test.oauth.AbstractOAuthTestCase;
+
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.qameta.allure.Feature;
+
+@Feature("OAuth Service")
+public class RefreshOwnershipDancerTestCase extends AbstractOAuthTestCase {
+
+  private static final String DANCER_NAME = "dancer";
+
+  private final Map<String, ResourceOwnerOAuthContext> tokensStore = new ConcurrentHashMap<>();
+  private final LocalClusterMembership membershipA = new LocalClusterMembership("nodeA");
+  private final LocalClusterMembership membershipB = new LocalClusterMembership("nodeB");
+  private AuthorizationCodeOAuthDancer dancerA;
+  private AuthorizationCodeOAuthDancer dancerB;
+
+  @Before
+  public void before() throws Exception {
+    when(httpServer.addRequestHandler(anyString(), any(RequestHandler.class))).thenReturn(mock(RequestHandlerManager.class));
+    when(httpServer.addRequestHandler(any(), anyString(), any(RequestHandler.class)))
+        .thenReturn(mock(RequestHandlerManager.class));
+
+    membershipA.join("nodeB");
+    membershipB.join("nodeA");
+    dancerA = startDancer(nodeDancerBuilder(membershipA));
+    dancerB = startDancer(nodeDancerBuilder(membershipB));
+  }
+
+  @After
+  public void after() throws MuleException {
+    stopIfNeeded(dancerA);
+    stopIfNeeded(dancerB);
+  }
+
+  @Test
+  public void nonOwnerWaitsForOwnerEvenIfExpiryUnknown() throws Exception {
+    final String resourceOwner = ownedBy(membershipA);
+    // The expiry of this token is not known, so it is not due, but the owner still is the one to refresh it
+    tokensStore.put(resourceOwner, storedContextWithRefreshToken(resourceOwner));
+
+    final CompletableFuture<Void> nonOwnerRefresh = dancerB.refreshToken(resourceOwner);
+    dancerA.refreshToken(resourceOwner).get(5, SECONDS);
+    nonOwnerRefresh.get(5, SECONDS);
+    assertThat(tokensStore.get(resourceOwner).getAccessToken(), is(not("storedToken")));
+    assertThat(tokenRequests(), is(1L));
+  }
+
+  @Test
+  public void nonOwnerRefreshesIfOwnerDoesNot() throws Exception {
+    final String resourceOwner = ownedBy(membershipA);
+    tokensStore.put(resourceOwner, storedContextWithRefreshToken(resourceOwner));
+
+    dancerB.refreshToken(resourceOwner).get(5, SECONDS);
+    assertThat(tokensStore.get(resourceOwner).getAccessToken(), is(not("storedToken")));
+    assertThat(tokenRequests(), is(1L));
+  }
+
+  @Test
+  public void ownerRefreshesAheadOfExpiry() throws Exception {
+    final String resourceOwner = ownedBy(membershipA);
+    tokensStore.put(resourceOwner, storedContextWithRefreshToken(resourceOwner));
+
+    // The new token expires in 31 seconds, so the owner refreshes it again in about 1 second
+    dancerA.refreshToken(resourceOwner).get(5, SECONDS);
+    assertThat(tokenRequests(), is(1L));
+    probe(5000, 100, () -> tokenRequests() >= 2);
+  }
+
+  @Test
+  public void nonOwnerDoesNotRefreshAheadOfExpiry() throws Exception {
+    final String resourceOwner = ownedBy(membershipA);
+    tokensStore.put(resourceOwner, storedContextWithRefreshToken(resourceOwner));
+
+    dancerB.refreshToken(resourceOwner).get(5, SECONDS);
+    sleep(2000);
+    assertThat(tokenRequests(), is(1L));
+  }
+
+  private OAuthAuthorizationCodeDancerBuilder nodeDancerBuilder(LocalClusterMembership membership) throws Exception {
+    final HttpService httpService = mock(HttpService.class);
+    when(httpService.getClientFactory()).thenReturn(httpClientFactory);
+    final HttpServerFactory httpServerFactory = mock(HttpServerFactory.class);
+    when(httpServerFactory.create(any())).thenReturn(httpServer);
+    when(httpService.getServerFactory()).thenReturn(httpServerFactory);
+    final DefaultOAuthService nodeService =
+        new DefaultOAuthService(httpService, new SimpleUnitTestSupportSchedulerService(), membership);
+
+    final OAuthAuthorizationCodeDancerBuilder builder =
+        nodeService.authorizationCodeGrantTypeDancerBuilder(lockFactory, tokensStore, mock(MuleExpressionLanguage.class));
+    builder.name(DANCER_NAME);
+    builder.clientCredentials("clientId", "clientSecret");
+    builder.tokenUrl("http://host/token");
+    builder.authorizationUrl("http://host/auth");
+    builder.localCallback(new URL("http://localhost:8080/localCallback"));
+    builder.responseExpiresInExpr("31");
+    return builder;
+  }
+
+  private static String ownedBy(LocalClusterMembership membership) {
+    final RefreshOwnership ownership = new RefreshOwnership(membership);
+    int i = 0;
+    while (!ownership.isOwnedLocally(DANCER_NAME, "owner" + i)) {
+      ++i;
+    }
+    return "owner" + i;
+  }
+
+  private long tokenRequests() {
+    return mockingDetails(httpClient).getInvocations().stream()
+        .filter(invocation -> invocation.getMethod().getName().equals("sendAsync"))
+        .count();
+  }
+
+  private static ResourceOwnerOAuthContext storedContextWithRefreshToken(String resourceOwnerId) {
+    final ResourceOwnerOAuthContextWithRefreshState context = storedContext(resourceOwnerId, "storedToken");
+    context.setRefreshToken("refreshToken");
+    return context;
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.test.oauth.internal.cluster;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+import org.mule.service.oauth.internal.cluster.ConsistentHashRing;
+import org.mule.service.oauth.internal.cluster.LocalClusterMembership;
+import org.mule.service.oauth.internal.cluster.RefreshOwnership;
+import org.mule.tck.junit4.AbstractMuleTestCase;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import io.qameta.allure.Feature;
+
+@Feature("OAuth Service")
+public class RefreshOwnershipTestCase extends AbstractMuleTestCase {
+
+  private static final int KEYS = 10000;
+
+  private static Set<String> nodes(int count) {
+    final Set<String> nodes = new HashSet<>();
+    for (int i = 0; i < count; ++i) {
+      nodes.add("node" + i);
+    }
+    return nodes;
+  }
+
+  @Test
+  public void keysSpreadAmongNodes() {
+    final ConsistentHashRing ring = new ConsistentHashRing(nodes(8));
+
+    final Map<String, Integer> keysPerNode = new HashMap<>();
+    for (int i = 0; i < KEYS; ++i) {
+      keysPerNode.merge(ring.ownerOf("owner" + i), 1, Integer::sum);
+    }
+
+    assertThat(keysPerNode.size(), is(8));
+    for (Integer keys : keysPerNode.values()) {
+      assertThat(keys, greaterThan(KEYS / 8 / 2));
+      assertThat(keys, lessThan(KEYS / 8 * 2));
+    }
+  }
+
+  @Test
+  public void onlyKeysOfLeavingNodeMove() {
+    final ConsistentHashRing before = new ConsistentHashRing(nodes(8));
+    final Set<String> remaining = nodes(8);
+    remaining.remove("node3");
+    final ConsistentHashRing after = new ConsistentHashRing(remaining);
+
+    for (int i = 0; i < KEYS; ++i) {
+      final String previousOwner = before.ownerOf("owner" + i);
+      if (!previousOwner.equals("node3")) {
+        assertThat(after.ownerOf("owner" + i), is(previousOwner));
+      }
+    }
+  }
+
+  @Test
+  public void singleOwnerPerResourceOwner() {
+    final LocalClusterMembership membershipA = new LocalClusterMembership("nodeA");
+    membershipA.join("nodeB");
+    final LocalClusterMembership membershipB = new LocalClusterMembership("nodeB");
+    membershipB.join("nodeA");
+    final RefreshOwnership ownershipA = new RefreshOwnership(membershipA);
+    final RefreshOwnership ownershipB = new RefreshOwnership(membershipB);
+
+    for (int i = 0; i < 100; ++i) {
+      assertThat(ownershipA.isOwnedLocally("dancer", "owner" + i), is(!ownershipB.isOwnedLocally("dancer", "owner" + i)));
+    }
+  }
+
+  @Test
+  public void allOwnedLocallyAfterOthersLeave() {
+    final LocalClusterMembership membership = new LocalClusterMembership("nodeA");
+    membership.join("nodeB");
+    final RefreshOwnership ownership = new RefreshOwnership(membership);
+
+    membership.leave("nodeB");
+    for (int i = 0; i < 100; ++i) {
+      assertThat(ownership.isOwnedLocally("dancer", "owner" + i), is(true));
+    }
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.test.oauth.internal.cluster;
+
+import static java.lang.System.setProperty;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mule.service.oauth.internal.cluster.SystemPropertyClusterMembership.NODE_IDS_PROPERTY;
+import static org.mule.service.oauth.internal.cluster.SystemPropertyClusterMembership.NODE_ID_PROPERTY;
+import static org.mule.service.oauth.internal.cluster.SystemPropertyClusterMembership.fromSystemProperties;
+
+import org.mule.service.oauth.internal.cluster.ClusterMembership;
+import org.mule.tck.junit4.AbstractMuleTestCase;
+import org.mule.tck.junit4.rule.SystemProperty;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import io.qameta.allure.Feature;
+
+@Feature("OAuth Service")
+public class SystemPropertyClusterMembershipTestCase extends AbstractMuleTestCase {
+
+  @Rule
+  public SystemProperty nodeId = new SystemProperty(NODE_ID_PROPERTY, "nodeB");
+
+  @Rule
+  public SystemProperty nodeIds = new SystemProperty(NODE_IDS_PROPERTY, "nodeA, nodeB,,nodeC");
+
+  @Test
+  public void nodesReadFromSystemProperties() {
+    final ClusterMembership membership = fromSystemProperties();
+
+    assertThat(membership.getLocalNodeId(), is("nodeB"));
+    assertThat(membership.getNodeIds(), contains("nodeA", "nodeB", "nodeC"));
+  }
+
+  @Test
+  public void nodesReadAgainWhenChanged() {
+    final ClusterMembership membership = fromSystemProperties();
+    membership.getNodeIds();
+
+    // Restored by its rule after the test
+    setProperty(NODE_IDS_PROPERTY, "nodeA,nodeB");
+    assertThat(membership.getNodeIds(), contains("nodeA", "nodeB"));
+  }
+}
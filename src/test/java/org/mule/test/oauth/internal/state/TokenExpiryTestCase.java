@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.test.oauth.internal.state;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Base64.getUrlEncoder;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mule.service.oauth.internal.state.TokenExpiry.UNKNOWN;
+
+import org.mule.service.oauth.internal.state.TokenExpiry;
+import org.mule.tck.junit4.AbstractMuleTestCase;
+
+import java.time.Instant;
+import java.util.Optional;
+
+import org.junit.Test;
+
+import io.qameta.allure.Feature;
+
+@Feature("OAuth Service")
+public class TokenExpiryTestCase extends AbstractMuleTestCase {
+
+  private static final long NOW = 1500000000000L;
+
+  private static String jwt(String claims) {
+    return "eyJhbGciOiJSUzI1NiJ9." + getUrlEncoder().withoutPadding().encodeToString(claims.getBytes(UTF_8)) + ".c2ln";
+  }
+
+  @Test
+  public void fromExpiresIn() {
+    final TokenExpiry expiry = TokenExpiry.fromExpiresIn(" 3600 ", NOW);
+
+    assertThat(expiry.getLifetimeSeconds(), is(3600L));
+    assertThat(expiry.isExpired(NOW + 3599999), is(false));
+    assertThat(expiry.isExpired(NOW + 3600000), is(true));
+  }
+
+  @Test
+  public void fromInvalidExpiresIn() {
+    assertThat(TokenExpiry.fromExpiresIn(null, NOW), sameInstance(UNKNOWN));
+    assertThat(TokenExpiry.fromExpiresIn("", NOW), sameInstance(UNKNOWN));
+    assertThat(TokenExpiry.fromExpiresIn("0", NOW), sameInstance(UNKNOWN));
+    assertThat(TokenExpiry.fromExpiresIn("36x", NOW), sameInstance(UNKNOWN));
+    assertThat(TokenExpiry.fromExpiresIn("#[payload.expires_in]", NOW), sameInstance(UNKNOWN));
+  }
+
+  @Test
+  public void fromJwtWithIssuedAt() {
+    // The lifetime is taken from the claims, the expiry is relative to the local clock
+    final TokenExpiry expiry = TokenExpiry.fromJwt(jwt("{\"sub\":\"me\",\"iat\":1000,\"exp\":4600}"), NOW);
+
+    assertThat(expiry.getLifetimeSeconds(), is(3600L));
+    assertThat(expiry.getExpiresAt(), is(Optional.of(Instant.ofEpochMilli(NOW + 3600000))));
+  }
+
+  @Test
+  public void fromJwtWithoutIssuedAt() {
+    final TokenExpiry expiry = TokenExpiry.fromJwt(jwt("{ \"exp\" : 1500003600.25 }"), NOW);
+
+    assertThat(expiry.getLifetimeSeconds(), is(3600L));
+    assertThat(expiry.getExpiresAt(), is(Optional.of(Instant.ofEpochSecond(1500003600L))));
+  }
+
+  @Test
+  public void fromJwtIgnoresNestedClaims() {
+    final TokenExpiry expiry = TokenExpiry.fromJwt(jwt("{\"act\":{\"exp\":1},\"aud\":[\"exp\"],\"exp\":1500003600}"));
+
+    assertThat(expiry.getExpiresAt(), is(Optional.of(Instant.ofEpochSecond(1500003600L))));
+  }
+
+  @Test
+  public void fromNotJwt() {
+    assertThat(TokenExpiry.fromJwt("opaqueToken"), sameInstance(UNKNOWN));
+    assertThat(TokenExpiry.fromJwt("a.b.c.d.e"), sameInstance(UNKNOWN));
+    assertThat(TokenExpiry.fromJwt("a.!!.c"), sameInstance(UNKNOWN));
+    assertThat(TokenExpiry.fromJwt(jwt("{\"sub\":\"me\"}")), sameInstance(UNKNOWN));
+    assertThat(UNKNOWN.isExpired(Long.MAX_VALUE - 1), is(false));
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.test.oauth.internal.state;
+
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import org.mule.service.oauth.internal.state.TokenSnapshot;
+import org.mule.service.oauth.internal.state.TokenSnapshot.Entry;
+import org.mule.tck.junit4.AbstractMuleTestCase;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import io.qameta.allure.Feature;
+
+@Feature("OAuth Service")
+public class TokenSnapshotTestCase extends AbstractMuleTestCase {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private TokenSnapshot snapshot(String clientSecret) {
+    return TokenSnapshot.forDancer(folder.getRoot().toPath(), "dancer", "http://host/token", "clientId", clientSecret);
+  }
+
+  @Test
+  public void noSnapshot() throws IOException {
+    assertThat(snapshot("clientSecret").read(), is(empty()));
+  }
+
+  @Test
+  public void roundTrip() throws IOException {
+    snapshot("clientSecret").write(singletonList(new Entry("conn-owner", "owner", "accessToken", null, "3600", 123456L,
+                                                           singletonMap("instance_url", "http://instance"))));
+
+    final List<Entry> entries = snapshot("clientSecret").read();
+    assertThat(entries, hasSize(1));
+    assertThat(entries.get(0).getStoreKey(), is("conn-owner"));
+    assertThat(entries.get(0).getResourceOwnerId(), is("owner"));
+    assertThat(entries.get(0).getAccessToken(), is("accessToken"));
+    assertThat(entries.get(0).getRefreshToken(), is(nullValue()));
+    assertThat(entries.get(0).getExpiresIn(), is("3600"));
+    assertThat(entries.get(0).getExpiresAtMillis(), is(123456L));
+    assertThat(entries.get(0).getTokenResponseParameters().get("instance_url"), is("http://instance"));
+  }
+
+  @Test
+  public void rewrittenSnapshotRead() throws IOException {
+    final TokenSnapshot snapshot = snapshot("clientSecret");
+    snapshot.write(singletonList(new Entry("owner", "owner", "accessToken", null, null, 123456L, singletonMap("a", "b"))));
+    // With the salt of the first write
+    snapshot.write(singletonList(new Entry("owner", "owner", "newAccessToken", null, null, 234567L, singletonMap("a", "b"))));
+
+    final List<Entry> entries = snapshot("clientSecret").read();
+    assertThat(entries, hasSize(1));
+    assertThat(entries.get(0).getAccessToken(), is("newAccessToken"));
+  }
+
+  @Test(expected = IOException.class)
+  public void otherCredentialsCannotRead() throws IOException {
+    snapshot("clientSecret")
+        .write(singletonList(new Entry("owner", "owner", "accessToken", null, null, 123456L, singletonMap("a", "b"))));
+
+    // Same file, as the file name does not depend on the secret
+    snapshot("otherSecret").read();
+  }
+
+  @Test(expected = IOException.class)
+  public void tamperedSnapshotNotRead() throws IOException {
+    final TokenSnapshot snapshot = snapshot("clientSecret");
+    snapshot.write(singletonList(new Entry("owner", "owner", "accessToken", null, null, 123456L, singletonMap("a", "b"))));
+    final Path file = snapshot.getFile();
+    final byte[] bytes = Files.readAllBytes(file);
+    bytes[bytes.length - 1] ^= 1;
+    Files.write(file, bytes);
+
+    snapshot.read();
+  }
+}
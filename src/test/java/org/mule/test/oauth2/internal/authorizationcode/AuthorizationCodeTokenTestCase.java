@@ -12,6 +12,7 @@ import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasKey;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
 import static org.hamcrest.core.IsCollectionContaining.hasItem;
 import static org.hamcrest.text.IsEqualIgnoringCase.equalToIgnoringCase;
 import static org.junit.Assert.assertThat;
@@ -19,27 +20,35 @@ import static org.mockito.ArgumentCaptor.forClass;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mule.runtime.core.api.lifecycle.LifecycleUtils.disposeIfNeeded;
 import static org.mule.runtime.core.api.lifecycle.LifecycleUtils.stopIfNeeded;
+import static org.mule.runtime.http.api.HttpConstants.HttpStatus.BAD_REQUEST;
+import static org.mule.runtime.http.api.HttpConstants.HttpStatus.MOVED_TEMPORARILY;
 import static org.mule.runtime.http.api.HttpConstants.Method.GET;
 import static org.mule.runtime.http.api.HttpHeaders.Names.AUTHORIZATION;
+import static org.mule.runtime.http.api.HttpHeaders.Names.LOCATION;
 import static org.mule.runtime.oauth.api.builder.ClientCredentialsLocation.BASIC_AUTH_HEADER;
 import static org.mule.runtime.oauth.api.builder.ClientCredentialsLocation.BODY;
 import static org.mule.runtime.oauth.api.builder.ClientCredentialsLocation.QUERY_PARAMS;
 import static org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContext.DEFAULT_RESOURCE_OWNER_ID;
 import static org.mule.service.oauth.internal.OAuthConstants.CODE_PARAMETER;
+import static org.mule.service.oauth.internal.state.StateEncoder.RESOURCE_OWNER_PARAM_NAME_ASSIGN;
 
 import org.mule.runtime.api.el.MuleExpressionLanguage;
 import org.mule.runtime.api.exception.MuleException;
 import org.mule.runtime.api.util.MultiMap;
 import org.mule.runtime.http.api.client.HttpRequestOptions;
 import org.mule.runtime.http.api.domain.message.request.HttpRequest;
+import org.mule.runtime.http.api.domain.message.response.HttpResponse;
 import org.mule.runtime.http.api.domain.request.HttpRequestContext;
 import org.mule.runtime.http.api.server.RequestHandler;
 import org.mule.runtime.http.api.server.RequestHandlerManager;
 import org.mule.runtime.http.api.server.async.HttpResponseReadyCallback;
+import org.mule.runtime.http.api.server.async.ResponseStatusCallback;
 import org.mule.runtime.oauth.api.AuthorizationCodeOAuthDancer;
 import org.mule.runtime.oauth.api.builder.OAuthAuthorizationCodeDancerBuilder;
 import org.mule.runtime.oauth.api.state.DefaultResourceOwnerOAuthContext;
@@ -251,7 +260,7 @@ public class AuthorizationCodeTokenTestCase extends AbstractOAuthTestCase {
     minimalDancer.refreshToken(null);
 
     ArgumentCaptor<HttpRequest> requestCaptor = forClass(HttpRequest.class);
-    verify(httpClient).sendAsync(requestCaptor.capture(), any(HttpRequestOptions.class));
+    verify(httpClient, timeout(RECEIVE_TIMEOUT)).sendAsync(requestCaptor.capture(), any(HttpRequestOptions.class));
 
     assertThat(requestCaptor.getValue().getHeaderValue(AUTHORIZATION), is("Basic QWxhZGRpbjpvcGVuIHNlc2FtZQ=="));
 
@@ -285,7 +294,7 @@ public class AuthorizationCodeTokenTestCase extends AbstractOAuthTestCase {
     minimalDancer.refreshToken(null);
 
     ArgumentCaptor<HttpRequest> requestCaptor = forClass(HttpRequest.class);
-    verify(httpClient).sendAsync(requestCaptor.capture(), any(HttpRequestOptions.class));
+    verify(httpClient, timeout(RECEIVE_TIMEOUT)).sendAsync(requestCaptor.capture(), any(HttpRequestOptions.class));
 
     assertThat(requestCaptor.getValue().getHeaderNames(), not(hasItem(equalToIgnoringCase(AUTHORIZATION))));
 
@@ -314,7 +323,7 @@ public class AuthorizationCodeTokenTestCase extends AbstractOAuthTestCase {
     minimalDancer.refreshToken(null);
 
     ArgumentCaptor<HttpRequest> requestCaptor = forClass(HttpRequest.class);
-    verify(httpClient).sendAsync(requestCaptor.capture(), any(HttpRequestOptions.class));
+    verify(httpClient, timeout(RECEIVE_TIMEOUT)).sendAsync(requestCaptor.capture(), any(HttpRequestOptions.class));
 
     assertThat(requestCaptor.getValue().getHeaderNames(), not(hasItem(equalToIgnoringCase(AUTHORIZATION))));
 
@@ -348,7 +357,7 @@ public class AuthorizationCodeTokenTestCase extends AbstractOAuthTestCase {
     minimalDancer.refreshToken(null, true);
 
     ArgumentCaptor<HttpRequest> requestCaptor = forClass(HttpRequest.class);
-    verify(httpClient).sendAsync(requestCaptor.capture(), any(HttpRequestOptions.class));
+    verify(httpClient, timeout(RECEIVE_TIMEOUT)).sendAsync(requestCaptor.capture(), any(HttpRequestOptions.class));
 
     assertThat(requestCaptor.getValue().getQueryParams().get("client_id"), is("Aladdin"));
     assertThat(requestCaptor.getValue().getQueryParams().get("client_secret"), is("openSesame"));
@@ -390,6 +399,71 @@ public class AuthorizationCodeTokenTestCase extends AbstractOAuthTestCase {
     assertThat(requestBody, not(containsString("client_id=Aladdin")));
   }
 
+  @Test
+  public void localAuthorizationRequestDoesNotReadBody() throws Exception {
+    final OAuthAuthorizationCodeDancerBuilder builder = baseAuthCodeDancerbuilder();
+    builder.tokenUrl("http://host/token");
+    builder.authorizationUrl("http://host/auth");
+    builder.externalCallbackUrl("http://localhost:8080/localCallback");
+    builder.localCallback(httpServer, "/localCallback");
+    builder.localAuthorizationUrlPath("/auth");
+
+    minimalDancer = startDancer(builder);
+
+    final HttpRequest request = mock(HttpRequest.class);
+    when(request.getQueryParams()).thenReturn(new MultiMap<>());
+    when(request.getHeaders()).thenReturn(new MultiMap<>());
+    final HttpResponseReadyCallback responseCallback = mock(HttpResponseReadyCallback.class);
+    minimalDancer.handleLocalAuthorizationRequest(request, responseCallback);
+
+    verify(request, never()).getEntity();
+    final ArgumentCaptor<HttpResponse> responseCaptor = forClass(HttpResponse.class);
+    verify(responseCallback).responseReady(responseCaptor.capture(), any(ResponseStatusCallback.class));
+    assertThat(responseCaptor.getValue().getStatusCode(), is(MOVED_TEMPORARILY.getStatusCode()));
+    assertThat(responseCaptor.getValue().getHeaderValue(LOCATION), startsWith("http://host/auth?response_type=code"));
+    assertThat(IOUtils.toString(responseCaptor.getValue().getEntity().getContent(), UTF_8), is(""));
+  }
+
+  @Test
+  public void localAuthorizationRequestWithMarkerInResourceOwnerId() throws Exception {
+    final OAuthAuthorizationCodeDancerBuilder builder = baseAuthCodeDancerbuilder();
+    builder.tokenUrl("http://host/token");
+    builder.authorizationUrl("http://host/auth");
+    builder.externalCallbackUrl("http://localhost:8080/localCallback");
+    builder.localCallback(httpServer, "/localCallback");
+    builder.localAuthorizationUrlPath("/auth");
+    builder.localAuthorizationUrlResourceOwnerId("owner" + RESOURCE_OWNER_PARAM_NAME_ASSIGN + "otherOwner");
+
+    assertLocalAuthorizationRequestRejected(builder);
+  }
+
+  @Test
+  public void localAuthorizationRequestWithMarkerInState() throws Exception {
+    final OAuthAuthorizationCodeDancerBuilder builder = baseAuthCodeDancerbuilder();
+    builder.tokenUrl("http://host/token");
+    builder.authorizationUrl("http://host/auth");
+    builder.externalCallbackUrl("http://localhost:8080/localCallback");
+    builder.localCallback(httpServer, "/localCallback");
+    builder.localAuthorizationUrlPath("/auth");
+    builder.state("state" + RESOURCE_OWNER_PARAM_NAME_ASSIGN + "otherOwner");
+
+    assertLocalAuthorizationRequestRejected(builder);
+  }
+
+  private void assertLocalAuthorizationRequestRejected(OAuthAuthorizationCodeDancerBuilder builder) throws Exception {
+    minimalDancer = startDancer(builder);
+
+    final HttpRequest request = mock(HttpRequest.class);
+    when(request.getQueryParams()).thenReturn(new MultiMap<>());
+    when(request.getHeaders()).thenReturn(new MultiMap<>());
+    final HttpResponseReadyCallback responseCallback = mock(HttpResponseReadyCallback.class);
+    minimalDancer.handleLocalAuthorizationRequest(request, responseCallback);
+
+    final ArgumentCaptor<HttpResponse> responseCaptor = forClass(HttpResponse.class);
+    verify(responseCallback).responseReady(responseCaptor.capture(), any(ResponseStatusCallback.class));
+    assertThat(responseCaptor.getValue().getStatusCode(), is(BAD_REQUEST.getStatusCode()));
+  }
+
   @Override
   protected OAuthAuthorizationCodeDancerBuilder baseAuthCodeDancerbuilder() {
     ResourceOwnerOAuthContext context = contextSupplier.get();
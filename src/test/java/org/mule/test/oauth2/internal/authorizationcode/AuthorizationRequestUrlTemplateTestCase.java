@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.test.oauth2.internal.authorizationcode;
+
+import static java.net.URLEncoder.encode;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonMap;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import org.mule.service.oauth.internal.authorizationcode.AuthorizationRequestUrlBuilder;
+import org.mule.service.oauth.internal.authorizationcode.AuthorizationRequestUrlTemplate;
+import org.mule.tck.junit4.AbstractMuleTestCase;
+
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import io.qameta.allure.Feature;
+
+@Feature("OAuth Service")
+public class AuthorizationRequestUrlTemplateTestCase extends AbstractMuleTestCase {
+
+  private static final String AUTHORIZATION_URL = "http://host/auth";
+  private static final String CLIENT_ID = "clientId";
+  private static final String SCOPE = "openid profile email";
+  private static final String REDIRECT_URL = "http://app/callback?x=1&y=2";
+  private static final String STATE = "st ate:resourceOwnerId=john.doe@example.com";
+
+  @Test
+  public void sameUrlAsUrlEncoder() throws Exception {
+    final Map<String, String> customParameters = new LinkedHashMap<>();
+    customParameters.put("access_type", "offline");
+    customParameters.put("prompt", "consent select_account");
+
+    final String url = builder(customParameters, UTF_8).setState(STATE).buildUrl();
+
+    assertThat(url, is(AUTHORIZATION_URL + "?response_type=code&client_id=" + CLIENT_ID
+        + "&scope=" + encode(SCOPE, "UTF-8")
+        + "&state=" + encode(STATE, "UTF-8")
+        + "&access_type=offline"
+        + "&prompt=" + encode("consent select_account", "UTF-8")
+        + "&redirect_uri=" + encode(REDIRECT_URL, "UTF-8")));
+  }
+
+  @Test
+  public void templateReusedForDifferentStates() throws Exception {
+    final AuthorizationRequestUrlTemplate template = builder(emptyMap(), UTF_8).buildTemplate();
+
+    assertThat(template.buildUrl("a"), is(builder(emptyMap(), UTF_8).setState("a").buildUrl()));
+    assertThat(template.buildUrl("b"), is(builder(emptyMap(), UTF_8).setState("b").buildUrl()));
+    assertThat(template.buildUrl(null), is(AUTHORIZATION_URL + "?response_type=code&client_id=" + CLIENT_ID
+        + "&scope=" + encode(SCOPE, "UTF-8") + "&redirect_uri=" + encode(REDIRECT_URL, "UTF-8")));
+  }
+
+  @Test
+  public void dynamicCustomParameters() throws Exception {
+    final AuthorizationRequestUrlTemplate template = builder(emptyMap(), UTF_8).buildTemplate();
+
+    assertThat(template.buildUrl(STATE, singletonMap("login_hint", "jöhn doe")),
+               is(builder(singletonMap("login_hint", "jöhn doe"), UTF_8).setState(STATE).buildUrl()));
+  }
+
+  @Test
+  public void nonAsciiAndSurrogatePairs() throws Exception {
+    final String value = "añ€😀 ~'!()";
+    for (Charset charset : new Charset[] {UTF_8, ISO_8859_1}) {
+      final String url = builder(emptyMap(), charset).buildTemplate().buildUrl(value);
+      assertThat(url.substring(url.indexOf("&state=") + "&state=".length(), url.indexOf("&redirect_uri=")),
+                 is(encode(value, charset.name())));
+    }
+  }
+
+  private static AuthorizationRequestUrlBuilder builder(Map<String, String> customParameters, Charset encoding) {
+    return new AuthorizationRequestUrlBuilder()
+        .setAuthorizationUrl(AUTHORIZATION_URL)
+        .setClientId(CLIENT_ID)
+        .setClientSecret("clientSecret")
+        .setCustomParameters(customParameters)
+        .setRedirectUrl(REDIRECT_URL)
+        .setScope(SCOPE)
+        .setEncoding(encoding);
+  }
+}
@@ -79,4 +79,44 @@ public class StateEncoderTestCase extends AbstractMuleTestCase {
     assertThat(stateDecoder.decodeOriginalState(), is(ORIGINAL_STATE_VALUE));
   }
 
+  @Test
+  public void decodeOnCompleteRedirectToContainingParameterNames() {
+    final String onCompleteUrl = TEST_ON_COMPLETE_URL + "?next=:resourceOwnerId=other:onCompleteRedirectTo=http://evil";
+    final StateEncoder stateEncoder = new StateEncoder(ORIGINAL_STATE_VALUE);
+    stateEncoder.encodeResourceOwnerIdInState(TEST_RESOURCE_OWNER_ID);
+    stateEncoder.encodeOnCompleteRedirectToInState(onCompleteUrl);
+    final StateDecoder stateDecoder = new StateDecoder(stateEncoder.getEncodedState());
+    assertThat(stateDecoder.decodeOnCompleteRedirectTo(), is(onCompleteUrl));
+    assertThat(stateDecoder.decodeResourceOwnerId(), is(TEST_RESOURCE_OWNER_ID));
+    assertThat(stateDecoder.decodeOriginalState(), is(ORIGINAL_STATE_VALUE));
+  }
+
+  @Test
+  public void decodeResourceOwnerIdMarkerOnlyInOnCompleteRedirectTo() {
+    final StateDecoder stateDecoder =
+        new StateDecoder(ORIGINAL_STATE_VALUE + ":onCompleteRedirectTo=" + TEST_ON_COMPLETE_URL + ":resourceOwnerId=other");
+    assertThat(stateDecoder.decodeResourceOwnerId(), nullValue());
+    assertThat(stateDecoder.decodeOriginalState(), is(ORIGINAL_STATE_VALUE));
+    assertThat(stateDecoder.decodeOnCompleteRedirectTo(), is(TEST_ON_COMPLETE_URL + ":resourceOwnerId=other"));
+  }
+
+  @Test
+  public void decodeWithoutParameters() {
+    final StateDecoder stateDecoder = new StateDecoder(ORIGINAL_STATE_VALUE);
+    assertThat(stateDecoder.decodeOriginalState(), is(ORIGINAL_STATE_VALUE));
+    assertThat(stateDecoder.decodeResourceOwnerId(), nullValue());
+    assertThat(stateDecoder.decodeOnCompleteRedirectTo(), nullValue());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void doNotAllowParameterNameInOriginalState() {
+    new StateEncoder(ORIGINAL_STATE_VALUE + ":resourceOwnerId=other");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void doNotAllowParameterNameInResourceOwnerId() {
+    new StateEncoder(ORIGINAL_STATE_VALUE)
+        .encodeResourceOwnerIdInState(TEST_RESOURCE_OWNER_ID + ":onCompleteRedirectTo=http://evil");
+  }
+
 }
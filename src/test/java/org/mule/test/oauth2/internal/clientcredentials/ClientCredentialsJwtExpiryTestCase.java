@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.test.oauth2.internal.clientcredentials;
+
+import static java.lang.System.currentTimeMillis;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContext.DEFAULT_RESOURCE_OWNER_ID;
+import static org.mule.service.oauth.internal.AbstractOAuthDancer.DECODE_JWT_EXPIRY_PROPERTY;
+import static org.mule.service.oauth.internal.AbstractOAuthDancer.TOKEN_EXPIRES_AT_PARAMETER;
+
+import org.mule.runtime.http.api.client.HttpRequestOptions;
+import org.mule.runtime.http.api.domain.message.request.HttpRequest;
+import org.mule.runtime.oauth.api.ClientCredentialsOAuthDancer;
+import org.mule.runtime.oauth.api.builder.OAuthClientCredentialsDancerBuilder;
+import org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContext;
+import org.mule.tck.junit4.rule.SystemProperty;
+import org.mule.test.oauth.AbstractOAuthTestCase;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import io.qameta.allure.Feature;
+
+@Feature("OAuth Service")
+public class ClientCredentialsJwtExpiryTestCase extends AbstractOAuthTestCase {
+
+  @Rule
+  public SystemProperty decodeJwtExpiry = new SystemProperty(DECODE_JWT_EXPIRY_PROPERTY, "true");
+
+  @Test
+  public void expiresInReadFromJwtClaims() throws Exception {
+    final OAuthClientCredentialsDancerBuilder builder = baseClientCredentialsDancerBuilder();
+    builder.tokenUrl("http://host/token");
+    builder.responseAccessTokenExpr(jwt("{\"iat\":1000,\"exp\":4600}"));
+    builder.responseExpiresInExpr(null);
+
+    ClientCredentialsOAuthDancer minimalDancer = startDancer(builder);
+
+    assertThat(minimalDancer.getContext().getExpiresIn(), is("3600"));
+    // Stored with the token, for the other nodes to know it too
+    assertThat(minimalDancer.getContext().getTokenResponseParameters().get(TOKEN_EXPIRES_AT_PARAMETER), notNullValue());
+    minimalDancer.accessToken().get();
+    verify(httpClient, times(1)).sendAsync(any(HttpRequest.class), any(HttpRequestOptions.class));
+  }
+
+  @Test
+  public void expiredJwtTokenNotRefreshedOnAccessByDefault() throws Exception {
+    final OAuthClientCredentialsDancerBuilder builder = baseClientCredentialsDancerBuilder();
+    builder.tokenUrl("http://host/token");
+    builder.responseAccessTokenExpr(jwt("{\"exp\":1000}"));
+    builder.responseExpiresInExpr(null);
+
+    ClientCredentialsOAuthDancer minimalDancer = startDancer(builder);
+
+    minimalDancer.accessToken().get();
+    minimalDancer.accessToken().get();
+    // Only the one on start: an expired token is only refreshed on access if enabled
+    verify(httpClient, times(1)).sendAsync(any(HttpRequest.class), any(HttpRequestOptions.class));
+  }
+
+  @Test
+  public void tokenWithZeroExpiresInNotRefreshedOnAccess() throws Exception {
+    final OAuthClientCredentialsDancerBuilder builder = baseClientCredentialsDancerBuilder();
+    builder.tokenUrl("http://host/token");
+    builder.responseExpiresInExpr("0");
+
+    ClientCredentialsOAuthDancer minimalDancer = startDancer(builder);
+
+    minimalDancer.accessToken().get();
+    minimalDancer.accessToken().get();
+    minimalDancer.accessToken().get();
+    verify(httpClient, times(1)).sendAsync(any(HttpRequest.class), any(HttpRequestOptions.class));
+  }
+
+  @Test
+  public void validStoredTokenUsedOnStart() throws Exception {
+    final Map<String, Object> tokensStore = new HashMap<>();
+    tokensStore.put(DEFAULT_RESOURCE_OWNER_ID, storedContext(jwt("{\"exp\":" + (currentTimeMillis() / 1000 + 3600) + "}")));
+    final OAuthClientCredentialsDancerBuilder builder = baseClientCredentialsDancerBuilder(tokensStore);
+    builder.tokenUrl("http://host/token");
+
+    final ClientCredentialsOAuthDancer dancer = startDancer(builder);
+
+    assertThat(dancer.accessToken().get(), is(((ResourceOwnerOAuthContext) tokensStore.get(DEFAULT_RESOURCE_OWNER_ID))
+        .getAccessToken()));
+    verify(httpClient, never()).sendAsync(any(HttpRequest.class), any(HttpRequestOptions.class));
+  }
+
+  @Test
+  public void storedTokenNearExpiryRefreshedOnStart() throws Exception {
+    final Map<String, Object> tokensStore = new HashMap<>();
+    tokensStore.put(DEFAULT_RESOURCE_OWNER_ID, storedContext(jwt("{\"exp\":" + (currentTimeMillis() / 1000 + 10) + "}")));
+    final OAuthClientCredentialsDancerBuilder builder = baseClientCredentialsDancerBuilder(tokensStore);
+    builder.tokenUrl("http://host/token");
+
+    startDancer(builder);
+
+    verify(httpClient, times(1)).sendAsync(any(HttpRequest.class), any(HttpRequestOptions.class));
+  }
+}
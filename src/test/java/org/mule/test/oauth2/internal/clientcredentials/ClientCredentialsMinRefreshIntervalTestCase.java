@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.test.oauth2.internal.clientcredentials;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mule.service.oauth.internal.AbstractOAuthDancer.MIN_REFRESH_INTERVAL_PROPERTY;
+
+import org.mule.runtime.http.api.client.HttpRequestOptions;
+import org.mule.runtime.http.api.domain.message.request.HttpRequest;
+import org.mule.runtime.oauth.api.ClientCredentialsOAuthDancer;
+import org.mule.runtime.oauth.api.builder.OAuthClientCredentialsDancerBuilder;
+import org.mule.tck.junit4.rule.SystemProperty;
+import org.mule.test.oauth.AbstractOAuthTestCase;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import io.qameta.allure.Feature;
+
+@Feature("OAuth Service")
+public class ClientCredentialsMinRefreshIntervalTestCase extends AbstractOAuthTestCase {
+
+  @Rule
+  public SystemProperty minRefreshInterval = new SystemProperty(MIN_REFRESH_INTERVAL_PROPERTY, "60000");
+
+  @Test
+  public void refreshesWithinMinIntervalJoinLastOne() throws Exception {
+    final OAuthClientCredentialsDancerBuilder builder = baseClientCredentialsDancerBuilder();
+    builder.tokenUrl("http://host/token");
+
+    final ClientCredentialsOAuthDancer dancer = startDancer(builder);
+
+    dancer.refreshToken().get(RECEIVE_TIMEOUT, MILLISECONDS);
+    dancer.refreshToken().get(RECEIVE_TIMEOUT, MILLISECONDS);
+    // Only the request done on start
+    verify(httpClient, times(1)).sendAsync(any(HttpRequest.class), any(HttpRequestOptions.class));
+
+    dancer.invalidateContext();
+    dancer.refreshToken().get(RECEIVE_TIMEOUT, MILLISECONDS);
+    verify(httpClient, times(2)).sendAsync(any(HttpRequest.class), any(HttpRequestOptions.class));
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.test.oauth2.internal.clientcredentials;
+
+import static java.lang.System.currentTimeMillis;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mule.service.oauth.internal.AbstractOAuthDancer.DECODE_JWT_EXPIRY_PROPERTY;
+import static org.mule.service.oauth.internal.AbstractOAuthDancer.REFRESH_EXPIRED_TOKEN_PROPERTY;
+
+import org.mule.runtime.http.api.client.HttpRequestOptions;
+import org.mule.runtime.http.api.domain.message.request.HttpRequest;
+import org.mule.runtime.oauth.api.ClientCredentialsOAuthDancer;
+import org.mule.runtime.oauth.api.builder.OAuthClientCredentialsDancerBuilder;
+import org.mule.tck.junit4.rule.SystemProperty;
+import org.mule.test.oauth.AbstractOAuthTestCase;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import io.qameta.allure.Feature;
+
+@Feature("OAuth Service")
+public class ClientCredentialsRefreshExpiredTokenTestCase extends AbstractOAuthTestCase {
+
+  @Rule
+  public SystemProperty decodeJwtExpiry = new SystemProperty(DECODE_JWT_EXPIRY_PROPERTY, "true");
+
+  @Rule
+  public SystemProperty refreshExpiredToken = new SystemProperty(REFRESH_EXPIRED_TOKEN_PROPERTY, "true");
+
+  @Test
+  public void expiredTokenRefreshedOnAccess() throws Exception {
+    final OAuthClientCredentialsDancerBuilder builder = baseClientCredentialsDancerBuilder();
+    builder.tokenUrl("http://host/token");
+    builder.responseAccessTokenExpr(jwt("{\"exp\":1000}"));
+    builder.responseExpiresInExpr(null);
+
+    ClientCredentialsOAuthDancer minimalDancer = startDancer(builder);
+
+    minimalDancer.accessToken().get();
+    // The token retrieved on start is expired, so it is refreshed
+    verify(httpClient, times(2)).sendAsync(any(HttpRequest.class), any(HttpRequestOptions.class));
+  }
+
+  @Test
+  public void validTokenNotRefreshedOnAccess() throws Exception {
+    final OAuthClientCredentialsDancerBuilder builder = baseClientCredentialsDancerBuilder();
+    builder.tokenUrl("http://host/token");
+    builder.responseAccessTokenExpr(jwt("{\"exp\":" + (currentTimeMillis() / 1000 + 3600) + "}"));
+    builder.responseExpiresInExpr(null);
+
+    ClientCredentialsOAuthDancer minimalDancer = startDancer(builder);
+
+    minimalDancer.accessToken().get();
+    minimalDancer.accessToken().get();
+    verify(httpClient, times(1)).sendAsync(any(HttpRequest.class), any(HttpRequestOptions.class));
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.test.oauth2.internal.clientcredentials;
+
+import static java.lang.System.currentTimeMillis;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mule.runtime.oauth.api.state.DancerState.REFRESHING_TOKEN;
+import static org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContext.DEFAULT_RESOURCE_OWNER_ID;
+import static org.mule.service.oauth.internal.AbstractOAuthDancer.DECODE_JWT_EXPIRY_PROPERTY;
+import static org.mule.service.oauth.internal.AbstractOAuthDancer.STALE_TOKEN_GRACE_PROPERTY;
+
+import org.mule.runtime.http.api.client.HttpRequestOptions;
+import org.mule.runtime.http.api.domain.message.request.HttpRequest;
+import org.mule.runtime.oauth.api.ClientCredentialsOAuthDancer;
+import org.mule.runtime.oauth.api.builder.OAuthClientCredentialsDancerBuilder;
+import org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContext;
+import org.mule.tck.junit4.rule.SystemProperty;
+import org.mule.test.oauth.AbstractOAuthTestCase;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import io.qameta.allure.Feature;
+
+@Feature("OAuth Service")
+public class ClientCredentialsStaleTokenTestCase extends AbstractOAuthTestCase {
+
+  @Rule
+  public SystemProperty decodeJwtExpiry = new SystemProperty(DECODE_JWT_EXPIRY_PROPERTY, "true");
+
+  @Rule
+  public SystemProperty staleTokenGrace = new SystemProperty(STALE_TOKEN_GRACE_PROPERTY, "5000");
+
+  @Test
+  public void previousTokenServedWhileRefreshing() throws Exception {
+    final Map<String, Object> tokensStore = new ConcurrentHashMap<>();
+    final ResourceOwnerOAuthContext refreshing =
+        storedContext(jwt("{\"exp\":" + (currentTimeMillis() / 1000 + 3600) + "}"));
+    refreshing.setDancerState(REFRESHING_TOKEN);
+    tokensStore.put(DEFAULT_RESOURCE_OWNER_ID, refreshing);
+    final OAuthClientCredentialsDancerBuilder builder = baseClientCredentialsDancerBuilder(tokensStore);
+    builder.tokenUrl("http://host/token");
+
+    final ClientCredentialsOAuthDancer dancer = startDancer(builder);
+
+    assertThat(dancer.accessToken().get(RECEIVE_TIMEOUT, MILLISECONDS), is(refreshing.getAccessToken()));
+    verify(httpClient, never()).sendAsync(any(HttpRequest.class), any(HttpRequestOptions.class));
+  }
+
+  @Test
+  public void explicitRefreshJoinsRefreshInProgress() throws Exception {
+    final Map<String, Object> tokensStore = new ConcurrentHashMap<>();
+    final ResourceOwnerOAuthContext refreshing =
+        storedContext(jwt("{\"exp\":" + (currentTimeMillis() / 1000 + 3600) + "}"));
+    refreshing.setDancerState(REFRESHING_TOKEN);
+    tokensStore.put(DEFAULT_RESOURCE_OWNER_ID, refreshing);
+    final OAuthClientCredentialsDancerBuilder builder = baseClientCredentialsDancerBuilder(tokensStore);
+    builder.tokenUrl("http://host/token");
+
+    final ClientCredentialsOAuthDancer dancer = startDancer(builder);
+
+    // The refresh being done elsewhere is waited for, even if the previous token is still served to readers
+    final CompletableFuture<Void> refresh = dancer.refreshToken();
+    assertThat(dancer.accessToken().get(RECEIVE_TIMEOUT, MILLISECONDS), is(refreshing.getAccessToken()));
+    assertThat(refresh.isDone(), is(false));
+
+    final ResourceOwnerOAuthContext refreshed =
+        storedContext(jwt("{\"exp\":" + (currentTimeMillis() / 1000 + 7200) + "}"));
+    tokensStore.put(DEFAULT_RESOURCE_OWNER_ID, refreshed);
+
+    refresh.get(RECEIVE_TIMEOUT, MILLISECONDS);
+    assertThat(dancer.accessToken().get(RECEIVE_TIMEOUT, MILLISECONDS), is(refreshed.getAccessToken()));
+    verify(httpClient, never()).sendAsync(any(HttpRequest.class), any(HttpRequestOptions.class));
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.test.oauth2.internal.clientcredentials;
+
+import static java.lang.String.valueOf;
+import static java.lang.System.currentTimeMillis;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mule.runtime.core.api.lifecycle.LifecycleUtils.stopIfNeeded;
+import static org.mule.runtime.oauth.api.state.DancerState.HAS_TOKEN;
+import static org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContext.DEFAULT_RESOURCE_OWNER_ID;
+import static org.mule.service.oauth.internal.AbstractOAuthDancer.TOKEN_EXPIRES_AT_PARAMETER;
+import static org.mule.service.oauth.internal.AbstractOAuthDancer.TOKEN_SNAPSHOT_DIR_PROPERTY;
+
+import org.mule.runtime.http.api.client.HttpRequestOptions;
+import org.mule.runtime.http.api.domain.message.request.HttpRequest;
+import org.mule.runtime.oauth.api.ClientCredentialsOAuthDancer;
+import org.mule.runtime.oauth.api.builder.OAuthClientCredentialsDancerBuilder;
+import org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContext;
+import org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContextWithRefreshState;
+import org.mule.service.oauth.internal.state.TokenSnapshot;
+import org.mule.service.oauth.internal.state.TokenSnapshot.Entry;
+import org.mule.tck.junit4.rule.SystemProperty;
+import org.mule.test.oauth.AbstractOAuthTestCase;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import io.qameta.allure.Feature;
+
+@Feature("OAuth Service")
+public class ClientCredentialsTokenSnapshotTestCase extends AbstractOAuthTestCase {
+
+  @ClassRule
+  public static TemporaryFolder snapshotFolder = new TemporaryFolder();
+
+  @Rule
+  public SystemProperty snapshotDir =
+      new SystemProperty(TOKEN_SNAPSHOT_DIR_PROPERTY, snapshotFolder.getRoot().getAbsolutePath());
+
+  @Test
+  public void tokenRestoredFromSnapshotAfterRestart() throws Exception {
+    final OAuthClientCredentialsDancerBuilder builder = baseClientCredentialsDancerBuilder();
+    builder.tokenUrl("http://host/token");
+    builder.responseExpiresInExpr("3600");
+    final ClientCredentialsOAuthDancer dancer = startDancer(builder);
+    final String accessToken = dancer.accessToken().get();
+    stopIfNeeded(dancer);
+
+    final OAuthClientCredentialsDancerBuilder restartedBuilder = baseClientCredentialsDancerBuilder();
+    restartedBuilder.tokenUrl("http://host/token");
+    restartedBuilder.responseExpiresInExpr("3600");
+    final ClientCredentialsOAuthDancer restartedDancer = startDancer(restartedBuilder);
+
+    assertThat(restartedDancer.accessToken().get(), is(accessToken));
+    verify(httpClient, times(1)).sendAsync(any(HttpRequest.class), any(HttpRequestOptions.class));
+  }
+
+  @Test
+  public void tokensOfOtherDancersNotSnapshotted() throws Exception {
+    // Put in the shared store by another dancer
+    final Map<String, ResourceOwnerOAuthContext> tokensStore = new HashMap<>();
+    final ResourceOwnerOAuthContextWithRefreshState other = new ResourceOwnerOAuthContextWithRefreshState("other");
+    other.setAccessToken("otherToken");
+    other.setDancerState(HAS_TOKEN);
+    other.getTokenResponseParameters().put(TOKEN_EXPIRES_AT_PARAMETER, valueOf(currentTimeMillis() + 3600000));
+    tokensStore.put("other", other);
+
+    final OAuthClientCredentialsDancerBuilder builder = baseClientCredentialsDancerBuilder(tokensStore);
+    builder.name("sharedStoreDancer");
+    builder.tokenUrl("http://host/token");
+    builder.responseExpiresInExpr("3600");
+    final ClientCredentialsOAuthDancer dancer = startDancer(builder);
+    dancer.accessToken().get();
+    stopIfNeeded(dancer);
+
+    final List<Entry> entries = TokenSnapshot.forDancer(snapshotFolder.getRoot().toPath(), "sharedStoreDancer",
+                                                        "http://host/token", "clientId", "clientSecret")
+        .read();
+    assertThat(entries, hasSize(1));
+    assertThat(entries.get(0).getStoreKey(), is(DEFAULT_RESOURCE_OWNER_ID));
+  }
+}
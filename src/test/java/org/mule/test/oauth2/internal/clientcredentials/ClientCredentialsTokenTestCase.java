@@ -6,13 +6,21 @@
  */
 package org.mule.test.oauth2.internal.clientcredentials;
 
+import static java.lang.String.valueOf;
+import static java.lang.System.currentTimeMillis;
+import static java.lang.Thread.currentThread;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singleton;
 import static java.util.concurrent.Executors.newFixedThreadPool;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.Matchers.sameInstance;
@@ -22,6 +30,7 @@ import static org.junit.Assert.assertThat;
 import static org.mockito.ArgumentCaptor.forClass;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -29,24 +38,44 @@ import static org.mule.runtime.http.api.HttpHeaders.Names.AUTHORIZATION;
 import static org.mule.runtime.oauth.api.builder.ClientCredentialsLocation.BASIC_AUTH_HEADER;
 import static org.mule.runtime.oauth.api.builder.ClientCredentialsLocation.BODY;
 import static org.mule.runtime.oauth.api.builder.ClientCredentialsLocation.QUERY_PARAMS;
+import static org.mule.runtime.oauth.api.state.DancerState.HAS_TOKEN;
 import static org.mule.runtime.oauth.api.state.DancerState.NO_TOKEN;
+import static org.mule.runtime.oauth.api.state.DancerState.REFRESHING_TOKEN;
+import static org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContext.DEFAULT_RESOURCE_OWNER_ID;
+import static org.mule.service.oauth.internal.AbstractOAuthDancer.TOKEN_EXPIRES_AT_PARAMETER;
+import static org.mule.tck.probe.PollingProber.probe;
 
+import org.mule.runtime.api.exception.DefaultMuleException;
+import org.mule.runtime.api.exception.MuleException;
 import org.mule.runtime.api.exception.MuleRuntimeException;
+import org.mule.runtime.api.lifecycle.LifecycleException;
+import org.mule.runtime.api.lifecycle.Startable;
 import org.mule.runtime.api.util.MultiMap;
 import org.mule.runtime.http.api.client.HttpRequestOptions;
 import org.mule.runtime.http.api.domain.message.request.HttpRequest;
+import org.mule.runtime.http.api.domain.message.response.HttpResponse;
 import org.mule.runtime.oauth.api.ClientCredentialsOAuthDancer;
 import org.mule.runtime.oauth.api.builder.OAuthClientCredentialsDancerBuilder;
+import org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContext;
 import org.mule.runtime.oauth.api.state.ResourceOwnerOAuthContextWithRefreshState;
+import org.mule.service.oauth.internal.DefaultClientCredentialsOAuthDancer;
+import org.mule.service.oauth.internal.DefaultOAuthService;
+import org.mule.service.oauth.internal.TokenDeadlineExceededException;
+import org.mule.service.oauth.internal.builder.DefaultOAuthClientCredentialsDancerBuilder;
+import org.mule.service.oauth.internal.state.TokenUpdate;
 import org.mule.test.oauth.AbstractOAuthTestCase;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.stream.Stream;
@@ -57,6 +86,8 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatcher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
 
 import io.qameta.allure.Feature;
 
@@ -134,20 +165,232 @@ public class ClientCredentialsTokenTestCase extends AbstractOAuthTestCase {
                                            any(HttpRequestOptions.class));
   }
 
-  private static class HttpRequestUrlMatcher implements ArgumentMatcher<HttpRequest> {
+  @Test
+  public void tokenUpdatesEmittedOnRefresh() throws Exception {
+    final OAuthClientCredentialsDancerBuilder builder = baseClientCredentialsDancerBuilder();
+    builder.tokenUrl("http://host/token");
+    ClientCredentialsOAuthDancer minimalDancer = startDancer(builder);
 
-    private final URI uri;
+    final List<TokenUpdate> updates = new CopyOnWriteArrayList<>();
+    ((DefaultClientCredentialsOAuthDancer) minimalDancer).tokenUpdates().subscribe(new Subscriber<TokenUpdate>() {
 
-    public HttpRequestUrlMatcher(String url) throws URISyntaxException {
-      this.uri = new URI("http://host/token");
-    }
+      @Override
+      public void onSubscribe(Subscription subscription) {
+        subscription.request(Long.MAX_VALUE);
+      }
 
-    @Override
-    public boolean matches(HttpRequest request) {
-      return request.getUri().equals(uri);
+      @Override
+      public void onNext(TokenUpdate update) {
+        updates.add(update);
+      }
+
+      @Override
+      public void onError(Throwable t) {}
+
+      @Override
+      public void onComplete() {}
+    });
+
+    minimalDancer.refreshToken().get();
+
+    assertThat(updates, hasSize(1));
+    assertThat(updates.get(0).getResourceOwnerId(), is(DEFAULT_RESOURCE_OWNER_ID));
+    assertThat(updates.get(0).getAccessToken(), not(nullValue()));
+  }
+
+  @Test
+  public void asyncStartTokenRetrievedOnce() throws Exception {
+    final DefaultOAuthClientCredentialsDancerBuilder builder =
+        (DefaultOAuthClientCredentialsDancerBuilder) baseClientCredentialsDancerBuilder();
+    builder.tokenUrl("http://host/token");
+    builder.asyncStart(true);
+    final ClientCredentialsOAuthDancer dancer = startDancer(builder);
+
+    final CompletableFuture<String> first = dancer.accessToken();
+    final CompletableFuture<String> second = dancer.accessToken();
+    assertThat(first.get(), not(nullValue()));
+    assertThat(second.get(), is(first.get()));
+    verify(httpClient, times(1)).sendAsync(any(HttpRequest.class), any(HttpRequestOptions.class));
+  }
+
+  @Test
+  public void dancersStartedInParallel() throws Exception {
+    final OAuthClientCredentialsDancerBuilder builderA = baseClientCredentialsDancerBuilder();
+    builderA.tokenUrl("http://host/tokenA");
+    final OAuthClientCredentialsDancerBuilder builderB = baseClientCredentialsDancerBuilder();
+    builderB.tokenUrl("http://host/tokenB");
+    final DefaultClientCredentialsOAuthDancer dancerA = (DefaultClientCredentialsOAuthDancer) builderA.build();
+    final DefaultClientCredentialsOAuthDancer dancerB = (DefaultClientCredentialsOAuthDancer) builderB.build();
+
+    ((DefaultOAuthService) service).startDancers(asList(dancerA, dancerB)).get();
+
+    verify(httpClient).sendAsync(argThat(new HttpRequestUrlMatcher("http://host/tokenA")), any(HttpRequestOptions.class));
+    verify(httpClient).sendAsync(argThat(new HttpRequestUrlMatcher("http://host/tokenB")), any(HttpRequestOptions.class));
+  }
+
+  @Test
+  public void dancersStartFailsOnFirstFailure() throws Exception {
+    final CountDownLatch released = new CountDownLatch(1);
+    final MuleException failure = new DefaultMuleException("Expected");
+    final Startable slowDancer = () -> {
+      try {
+        released.await();
+      } catch (InterruptedException e) {
+        currentThread().interrupt();
+      }
+    };
+    final Startable failingDancer = () -> {
+      throw failure;
+    };
+
+    try {
+      // Not waiting for the slow one to complete its start
+      final Throwable thrown = ((DefaultOAuthService) service).startDancers(asList(slowDancer, failingDancer))
+          .handle((v, t) -> t).get(RECEIVE_TIMEOUT, MILLISECONDS);
+      assertThat(thrown.getCause(), sameInstance(failure));
+    } finally {
+      released.countDown();
     }
   }
 
+  @Test
+  public void storedTokenWithUnknownExpiryRefreshedOnStart() throws Exception {
+    final Map<String, Object> tokensStore = new HashMap<>();
+    tokensStore.put(DEFAULT_RESOURCE_OWNER_ID, storedContext("storedToken"));
+    final OAuthClientCredentialsDancerBuilder builder = baseClientCredentialsDancerBuilder(tokensStore);
+    builder.tokenUrl("http://host/token");
+
+    final ClientCredentialsOAuthDancer dancer = startDancer(builder);
+
+    assertThat(dancer.accessToken().get(), is(not("storedToken")));
+    verify(httpClient, times(1)).sendAsync(any(HttpRequest.class), any(HttpRequestOptions.class));
+  }
+
+  @Test
+  public void storedOpaqueTokenWithExpiryParameterUsedOnStart() throws Exception {
+    final Map<String, Object> tokensStore = new HashMap<>();
+    // As stored by the dancer of another node: the expiry of an opaque token is only known through the stored parameter
+    final ResourceOwnerOAuthContext stored = storedContext("storedToken");
+    stored.getTokenResponseParameters().put(TOKEN_EXPIRES_AT_PARAMETER, valueOf(currentTimeMillis() + 3600000));
+    tokensStore.put(DEFAULT_RESOURCE_OWNER_ID, stored);
+    final OAuthClientCredentialsDancerBuilder builder = baseClientCredentialsDancerBuilder(tokensStore);
+    builder.tokenUrl("http://host/token");
+
+    final ClientCredentialsOAuthDancer dancer = startDancer(builder);
+
+    assertThat(dancer.accessToken().get(), is("storedToken"));
+    verify(httpClient, never()).sendAsync(any(HttpRequest.class), any(HttpRequestOptions.class));
+  }
+
+  @Test
+  public void refreshFailsWhenDeadlineIsExceeded() throws Exception {
+    final OAuthClientCredentialsDancerBuilder builder = baseClientCredentialsDancerBuilder();
+    builder.tokenUrl("http://host/token");
+    final DefaultClientCredentialsOAuthDancer dancer = (DefaultClientCredentialsOAuthDancer) startDancer(builder);
+
+    // A refresh being done elsewhere that takes longer than the caller is willing to wait
+    dancer.getContext().setDancerState(REFRESHING_TOKEN);
+    final Throwable failure = dancer.refreshToken(Duration.ofMillis(200)).handle((v, t) -> t).get(RECEIVE_TIMEOUT, MILLISECONDS);
+
+    assertThat(failure, instanceOf(TokenDeadlineExceededException.class));
+    // The refresh being waited for is not affected by the caller giving up
+    assertThat(dancer.getContext().getDancerState(), is(REFRESHING_TOKEN));
+    // Only the token request on start
+    verify(httpClient, times(1)).sendAsync(any(HttpRequest.class), any(HttpRequestOptions.class));
+  }
+
+  @Test
+  public void tokenRequestTimeoutBoundedByDeadline() throws Exception {
+    final OAuthClientCredentialsDancerBuilder builder = baseClientCredentialsDancerBuilder();
+    builder.tokenUrl("http://host/token");
+    final DefaultClientCredentialsOAuthDancer dancer = (DefaultClientCredentialsOAuthDancer) startDancer(builder);
+
+    dancer.refreshToken(Duration.ofSeconds(2)).get(RECEIVE_TIMEOUT, MILLISECONDS);
+
+    final ArgumentCaptor<HttpRequestOptions> options = forClass(HttpRequestOptions.class);
+    verify(httpClient, times(2)).sendAsync(any(HttpRequest.class), options.capture());
+    assertThat(options.getAllValues().get(1).getResponseTimeout(), lessThanOrEqualTo(2000));
+  }
+
+  @Test
+  public void cancelledRefreshCancelsTokenRequest() throws Exception {
+    final OAuthClientCredentialsDancerBuilder builder = baseClientCredentialsDancerBuilder();
+    builder.tokenUrl("http://host/token");
+    final ClientCredentialsOAuthDancer dancer = startDancer(builder);
+    final String startToken = dancer.getContext().getAccessToken();
+
+    final CompletableFuture<HttpResponse> tokenRequest = new CompletableFuture<>();
+    when(httpClient.sendAsync(any(), any())).thenReturn(tokenRequest);
+    final CompletableFuture<Void> refresh = dancer.refreshToken();
+    // Waits for the same request
+    final CompletableFuture<Void> otherRefresh = dancer.refreshToken();
+    // The request is sent once the lock is acquired, which is not done on the calling thread
+    probe(() -> dancer.getContext().getDancerState() == REFRESHING_TOKEN);
+
+    refresh.cancel(false);
+    assertThat(tokenRequest.isCancelled(), is(false));
+
+    otherRefresh.cancel(false);
+    assertThat(tokenRequest.isCancelled(), is(true));
+    assertThat(dancer.getContext().getDancerState(), is(HAS_TOKEN));
+    assertThat(dancer.getContext().getAccessToken(), is(startToken));
+    verify(httpClient, times(2)).sendAsync(any(HttpRequest.class), any(HttpRequestOptions.class));
+  }
+
+  @Test
+  public void sharedTokenRetrievedOnce() throws Exception {
+    final DefaultOAuthClientCredentialsDancerBuilder builderA =
+        (DefaultOAuthClientCredentialsDancerBuilder) baseClientCredentialsDancerBuilder();
+    builderA.tokenUrl("http://host/token");
+    builderA.sharedToken(true);
+    final DefaultOAuthClientCredentialsDancerBuilder builderB =
+        (DefaultOAuthClientCredentialsDancerBuilder) baseClientCredentialsDancerBuilder();
+    builderB.tokenUrl("http://host/token");
+    builderB.sharedToken(true);
+
+    ClientCredentialsOAuthDancer dancerA = startDancer(builderA);
+    ClientCredentialsOAuthDancer dancerB = startDancer(builderB);
+
+    assertThat(dancerB.accessToken().get(), is(dancerA.accessToken().get()));
+    verify(httpClient, times(1)).sendAsync(any(HttpRequest.class), any(HttpRequestOptions.class));
+  }
+
+  @Test
+  public void tokenNotSharedWithDifferentScopes() throws Exception {
+    final DefaultOAuthClientCredentialsDancerBuilder builderA =
+        (DefaultOAuthClientCredentialsDancerBuilder) baseClientCredentialsDancerBuilder();
+    builderA.tokenUrl("http://host/token");
+    builderA.scopes("read");
+    builderA.sharedToken(true);
+    final DefaultOAuthClientCredentialsDancerBuilder builderB =
+        (DefaultOAuthClientCredentialsDancerBuilder) baseClientCredentialsDancerBuilder();
+    builderB.tokenUrl("http://host/token");
+    builderB.scopes("write");
+    builderB.sharedToken(true);
+
+    startDancer(builderA);
+    startDancer(builderB);
+
+    verify(httpClient, times(2)).sendAsync(any(HttpRequest.class), any(HttpRequestOptions.class));
+  }
+
+  @Test
+  public void scopedTokensCachedPerScopeSet() throws Exception {
+    final OAuthClientCredentialsDancerBuilder builder = baseClientCredentialsDancerBuilder();
+    builder.tokenUrl("http://host/token");
+    DefaultClientCredentialsOAuthDancer minimalDancer = (DefaultClientCredentialsOAuthDancer) startDancer(builder);
+
+    minimalDancer.accessToken(new HashSet<>(asList("read", "write"))).get();
+    minimalDancer.accessToken(new HashSet<>(asList("write ", "read"))).get();
+    minimalDancer.accessToken(singleton("admin")).get();
+
+    ArgumentCaptor<HttpRequest> requestCaptor = forClass(HttpRequest.class);
+    // One for the start, one for each scope set
+    verify(httpClient, times(3)).sendAsync(requestCaptor.capture(), any(HttpRequestOptions.class));
+    assertThat(IOUtils.toString(requestCaptor.getAllValues().get(1).getEntity().getContent(), UTF_8),
+               containsString("scope=read+write"));
+  }
+
   private void assertClientCredentialsEncodedInHeader(boolean useDeprecatedMethod) throws Exception {
     final OAuthClientCredentialsDancerBuilder builder = baseClientCredentialsDancerBuilder();
     builder.tokenUrl("http://host/token");
@@ -334,7 +577,9 @@ public class ClientCredentialsTokenTestCase extends AbstractOAuthTestCase {
     final OAuthClientCredentialsDancerBuilder builder = baseClientCredentialsDancerBuilder(tokensStore);
     builder.tokenUrl("http://host/token");
 
-    expected.expect(sameInstance(thrown));
+    // The request is sent holding the lock of the context, so what it throws makes the token retrieval on start fail
+    expected.expect(instanceOf(LifecycleException.class));
+    expected.expectCause(sameInstance(thrown));
     try {
       ClientCredentialsOAuthDancer minimalDancer = startDancer(builder);
     } finally {
@@ -342,4 +587,17 @@ public class ClientCredentialsTokenTestCase extends AbstractOAuthTestCase {
     }
   }
 
+  private static class HttpRequestUrlMatcher implements ArgumentMatcher<HttpRequest> {
+
+    private final URI uri;
+
+    public HttpRequestUrlMatcher(String url) throws URISyntaxException {
+      this.uri = new URI(url);
+    }
+
+    @Override
+    public boolean matches(HttpRequest request) {
+      return request.getUri().equals(uri);
+    }
+  }
 }